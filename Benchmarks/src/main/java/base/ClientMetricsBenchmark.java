@@ -0,0 +1,40 @@
+package base;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead the metrics add to every request, on one thread and with eight threads recording into the same
+ * endpoint.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClientMetricsBenchmark {
+
+    private final ClientMetrics metrics = new ClientMetrics();
+
+    @Benchmark
+    public void recordExchange() {
+        this.metrics.recordExchange("/statuses/show.json", 200, 1_234_567L, 0, 2264);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void recordExchangeContended() {
+        this.metrics.recordExchange("/statuses/show.json", 200, 1_234_567L, 0, 2264);
+    }
+}
@@ -0,0 +1,76 @@
+package base;
+
+import io.restassured.path.json.JsonPath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Reading the text of every tweet in a large timeline page through the old path (body decoded into a String,
+ * then parsed into a full tree by JsonPath) and through {@link JsonStreams}, which binds one element at a time.
+ * The difference is mostly in allocation, reported as {@code gc.alloc.rate.norm} by the GC profiler that
+ * {@link BenchmarkRunner} adds (or {@code -prof gc} when run through plain JMH).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonStreamsBenchmark {
+
+    static class Tweet {
+        private String text;
+    }
+
+    @Param("20000")
+    private int tweets;
+
+    private byte[] page;
+
+    @Setup
+    public void writeTimeline() {
+        StringBuilder page = new StringBuilder("[");
+        for (int i = 0; i < this.tweets; i++) {
+            if (i > 0) {
+                page.append(',');
+            }
+            long id = 1307910904118480897L + i;
+            page.append("{\"created_at\":\"Mon Sep 21 05:12:10 +0000 2020\",\"id\":").append(id)
+                    .append(",\"id_str\":\"").append(id)
+                    .append("\",\"text\":\"Tweet number ").append(i)
+                    .append(" about REST API automation #testing\",\"truncated\":false,")
+                    .append("\"entities\":{\"hashtags\":[{\"text\":\"testing\",\"indices\":[40,48]}],\"urls\":[]},")
+                    .append("\"user\":{\"id\":1234567890,\"id_str\":\"1234567890\",\"name\":\"Shakir\",")
+                    .append("\"screen_name\":\"shakir\",\"followers_count\":42,\"description\":\"QA engineer\"},")
+                    .append("\"retweet_count\":").append(i % 7).append(",\"favorite_count\":").append(i % 11)
+                    .append(",\"lang\":\"en\"}");
+        }
+        this.page = page.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int stringAndJsonPathTree() {
+        return new JsonPath(new String(this.page, StandardCharsets.UTF_8)).getList("text").size();
+    }
+
+    @Benchmark
+    public long jsonStreams() {
+        try (Stream<Tweet> stream = JsonStreams.elements(new ByteArrayInputStream(this.page), null, Tweet.class)) {
+            return stream.filter(tweet -> tweet.text != null).count();
+        }
+    }
+}
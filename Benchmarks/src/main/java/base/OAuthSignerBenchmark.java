@@ -0,0 +1,72 @@
+package base;
+
+import com.github.scribejava.core.services.HMACSha1SignatureService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link OAuthSigner} with the per-request signing REST Assured's {@code auth().oauth(...)} performs
+ * through scribe (new signing key and Mac on every call).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OAuthSignerBenchmark {
+
+    private static final String URL = "https://api.twitter.com/1.1/search/tweets.json";
+    private static final String CONSUMER_SECRET = "kAcSOqF21Fu85e7zjz7ZN2U4ZRhfV3WpwPAoE3Z7kBw";
+    private static final String TOKEN_SECRET = "LswwdoUaIvS8ltyTt5jkRh4J50vUPVVHtR2YPi5kE";
+
+    private final OAuthSigner signer = new OAuthSigner("xvz1evFS4wEEPTGEFPHBog", CONSUMER_SECRET,
+            "370773112-GmHxMAgYyLbNEtIKZeRNFsMKPR9EyMZeS9weJAEb", TOKEN_SECRET);
+    private final HMACSha1SignatureService scribe = new HMACSha1SignatureService();
+    private final Map<String, Object> params = new LinkedHashMap<>();
+
+    public OAuthSignerBenchmark() {
+        this.params.put("q", "coronavirus");
+        this.params.put("count", 100);
+    }
+
+    @Benchmark
+    public String cachedOAuthSigner() {
+        return this.signer.authorizationHeader("GET", URL, this.params);
+    }
+
+    @Benchmark
+    public String perRequestScribe() {
+        return this.scribe.getSignature(naiveBaseString(this.params), CONSUMER_SECRET, TOKEN_SECRET);
+    }
+
+    private static String naiveBaseString(Map<String, Object> params) {
+        Map<String, String> sorted = new TreeMap<>();
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            sorted.put(OAuthSigner.percentEncode(param.getKey()), OAuthSigner.percentEncode(String.valueOf(param.getValue())));
+        }
+        sorted.put("oauth_consumer_key", "xvz1evFS4wEEPTGEFPHBog");
+        sorted.put("oauth_nonce", Long.toHexString(System.nanoTime()));
+        sorted.put("oauth_signature_method", "HMAC-SHA1");
+        sorted.put("oauth_timestamp", Long.toString(System.currentTimeMillis() / 1000L));
+        sorted.put("oauth_token", "370773112-GmHxMAgYyLbNEtIKZeRNFsMKPR9EyMZeS9weJAEb");
+        sorted.put("oauth_version", "1.0");
+        String paramString = "";
+        for (Map.Entry<String, String> pair : sorted.entrySet()) {
+            paramString += (paramString.isEmpty() ? "" : "&") + pair.getKey() + "=" + pair.getValue();
+        }
+        return "GET&" + OAuthSigner.percentEncode(URL) + "&" + OAuthSigner.percentEncode(paramString);
+    }
+}
@@ -0,0 +1,68 @@
+package base;
+
+import io.restassured.RestAssured;
+import io.restassured.builder.RequestSpecBuilder;
+import io.restassured.specification.RequestSpecification;
+import org.apache.http.client.methods.HttpGet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What it costs to build a request before it is signed and sent: the REST Assured specification the blocking
+ * methods start from, and the query string and HttpGet the asynchronous and streaming paths use.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestBuildingBenchmark {
+
+    private static final String URL = "https://api.twitter.com/1.1/search/tweets.json";
+
+    private final RequestSpecification baseSpecification = new RequestSpecBuilder()
+            .addFilter(new OAuthSigner("consumerKey", "consumerSecret", "token", "tokenSecret"))
+            .build();
+    private final Map<String, Object> params = new LinkedHashMap<>();
+
+    public RequestBuildingBenchmark() {
+        this.params.put("q", "coronavirus vaccine");
+        this.params.put("count", 100);
+        this.params.put("result_type", "recent");
+    }
+
+    @Benchmark
+    public RequestSpecification restAssuredSpecification() {
+        return RestAssured.given(this.baseSpecification)
+                .queryParam("q", "coronavirus vaccine")
+                .queryParam("count", 100)
+                .queryParam("result_type", "recent");
+    }
+
+    @Benchmark
+    public String encodeQuery() {
+        return AsyncTransport.encode(this.params);
+    }
+
+    @Benchmark
+    public HttpGet httpGet() {
+        return new HttpGet(URL + '?' + AsyncTransport.encode(this.params));
+    }
+
+    @Benchmark
+    public String normalizeUrl() {
+        return OAuthSigner.normalizeUrl("HTTPS://API.Twitter.com:443/1.1/search/tweets.json?q=x");
+    }
+}
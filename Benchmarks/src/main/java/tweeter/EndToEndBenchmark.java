@@ -0,0 +1,88 @@
+package tweeter;
+
+import base.ApiConfig;
+import base.ApiResponse;
+import io.restassured.response.ValidatableResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Complete {@link TweetAPIClient} calls against a {@link TwitterStandIn} on the loopback interface: building,
+ * signing, pacing, sending, and reading the response. The stand-in's own share is small and constant, so these
+ * numbers move when the client's side of the wire does.
+ * <p>
+ * The forked JVM gets placeholder credentials, which the stand-in accepts, and no rate limit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dtwitter.apiKey=benchmark", "-Dtwitter.apiSecretKey=benchmark",
+        "-Dtwitter.accessToken=benchmark", "-Dtwitter.accessTokenSecret=benchmark"})
+@State(Scope.Benchmark)
+public class EndToEndBenchmark {
+
+    private static final long TWEET_ID = 1307711467387596801L;
+
+    private TwitterStandIn standIn;
+    private TweetAPIClient client;
+    private List<Long> timelineIds;
+
+    @Setup(Level.Trial)
+    public void startStandIn() throws IOException {
+        this.standIn = new TwitterStandIn(ApiConfig.get(), 0, Integer.MAX_VALUE);
+        this.client = new TweetAPIClient(this.standIn.clientConfig());
+        try (Stream<Tweet> timeline = this.client.streamUserTimeTweet(100)) {
+            this.timelineIds = timeline.map(Tweet::getId).collect(Collectors.toList());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopStandIn() throws IOException {
+        this.standIn.close();
+    }
+
+    @Benchmark
+    public ValidatableResponse getUserTweet() {
+        return this.client.getUserTweet(TWEET_ID).statusCode(200);
+    }
+
+    @Benchmark
+    public Tweet getUserTweetResult() {
+        return this.client.getUserTweetResult(TWEET_ID).get();
+    }
+
+    @Benchmark
+    public ApiResponse getUserTweetAsync() {
+        return this.client.getUserTweetAsync(TWEET_ID).join();
+    }
+
+    @Benchmark
+    public Map<Long, Tweet> lookup100Tweets() {
+        return this.client.lookupTweets(this.timelineIds);
+    }
+
+    @Benchmark
+    public long streamUserTimeline200() {
+        try (Stream<Tweet> timeline = this.client.streamUserTimeTweet(200)) {
+            return timeline.mapToLong(Tweet::getId).sum();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package tweeter;
+
+import base.Json;
+import base.JsonStreams;
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.restassured.path.json.JsonPath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Binding of the payloads the client reads most: a single tweet and user (full Twitter v1.1 documents, most of
+ * whose fields the models ignore), a 200 tweet timeline page and a 5000 ID followers page. The JsonPath variant
+ * is how the tests read a field before the typed models existed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBindingBenchmark {
+
+    private static final TypeReference<List<Tweet>> TWEET_LIST = new TypeReference<List<Tweet>>() {
+    };
+
+    private byte[] tweet;
+    private byte[] user;
+    private byte[] timeline;
+    private byte[] idsPage;
+
+    @Setup
+    public void loadPayloads() throws IOException {
+        this.tweet = resource("/tweet.json");
+        this.user = resource("/user.json");
+
+        ByteArrayOutputStream timeline = new ByteArrayOutputStream();
+        timeline.write('[');
+        for (int i = 0; i < 200; i++) {
+            if (i > 0) {
+                timeline.write(',');
+            }
+            timeline.write(this.tweet);
+        }
+        timeline.write(']');
+        this.timeline = timeline.toByteArray();
+
+        StringBuilder ids = new StringBuilder("{\"ids\":[");
+        for (int i = 0; i < 5000; i++) {
+            ids.append(i > 0 ? "," : "").append(1297946452395102208L - i * 7919L);
+        }
+        ids.append("],\"next_cursor\":1676543210987654321,\"next_cursor_str\":\"1676543210987654321\","
+                + "\"previous_cursor\":0,\"previous_cursor_str\":\"0\"}");
+        this.idsPage = ids.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] resource(String name) throws IOException {
+        try (InputStream input = JsonBindingBenchmark.class.getResourceAsStream(name)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public Tweet bindTweet() {
+        return Json.read(this.tweet, Tweet.class);
+    }
+
+    @Benchmark
+    public String tweetTextWithJsonPath() {
+        return new JsonPath(new String(this.tweet, StandardCharsets.UTF_8)).getString("text");
+    }
+
+    @Benchmark
+    public User bindUser() {
+        return Json.read(this.user, User.class);
+    }
+
+    @Benchmark
+    public List<Tweet> bindTimeline() {
+        return Json.read(this.timeline, TWEET_LIST);
+    }
+
+    @Benchmark
+    public long streamTimeline() {
+        try (Stream<Tweet> tweets = JsonStreams.elements(new ByteArrayInputStream(this.timeline), null, Tweet.class)) {
+            return tweets.mapToLong(Tweet::getId).sum();
+        }
+    }
+
+    @Benchmark
+    public IdsPage bindIdsPage() {
+        return Json.read(this.idsPage, IdsPage.class);
+    }
+}
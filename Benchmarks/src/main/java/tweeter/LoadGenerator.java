@@ -0,0 +1,487 @@
+package tweeter;
+
+import base.ApiConfig;
+import base.ApiResponse;
+import base.AsyncTransport;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+
+/**
+ * Drives a weighted mix of {@link TweetAPIClient} calls at a fixed request rate, for stressing a
+ * Twitter-compatible gateway rather than checking it.
+ * <p>
+ * The load is open-loop: request {@code i} is due at {@code start + i / rate} whether or not earlier requests have
+ * completed, and its latency is measured from that due time, not from when it was actually sent. A server (or
+ * client) that stalls therefore shows up in the percentiles with every request the stall held back, instead of
+ * only the one that happened to be waiting (coordinated omission). The time from actually sending is reported
+ * next to it as "service time"; a large gap between the two means requests queued, in the client's in-flight cap
+ * ({@code twitter.maxInFlightRequests}) or behind the issuing thread itself.
+ * <p>
+ * Requests go through the asynchronous client methods, so the usual client configuration applies ({@code twitter.*}
+ * system properties, environment or secrets file), including the rate-limit governor and retries. A progress line
+ * is printed every second, then per-operation throughput and latency percentiles for the measured period (the
+ * warm-up is excluded). For status-code and per-endpoint detail set {@code twitter.metricsFile}.
+ * <pre>
+ * java -cp Benchmarks/target/benchmarks.jar tweeter.LoadGenerator \
+ *     --rate 200 --duration 60 --mix getUserTweet=70,searchTweets=20,createTweet=10
+ * </pre>
+ * {@code --stand-in} serves the requests from an in-process {@link TwitterStandIn} instead, with placeholder
+ * credentials unless real ones are configured, to check the generator and the client's own overhead.
+ */
+public class LoadGenerator {
+
+    private static final String DEFAULT_MIX = "getUserTweet=70,searchTweets=20,createTweet=10";
+    private static final long DEFAULT_TWEET_ID = 1307711467387596801L;
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final TweetAPIClient client;
+    private final List<Operation> operations;
+    private final double rate;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final long drainNanos;
+    private final long seed;
+    private final PrintStream out;
+
+    private final AtomicLong inFlight = new AtomicLong();
+    private final AtomicLong lastCompletion = new AtomicLong(Long.MIN_VALUE);
+    private final LongAdder sent = new LongAdder();
+    private final Recorder issueLag = new Recorder(3);
+
+    /**
+     * @param client        client the requests are sent with
+     * @param operations    workload mix
+     * @param rate          target requests per second, across all operations
+     * @param warmupNanos   leading part of the run that is driven at full rate but left out of the results
+     * @param durationNanos measured part of the run
+     * @param drainNanos    how long to wait for outstanding requests once the last one is sent
+     * @param seed          seed of the operation choice, so runs with the same mix send the same sequence
+     * @param out           where progress and the report are printed
+     */
+    public LoadGenerator(TweetAPIClient client, List<Operation> operations, double rate, long warmupNanos,
+                         long durationNanos, long drainNanos, long seed, PrintStream out) {
+        if (operations.isEmpty()) {
+            throw new IllegalArgumentException("The workload mix is empty");
+        }
+        if (!(rate > 0)) {
+            throw new IllegalArgumentException("rate must be positive: " + rate);
+        }
+        if (warmupNanos < 0 || durationNanos <= 0 || drainNanos < 0) {
+            throw new IllegalArgumentException("warm-up and drain must not be negative and duration must be positive");
+        }
+        this.client = client;
+        this.operations = operations;
+        this.rate = rate;
+        this.warmupNanos = warmupNanos;
+        this.durationNanos = durationNanos;
+        this.drainNanos = drainNanos;
+        this.seed = seed;
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        if (options.containsKey("help")) {
+            System.out.println("Options: --rate <requests/s, default 100> --duration <s, default 30>"
+                    + " --warmup <s, default 5> --drain <s, default 30> --mix <operation=weight,...>"
+                    + " --tweet-id <id> --query <search terms> --seed <n> --stand-in\n"
+                    + "Operations: " + String.join(", ", OPERATIONS.keySet()));
+            return;
+        }
+        boolean standInMode = options.containsKey("stand-in");
+        if (standInMode) {
+            for (String credential : new String[]{"apiKey", "apiSecretKey", "accessToken", "accessTokenSecret"}) {
+                if (System.getProperty("twitter." + credential) == null) {
+                    System.setProperty("twitter." + credential, "load-generator");
+                }
+            }
+        }
+        Workload workload = new Workload(Long.parseLong(options.getOrDefault("tweet-id",
+                String.valueOf(DEFAULT_TWEET_ID))), options.getOrDefault("query", "java"));
+        List<Operation> operations = parseMix(options.getOrDefault("mix", DEFAULT_MIX), workload);
+
+        TwitterStandIn standIn = standInMode ? new TwitterStandIn(ApiConfig.get(), 0, Integer.MAX_VALUE) : null;
+        try {
+            TweetAPIClient client = standIn != null ? new TweetAPIClient(standIn.clientConfig()) : new TweetAPIClient();
+            new LoadGenerator(client, operations,
+                    Double.parseDouble(options.getOrDefault("rate", "100")),
+                    seconds(options.getOrDefault("warmup", "5")),
+                    seconds(options.getOrDefault("duration", "30")),
+                    seconds(options.getOrDefault("drain", "30")),
+                    Long.parseLong(options.getOrDefault("seed", "42")),
+                    System.out).run();
+        } finally {
+            if (standIn != null) {
+                standIn.close();
+            }
+            AsyncTransport.shared().shutdown();
+        }
+    }
+
+    /**
+     * Runs the load and prints the report.
+     *
+     * @return the per-operation results of the measured period
+     */
+    public Report run() throws InterruptedException {
+        long intervalNanos = Math.round(TimeUnit.SECONDS.toNanos(1) / this.rate);
+        long start = System.nanoTime();
+        long measureStart = start + this.warmupNanos;
+        long end = measureStart + this.durationNanos;
+
+        Thread progress = new Thread(() -> reportProgress(start, measureStart), "load-generator-progress");
+        progress.setDaemon(true);
+        progress.start();
+
+        double[] cumulativeWeights = cumulativeWeights();
+        SplittableRandom random = new SplittableRandom(this.seed);
+        for (long i = 0; ; i++) {
+            long due = start + i * intervalNanos;
+            if (due >= end) {
+                break;
+            }
+            long now;
+            while ((now = System.nanoTime()) < due) {
+                LockSupport.parkNanos(due - now);
+            }
+            boolean measured = due >= measureStart;
+            if (measured) {
+                this.issueLag.recordValue(TimeUnit.NANOSECONDS.toMicros(now - due));
+            }
+            issue(pick(cumulativeWeights, random.nextDouble()), i, due, now, measured);
+        }
+
+        long drainDeadline = System.nanoTime() + this.drainNanos;
+        while (this.inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        progress.interrupt();
+        progress.join();
+        for (Operation operation : this.operations) {
+            operation.finish();
+        }
+        long measuredNanos = Math.max(this.lastCompletion.get(), end) - measureStart;
+
+        Report report = new Report(this.operations, this.rate, measuredNanos, this.inFlight.get(),
+                this.issueLag.getIntervalHistogram());
+        report.print(this.out);
+        return report;
+    }
+
+    private void issue(Operation operation, long sequence, long due, long sentAt, boolean measured) {
+        this.inFlight.incrementAndGet();
+        this.sent.increment();
+        CompletableFuture<ApiResponse> response;
+        try {
+            response = operation.call.apply(this.client, sequence);
+        } catch (RuntimeException e) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(e);
+        }
+        response.whenComplete((result, error) -> {
+            long completed = System.nanoTime();
+            long latency = TimeUnit.NANOSECONDS.toMicros(completed - due);
+            operation.progress.recordValue(latency);
+            if (measured) {
+                operation.latency.recordValue(latency);
+                operation.serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(completed - sentAt));
+                if (error != null || result.statusCode() >= 400) {
+                    operation.errors.increment();
+                }
+                this.lastCompletion.accumulateAndGet(completed, Math::max);
+            }
+            this.inFlight.decrementAndGet();
+        });
+    }
+
+    /**
+     * Prints one line per second, covering the requests that completed in it.
+     */
+    private void reportProgress(long start, long measureStart) {
+        long tick = start;
+        boolean stopping = false;
+        Histogram interval = new Histogram(3);
+        long lastSent = 0;
+        while (!stopping) {
+            tick += TimeUnit.SECONDS.toNanos(1);
+            long now;
+            while (!stopping && (now = System.nanoTime()) < tick) {
+                LockSupport.parkNanos(tick - now);
+                stopping = Thread.interrupted();
+            }
+            boolean measured = tick - TimeUnit.SECONDS.toNanos(1) >= measureStart;
+            interval.reset();
+            for (Operation operation : this.operations) {
+                interval.add(operation.progress.getIntervalHistogram());
+            }
+            long sent = this.sent.sum();
+            this.out.printf(Locale.ROOT, "%5ds %-7s sent %7d/s  completed %7d/s  in flight %6d  p50 %9.3f ms"
+                            + "  p99 %9.3f ms  max %9.3f ms%n",
+                    TimeUnit.NANOSECONDS.toSeconds(tick - start), measured ? "" : "warm-up", sent - lastSent,
+                    interval.getTotalCount(), this.inFlight.get(), millis(interval.getValueAtPercentile(50)),
+                    millis(interval.getValueAtPercentile(99)), millis(interval.getMaxValue()));
+            lastSent = sent;
+        }
+    }
+
+    private double[] cumulativeWeights() {
+        double total = 0;
+        for (Operation operation : this.operations) {
+            total += operation.weight;
+        }
+        double[] cumulative = new double[this.operations.size()];
+        double sum = 0;
+        for (int i = 0; i < cumulative.length; i++) {
+            sum += this.operations.get(i).weight;
+            cumulative[i] = sum / total;
+        }
+        return cumulative;
+    }
+
+    private Operation pick(double[] cumulativeWeights, double choice) {
+        for (int i = 0; i < cumulativeWeights.length - 1; i++) {
+            if (choice < cumulativeWeights[i]) {
+                return this.operations.get(i);
+            }
+        }
+        return this.operations.get(cumulativeWeights.length - 1);
+    }
+
+    /**
+     * Parses a mix such as {@code getUserTweet=70,searchTweets=20,createTweet=10}. Weights are relative and need
+     * not add up to 100.
+     */
+    static List<Operation> parseMix(String mix, Workload workload) {
+        List<Operation> operations = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] nameAndWeight = entry.trim().split("=", 2);
+            String name = nameAndWeight[0].trim();
+            OperationFactory factory = OPERATIONS.get(name);
+            if (factory == null) {
+                throw new IllegalArgumentException("Unknown operation " + name + ", expected one of "
+                        + OPERATIONS.keySet());
+            }
+            double weight = nameAndWeight.length > 1 ? Double.parseDouble(nameAndWeight[1].trim()) : 1;
+            if (!(weight > 0)) {
+                throw new IllegalArgumentException("Weight of " + name + " must be positive: " + weight);
+            }
+            operations.add(new Operation(name, weight, factory.create(workload)));
+        }
+        return operations;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + args[i] + ", see --help");
+            }
+            String name = args[i].substring(2);
+            if (name.equals("stand-in") || name.equals("help")) {
+                options.put(name, "true");
+            } else if (i + 1 < args.length) {
+                options.put(name, args[++i]);
+            } else {
+                throw new IllegalArgumentException("Option --" + name + " needs a value");
+            }
+        }
+        return options;
+    }
+
+    private static long seconds(String value) {
+        return Math.round(Double.parseDouble(value) * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    /**
+     * Values the operations are called with.
+     */
+    static final class Workload {
+
+        final long tweetId;
+        final String query;
+        final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+        Workload(long tweetId, String query) {
+            this.tweetId = tweetId;
+            this.query = query;
+        }
+    }
+
+    private interface OperationFactory {
+        BiFunction<TweetAPIClient, Long, CompletableFuture<ApiResponse>> create(Workload workload);
+    }
+
+    /**
+     * Client methods a mix can name. Each call gets the request's sequence number, which keeps created tweets
+     * unique (Twitter rejects duplicates).
+     */
+    private static final Map<String, OperationFactory> OPERATIONS;
+
+    static {
+        Map<String, OperationFactory> operations = new LinkedHashMap<>();
+        operations.put("getUserTweet", workload -> (client, sequence) -> client.getUserTweetAsync(workload.tweetId));
+        operations.put("getMultipleTweets", workload -> (client, sequence) ->
+                client.getMultipleTweetsAsync(workload.tweetId, workload.tweetId));
+        operations.put("getUserTimeTweet", workload -> (client, sequence) -> client.getUserTimeTweetAsync());
+        operations.put("getMentionsTimeline", workload -> (client, sequence) -> client.getMentionsTimelineAsync());
+        operations.put("searchTweets", workload -> (client, sequence) -> client.searchTweetsAsync(workload.query));
+        operations.put("searchUsers", workload -> (client, sequence) -> client.searchUsersAsync(workload.query));
+        operations.put("verifyAccountCredentials", workload -> (client, sequence) ->
+                client.verifyAccountCredentialsAsync());
+        operations.put("createTweet", workload -> (client, sequence) ->
+                client.createTweetAsync("Load test " + workload.runId + " #" + sequence));
+        OPERATIONS = Collections.unmodifiableMap(operations);
+    }
+
+    /**
+     * One entry of the workload mix and what was recorded for it.
+     */
+    public static final class Operation {
+
+        final String name;
+        final double weight;
+        final BiFunction<TweetAPIClient, Long, CompletableFuture<ApiResponse>> call;
+        final Recorder progress = new Recorder(3);
+        final Recorder latency = new Recorder(3);
+        final Recorder serviceTime = new Recorder(3);
+        final LongAdder errors = new LongAdder();
+        Histogram totalLatency;
+        Histogram totalServiceTime;
+        long totalErrors;
+
+        Operation(String name, double weight, BiFunction<TweetAPIClient, Long, CompletableFuture<ApiResponse>> call) {
+            this.name = name;
+            this.weight = weight;
+            this.call = call;
+        }
+
+        /**
+         * Fixes the totals once the run is over. Requests that complete later are not counted.
+         */
+        void finish() {
+            this.totalLatency = this.latency.getIntervalHistogram();
+            this.totalServiceTime = this.serviceTime.getIntervalHistogram();
+            this.totalErrors = this.errors.sum();
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Latencies of the measured period in microseconds, from when each request was due.
+         */
+        public Histogram getLatency() {
+            return this.totalLatency;
+        }
+
+        /**
+         * Latencies of the measured period in microseconds, from when each request was actually sent.
+         */
+        public Histogram getServiceTime() {
+            return this.totalServiceTime;
+        }
+
+        /**
+         * Responses with a 4xx or 5xx status, plus requests that failed without one.
+         */
+        public long getErrors() {
+            return this.totalErrors;
+        }
+    }
+
+    /**
+     * Results of the measured period.
+     */
+    public static final class Report {
+
+        private final List<Operation> operations;
+        private final double targetRate;
+        private final long measuredNanos;
+        private final long unfinished;
+        private final Histogram issueLag;
+
+        Report(List<Operation> operations, double targetRate, long measuredNanos, long unfinished,
+               Histogram issueLag) {
+            this.operations = operations;
+            this.targetRate = targetRate;
+            this.measuredNanos = measuredNanos;
+            this.unfinished = unfinished;
+            this.issueLag = issueLag;
+        }
+
+        public List<Operation> getOperations() {
+            return this.operations;
+        }
+
+        /**
+         * Requests still outstanding when the drain period ran out; they are in no percentile.
+         */
+        public long getUnfinished() {
+            return this.unfinished;
+        }
+
+        /**
+         * Completed requests per second over the measured period.
+         */
+        public double getThroughput() {
+            long completed = 0;
+            for (Operation operation : this.operations) {
+                completed += operation.totalLatency.getTotalCount();
+            }
+            return completed / (this.measuredNanos / 1e9);
+        }
+
+        void print(PrintStream out) {
+            double seconds = this.measuredNanos / 1e9;
+            Histogram latency = new Histogram(3);
+            Histogram serviceTime = new Histogram(3);
+            long errors = 0;
+            out.printf(Locale.ROOT, "%nTarget %.1f requests/s, achieved %.1f requests/s over %.1f s%n",
+                    this.targetRate, getThroughput(), seconds);
+            out.printf(Locale.ROOT, "%-26s %9s %8s %9s %10s %10s %10s %10s %10s %12s%n", "latency (ms)", "count",
+                    "errors", "req/s", "p50", "p90", "p99", "p99.9", "max", "service p99");
+            for (Operation operation : this.operations) {
+                print(out, operation.name, operation.totalLatency, operation.totalServiceTime, operation.totalErrors,
+                        seconds);
+                latency.add(operation.totalLatency);
+                serviceTime.add(operation.totalServiceTime);
+                errors += operation.totalErrors;
+            }
+            print(out, "all", latency, serviceTime, errors, seconds);
+            out.printf(Locale.ROOT, "Issue lag p99 %.3f ms, max %.3f ms%s%n",
+                    millis(this.issueLag.getValueAtPercentile(99)), millis(this.issueLag.getMaxValue()),
+                    this.unfinished > 0 ? "; " + this.unfinished + " requests did not finish" : "");
+        }
+
+        private static void print(PrintStream out, String name, Histogram latency, Histogram serviceTime,
+                                  long errors, double seconds) {
+            out.printf(Locale.ROOT, "%-26s %9d %8d %9.1f", name, latency.getTotalCount(), errors,
+                    latency.getTotalCount() / seconds);
+            for (double percentile : PERCENTILES) {
+                out.printf(Locale.ROOT, " %10.3f", millis(latency.getValueAtPercentile(percentile)));
+            }
+            out.printf(Locale.ROOT, " %10.3f %12.3f%n", millis(latency.getMaxValue()),
+                    millis(serviceTime.getValueAtPercentile(99)));
+        }
+    }
+}
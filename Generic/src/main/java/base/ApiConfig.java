@@ -0,0 +1,591 @@
+package base;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Immutable API configuration: credentials, base URL, timeouts, connection pool sizes, the limit on
+ * concurrent asynchronous requests, the retry policy, the record/replay cassette, where metrics are exported, the
+ * response cache, request batching, the per-endpoint circuit breakers and bulkheads, and request hedging.
+ * <p>
+ * {@link #get()} resolves the configuration once per JVM and every client shares it. Each setting is looked up,
+ * in increasing order of precedence, in the secrets properties file, the environment and the system properties.
+ * For a setting such as {@code apiKey} that means the {@code apiKey} property in the file, the
+ * {@code TWITTER_API_KEY} environment variable and the {@code twitter.apiKey} system property. The file location
+ * defaults to {@code ../Twitter/secret.properties} and can be changed with {@code twitter.secretsFile} /
+ * {@code TWITTER_SECRETS_FILE}.
+ */
+public final class ApiConfig {
+
+    public static final String DEFAULT_BASE_URL = "https://api.twitter.com/1.1";
+    public static final String DEFAULT_SECRETS_FILE = "../Twitter/secret.properties";
+
+    private static volatile ApiConfig instance;
+
+    private final String apiKey;
+    private final String apiSecretKey;
+    private final String accessToken;
+    private final String accessTokenSecret;
+    private final String baseUrl;
+    private final int connectTimeoutMillis;
+    private final int socketTimeoutMillis;
+    private final int maxConnectionsPerRoute;
+    private final int maxConnectionsTotal;
+    private final long idleTimeoutMillis;
+    private final int maxInFlightRequests;
+    private final int maxRetries;
+    private final long retryBaseDelayMillis;
+    private final long retryMaxDelayMillis;
+    private final int retryBudgetPercent;
+    private final Cassette.Mode cassetteMode;
+    private final String cassetteFile;
+    private final String metricsFile;
+    private final int cacheMaxEntries;
+    private final long cacheTtlMillis;
+    private final int batchWindowMillis;
+    private final int circuitFailureRatePercent;
+    private final int circuitSlowCallRatePercent;
+    private final long circuitSlowCallMillis;
+    private final int circuitWindowSize;
+    private final long circuitOpenMillis;
+    private final int bulkheadMaxConcurrentCalls;
+    private final int hedgePercentile;
+    private final int hedgeBudgetPercent;
+    private final long hedgeMinDelayMillis;
+
+    private ApiConfig(Builder builder) {
+        this.apiKey = builder.apiKey;
+        this.apiSecretKey = builder.apiSecretKey;
+        this.accessToken = builder.accessToken;
+        this.accessTokenSecret = builder.accessTokenSecret;
+        this.baseUrl = builder.baseUrl;
+        this.connectTimeoutMillis = builder.connectTimeoutMillis;
+        this.socketTimeoutMillis = builder.socketTimeoutMillis;
+        this.maxConnectionsPerRoute = builder.maxConnectionsPerRoute;
+        this.maxConnectionsTotal = builder.maxConnectionsTotal;
+        this.idleTimeoutMillis = builder.idleTimeoutMillis;
+        this.maxInFlightRequests = builder.maxInFlightRequests;
+        this.maxRetries = builder.maxRetries;
+        this.retryBaseDelayMillis = builder.retryBaseDelayMillis;
+        this.retryMaxDelayMillis = builder.retryMaxDelayMillis;
+        this.retryBudgetPercent = builder.retryBudgetPercent;
+        this.cassetteMode = builder.cassetteMode;
+        this.cassetteFile = builder.cassetteFile;
+        this.metricsFile = builder.metricsFile;
+        this.cacheMaxEntries = builder.cacheMaxEntries;
+        this.cacheTtlMillis = builder.cacheTtlMillis;
+        this.batchWindowMillis = builder.batchWindowMillis;
+        this.circuitFailureRatePercent = builder.circuitFailureRatePercent;
+        this.circuitSlowCallRatePercent = builder.circuitSlowCallRatePercent;
+        this.circuitSlowCallMillis = builder.circuitSlowCallMillis;
+        this.circuitWindowSize = builder.circuitWindowSize;
+        this.circuitOpenMillis = builder.circuitOpenMillis;
+        this.bulkheadMaxConcurrentCalls = builder.bulkheadMaxConcurrentCalls;
+        this.hedgePercentile = builder.hedgePercentile;
+        this.hedgeBudgetPercent = builder.hedgeBudgetPercent;
+        this.hedgeMinDelayMillis = builder.hedgeMinDelayMillis;
+        validate();
+    }
+
+    /**
+     * Returns the process-wide configuration, loading and validating it on first use.
+     *
+     * @throws IllegalStateException if the configuration is incomplete or invalid
+     */
+    public static ApiConfig get() {
+        ApiConfig config = instance;
+        if (config == null) {
+            synchronized (ApiConfig.class) {
+                config = instance;
+                if (config == null) {
+                    config = load(System.getenv(), System.getProperties());
+                    instance = config;
+                }
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Resolves a configuration from the given environment and system properties.
+     *
+     * @param environment      environment variables, e.g. {@link System#getenv()}
+     * @param systemProperties system properties, e.g. {@link System#getProperties()}
+     * @return
+     */
+    public static ApiConfig load(Map<String, String> environment, Properties systemProperties) {
+        Properties merged = new Properties();
+        String secretsFile = firstNonNull(systemProperties.getProperty("twitter.secretsFile"),
+                environment.get("TWITTER_SECRETS_FILE"));
+        Path secretsPath = Paths.get(secretsFile == null ? DEFAULT_SECRETS_FILE : secretsFile);
+        if (Files.isRegularFile(secretsPath)) {
+            try (InputStream inputStream = new FileInputStream(secretsPath.toFile())) {
+                merged.load(inputStream);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not read " + secretsPath.toAbsolutePath(), e);
+            }
+        } else if (secretsFile != null) {
+            throw new IllegalStateException("Secrets file " + secretsPath.toAbsolutePath() + " does not exist");
+        }
+        for (String name : new String[]{"apiKey", "apiSecretKey", "accessToken", "accessTokenSecret", "baseUrl",
+                "connectTimeoutMillis", "socketTimeoutMillis", "maxConnectionsPerRoute", "maxConnectionsTotal",
+                "idleTimeoutMillis", "maxInFlightRequests", "maxRetries", "retryBaseDelayMillis",
+                "retryMaxDelayMillis", "retryBudgetPercent", "cassetteMode", "cassetteFile",
+                "metricsFile", "cacheMaxEntries", "cacheTtlMillis", "batchWindowMillis", "circuitFailureRatePercent",
+                "circuitSlowCallRatePercent", "circuitSlowCallMillis", "circuitWindowSize", "circuitOpenMillis",
+                "bulkheadMaxConcurrentCalls", "hedgePercentile", "hedgeBudgetPercent", "hedgeMinDelayMillis"}) {
+            String value = firstNonNull(systemProperties.getProperty("twitter." + name),
+                    environment.get(environmentName(name)));
+            if (value != null) {
+                merged.setProperty(name, value);
+            }
+        }
+        Builder builder = new Builder();
+        builder.apiKey = trimToNull(merged.getProperty("apiKey"));
+        builder.apiSecretKey = trimToNull(merged.getProperty("apiSecretKey"));
+        builder.accessToken = trimToNull(merged.getProperty("accessToken"));
+        builder.accessTokenSecret = trimToNull(merged.getProperty("accessTokenSecret"));
+        builder.baseUrl = merged.getProperty("baseUrl", DEFAULT_BASE_URL).trim();
+        builder.connectTimeoutMillis = intSetting(merged, "connectTimeoutMillis", 10000);
+        builder.socketTimeoutMillis = intSetting(merged, "socketTimeoutMillis", 30000);
+        builder.maxConnectionsPerRoute = intSetting(merged, "maxConnectionsPerRoute", 20);
+        builder.maxConnectionsTotal = intSetting(merged, "maxConnectionsTotal", 100);
+        builder.idleTimeoutMillis = longSetting(merged, "idleTimeoutMillis", 30000L);
+        builder.maxInFlightRequests = intSetting(merged, "maxInFlightRequests", 64);
+        builder.maxRetries = intSetting(merged, "maxRetries", 3);
+        builder.retryBaseDelayMillis = longSetting(merged, "retryBaseDelayMillis", 200L);
+        builder.retryMaxDelayMillis = longSetting(merged, "retryMaxDelayMillis", 30000L);
+        builder.retryBudgetPercent = intSetting(merged, "retryBudgetPercent", 10);
+        builder.cassetteMode = cassetteMode(merged.getProperty("cassetteMode", "off"));
+        builder.cassetteFile = trimToNull(merged.getProperty("cassetteFile"));
+        builder.metricsFile = trimToNull(merged.getProperty("metricsFile"));
+        builder.cacheMaxEntries = intSetting(merged, "cacheMaxEntries", 0);
+        builder.cacheTtlMillis = longSetting(merged, "cacheTtlMillis", 60000L);
+        builder.batchWindowMillis = intSetting(merged, "batchWindowMillis", 0);
+        builder.circuitFailureRatePercent = intSetting(merged, "circuitFailureRatePercent", 50);
+        builder.circuitSlowCallRatePercent = intSetting(merged, "circuitSlowCallRatePercent", 80);
+        builder.circuitSlowCallMillis = longSetting(merged, "circuitSlowCallMillis", 10000L);
+        builder.circuitWindowSize = intSetting(merged, "circuitWindowSize", 20);
+        builder.circuitOpenMillis = longSetting(merged, "circuitOpenMillis", 30000L);
+        builder.bulkheadMaxConcurrentCalls = intSetting(merged, "bulkheadMaxConcurrentCalls", 0);
+        builder.hedgePercentile = intSetting(merged, "hedgePercentile", 0);
+        builder.hedgeBudgetPercent = intSetting(merged, "hedgeBudgetPercent", 5);
+        builder.hedgeMinDelayMillis = longSetting(merged, "hedgeMinDelayMillis", 50L);
+        return new ApiConfig(builder);
+    }
+
+    /**
+     * Returns a copy of this configuration that sends requests to another base URL, e.g. a local stand-in server.
+     */
+    public ApiConfig withBaseUrl(String baseUrl) {
+        Builder builder = new Builder(this);
+        builder.baseUrl = baseUrl;
+        return new ApiConfig(builder);
+    }
+
+    private void validate() {
+        List<String> problems = new ArrayList<>();
+        if (this.apiKey == null) {
+            problems.add("apiKey is missing");
+        }
+        if (this.apiSecretKey == null) {
+            problems.add("apiSecretKey is missing");
+        }
+        if (this.accessToken == null) {
+            problems.add("accessToken is missing");
+        }
+        if (this.accessTokenSecret == null) {
+            problems.add("accessTokenSecret is missing");
+        }
+        if (!this.baseUrl.startsWith("http://") && !this.baseUrl.startsWith("https://")) {
+            problems.add("baseUrl must be an http(s) URL: " + this.baseUrl);
+        }
+        if (this.connectTimeoutMillis <= 0 || this.socketTimeoutMillis <= 0 || this.idleTimeoutMillis <= 0) {
+            problems.add("timeouts must be positive");
+        }
+        if (this.maxConnectionsPerRoute <= 0 || this.maxConnectionsTotal < this.maxConnectionsPerRoute) {
+            problems.add("maxConnectionsTotal must be at least maxConnectionsPerRoute, and both positive");
+        }
+        if (this.maxInFlightRequests <= 0) {
+            problems.add("maxInFlightRequests must be positive");
+        }
+        if (this.maxRetries < 0 || this.retryBudgetPercent < 0) {
+            problems.add("maxRetries and retryBudgetPercent must not be negative");
+        }
+        if (this.retryBaseDelayMillis <= 0 || this.retryMaxDelayMillis < this.retryBaseDelayMillis) {
+            problems.add("retryMaxDelayMillis must be at least retryBaseDelayMillis, and both positive");
+        }
+        if (this.cacheMaxEntries < 0 || this.cacheTtlMillis <= 0) {
+            problems.add("cacheMaxEntries must not be negative and cacheTtlMillis must be positive");
+        }
+        if (this.batchWindowMillis < 0) {
+            problems.add("batchWindowMillis must not be negative");
+        }
+        if (this.circuitFailureRatePercent < 0 || this.circuitFailureRatePercent > 100
+                || this.circuitSlowCallRatePercent < 0 || this.circuitSlowCallRatePercent > 100) {
+            problems.add("circuitFailureRatePercent and circuitSlowCallRatePercent must be between 0 and 100");
+        }
+        if (this.circuitSlowCallMillis <= 0 || this.circuitWindowSize <= 0 || this.circuitOpenMillis <= 0) {
+            problems.add("circuitSlowCallMillis, circuitWindowSize and circuitOpenMillis must be positive");
+        }
+        if (this.bulkheadMaxConcurrentCalls < 0) {
+            problems.add("bulkheadMaxConcurrentCalls must not be negative");
+        }
+        if (this.hedgePercentile < 0 || this.hedgePercentile > 99) {
+            problems.add("hedgePercentile must be between 0 and 99");
+        }
+        if (this.hedgeBudgetPercent < 0 || this.hedgeMinDelayMillis <= 0) {
+            problems.add("hedgeBudgetPercent must not be negative and hedgeMinDelayMillis must be positive");
+        }
+        if (this.cassetteMode != Cassette.Mode.OFF && this.cassetteFile == null) {
+            problems.add("cassetteFile is required when cassetteMode is " + this.cassetteMode.name().toLowerCase());
+        }
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("Invalid API configuration: " + String.join("; ", problems));
+        }
+    }
+
+    private static int intSetting(Properties properties, String name, int defaultValue) {
+        String value = properties.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid API configuration: " + name + " is not a number: " + value, e);
+        }
+    }
+
+    private static long longSetting(Properties properties, String name, long defaultValue) {
+        String value = properties.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid API configuration: " + name + " is not a number: " + value, e);
+        }
+    }
+
+    private static Cassette.Mode cassetteMode(String value) {
+        try {
+            return Cassette.Mode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid API configuration: cassetteMode must be off, record or replay: "
+                    + value, e);
+        }
+    }
+
+    /**
+     * apiSecretKey -> TWITTER_API_SECRET_KEY
+     */
+    private static String environmentName(String name) {
+        StringBuilder environmentName = new StringBuilder("TWITTER_");
+        for (char c : name.toCharArray()) {
+            if (Character.isUpperCase(c)) {
+                environmentName.append('_');
+            }
+            environmentName.append(Character.toUpperCase(c));
+        }
+        return environmentName.toString();
+    }
+
+    private static String firstNonNull(String first, String second) {
+        return first != null ? first : second;
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        return value.trim();
+    }
+
+    public String getApiKey() {
+        return this.apiKey;
+    }
+
+    public String getApiSecretKey() {
+        return this.apiSecretKey;
+    }
+
+    public String getAccessToken() {
+        return this.accessToken;
+    }
+
+    public String getAccessTokenSecret() {
+        return this.accessTokenSecret;
+    }
+
+    public String getBaseUrl() {
+        return this.baseUrl;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return this.connectTimeoutMillis;
+    }
+
+    public int getSocketTimeoutMillis() {
+        return this.socketTimeoutMillis;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return this.maxConnectionsPerRoute;
+    }
+
+    public int getMaxConnectionsTotal() {
+        return this.maxConnectionsTotal;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return this.idleTimeoutMillis;
+    }
+
+    public int getMaxInFlightRequests() {
+        return this.maxInFlightRequests;
+    }
+
+    public int getMaxRetries() {
+        return this.maxRetries;
+    }
+
+    public long getRetryBaseDelayMillis() {
+        return this.retryBaseDelayMillis;
+    }
+
+    public long getRetryMaxDelayMillis() {
+        return this.retryMaxDelayMillis;
+    }
+
+    public int getRetryBudgetPercent() {
+        return this.retryBudgetPercent;
+    }
+
+    /**
+     * Whether requests go to the network ({@code off}), go to the network and are written to the cassette
+     * ({@code record}), or are answered from the cassette without any network access ({@code replay}).
+     */
+    public Cassette.Mode getCassetteMode() {
+        return this.cassetteMode;
+    }
+
+    /**
+     * Path of the cassette file, or null when the cassette is off.
+     */
+    public String getCassetteFile() {
+        return this.cassetteFile;
+    }
+
+    /**
+     * File the {@link ClientMetrics} are written to when the JVM exits, as JSON if the name ends in ".json" and in
+     * the Prometheus text format otherwise; null to not export them.
+     */
+    public String getMetricsFile() {
+        return this.metricsFile;
+    }
+
+    /**
+     * Most responses the {@link ResponseCache} keeps; 0 (the default) turns the cache off.
+     */
+    public int getCacheMaxEntries() {
+        return this.cacheMaxEntries;
+    }
+
+    /**
+     * How long a cached response is served without asking the server again.
+     */
+    public long getCacheTtlMillis() {
+        return this.cacheTtlMillis;
+    }
+
+    /**
+     * How long a single-item read waits to be merged with concurrent ones into a batch request (see
+     * {@link RequestCoalescer}); 0 (the default) sends every read on its own.
+     */
+    public int getBatchWindowMillis() {
+        return this.batchWindowMillis;
+    }
+
+    /**
+     * Share of failed calls (I/O errors and 5xx responses) among the last {@link #getCircuitWindowSize()} calls to
+     * an endpoint that opens its {@link CircuitBreaker}; 0 never opens it on failures.
+     */
+    public int getCircuitFailureRatePercent() {
+        return this.circuitFailureRatePercent;
+    }
+
+    /**
+     * Share of calls slower than {@link #getCircuitSlowCallMillis()} that opens an endpoint's breaker; 0 never
+     * opens it on slow calls.
+     */
+    public int getCircuitSlowCallRatePercent() {
+        return this.circuitSlowCallRatePercent;
+    }
+
+    public long getCircuitSlowCallMillis() {
+        return this.circuitSlowCallMillis;
+    }
+
+    /**
+     * Number of recent calls to an endpoint the breaker rates are computed over.
+     */
+    public int getCircuitWindowSize() {
+        return this.circuitWindowSize;
+    }
+
+    /**
+     * How long an open breaker rejects calls before letting a few probe calls through.
+     */
+    public long getCircuitOpenMillis() {
+        return this.circuitOpenMillis;
+    }
+
+    /**
+     * Most calls to one endpoint that may be in progress at once, beyond which calls are rejected; 0 (the default)
+     * does not limit them. Keep it below {@link #getMaxConnectionsPerRoute()} so no endpoint can take every
+     * connection.
+     */
+    public int getBulkheadMaxConcurrentCalls() {
+        return this.bulkheadMaxConcurrentCalls;
+    }
+
+    /**
+     * Latency percentile of an endpoint after which a {@link HedgingPolicy} sends a second copy of a pending read,
+     * e.g. 95; 0 (the default) turns hedging off.
+     */
+    public int getHedgePercentile() {
+        return this.hedgePercentile;
+    }
+
+    /**
+     * Hedges allowed per hundred requests, on average.
+     */
+    public int getHedgeBudgetPercent() {
+        return this.hedgeBudgetPercent;
+    }
+
+    /**
+     * Shortest time a read is given before it is hedged, however fast its endpoint usually answers.
+     */
+    public long getHedgeMinDelayMillis() {
+        return this.hedgeMinDelayMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ApiConfig{baseUrl=" + this.baseUrl + ", apiKey=" + mask(this.apiKey)
+                + ", connectTimeoutMillis=" + this.connectTimeoutMillis
+                + ", socketTimeoutMillis=" + this.socketTimeoutMillis
+                + ", maxConnectionsPerRoute=" + this.maxConnectionsPerRoute
+                + ", maxConnectionsTotal=" + this.maxConnectionsTotal
+                + ", idleTimeoutMillis=" + this.idleTimeoutMillis
+                + ", maxInFlightRequests=" + this.maxInFlightRequests
+                + ", maxRetries=" + this.maxRetries
+                + ", retryBaseDelayMillis=" + this.retryBaseDelayMillis
+                + ", retryMaxDelayMillis=" + this.retryMaxDelayMillis
+                + ", retryBudgetPercent=" + this.retryBudgetPercent
+                + ", cassetteMode=" + this.cassetteMode.name().toLowerCase()
+                + (this.cassetteFile == null ? "" : ", cassetteFile=" + this.cassetteFile)
+                + (this.metricsFile == null ? "" : ", metricsFile=" + this.metricsFile)
+                + (this.cacheMaxEntries == 0 ? "" : ", cacheMaxEntries=" + this.cacheMaxEntries
+                + ", cacheTtlMillis=" + this.cacheTtlMillis)
+                + (this.batchWindowMillis == 0 ? "" : ", batchWindowMillis=" + this.batchWindowMillis)
+                + ", circuitFailureRatePercent=" + this.circuitFailureRatePercent
+                + ", circuitSlowCallRatePercent=" + this.circuitSlowCallRatePercent
+                + ", circuitSlowCallMillis=" + this.circuitSlowCallMillis
+                + ", circuitWindowSize=" + this.circuitWindowSize
+                + ", circuitOpenMillis=" + this.circuitOpenMillis
+                + (this.bulkheadMaxConcurrentCalls == 0 ? "" : ", bulkheadMaxConcurrentCalls="
+                + this.bulkheadMaxConcurrentCalls)
+                + (this.hedgePercentile == 0 ? "" : ", hedgePercentile=" + this.hedgePercentile
+                + ", hedgeBudgetPercent=" + this.hedgeBudgetPercent
+                + ", hedgeMinDelayMillis=" + this.hedgeMinDelayMillis) + "}";
+    }
+
+    private static String mask(String secret) {
+        return secret.length() <= 4 ? "****" : secret.substring(0, 4) + "****";
+    }
+
+    /**
+     * Settings of a configuration being built, so that adding one does not mean touching every place that creates
+     * a configuration.
+     */
+    private static final class Builder {
+        String apiKey;
+        String apiSecretKey;
+        String accessToken;
+        String accessTokenSecret;
+        String baseUrl;
+        int connectTimeoutMillis;
+        int socketTimeoutMillis;
+        int maxConnectionsPerRoute;
+        int maxConnectionsTotal;
+        long idleTimeoutMillis;
+        int maxInFlightRequests;
+        int maxRetries;
+        long retryBaseDelayMillis;
+        long retryMaxDelayMillis;
+        int retryBudgetPercent;
+        Cassette.Mode cassetteMode;
+        String cassetteFile;
+        String metricsFile;
+        int cacheMaxEntries;
+        long cacheTtlMillis;
+        int batchWindowMillis;
+        int circuitFailureRatePercent;
+        int circuitSlowCallRatePercent;
+        long circuitSlowCallMillis;
+        int circuitWindowSize;
+        long circuitOpenMillis;
+        int bulkheadMaxConcurrentCalls;
+        int hedgePercentile;
+        int hedgeBudgetPercent;
+        long hedgeMinDelayMillis;
+
+        Builder() {
+        }
+
+        Builder(ApiConfig config) {
+            this.apiKey = config.apiKey;
+            this.apiSecretKey = config.apiSecretKey;
+            this.accessToken = config.accessToken;
+            this.accessTokenSecret = config.accessTokenSecret;
+            this.baseUrl = config.baseUrl;
+            this.connectTimeoutMillis = config.connectTimeoutMillis;
+            this.socketTimeoutMillis = config.socketTimeoutMillis;
+            this.maxConnectionsPerRoute = config.maxConnectionsPerRoute;
+            this.maxConnectionsTotal = config.maxConnectionsTotal;
+            this.idleTimeoutMillis = config.idleTimeoutMillis;
+            this.maxInFlightRequests = config.maxInFlightRequests;
+            this.maxRetries = config.maxRetries;
+            this.retryBaseDelayMillis = config.retryBaseDelayMillis;
+            this.retryMaxDelayMillis = config.retryMaxDelayMillis;
+            this.retryBudgetPercent = config.retryBudgetPercent;
+            this.cassetteMode = config.cassetteMode;
+            this.cassetteFile = config.cassetteFile;
+            this.metricsFile = config.metricsFile;
+            this.cacheMaxEntries = config.cacheMaxEntries;
+            this.cacheTtlMillis = config.cacheTtlMillis;
+            this.batchWindowMillis = config.batchWindowMillis;
+            this.circuitFailureRatePercent = config.circuitFailureRatePercent;
+            this.circuitSlowCallRatePercent = config.circuitSlowCallRatePercent;
+            this.circuitSlowCallMillis = config.circuitSlowCallMillis;
+            this.circuitWindowSize = config.circuitWindowSize;
+            this.circuitOpenMillis = config.circuitOpenMillis;
+            this.bulkheadMaxConcurrentCalls = config.bulkheadMaxConcurrentCalls;
+            this.hedgePercentile = config.hedgePercentile;
+            this.hedgeBudgetPercent = config.hedgeBudgetPercent;
+            this.hedgeMinDelayMillis = config.hedgeMinDelayMillis;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package base;
+
+/**
+ * Thrown by the higher-level client helpers when the API answers with an unexpected status code.
+ */
+public class ApiException extends RuntimeException {
+
+    private final ApiResponse response;
+
+    public ApiException(String message, ApiResponse response) {
+        super(message + ": " + response.statusLine() + " " + abbreviate(response.asString()));
+        this.response = response;
+    }
+
+    public int getStatusCode() {
+        return this.response.statusCode();
+    }
+
+    public ApiResponse getResponse() {
+        return this.response;
+    }
+
+    private static String abbreviate(String body) {
+        return body.length() <= 200 ? body : body.substring(0, 200) + "...";
+    }
+}
@@ -0,0 +1,143 @@
+package base;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.restassured.builder.ResponseBuilder;
+import io.restassured.http.Header;
+import io.restassured.http.Headers;
+import io.restassured.path.json.JsonPath;
+import io.restassured.response.Response;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Fully buffered HTTP response returned by the asynchronous client methods.
+ */
+public class ApiResponse {
+
+    private final int statusCode;
+    private final String statusLine;
+    private final Map<String, List<String>> headers;
+    private final byte[] body;
+    private volatile JsonPath jsonPath;
+
+    public ApiResponse(int statusCode, String statusLine, Map<String, List<String>> headers, byte[] body) {
+        this.statusCode = statusCode;
+        this.statusLine = statusLine;
+        Map<String, List<String>> caseInsensitive = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        caseInsensitive.putAll(headers);
+        this.headers = Collections.unmodifiableMap(caseInsensitive);
+        this.body = body;
+    }
+
+    public int statusCode() {
+        return this.statusCode;
+    }
+
+    public String statusLine() {
+        return this.statusLine;
+    }
+
+    public Map<String, List<String>> headers() {
+        return this.headers;
+    }
+
+    /**
+     * Returns the first value of a header, or null if it is absent. Header names are case-insensitive.
+     */
+    public String header(String name) {
+        List<String> values = this.headers.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    public byte[] asByteArray() {
+        return this.body;
+    }
+
+    public String asString() {
+        return new String(this.body, charset());
+    }
+
+    /**
+     * Extracts a value from a JSON body with the same GPath syntax as REST Assured's
+     * {@code response.extract().body().path(...)}. The body is parsed once, on first use.
+     */
+    public <T> T path(String path) {
+        JsonPath parsed = this.jsonPath;
+        if (parsed == null) {
+            parsed = new JsonPath(asString());
+            this.jsonPath = parsed;
+        }
+        return parsed.get(path);
+    }
+
+    /**
+     * Binds the JSON body to {@code type} with the shared {@link Json} mapper.
+     */
+    public <T> T as(Class<T> type) {
+        return Json.read(this.body, type);
+    }
+
+    public <T> T as(TypeReference<T> type) {
+        return Json.read(this.body, type);
+    }
+
+    /**
+     * Buffers a REST Assured response, e.g. to store it.
+     */
+    static ApiResponse of(Response response) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (Header header : response.getHeaders()) {
+            headers.computeIfAbsent(header.getName(), name -> new ArrayList<>(1)).add(header.getValue());
+        }
+        return new ApiResponse(response.getStatusCode(), response.getStatusLine(), headers, response.asByteArray());
+    }
+
+    /**
+     * Returns this response as REST Assured's, e.g. to answer a blocking request from storage.
+     */
+    public Response toRestAssured() {
+        List<Header> headers = new ArrayList<>();
+        for (Map.Entry<String, List<String>> header : this.headers.entrySet()) {
+            for (String value : header.getValue()) {
+                headers.add(new Header(header.getKey(), value));
+            }
+        }
+        ResponseBuilder builder = new ResponseBuilder()
+                .setStatusCode(this.statusCode)
+                .setStatusLine(this.statusLine)
+                .setHeaders(new Headers(headers))
+                .setBody(this.body);
+        String contentType = header("Content-Type");
+        if (contentType != null) {
+            builder.setContentType(contentType);
+        }
+        return builder.build();
+    }
+
+    private Charset charset() {
+        String contentType = header("Content-Type");
+        if (contentType != null) {
+            int index = contentType.toLowerCase().indexOf("charset=");
+            if (index >= 0) {
+                try {
+                    return Charset.forName(contentType.substring(index + 8).replace("\"", "").trim());
+                } catch (IllegalArgumentException ignored) {
+                    // fall through to UTF-8, which is what the Twitter API uses
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    @Override
+    public String toString() {
+        return this.statusLine;
+    }
+}
@@ -0,0 +1,376 @@
+package base;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.ProtocolVersion;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Non-blocking HTTP transport backed by Apache HttpClient 5.
+ * <p>
+ * A small, fixed set of I/O reactor threads multiplexes every connection, so thousands of requests can be
+ * outstanding without a thread each. The number of requests actually on the wire is capped by an
+ * {@link InFlightLimiter}; anything beyond the cap waits in a queue instead of piling onto the connection pool.
+ * <p>
+ * HTTPS connections negotiate HTTP/2 through ALPN and fall back to HTTP/1.1 when the server does not offer it;
+ * over HTTP/2 every request to a host shares one multiplexed connection. Responses are requested gzip- or
+ * deflate-compressed and decoded before they are handed out, so callers, the cassette and the response cache
+ * only ever see plain bodies.
+ */
+public class AsyncTransport {
+
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final Map<List<Object>, AsyncTransport> SHARED = new ConcurrentHashMap<>();
+
+    private final CloseableHttpAsyncClient httpClient;
+    private final InFlightLimiter limiter;
+    private final Cassette cassette;
+    private final ClientMetrics metrics;
+    private final String basePath;
+
+    public AsyncTransport(ApiConfig config) {
+        AtomicInteger threadCount = new AtomicInteger();
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(config.getConnectTimeoutMillis()))
+                .setResponseTimeout(Timeout.ofMilliseconds(config.getSocketTimeoutMillis()))
+                .build();
+        this.httpClient = HttpAsyncClients.custom()
+                .setVersionPolicy(HttpVersionPolicy.NEGOTIATE)
+                .setConnectionManager(PoolingAsyncClientConnectionManagerBuilder.create()
+                        .setMaxConnPerRoute(config.getMaxConnectionsPerRoute())
+                        .setMaxConnTotal(config.getMaxConnectionsTotal())
+                        .build())
+                .setIOReactorConfig(IOReactorConfig.custom()
+                        .setSoTimeout(Timeout.ofMilliseconds(config.getSocketTimeoutMillis()))
+                        .build())
+                .setDefaultRequestConfig(requestConfig)
+                .evictIdleConnections(TimeValue.ofMilliseconds(config.getIdleTimeoutMillis()))
+                .setThreadFactory(runnable -> {
+                    Thread thread = new Thread(runnable, "http-async-io-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                .build();
+        this.httpClient.start();
+        this.limiter = new InFlightLimiter(config.getMaxInFlightRequests());
+        this.cassette = Cassette.forConfig(config);
+        this.metrics = ClientMetrics.forConfig(config);
+        this.basePath = URI.create(config.getBaseUrl()).getRawPath();
+    }
+
+    /**
+     * Returns the process-wide asynchronous transport, starting it on first use.
+     */
+    public static AsyncTransport shared() {
+        return forConfig(ApiConfig.get());
+    }
+
+    /**
+     * Returns the transport for {@code config}, starting it on first use. Configurations with the same pool sizes,
+     * timeouts, cassette and metrics share one, whatever their credentials.
+     */
+    public static AsyncTransport forConfig(ApiConfig config) {
+        return SHARED.computeIfAbsent(Arrays.asList(config.getConnectTimeoutMillis(),
+                config.getSocketTimeoutMillis(), config.getMaxConnectionsPerRoute(), config.getMaxConnectionsTotal(),
+                config.getIdleTimeoutMillis(), config.getMaxInFlightRequests(), config.getCassetteMode(),
+                config.getCassetteFile(), config.getMetricsFile(), URI.create(config.getBaseUrl()).getRawPath()),
+                key -> new AsyncTransport(config));
+    }
+
+    /**
+     * Sends a request without blocking. GET parameters go in the query string, POST parameters in a
+     * form-encoded body; both are signed when a signer is given.
+     *
+     * @param method "GET" or "POST"
+     * @param url    absolute URL without a query string
+     * @param params request parameters; values may be single objects or collections
+     * @param signer OAuth signer, or null to send the request unauthenticated
+     * @return a future completed with the buffered response, or exceptionally on an I/O failure
+     */
+    public CompletableFuture<ApiResponse> execute(String method, String url, Map<String, ?> params, OAuthSigner signer) {
+        return execute(method, url, params, signer, Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * Like {@link #execute(String, String, Map, OAuthSigner)}, with extra request headers such as
+     * {@code If-None-Match}.
+     */
+    public CompletableFuture<ApiResponse> execute(String method, String url, Map<String, ?> params, OAuthSigner signer,
+                                                  Map<String, String> headers) {
+        return execute(method, url, params, signer, headers, Supplier::get);
+    }
+
+    /**
+     * Like {@link #execute(String, String, Map, OAuthSigner, Map)}, with {@code around} applied to what sends the
+     * request once it leaves the queue of the {@link InFlightLimiter}, e.g. to admit it through
+     * {@link EndpointIsolation} only then, so time spent queued behind other endpoints' requests neither holds a
+     * place in the endpoint's bulkhead nor counts as a slow call. If {@code around} throws, the request is not
+     * sent and the returned future fails with the exception.
+     */
+    public CompletableFuture<ApiResponse> execute(String method, String url, Map<String, ?> params, OAuthSigner signer,
+                                                  Map<String, String> headers,
+                                                  Function<Supplier<CompletableFuture<ApiResponse>>,
+                                                          CompletableFuture<ApiResponse>> around) {
+        Map<String, ?> requestParams = params == null ? Collections.<String, Object>emptyMap() : params;
+        String endpoint = RateLimitGovernor.endpointOf(url, this.basePath);
+        if (this.cassette != null && this.cassette.getMode() == Cassette.Mode.REPLAY) {
+            try {
+                return around.apply(() -> replay(endpoint, method, url, requestParams));
+            } catch (RuntimeException e) {
+                CompletableFuture<ApiResponse> rejected = new CompletableFuture<>();
+                rejected.completeExceptionally(e);
+                return rejected;
+            }
+        }
+        long queued = System.nanoTime();
+        return this.limiter.submit(() -> {
+            this.metrics.recordQueueWait(System.nanoTime() - queued);
+            return around.apply(() -> send(endpoint, method, url, requestParams, signer, headers));
+        });
+    }
+
+    public InFlightLimiter getLimiter() {
+        return this.limiter;
+    }
+
+    public void shutdown() {
+        this.httpClient.close(CloseMode.GRACEFUL);
+    }
+
+    private CompletableFuture<ApiResponse> replay(String endpoint, String method, String url, Map<String, ?> params) {
+        CompletableFuture<ApiResponse> replayed = new CompletableFuture<>();
+        long start = System.nanoTime();
+        try {
+            ApiResponse response = this.cassette.replay(method, url, params);
+            this.metrics.recordExchange(endpoint, response.statusCode(), System.nanoTime() - start, 0,
+                    response.asByteArray().length);
+            replayed.complete(response);
+        } catch (RuntimeException e) {
+            replayed.completeExceptionally(e);
+        }
+        return replayed;
+    }
+
+    private CompletableFuture<ApiResponse> send(String endpoint, String method, String url, Map<String, ?> params,
+                                                OAuthSigner signer, Map<String, String> headers) {
+        String encodedParams = encode(params);
+        SimpleHttpRequest request;
+        long bytesOut = 0;
+        if ("GET".equalsIgnoreCase(method)) {
+            request = new SimpleHttpRequest("GET",
+                    URI.create(encodedParams.isEmpty() ? url : url + '?' + encodedParams));
+        } else if ("POST".equalsIgnoreCase(method)) {
+            request = new SimpleHttpRequest("POST", URI.create(url));
+            byte[] form = encodedParams.getBytes(StandardCharsets.UTF_8);
+            request.setBody(form, ContentType.APPLICATION_FORM_URLENCODED.withCharset(StandardCharsets.UTF_8));
+            bytesOut = form.length;
+        } else {
+            throw new IllegalArgumentException("Unsupported method: " + method);
+        }
+        request.setHeader("Accept-Encoding", ACCEPT_ENCODING);
+        String authorization = signer == null ? null
+                : signer.authorizationHeader(method, OAuthSigner.normalizeUrl(url), params);
+        if (authorization != null) {
+            request.setHeader("Authorization", authorization);
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            request.setHeader(header.getKey(), header.getValue());
+        }
+
+        CompletableFuture<ApiResponse> future = new CompletableFuture<>();
+        long sentBytes = bytesOut;
+        long start = System.nanoTime();
+        Future<SimpleHttpResponse> exchange = this.httpClient.execute(request, new FutureCallback<SimpleHttpResponse>() {
+            @Override
+            public void completed(SimpleHttpResponse response) {
+                try {
+                    byte[] wireBody = response.getBodyBytes();
+                    ApiResponse apiResponse = toApiResponse(response);
+                    // bytes on the wire, i.e. before decompression
+                    metrics.recordExchange(endpoint, apiResponse.statusCode(), System.nanoTime() - start, sentBytes,
+                            wireBody == null ? 0 : wireBody.length);
+                    if (cassette != null) {
+                        cassette.record(method, url, params, authorization, apiResponse);
+                    }
+                    future.complete(apiResponse);
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                metrics.recordFailure(endpoint, System.nanoTime() - start, sentBytes);
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void cancelled() {
+                future.cancel(false);
+            }
+        });
+        // cancelling the returned future aborts the exchange, e.g. the slower copy of a hedged request
+        future.whenComplete((response, error) -> {
+            if (future.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Converts a buffered response, decoding a compressed body. The {@code Content-Encoding} and
+     * {@code Content-Length} headers then describe the wire format rather than the body, so they are dropped.
+     */
+    static ApiResponse toApiResponse(SimpleHttpResponse response) throws IOException {
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Header header : response.getHeaders()) {
+            headers.computeIfAbsent(header.getName(), name -> new ArrayList<>(1)).add(header.getValue());
+        }
+        byte[] body = response.getBodyBytes() == null ? new byte[0] : response.getBodyBytes();
+        List<String> encodings = headers.remove("Content-Encoding");
+        if (encodings != null) {
+            headers.remove("Content-Length");
+            // listed in the order they were applied
+            for (int i = encodings.size() - 1; i >= 0; i--) {
+                body = decode(body, encodings.get(i));
+            }
+        }
+        return new ApiResponse(response.getCode(), statusLine(response), headers, body);
+    }
+
+    /**
+     * Formats the status line the way HTTP/1.1 sends it, e.g. "HTTP/1.1 200 OK". HTTP/2 has no reason phrase,
+     * so its status lines look like "HTTP/2 200".
+     */
+    static String statusLine(SimpleHttpResponse response) {
+        ProtocolVersion version = response.getVersion();
+        StringBuilder statusLine = new StringBuilder();
+        if (version == null) {
+            statusLine.append("HTTP/1.1");
+        } else {
+            statusLine.append(version.getProtocol()).append('/').append(version.getMajor());
+            if (version.getMajor() < 2) {
+                statusLine.append('.').append(version.getMinor());
+            }
+        }
+        statusLine.append(' ').append(response.getCode());
+        String reason = response.getReasonPhrase();
+        if (reason != null && !reason.isEmpty()) {
+            statusLine.append(' ').append(reason);
+        }
+        return statusLine.toString();
+    }
+
+    /**
+     * Decodes a body compressed with one {@code Content-Encoding}, possibly a comma-separated list of them.
+     * Deflate is accepted both zlib-wrapped, as the RFC says, and raw, as some servers send it.
+     *
+     * @throws IOException if the encoding is unknown or the body is corrupt
+     */
+    static byte[] decode(byte[] body, String contentEncoding) throws IOException {
+        String[] codings = contentEncoding.split(",");
+        for (int i = codings.length - 1; i >= 0; i--) {
+            String coding = codings[i].trim().toLowerCase(Locale.ROOT);
+            if (coding.isEmpty() || coding.equals("identity")) {
+                continue;
+            }
+            if (body.length == 0) {
+                return body;
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                body = readFully(new GZIPInputStream(new ByteArrayInputStream(body)), body.length);
+            } else if (coding.equals("deflate")) {
+                // an Inflater passed in is not ended by the stream, and holds native memory until it is
+                Inflater inflater = new Inflater(!isZlibWrapped(body));
+                try {
+                    body = readFully(new InflaterInputStream(new ByteArrayInputStream(body), inflater), body.length);
+                } finally {
+                    inflater.end();
+                }
+            } else {
+                throw new IOException("Unsupported Content-Encoding: " + coding);
+            }
+        }
+        return body;
+    }
+
+    private static byte[] readFully(InputStream decoded, int compressedLength) throws IOException {
+        try (InputStream in = decoded) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(32, compressedLength * 4));
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * A zlib stream starts with a compression method of 8 and a header checksum divisible by 31.
+     */
+    private static boolean isZlibWrapped(byte[] body) {
+        if (body.length < 2) {
+            return false;
+        }
+        int cmf = body[0] & 0xff;
+        int flg = body[1] & 0xff;
+        return (cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0;
+    }
+
+    /**
+     * Encodes parameters as {@code name=value&...} using the same RFC 3986 rules as the OAuth signature.
+     */
+    static String encode(Map<String, ?> params) {
+        StringBuilder encoded = new StringBuilder();
+        for (Map.Entry<String, ?> param : params.entrySet()) {
+            Object value = param.getValue();
+            Iterable<?> values = value instanceof Collection ? (Collection<?>) value : Collections.singletonList(value);
+            for (Object item : values) {
+                if (encoded.length() > 0) {
+                    encoded.append('&');
+                }
+                encoded.append(OAuthSigner.percentEncode(param.getKey())).append('=')
+                        .append(OAuthSigner.percentEncode(item == null ? "" : String.valueOf(item)));
+            }
+        }
+        return encoded.toString();
+    }
+}
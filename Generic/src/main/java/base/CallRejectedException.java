@@ -0,0 +1,30 @@
+package base;
+
+/**
+ * Thrown instead of sending a request when {@link EndpointIsolation} does not let it through: the endpoint's
+ * circuit breaker is open, or as many calls to it as its bulkhead allows are already in progress. Nothing was sent,
+ * and the {@link RetryPolicy} does not retry it.
+ */
+public class CallRejectedException extends RuntimeException {
+
+    public enum Reason {
+        CIRCUIT_OPEN, BULKHEAD_FULL
+    }
+
+    private final String endpoint;
+    private final Reason reason;
+
+    public CallRejectedException(String endpoint, Reason reason, String message) {
+        super(message);
+        this.endpoint = endpoint;
+        this.reason = reason;
+    }
+
+    public String getEndpoint() {
+        return this.endpoint;
+    }
+
+    public Reason getReason() {
+        return this.reason;
+    }
+}
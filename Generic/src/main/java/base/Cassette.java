@@ -0,0 +1,430 @@
+package base;
+
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.filter.OrderedFilter;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Records API traffic to a cassette file and replays it without the network.
+ * <p>
+ * Both transports and the streaming requests go through the cassette of the configuration
+ * ({@link ApiConfig#getCassetteMode()}). In record mode every exchange is sent as usual and appended to the file;
+ * the nonce, timestamp and signature of the recorded OAuth header are replaced with fixed placeholders, so a
+ * cassette is deterministic and holds nothing that could be replayed against the real API. In replay mode the
+ * file is memory-mapped once and each request is answered by a binary search of the sorted hash index at its
+ * end, so a replayed call costs microseconds and allocates little more than the response itself.
+ * <p>
+ * Requests are matched on method, path and parameters (in any order), plus the number of times the same request
+ * was made before: a request sent twice, such as posting the same status, replays both of its responses in
+ * order. Once the recorded occurrences run out, the last one is served again.
+ * <p>
+ * File layout, big-endian: magic and version, the records, the index of (key hash, record offset) pairs sorted by
+ * hash, and a trailer with the index offset, entry count and magic. The index is written when the recording is
+ * closed, at the latest by a shutdown hook. Cassettes are limited to 2 GB.
+ */
+public final class Cassette implements Closeable {
+
+    public enum Mode {
+        OFF, RECORD, REPLAY
+    }
+
+    private static final int MAGIC = 0x54574341; // "TWCA"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int INDEX_ENTRY_BYTES = 16;
+    private static final int TRAILER_BYTES = 16;
+    private static final Pattern VOLATILE_OAUTH_PARAMS =
+            Pattern.compile("(oauth_(?:nonce|timestamp|signature)=\")[^\"]*\"");
+    private static final Set<String> UNRECORDED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    private static final Map<Path, Cassette> OPEN = new ConcurrentHashMap<>();
+
+    static {
+        // cookies are per session, and the framing headers are recomputed when a response is replayed
+        Collections.addAll(UNRECORDED_HEADERS, "Set-Cookie", "Connection", "Content-Length", "Transfer-Encoding");
+    }
+
+    private final Path file;
+    private final Mode mode;
+    private final Map<String, Occurrences> occurrences = new ConcurrentHashMap<>();
+    private final Filter filter = new CassetteFilter();
+
+    // record mode
+    private final DataOutputStream output;
+    private final List<long[]> recorded;
+    private boolean closed;
+
+    // replay mode
+    private final ByteBuffer mapped;
+    private final int indexOffset;
+    private final int entryCount;
+
+    Cassette(Path file, Mode mode) throws IOException {
+        this.file = file;
+        this.mode = mode;
+        if (mode == Mode.RECORD) {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+            this.output.writeInt(MAGIC);
+            this.output.writeInt(VERSION);
+            this.recorded = new ArrayList<>();
+            this.mapped = null;
+            this.indexOffset = 0;
+            this.entryCount = 0;
+        } else if (mode == Mode.REPLAY) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Cassette " + file + " is larger than 2 GB");
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                this.mapped = buffer;
+            }
+            int size = this.mapped.capacity();
+            if (size < HEADER_BYTES + TRAILER_BYTES || this.mapped.getInt(0) != MAGIC
+                    || this.mapped.getInt(size - 4) != MAGIC) {
+                throw new IOException(file + " is not a cassette, or its recording was not closed");
+            }
+            if (this.mapped.getInt(4) != VERSION) {
+                throw new IOException("Unsupported cassette version " + this.mapped.getInt(4) + " in " + file);
+            }
+            this.indexOffset = (int) this.mapped.getLong(size - TRAILER_BYTES);
+            this.entryCount = this.mapped.getInt(size - 8);
+            this.output = null;
+            this.recorded = null;
+        } else {
+            throw new IllegalArgumentException("A cassette is either recorded or replayed");
+        }
+    }
+
+    /**
+     * Returns the cassette of {@code config}, or null when the cassette is off. Every transport configured with
+     * the same file shares one instance.
+     *
+     * @throws UncheckedIOException if the file cannot be created or is not a complete cassette
+     */
+    public static Cassette forConfig(ApiConfig config) {
+        if (config.getCassetteMode() == Mode.OFF) {
+            return null;
+        }
+        Path file = Paths.get(config.getCassetteFile()).toAbsolutePath().normalize();
+        Cassette cassette = OPEN.computeIfAbsent(file, path -> {
+            try {
+                Cassette opened = new Cassette(path, config.getCassetteMode());
+                if (opened.mode == Mode.RECORD) {
+                    Runtime.getRuntime().addShutdownHook(new Thread(opened::closeOnShutdown, "cassette-writer"));
+                }
+                return opened;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open cassette " + path, e);
+            }
+        });
+        if (cassette.mode != config.getCassetteMode()) {
+            throw new IllegalStateException("Cassette " + file + " is already open for " + cassette.mode);
+        }
+        return cassette;
+    }
+
+    public Mode getMode() {
+        return this.mode;
+    }
+
+    public Path getFile() {
+        return this.file;
+    }
+
+    /**
+     * Number of exchanges in the cassette: recorded so far, or available for replay.
+     */
+    public synchronized int size() {
+        return this.mode == Mode.RECORD ? this.recorded.size() : this.entryCount;
+    }
+
+    /**
+     * REST Assured filter that records or replays requests. It runs after every other filter, right before the
+     * request would go on the wire, so it sees the signed request.
+     */
+    public Filter filter() {
+        return this.filter;
+    }
+
+    /**
+     * Returns the recorded response to a request.
+     *
+     * @param url    request URL; only its path takes part in the match, so a cassette can be replayed against
+     *               any host
+     * @param params query and form parameters; values may be single objects or collections
+     * @throws IllegalStateException if the request was never recorded
+     */
+    public ApiResponse replay(String method, String url, Map<String, ?> params) {
+        String requestKey = requestKey(method, url, params);
+        Occurrences seen = this.occurrences.computeIfAbsent(requestKey, key -> new Occurrences());
+        int offset = find(requestKey + '#' + seen.next.getAndIncrement());
+        if (offset < 0) {
+            offset = seen.lastOffset;
+            if (offset < 0) {
+                throw new IllegalStateException("No recorded response for " + requestKey + " in cassette " + this.file);
+            }
+        } else {
+            seen.lastOffset = offset;
+        }
+        return read(offset);
+    }
+
+    /**
+     * Appends an exchange to the recording.
+     *
+     * @param authorization the request's Authorization header, or null; it is stored with its nonce, timestamp
+     *                      and signature replaced
+     */
+    public void record(String method, String url, Map<String, ?> params, String authorization, ApiResponse response) {
+        String requestKey = requestKey(method, url, params);
+        String key = requestKey + '#'
+                + this.occurrences.computeIfAbsent(requestKey, k -> new Occurrences()).next.getAndIncrement();
+        String normalizedAuthorization = authorization == null ? ""
+                : VOLATILE_OAUTH_PARAMS.matcher(authorization).replaceAll("$1-\"");
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        synchronized (this) {
+            if (this.closed) {
+                throw new IllegalStateException("Cassette " + this.file + " is closed");
+            }
+            try {
+                long offset = this.output.size();
+                writeBytes(keyBytes);
+                writeString(normalizedAuthorization);
+                this.output.writeInt(response.statusCode());
+                writeString(response.statusLine());
+                List<String[]> headers = new ArrayList<>();
+                for (Map.Entry<String, List<String>> header : response.headers().entrySet()) {
+                    if (!UNRECORDED_HEADERS.contains(header.getKey())) {
+                        for (String value : header.getValue()) {
+                            headers.add(new String[]{header.getKey(), value});
+                        }
+                    }
+                }
+                this.output.writeInt(headers.size());
+                for (String[] header : headers) {
+                    writeString(header[0]);
+                    writeString(header[1]);
+                }
+                writeBytes(response.asByteArray());
+                if (this.output.size() < 0) {
+                    throw new IOException("Cassette " + this.file + " is larger than 2 GB");
+                }
+                this.recorded.add(new long[]{hash(keyBytes), offset});
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not record to cassette " + this.file, e);
+            }
+        }
+    }
+
+    /**
+     * Finishes a recording by writing its index. Replay cassettes hold no resources besides the mapping, which
+     * is released with the instance.
+     */
+    @Override
+    public void close() throws IOException {
+        OPEN.remove(this.file, this);
+        if (this.mode != Mode.RECORD) {
+            return;
+        }
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            long indexStart = this.output.size();
+            this.recorded.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+            for (long[] entry : this.recorded) {
+                this.output.writeLong(entry[0]);
+                this.output.writeLong(entry[1]);
+            }
+            this.output.writeLong(indexStart);
+            this.output.writeInt(this.recorded.size());
+            this.output.writeInt(MAGIC);
+            this.output.close();
+        }
+    }
+
+    /**
+     * Closes the cassette from the shutdown hook, where the failure can only be reported.
+     */
+    private void closeOnShutdown() {
+        try {
+            close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not finish writing cassette " + this.file
+                    + "; the cassette file may be incomplete", e);
+        }
+    }
+
+    /**
+     * Method, path and sorted, encoded parameters, e.g. {@code GET /1.1/statuses/show.json?id=1}.
+     */
+    static String requestKey(String method, String url, Map<String, ?> params) {
+        String path = URI.create(OAuthSigner.normalizeUrl(url)).getRawPath();
+        return method.toUpperCase() + ' ' + path + '?' + AsyncTransport.encode(new TreeMap<>(params));
+    }
+
+    /**
+     * Offset of the record stored under {@code key}, or -1.
+     */
+    private int find(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long hash = hash(keyBytes);
+        int low = 0;
+        int high = this.entryCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.mapped.getLong(this.indexOffset + middle * INDEX_ENTRY_BYTES) < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int entry = low; entry < this.entryCount; entry++) {
+            int position = this.indexOffset + entry * INDEX_ENTRY_BYTES;
+            if (this.mapped.getLong(position) != hash) {
+                break;
+            }
+            int offset = (int) this.mapped.getLong(position + 8);
+            if (keyEquals(offset, keyBytes)) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(int offset, byte[] key) {
+        if (this.mapped.getInt(offset) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (this.mapped.get(offset + 4 + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ApiResponse read(int offset) {
+        ByteBuffer record = this.mapped.duplicate();
+        record.position(offset);
+        skipBytes(record); // key
+        skipBytes(record); // request authorization
+        int statusCode = record.getInt();
+        String statusLine = readString(record);
+        int headerCount = record.getInt();
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (int i = 0; i < headerCount; i++) {
+            String name = readString(record);
+            headers.computeIfAbsent(name, n -> new ArrayList<>(1)).add(readString(record));
+        }
+        return new ApiResponse(statusCode, statusLine, headers, readBytes(record));
+    }
+
+    private void writeString(String value) throws IOException {
+        writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeBytes(byte[] value) throws IOException {
+        this.output.writeInt(value.length);
+        this.output.write(value);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        return new String(readBytes(buffer), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        byte[] value = new byte[buffer.getInt()];
+        buffer.get(value);
+        return value;
+    }
+
+    private static void skipBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        buffer.position(buffer.position() + length);
+    }
+
+    /**
+     * 64-bit FNV-1a.
+     */
+    private static long hash(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static final class Occurrences {
+        final AtomicInteger next = new AtomicInteger();
+        volatile int lastOffset = -1;
+    }
+
+    private final class CassetteFilter implements OrderedFilter {
+
+        @Override
+        public int getOrder() {
+            return LOWEST_PRECEDENCE;
+        }
+
+        @Override
+        public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                               FilterContext ctx) {
+            Map<String, Object> params = requestParams(requestSpec);
+            String method = requestSpec.getMethod();
+            String url = requestSpec.getURI();
+            if (mode == Mode.REPLAY) {
+                return replay(method, url, params).toRestAssured();
+            }
+            Response response = ctx.next(requestSpec, responseSpec);
+            record(method, url, params, requestSpec.getHeaders().getValue("Authorization"), ApiResponse.of(response));
+            return response;
+        }
+    }
+
+    /**
+     * Request, query and form parameters of a REST Assured request.
+     */
+    static Map<String, Object> requestParams(FilterableRequestSpecification requestSpec) {
+        Map<String, Object> params = new HashMap<>();
+        params.putAll(requestSpec.getRequestParams());
+        params.putAll(requestSpec.getQueryParams());
+        params.putAll(requestSpec.getFormParams());
+        return params;
+    }
+}
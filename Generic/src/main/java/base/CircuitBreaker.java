@@ -0,0 +1,171 @@
+package base;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker of one endpoint, driven by the outcome of its last calls.
+ * <p>
+ * While closed, the breaker remembers whether each of the last {@code windowSize} calls failed (an I/O error or
+ * a 5xx response) and whether it was slow. Once the window is full and either the failure rate or the slow-call
+ * rate reaches its threshold, the breaker opens and calls are rejected without being sent. After
+ * {@code openMillis} it lets {@link #HALF_OPEN_CALLS} probe calls through: if they all succeed in time it closes
+ * with an empty window, and the first one that fails or is slow opens it again.
+ */
+public class CircuitBreaker {
+
+    static final int HALF_OPEN_CALLS = 3;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureRatePercent;
+    private final int slowCallRatePercent;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int next;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+    private State state = State.CLOSED;
+    // bumped on every transition, so calls admitted in an earlier state do not count in the current one
+    private int generation;
+    private long openedAt;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    /**
+     * @param failureRatePercent  failure rate that opens the breaker; 0 never opens it on failures
+     * @param slowCallRatePercent slow-call rate that opens the breaker; 0 never opens it on slow calls
+     * @param slowCallMillis      duration from which a call counts as slow
+     * @param windowSize          number of recent calls the rates are computed over
+     * @param openMillis          how long the breaker stays open before probing the endpoint again
+     */
+    public CircuitBreaker(int failureRatePercent, int slowCallRatePercent, long slowCallMillis, int windowSize,
+                          long openMillis) {
+        this(failureRatePercent, slowCallRatePercent, slowCallMillis, windowSize, openMillis, System::nanoTime);
+    }
+
+    CircuitBreaker(int failureRatePercent, int slowCallRatePercent, long slowCallMillis, int windowSize,
+                   long openMillis, LongSupplier nanoClock) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be positive: " + windowSize);
+        }
+        this.failureRatePercent = failureRatePercent;
+        this.slowCallRatePercent = slowCallRatePercent;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.nanoClock = nanoClock;
+        this.failed = new boolean[windowSize];
+        this.slow = new boolean[windowSize];
+    }
+
+    /**
+     * Asks to start a call.
+     *
+     * @return a ticket to pass to {@link #onResult(int, boolean, long)}, or -1 if the call must be rejected
+     */
+    synchronized int tryAcquire() {
+        if (this.state == State.OPEN) {
+            if (this.nanoClock.getAsLong() - this.openedAt < this.openNanos) {
+                return -1;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (this.state == State.HALF_OPEN) {
+            if (this.probesStarted >= HALF_OPEN_CALLS) {
+                return -1;
+            }
+            this.probesStarted++;
+        }
+        return this.generation;
+    }
+
+    /**
+     * Records the outcome of a call admitted with {@code ticket}.
+     *
+     * @param failure       whether the call failed
+     * @param durationNanos how long the call took
+     */
+    synchronized void onResult(int ticket, boolean failure, long durationNanos) {
+        if (ticket != this.generation) {
+            return;
+        }
+        boolean tooSlow = durationNanos >= this.slowCallNanos;
+        if (this.state == State.HALF_OPEN) {
+            if (failure || tooSlow) {
+                transition(State.OPEN);
+            } else if (++this.probesSucceeded == HALF_OPEN_CALLS) {
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        int size = this.failed.length;
+        if (this.recorded == size) {
+            this.failures -= this.failed[this.next] ? 1 : 0;
+            this.slowCalls -= this.slow[this.next] ? 1 : 0;
+        } else {
+            this.recorded++;
+        }
+        this.failed[this.next] = failure;
+        this.slow[this.next] = tooSlow;
+        this.failures += failure ? 1 : 0;
+        this.slowCalls += tooSlow ? 1 : 0;
+        this.next = (this.next + 1) % size;
+        if (this.recorded == size && (exceeds(this.failures, this.failureRatePercent)
+                || exceeds(this.slowCalls, this.slowCallRatePercent))) {
+            transition(State.OPEN);
+        }
+    }
+
+    /**
+     * Forgets a call admitted with {@code ticket} that was cancelled before it completed, so a probe place it took
+     * is given back.
+     */
+    synchronized void onAbandoned(int ticket) {
+        if (ticket == this.generation && this.state == State.HALF_OPEN) {
+            this.probesStarted--;
+        }
+    }
+
+    public synchronized State getState() {
+        if (this.state == State.OPEN && this.nanoClock.getAsLong() - this.openedAt >= this.openNanos) {
+            return State.HALF_OPEN;
+        }
+        return this.state;
+    }
+
+    /**
+     * Milliseconds until an open breaker lets probe calls through; 0 if it is not open.
+     */
+    public synchronized long getRemainingOpenMillis() {
+        if (this.state != State.OPEN) {
+            return 0L;
+        }
+        long remaining = this.openNanos - (this.nanoClock.getAsLong() - this.openedAt);
+        return Math.max(0L, TimeUnit.NANOSECONDS.toMillis(remaining));
+    }
+
+    private boolean exceeds(int count, int thresholdPercent) {
+        return thresholdPercent > 0 && count * 100L >= (long) thresholdPercent * this.failed.length;
+    }
+
+    private void transition(State state) {
+        this.state = state;
+        this.generation++;
+        this.probesStarted = 0;
+        this.probesSucceeded = 0;
+        if (state == State.OPEN) {
+            this.openedAt = this.nanoClock.getAsLong();
+        } else if (state == State.CLOSED) {
+            this.next = 0;
+            this.recorded = 0;
+            this.failures = 0;
+            this.slowCalls = 0;
+        }
+    }
+}
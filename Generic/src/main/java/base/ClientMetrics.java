@@ -0,0 +1,502 @@
+package base;
+
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.filter.OrderedFilter;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-endpoint client metrics: latency histograms, status code counts, bytes sent and received, I/O failures
+ * and retries, plus how long requests waited for a pooled connection or an in-flight slot.
+ * <p>
+ * Every request the transports send is recorded, whichever client method sent it. Recording is wait-free
+ * (HdrHistogram {@link Recorder}s and {@link LongAdder}s), so it adds well under a microsecond per request and
+ * never makes concurrent requests contend; the cost of merging the histograms is paid by {@link #snapshot()}.
+ * Latencies are kept in microseconds with three significant digits.
+ * <p>
+ * {@link #toPrometheus()} and {@link #toJson()} export a snapshot. If {@link ApiConfig#getMetricsFile()} is set,
+ * the shared instance writes itself there when the JVM exits.
+ */
+public final class ClientMetrics {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+    private static final ThreadLocal<Boolean> RETRYING = new ThreadLocal<>();
+
+    private static final Map<String, ClientMetrics> SHARED = new ConcurrentHashMap<>();
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final Timer poolWait = new Timer();
+    private final Timer queueWait = new Timer();
+
+    /**
+     * Returns the process-wide metrics, registering the export to {@link ApiConfig#getMetricsFile()} on first
+     * use.
+     */
+    public static ClientMetrics shared() {
+        return forConfig(ApiConfig.get());
+    }
+
+    /**
+     * Returns the metrics exported to {@code config}'s metrics file, registering the export on first use. Every
+     * configuration with the same file, or with none, shares one instance.
+     */
+    public static ClientMetrics forConfig(ApiConfig config) {
+        String metricsFile = config.getMetricsFile();
+        return SHARED.computeIfAbsent(metricsFile == null ? "" : metricsFile, key -> {
+            ClientMetrics metrics = new ClientMetrics();
+            if (metricsFile != null) {
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> metrics.exportOnShutdown(Paths.get(metricsFile)),
+                        "client-metrics-export"));
+            }
+            return metrics;
+        });
+    }
+
+    /**
+     * Records a completed exchange.
+     *
+     * @param endpoint     endpoint relative to the API base path, e.g. "/statuses/show.json"
+     * @param statusCode   response status
+     * @param latencyNanos time from sending the request to receiving the response
+     * @param bytesOut     request body size
+     * @param bytesIn      response body size
+     */
+    public void recordExchange(String endpoint, int statusCode, long latencyNanos, long bytesOut, long bytesIn) {
+        Endpoint metrics = endpoint(endpoint);
+        metrics.latency.record(latencyNanos);
+        metrics.statusCounts[statusCode >= 0 && statusCode < Endpoint.MAX_STATUS ? statusCode : 0].increment();
+        metrics.bytesOut.add(bytesOut);
+        metrics.bytesIn.add(bytesIn);
+        if (Boolean.TRUE.equals(RETRYING.get())) {
+            RETRYING.remove();
+            metrics.retries.increment();
+        }
+    }
+
+    /**
+     * Records a request that failed without a response, e.g. on a connect timeout.
+     */
+    public void recordFailure(String endpoint, long latencyNanos, long bytesOut) {
+        Endpoint metrics = endpoint(endpoint);
+        metrics.latency.record(latencyNanos);
+        metrics.failures.increment();
+        metrics.bytesOut.add(bytesOut);
+        if (Boolean.TRUE.equals(RETRYING.get())) {
+            RETRYING.remove();
+            metrics.retries.increment();
+        }
+    }
+
+    /**
+     * Records that a request to {@code endpoint} is about to be repeated.
+     */
+    public void recordRetry(String endpoint) {
+        endpoint(endpoint).retries.increment();
+    }
+
+    /**
+     * Marks the next request recorded on this thread as a retry, for blocking calls whose endpoint is only known
+     * once the request is built.
+     */
+    void retryingOnThisThread() {
+        RETRYING.set(Boolean.TRUE);
+    }
+
+    /**
+     * Records how long a blocking request waited to lease a pooled connection.
+     */
+    public void recordPoolWait(long nanos) {
+        this.poolWait.record(nanos);
+    }
+
+    /**
+     * Records how long an asynchronous request waited for an in-flight slot.
+     */
+    public void recordQueueWait(long nanos) {
+        this.queueWait.record(nanos);
+    }
+
+    private Endpoint endpoint(String endpoint) {
+        Endpoint metrics = this.endpoints.get(endpoint);
+        return metrics != null ? metrics : this.endpoints.computeIfAbsent(endpoint, name -> new Endpoint());
+    }
+
+    /**
+     * REST Assured filter that records every request it sees. It runs just before the cassette, so replayed
+     * requests are measured too.
+     *
+     * @param basePath path of the API base URL (e.g. "/1.1"), stripped from request paths to name endpoints
+     */
+    Filter filter(String basePath) {
+        return new OrderedFilter() {
+            @Override
+            public int getOrder() {
+                return LOWEST_PRECEDENCE - 1;
+            }
+
+            @Override
+            public Response filter(FilterableRequestSpecification requestSpec,
+                                   FilterableResponseSpecification responseSpec, FilterContext ctx) {
+                String endpoint = RateLimitGovernor.endpointOf(requestSpec.getURI(), basePath);
+                long bytesOut = bytesOut(requestSpec);
+                long start = System.nanoTime();
+                Response response;
+                try {
+                    response = ctx.next(requestSpec, responseSpec);
+                } catch (RuntimeException e) {
+                    recordFailure(endpoint, System.nanoTime() - start, bytesOut);
+                    throw e;
+                }
+                // the body is buffered either way; reading it here makes the latency cover the whole response
+                byte[] body = response.asByteArray();
+                recordExchange(endpoint, response.getStatusCode(), System.nanoTime() - start, bytesOut,
+                        body == null ? 0 : body.length);
+                return response;
+            }
+        };
+    }
+
+    private static long bytesOut(FilterableRequestSpecification requestSpec) {
+        Object body = requestSpec.getBody();
+        if (body instanceof byte[]) {
+            return ((byte[]) body).length;
+        }
+        if (body != null) {
+            return String.valueOf(body).getBytes(StandardCharsets.UTF_8).length;
+        }
+        Map<String, String> form = requestSpec.getFormParams();
+        return form.isEmpty() ? 0 : AsyncTransport.encode(form).length();
+    }
+
+    /**
+     * Merges everything recorded so far into an immutable snapshot.
+     */
+    public Snapshot snapshot() {
+        Map<String, EndpointSnapshot> endpoints = new TreeMap<>();
+        for (Map.Entry<String, Endpoint> endpoint : this.endpoints.entrySet()) {
+            endpoints.put(endpoint.getKey(), endpoint.getValue().snapshot());
+        }
+        return new Snapshot(endpoints, this.poolWait.snapshot(), this.queueWait.snapshot());
+    }
+
+    /**
+     * A snapshot in the Prometheus text exposition format. Latencies are summaries in seconds.
+     */
+    public String toPrometheus() {
+        Snapshot snapshot = snapshot();
+        StringBuilder text = new StringBuilder(4096);
+        text.append("# HELP twitter_client_request_duration_seconds Time from sending a request to its response.\n")
+                .append("# TYPE twitter_client_request_duration_seconds summary\n");
+        for (Map.Entry<String, EndpointSnapshot> endpoint : snapshot.getEndpoints().entrySet()) {
+            appendSummary(text, "twitter_client_request_duration_seconds",
+                    "endpoint=\"" + escape(endpoint.getKey()) + "\"", endpoint.getValue().getLatency());
+        }
+        appendCounters(text, snapshot, "twitter_client_responses_total", "Responses by status code.");
+        appendCounters(text, snapshot, "twitter_client_failures_total", "Requests that failed without a response.");
+        appendCounters(text, snapshot, "twitter_client_retries_total", "Requests that were repeated.");
+        appendCounters(text, snapshot, "twitter_client_sent_bytes_total", "Request body bytes sent.");
+        appendCounters(text, snapshot, "twitter_client_received_bytes_total", "Response body bytes received.");
+        text.append("# HELP twitter_client_pool_wait_seconds Time blocking requests waited for a pooled connection.\n")
+                .append("# TYPE twitter_client_pool_wait_seconds summary\n");
+        appendSummary(text, "twitter_client_pool_wait_seconds", null, snapshot.getPoolWait());
+        text.append("# HELP twitter_client_queue_wait_seconds Time asynchronous requests waited for an in-flight slot.\n")
+                .append("# TYPE twitter_client_queue_wait_seconds summary\n");
+        appendSummary(text, "twitter_client_queue_wait_seconds", null, snapshot.getQueueWait());
+        return text.toString();
+    }
+
+    private static void appendCounters(StringBuilder text, Snapshot snapshot, String name, String help) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(" counter\n");
+        for (Map.Entry<String, EndpointSnapshot> entry : snapshot.getEndpoints().entrySet()) {
+            String labels = "endpoint=\"" + escape(entry.getKey()) + "\"";
+            EndpointSnapshot endpoint = entry.getValue();
+            switch (name) {
+                case "twitter_client_responses_total":
+                    for (Map.Entry<Integer, Long> status : endpoint.getStatusCounts().entrySet()) {
+                        appendSample(text, name, labels + ",status=\"" + status.getKey() + "\"", status.getValue());
+                    }
+                    break;
+                case "twitter_client_failures_total":
+                    appendSample(text, name, labels, endpoint.getFailures());
+                    break;
+                case "twitter_client_retries_total":
+                    appendSample(text, name, labels, endpoint.getRetries());
+                    break;
+                case "twitter_client_sent_bytes_total":
+                    appendSample(text, name, labels, endpoint.getBytesOut());
+                    break;
+                default:
+                    appendSample(text, name, labels, endpoint.getBytesIn());
+            }
+        }
+    }
+
+    private static void appendSummary(StringBuilder text, String name, String labels, LatencySnapshot latency) {
+        String prefix = labels == null ? "" : labels + ",";
+        for (double quantile : QUANTILES) {
+            appendSample(text, name, prefix + "quantile=\"" + quantile + "\"",
+                    latency.getValueAtQuantile(quantile) / 1e6);
+        }
+        appendSample(text, name + "_sum", labels, latency.getTotalMicros() / 1e6);
+        appendSample(text, name + "_count", labels, latency.getCount());
+    }
+
+    private static void appendSample(StringBuilder text, String name, String labels, Object value) {
+        text.append(name);
+        if (labels != null) {
+            text.append('{').append(labels).append('}');
+        }
+        text.append(' ').append(value instanceof Double ? String.format(Locale.ROOT, "%.6f", value) : value)
+                .append('\n');
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * A snapshot as JSON: per endpoint the count, mean and p50/p99/p999/max latency in microseconds, status
+     * counts, failures, retries and bytes; then the pool and queue waits.
+     */
+    public String toJson() {
+        Snapshot snapshot = snapshot();
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        for (Map.Entry<String, EndpointSnapshot> entry : snapshot.getEndpoints().entrySet()) {
+            EndpointSnapshot endpoint = entry.getValue();
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("latencyMicros", latencyJson(endpoint.getLatency()));
+            json.put("statusCounts", endpoint.getStatusCounts());
+            json.put("failures", endpoint.getFailures());
+            json.put("retries", endpoint.getRetries());
+            json.put("bytesOut", endpoint.getBytesOut());
+            json.put("bytesIn", endpoint.getBytesIn());
+            endpoints.put(entry.getKey(), json);
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("endpoints", endpoints);
+        json.put("poolWaitMicros", latencyJson(snapshot.getPoolWait()));
+        json.put("queueWaitMicros", latencyJson(snapshot.getQueueWait()));
+        return Json.write(json);
+    }
+
+    private static Map<String, Object> latencyJson(LatencySnapshot latency) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("count", latency.getCount());
+        json.put("mean", latency.getCount() == 0 ? 0 : latency.getTotalMicros() / latency.getCount());
+        json.put("p50", latency.getValueAtQuantile(0.5));
+        json.put("p99", latency.getValueAtQuantile(0.99));
+        json.put("p999", latency.getValueAtQuantile(0.999));
+        json.put("max", latency.getMax());
+        return json;
+    }
+
+    /**
+     * Writes a snapshot to {@code file}: JSON if its name ends in ".json", the Prometheus text format otherwise.
+     */
+    public void writeTo(Path file) {
+        String content = file.getFileName().toString().endsWith(".json") ? toJson() : toPrometheus();
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write metrics to " + file, e);
+        }
+    }
+
+    /**
+     * Writes the final snapshot from the shutdown hook, where the failure can only be reported.
+     */
+    private void exportOnShutdown(Path file) {
+        try {
+            writeTo(file);
+        } catch (UncheckedIOException e) {
+            throw new UncheckedIOException("Could not write metrics to " + file, e.getCause());
+        }
+    }
+
+    /**
+     * Wait-free latency recorder. Writers only touch the {@link Recorder}; snapshots swap its interval histogram
+     * out and fold it into the running total.
+     */
+    private static final class Timer {
+        private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+        private final LongAdder totalMicros = new LongAdder();
+        private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+        private Histogram interval;
+
+        void record(long nanos) {
+            long micros = Math.max(0L, TimeUnit.NANOSECONDS.toMicros(nanos));
+            this.recorder.recordValue(micros);
+            this.totalMicros.add(micros);
+        }
+
+        synchronized LatencySnapshot snapshot() {
+            this.interval = this.recorder.getIntervalHistogram(this.interval);
+            this.total.add(this.interval);
+            return new LatencySnapshot(this.total.copy(), this.totalMicros.sum());
+        }
+    }
+
+    private static final class Endpoint {
+        final Timer latency = new Timer();
+        static final int MAX_STATUS = 600;
+
+        // indexed by status code rather than keyed by it, so counting never boxes
+        final LongAdder[] statusCounts = new LongAdder[MAX_STATUS];
+        final LongAdder failures = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder bytesOut = new LongAdder();
+        final LongAdder bytesIn = new LongAdder();
+
+        Endpoint() {
+            for (int status = 0; status < MAX_STATUS; status++) {
+                this.statusCounts[status] = new LongAdder();
+            }
+        }
+
+        EndpointSnapshot snapshot() {
+            Map<Integer, Long> statusCounts = new TreeMap<>();
+            for (int status = 0; status < MAX_STATUS; status++) {
+                long count = this.statusCounts[status].sum();
+                if (count > 0) {
+                    statusCounts.put(status, count);
+                }
+            }
+            return new EndpointSnapshot(this.latency.snapshot(), statusCounts, this.failures.sum(),
+                    this.retries.sum(), this.bytesOut.sum(), this.bytesIn.sum());
+        }
+    }
+
+    public static final class Snapshot {
+        private final Map<String, EndpointSnapshot> endpoints;
+        private final LatencySnapshot poolWait;
+        private final LatencySnapshot queueWait;
+
+        Snapshot(Map<String, EndpointSnapshot> endpoints, LatencySnapshot poolWait, LatencySnapshot queueWait) {
+            this.endpoints = Collections.unmodifiableMap(endpoints);
+            this.poolWait = poolWait;
+            this.queueWait = queueWait;
+        }
+
+        /**
+         * Metrics by endpoint, sorted by name.
+         */
+        public Map<String, EndpointSnapshot> getEndpoints() {
+            return this.endpoints;
+        }
+
+        /**
+         * Metrics of one endpoint, or null if it has not been called.
+         */
+        public EndpointSnapshot getEndpoint(String endpoint) {
+            return this.endpoints.get(endpoint);
+        }
+
+        public LatencySnapshot getPoolWait() {
+            return this.poolWait;
+        }
+
+        public LatencySnapshot getQueueWait() {
+            return this.queueWait;
+        }
+    }
+
+    public static final class EndpointSnapshot {
+        private final LatencySnapshot latency;
+        private final Map<Integer, Long> statusCounts;
+        private final long failures;
+        private final long retries;
+        private final long bytesOut;
+        private final long bytesIn;
+
+        EndpointSnapshot(LatencySnapshot latency, Map<Integer, Long> statusCounts, long failures, long retries,
+                         long bytesOut, long bytesIn) {
+            this.latency = latency;
+            this.statusCounts = Collections.unmodifiableMap(statusCounts);
+            this.failures = failures;
+            this.retries = retries;
+            this.bytesOut = bytesOut;
+            this.bytesIn = bytesIn;
+        }
+
+        public LatencySnapshot getLatency() {
+            return this.latency;
+        }
+
+        /**
+         * Number of responses by status code, sorted by code.
+         */
+        public Map<Integer, Long> getStatusCounts() {
+            return this.statusCounts;
+        }
+
+        public long getFailures() {
+            return this.failures;
+        }
+
+        public long getRetries() {
+            return this.retries;
+        }
+
+        public long getBytesOut() {
+            return this.bytesOut;
+        }
+
+        public long getBytesIn() {
+            return this.bytesIn;
+        }
+    }
+
+    public static final class LatencySnapshot {
+        private final Histogram histogram;
+        private final long totalMicros;
+
+        LatencySnapshot(Histogram histogram, long totalMicros) {
+            this.histogram = histogram;
+            this.totalMicros = totalMicros;
+        }
+
+        public long getCount() {
+            return this.histogram.getTotalCount();
+        }
+
+        public long getTotalMicros() {
+            return this.totalMicros;
+        }
+
+        /**
+         * Latency in microseconds at {@code quantile}, e.g. 0.99 for p99.
+         */
+        public long getValueAtQuantile(double quantile) {
+            return this.histogram.getValueAtPercentile(quantile * 100.0);
+        }
+
+        public long getMax() {
+            return this.histogram.getMaxValue();
+        }
+    }
+}
@@ -1,41 +1,287 @@
 package base;
 
-import java.io.FileInputStream;
-import java.io.InputStream;
-import java.util.Properties;
+import io.restassured.builder.RequestSpecBuilder;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Base class of the API clients. A client is immutable once constructed and all the state it shares with other
+ * clients (configuration, transports, signers) is thread-safe, so one instance can be used from many threads.
+ */
 public class CommonAPI {
-    protected String apiKey;
-    protected String apiSecretKey;
-    protected String accessToken;
-    protected String accessTokenSecret;
-    protected Properties properties;
-    protected InputStream inputStream;
-    protected String baseUrl;
+    protected final ApiConfig config;
+    protected final String apiKey;
+    protected final String apiSecretKey;
+    protected final String accessToken;
+    protected final String accessTokenSecret;
+    protected final String baseUrl;
+    protected final HttpTransport transport;
+    protected final OAuthSigner oAuthSigner;
+    protected final RateLimitGovernor rateLimitGovernor;
+    protected final RetryPolicy retryPolicy;
+    protected final EndpointIsolation endpointIsolation;
+    protected final HedgingPolicy hedgingPolicy;
+    protected final ClientMetrics metrics;
+    protected final ResponseCache responseCache;
+    protected final RequestSpecification requestSpecification;
+    private final Set<String> cacheableEndpoints = ConcurrentHashMap.newKeySet();
+    private final Set<String> hedgedEndpoints = ConcurrentHashMap.newKeySet();
 
+    /**
+     * Creates a client from the process-wide {@link ApiConfig}, which is loaded and validated only once.
+     */
     public CommonAPI() {
-        this.baseUrl = "https://api.twitter.com/1.1";
-        this.properties = new Properties();
-        inputStream = null;
+        this(ApiConfig.get());
+    }
+
+    /**
+     * Creates a client for {@code config}, e.g. {@code ApiConfig.get().withBaseUrl(...)} for a local stand-in. The
+     * transports, policies, cache and metrics are built from {@code config} and shared with every other client
+     * whose configuration has the same settings for them; the process-wide configuration is not needed.
+     */
+    public CommonAPI(ApiConfig config) {
+        this.config = config;
+        this.baseUrl = config.getBaseUrl();
+        this.apiKey = config.getApiKey();
+        this.apiSecretKey = config.getApiSecretKey();
+        this.accessToken = config.getAccessToken();
+        this.accessTokenSecret = config.getAccessTokenSecret();
+
+        this.transport = HttpTransport.forConfig(config);
+        this.oAuthSigner = OAuthSigner.forCredentials(this.apiKey, this.apiSecretKey, this.accessToken,
+                this.accessTokenSecret);
+        this.rateLimitGovernor = RateLimitGovernor.forCredentials(this.apiKey, this.accessToken);
+        this.retryPolicy = RetryPolicy.forConfig(config);
+        this.endpointIsolation = EndpointIsolation.forConfig(config);
+        this.hedgingPolicy = HedgingPolicy.forConfig(config);
+        this.metrics = ClientMetrics.forConfig(config);
+        this.responseCache = ResponseCache.forConfig(config);
+        RequestSpecBuilder specBuilder = new RequestSpecBuilder()
+                // Every request starts from this spec, so they all share the pooled connections of the transport
+                .addRequestSpecification(this.transport.requestSpecification())
+                // Wait for rate-limit budget before signing, so the OAuth timestamp is taken when the request
+                // really leaves
+                .addFilter(this.rateLimitGovernor.filter(URI.create(this.baseUrl).getRawPath()))
+                // Admit through the endpoint's breaker and bulkhead only after that wait, so time spent waiting for
+                // budget is not held against the endpoint
+                .addFilter(this.endpointIsolation.filter(URI.create(this.baseUrl).getRawPath()))
+                .addFilter(this.oAuthSigner);
+        if (this.responseCache != null) {
+            specBuilder.addFilter(this.responseCache.filter(ResponseCache.credentials(this.apiKey, this.accessToken),
+                    URI.create(this.baseUrl).getRawPath(), this.cacheableEndpoints));
+        }
+        this.requestSpecification = specBuilder.build();
+    }
+
+    /**
+     * Lets the {@link ResponseCache}, when it is enabled, answer GET requests to {@code endpoints}. Responses are
+     * only shared between clients signing with the same credentials, and every successful write through a client
+     * drops them, so only reads that change rarely, or mostly through the user's own writes, belong here.
+     */
+    protected void cacheable(String... endpoints) {
+        Collections.addAll(this.cacheableEndpoints, endpoints);
+    }
+
+    /**
+     * Lets the {@link HedgingPolicy}, when it is enabled, send a second copy of slow GET requests to
+     * {@code endpoints}. Only reads that may be sent twice without harm belong here.
+     */
+    protected void hedged(String... endpoints) {
+        Collections.addAll(this.hedgedEndpoints, endpoints);
+    }
+
+    /**
+     * The non-blocking transport for this client's configuration. It is started lazily so clients that only make
+     * blocking calls never spin up its I/O threads.
+     */
+    protected AsyncTransport asyncTransport() {
+        return AsyncTransport.forConfig(this.config);
+    }
+
+    /**
+     * Sends a signed GET request to {@code endpoint} without blocking.
+     */
+    protected CompletableFuture<ApiResponse> getAsync(String endpoint, Map<String, ?> params) {
+        return sendAsync("GET", endpoint, params);
+    }
+
+    /**
+     * Sends a signed POST request to {@code endpoint} without blocking.
+     */
+    protected CompletableFuture<ApiResponse> postAsync(String endpoint, Map<String, ?> params) {
+        return sendAsync("POST", endpoint, params);
+    }
+
+    /**
+     * Sends a signed GET request to {@code endpoint} and streams the elements of the JSON array in its body as
+     * they are read off the connection, bound to {@code type} one at a time. The stream must be closed (e.g. with
+     * try-with-resources) to release the connection; closing it before the end aborts the request rather than
+     * draining the rest of the body. Streamed requests are paced by the rate-limit governor and admitted by the
+     * endpoint's circuit breaker and bulkhead up to the response headers, but not retried, since part of the body
+     * may already have been consumed. While a cassette is recorded or replayed the body is buffered whole, as the
+     * cassette stores complete exchanges.
+     *
+     * @param arrayField top-level field that holds the array (e.g. "statuses"), or null if the body is the array
+     * @throws ApiException          if the response status is not 200
+     * @throws CallRejectedException if the endpoint's breaker is open or its bulkhead is full
+     */
+    protected <T> Stream<T> streamGet(String endpoint, Map<String, ?> params, String arrayField, Class<T> type) {
+        String url = this.baseUrl + endpoint;
+        String query = AsyncTransport.encode(params);
+        HttpGet request = new HttpGet(query.isEmpty() ? url : url + '?' + query);
+        this.rateLimitGovernor.acquire(endpoint);
+        // the permit is taken once the connection is leased and covers the exchange up to the response headers,
+        // not the time the caller takes to read the body; a replayed exchange takes none
+        EndpointIsolation.Permit[] permit = new EndpointIsolation.Permit[1];
+        String authorization = this.oAuthSigner.authorizationHeader("GET", OAuthSigner.normalizeUrl(url), params);
+        request.setHeader("Authorization", authorization);
+        Cassette cassette = this.transport.cassette();
+        long start = System.nanoTime();
         try {
-            // Path of the Secret.properties file
-            this.inputStream = new FileInputStream("../Twitter/secret.properties");
-            this.properties.load(this.inputStream);
-            this.apiKey = this.properties.getProperty("apiKey");
-            this.apiSecretKey = this.properties.getProperty("apiSecretKey");
-            this.accessToken = this.properties.getProperty("accessToken");
-            this.accessTokenSecret = this.properties.getProperty("accessTokenSecret");
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.out.println("File not load Properly");
+            if (cassette != null) {
+                ApiResponse response;
+                if (cassette.getMode() == Cassette.Mode.REPLAY) {
+                    response = cassette.replay("GET", url, params);
+                } else {
+                    HttpTransport.onNextLease(() -> permit[0] = this.endpointIsolation.acquire(endpoint));
+                    response = HttpTransport.toApiResponse(this.transport.execute(request));
+                    permit[0].release(response.statusCode());
+                    cassette.record("GET", url, params, authorization, response);
+                }
+                this.metrics.recordExchange(endpoint, response.statusCode(), System.nanoTime() - start, 0,
+                        response.asByteArray().length);
+                this.rateLimitGovernor.update(endpoint, response);
+                if (response.statusCode() != 200) {
+                    throw new ApiException("Request to " + endpoint + " failed", response);
+                }
+                return JsonStreams.elements(new ByteArrayInputStream(response.asByteArray()), arrayField, type);
+            }
+            HttpTransport.onNextLease(() -> permit[0] = this.endpointIsolation.acquire(endpoint));
+            HttpResponse response = this.transport.execute(request);
+            int statusCode = response.getStatusLine().getStatusCode();
+            permit[0].release(statusCode);
+            // measured to the response headers; the body is read as the stream is consumed
+            this.metrics.recordExchange(endpoint, statusCode, System.nanoTime() - start, 0,
+                    response.getEntity() == null ? 0 : Math.max(0L, response.getEntity().getContentLength()));
+            this.rateLimitGovernor.update(endpoint, statusCode, headerValue(response, RateLimitGovernor.LIMIT_HEADER),
+                    headerValue(response, RateLimitGovernor.REMAINING_HEADER),
+                    headerValue(response, RateLimitGovernor.RESET_HEADER));
+            if (statusCode != 200 || response.getEntity() == null) {
+                throw new ApiException("Request to " + endpoint + " failed", HttpTransport.toApiResponse(response));
+            }
+            return JsonStreams.elements(response.getEntity().getContent(), arrayField, type, request::abort);
+        } catch (IOException e) {
+            this.metrics.recordFailure(endpoint, System.nanoTime() - start, 0);
+            request.abort();
+            throw new UncheckedIOException("Request to " + endpoint + " failed", e);
         } finally {
-            try {
-                this.inputStream.close();
-            } catch (Exception e) {
-                e.printStackTrace();
+            HttpTransport.onNextLease(null);
+            // no-op once the response headers were in
+            if (permit[0] != null) {
+                permit[0].release(-1);
             }
         }
+    }
+
+    private static String headerValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header == null ? null : header.getValue();
+    }
+
+    /**
+     * Current rate-limit budget of {@code endpoint} (e.g. "/search/tweets.json"), or null until the endpoint has
+     * answered at least once. Callers can use it to decide what to schedule next.
+     */
+    public RateLimitGovernor.Budget rateLimitBudget(String endpoint) {
+        return this.rateLimitGovernor.budget(endpoint);
+    }
+
+    /**
+     * Sends a blocking request built by {@code call}, retrying transient failures according to the
+     * {@link RetryPolicy}. {@code call} is invoked once per attempt and must build a fresh request each time.
+     */
+    protected Response send(String method, Supplier<Response> call) {
+        int[] attempts = {0};
+        return this.retryPolicy.execute(method, () -> {
+            if (attempts[0]++ > 0) {
+                this.metrics.retryingOnThisThread();
+            }
+            return call.get();
+        });
+    }
+
+    private CompletableFuture<ApiResponse> sendAsync(String method, String endpoint, Map<String, ?> params) {
+        if (this.responseCache == null) {
+            return sendAsync(method, endpoint, params, Collections.emptyMap());
+        }
+        if ("GET".equals(method)) {
+            return this.cacheableEndpoints.contains(endpoint)
+                    ? this.responseCache.get(ResponseCache.credentials(this.apiKey, this.accessToken),
+                    this.baseUrl + endpoint, params, headers -> sendAsync(method, endpoint, params, headers))
+                    : sendAsync(method, endpoint, params, Collections.emptyMap());
+        }
+        return sendAsync(method, endpoint, params, Collections.emptyMap()).thenApply(response -> {
+            if (response.statusCode() < 400) {
+                this.responseCache.invalidateAll();
+            }
+            return response;
+        });
+    }
+
+    private CompletableFuture<ApiResponse> sendAsync(String method, String endpoint, Map<String, ?> params,
+                                                     Map<String, String> headers) {
+        AtomicInteger attempts = new AtomicInteger();
+        return this.retryPolicy.executeAsync(method, () -> {
+            if (attempts.getAndIncrement() > 0) {
+                this.metrics.recordRetry(endpoint);
+            }
+            CompletableFuture<ApiResponse> attempt = this.hedgingPolicy != null && "GET".equals(method)
+                    && this.hedgedEndpoints.contains(endpoint)
+                    ? this.hedgingPolicy.execute(endpoint, this.rateLimitGovernor,
+                            sent -> exchange(method, endpoint, params, headers, sent))
+                    : exchange(method, endpoint, params, headers, () -> {
+                    });
+            CompletableFuture<ApiResponse> updated = attempt.thenApply(response -> {
+                this.rateLimitGovernor.update(endpoint, response);
+                return response;
+            });
+            // the retry policy cancels what it is given; pass that on to the request, or its hedge race
+            updated.whenComplete((response, error) -> {
+                if (updated.isCancelled()) {
+                    attempt.cancel(false);
+                }
+            });
+            return updated;
+        });
+    }
 
+    /**
+     * Sends one request once the rate-limit governor and the endpoint's breaker and bulkhead let it through, and
+     * runs {@code sent} right before it leaves. Cancelling the returned future aborts the request.
+     */
+    private CompletableFuture<ApiResponse> exchange(String method, String endpoint, Map<String, ?> params,
+                                                    Map<String, String> headers, Runnable sent) {
+        return this.rateLimitGovernor.whenPermitted(endpoint, () -> asyncTransport().execute(method,
+                this.baseUrl + endpoint, params, this.oAuthSigner, headers,
+                send -> this.endpointIsolation.execute(endpoint, () -> {
+                    sent.run();
+                    return send.get();
+                })));
     }
 }
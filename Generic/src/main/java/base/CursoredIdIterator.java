@@ -0,0 +1,158 @@
+package base;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.LongFunction;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily walks a cursored ID collection such as {@code /followers/ids.json} or {@code /statuses/retweeters/ids.json}.
+ * <p>
+ * Pages are requested on demand, starting at cursor -1 and following {@code next_cursor} until it is 0. While the
+ * caller consumes one page the next one is already being fetched. IDs are parsed straight from the response body
+ * into a {@code long[]}, so no boxed {@link Long}s or intermediate object trees are created. Only one page is
+ * held in memory at a time.
+ */
+public class CursoredIdIterator implements PrimitiveIterator.OfLong {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final LongFunction<CompletableFuture<ApiResponse>> pageFetcher;
+    private long[] ids = new long[0];
+    private int size;
+    private int position;
+    private CompletableFuture<Page> nextPage;
+
+    /**
+     * @param pageFetcher requests the page for a cursor; it is called with -1 for the first page
+     */
+    public CursoredIdIterator(LongFunction<CompletableFuture<ApiResponse>> pageFetcher) {
+        this.pageFetcher = pageFetcher;
+        this.nextPage = fetch(-1L);
+    }
+
+    /**
+     * Returns a sequential stream over every ID of the collection. The stream should be closed (e.g. with
+     * try-with-resources), in particular when it is not consumed to the end: closing it cancels the request for the
+     * page being prefetched.
+     */
+    public static LongStream stream(LongFunction<CompletableFuture<ApiResponse>> pageFetcher) {
+        CursoredIdIterator iterator = new CursoredIdIterator(pageFetcher);
+        return StreamSupport.longStream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::cancelPrefetch);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (this.position >= this.size) {
+            if (this.nextPage == null) {
+                return false;
+            }
+            Page page = await(this.nextPage);
+            this.ids = page.ids;
+            this.size = page.size;
+            this.position = 0;
+            this.nextPage = page.nextCursor == 0L ? null : fetch(page.nextCursor);
+        }
+        return true;
+    }
+
+    @Override
+    public long nextLong() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return this.ids[this.position++];
+    }
+
+    /**
+     * Cancels the request for the next page, if it is still pending, and ends the iteration.
+     */
+    private void cancelPrefetch() {
+        CompletableFuture<Page> page = this.nextPage;
+        this.nextPage = null;
+        this.position = this.size;
+        if (page != null) {
+            page.cancel(true);
+        }
+    }
+
+    private CompletableFuture<Page> fetch(long cursor) {
+        CompletableFuture<ApiResponse> request = this.pageFetcher.apply(cursor);
+        CompletableFuture<Page> page = request.thenApply(response -> {
+            if (response.statusCode() != 200) {
+                throw new ApiException("Could not fetch page at cursor " + cursor, response);
+            }
+            return Page.parse(response.asByteArray(), this.ids.length);
+        });
+        // cancelling the page does not reach the request it is derived from by itself
+        page.whenComplete((value, error) -> {
+            if (page.isCancelled()) {
+                request.cancel(true);
+            }
+        });
+        return page;
+    }
+
+    private static Page await(CompletableFuture<Page> page) {
+        try {
+            return page.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static final class Page {
+        private long[] ids;
+        private int size;
+        private long nextCursor;
+
+        /**
+         * Reads {@code ids} and {@code next_cursor} with a streaming parser and skips everything else.
+         */
+        static Page parse(byte[] body, int sizeHint) {
+            Page page = new Page();
+            page.ids = new long[Math.max(16, sizeHint)];
+            try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new IOException("Expected a JSON object");
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    if ("ids".equals(field) && value == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            if (page.size == page.ids.length) {
+                                page.ids = Arrays.copyOf(page.ids, page.ids.length * 2);
+                            }
+                            page.ids[page.size++] = parser.getValueAsLong();
+                        }
+                    } else if ("next_cursor".equals(field)) {
+                        page.nextCursor = parser.getValueAsLong();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Malformed cursored ID page", e);
+            }
+            return page;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package base;
+
+import io.restassured.filter.Filter;
+import io.restassured.response.Response;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a degraded endpoint from holding up calls to the others: every endpoint gets its own
+ * {@link CircuitBreaker} and, when {@link ApiConfig#getBulkheadMaxConcurrentCalls()} is set, its own limit on
+ * concurrent calls (a bulkhead).
+ * <p>
+ * A call to an endpoint whose breaker is open, or whose bulkhead is full, fails at once with a
+ * {@link CallRejectedException} instead of waiting for a connection and then for a timeout, so a slow endpoint
+ * cannot take every pooled connection and thread for itself. Calls are admitted when they really start: after the
+ * {@link RateLimitGovernor} has let them through, and once they have left the queue of the {@link InFlightLimiter}
+ * (asynchronous calls) or leased a pooled connection (blocking calls). Time spent waiting for rate-limit budget or
+ * behind other endpoints' calls therefore neither occupies the bulkhead nor counts as a slow call.
+ */
+public class EndpointIsolation {
+
+    private static final Map<List<Object>, EndpointIsolation> SHARED = new ConcurrentHashMap<>();
+
+    private final int failureRatePercent;
+    private final int slowCallRatePercent;
+    private final long slowCallMillis;
+    private final int windowSize;
+    private final long openMillis;
+    private final int maxConcurrentCalls;
+    private final LongSupplier nanoClock;
+    private final Map<String, Guard> guards = new ConcurrentHashMap<>();
+    private final LongAdder rejectedOpen = new LongAdder();
+    private final LongAdder rejectedFull = new LongAdder();
+
+    public EndpointIsolation(ApiConfig config) {
+        this(config.getCircuitFailureRatePercent(), config.getCircuitSlowCallRatePercent(),
+                config.getCircuitSlowCallMillis(), config.getCircuitWindowSize(), config.getCircuitOpenMillis(),
+                config.getBulkheadMaxConcurrentCalls(), System::nanoTime);
+    }
+
+    EndpointIsolation(int failureRatePercent, int slowCallRatePercent, long slowCallMillis, int windowSize,
+                      long openMillis, int maxConcurrentCalls, LongSupplier nanoClock) {
+        this.failureRatePercent = failureRatePercent;
+        this.slowCallRatePercent = slowCallRatePercent;
+        this.slowCallMillis = slowCallMillis;
+        this.windowSize = windowSize;
+        this.openMillis = openMillis;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Returns the process-wide instance, created on first use from {@link ApiConfig#get()}. All clients share it
+     * because they share the connection pool an endpoint would otherwise exhaust.
+     */
+    public static EndpointIsolation shared() {
+        return forConfig(ApiConfig.get());
+    }
+
+    /**
+     * Returns the instance for {@code config}'s breaker and bulkhead settings, created on first use and shared by
+     * every configuration with the same settings.
+     */
+    public static EndpointIsolation forConfig(ApiConfig config) {
+        return SHARED.computeIfAbsent(Arrays.asList(config.getCircuitFailureRatePercent(),
+                config.getCircuitSlowCallRatePercent(), config.getCircuitSlowCallMillis(),
+                config.getCircuitWindowSize(), config.getCircuitOpenMillis(), config.getBulkheadMaxConcurrentCalls()),
+                key -> new EndpointIsolation(config));
+    }
+
+    /**
+     * Admits one call to {@code endpoint}. The returned permit must be released exactly once when the call
+     * completes, whatever its outcome.
+     *
+     * @param endpoint endpoint path, e.g. "/search/tweets.json"
+     * @throws CallRejectedException if the endpoint's breaker is open or its bulkhead is full
+     */
+    public Permit acquire(String endpoint) {
+        Guard guard = this.guards.computeIfAbsent(endpoint, key -> new Guard());
+        if (guard.bulkhead != null && !guard.bulkhead.tryAcquire()) {
+            this.rejectedFull.increment();
+            throw new CallRejectedException(endpoint, CallRejectedException.Reason.BULKHEAD_FULL,
+                    "Call to " + endpoint + " rejected: " + this.maxConcurrentCalls + " calls already in progress");
+        }
+        int ticket = guard.breaker.tryAcquire();
+        if (ticket < 0) {
+            if (guard.bulkhead != null) {
+                guard.bulkhead.release();
+            }
+            this.rejectedOpen.increment();
+            throw new CallRejectedException(endpoint, CallRejectedException.Reason.CIRCUIT_OPEN,
+                    "Call to " + endpoint + " rejected: circuit open for another "
+                            + guard.breaker.getRemainingOpenMillis() + " ms");
+        }
+        return new Permit(guard, ticket, this.nanoClock.getAsLong());
+    }
+
+    /**
+     * Admits the exchange {@code send} starts and records its outcome once it completes; cancelling it frees its
+     * place without recording one. Used from {@link AsyncTransport}'s limiter, so the call is admitted, and timed,
+     * from when it really leaves rather than from when it was queued.
+     *
+     * @throws CallRejectedException if the endpoint's breaker is open or its bulkhead is full; nothing is sent
+     */
+    public CompletableFuture<ApiResponse> execute(String endpoint, Supplier<CompletableFuture<ApiResponse>> send) {
+        Permit permit = acquire(endpoint);
+        CompletableFuture<ApiResponse> exchange;
+        try {
+            exchange = send.get();
+        } catch (RuntimeException | Error e) {
+            permit.release(-1);
+            throw e;
+        }
+        exchange.whenComplete((response, error) -> {
+            if (exchange.isCancelled()) {
+                permit.abandon();
+            } else {
+                permit.release(error != null ? -1 : response.statusCode());
+            }
+        });
+        return exchange;
+    }
+
+    /**
+     * Returns a REST Assured filter that admits each request and records its outcome. The endpoint is the request
+     * path with {@code basePath} (e.g. "/1.1") removed. A request is admitted once its pooled connection has been
+     * leased (see {@link HttpTransport#onNextLease(Runnable)}), so waiting for a connection that other endpoints
+     * hold neither occupies its bulkhead nor counts as a slow call. Requests that never lease one, such as those
+     * replayed from a cassette, are not admitted and not recorded.
+     */
+    public Filter filter(String basePath) {
+        return (requestSpec, responseSpec, ctx) -> {
+            String endpoint = RateLimitGovernor.endpointOf(requestSpec.getURI(), basePath);
+            Permit[] permit = new Permit[1];
+            HttpTransport.onNextLease(() -> permit[0] = acquire(endpoint));
+            Response response = null;
+            try {
+                response = ctx.next(requestSpec, responseSpec);
+                return response;
+            } finally {
+                HttpTransport.onNextLease(null);
+                if (permit[0] != null) {
+                    permit[0].release(response == null ? -1 : response.getStatusCode());
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the breaker state of every endpoint called so far, sorted by endpoint.
+     */
+    public Map<String, CircuitBreaker.State> states() {
+        Map<String, CircuitBreaker.State> states = new TreeMap<>();
+        for (Map.Entry<String, Guard> guard : this.guards.entrySet()) {
+            states.put(guard.getKey(), guard.getValue().breaker.getState());
+        }
+        return states;
+    }
+
+    /**
+     * Calls rejected because their endpoint's breaker was open.
+     */
+    public long getRejectedByCircuit() {
+        return this.rejectedOpen.sum();
+    }
+
+    /**
+     * Calls rejected because their endpoint's bulkhead was full.
+     */
+    public long getRejectedByBulkhead() {
+        return this.rejectedFull.sum();
+    }
+
+    /**
+     * An admitted call.
+     */
+    public final class Permit {
+        private final Guard guard;
+        private final int ticket;
+        private final long startedAt;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Guard guard, int ticket, long startedAt) {
+            this.guard = guard;
+            this.ticket = ticket;
+            this.startedAt = startedAt;
+        }
+
+        /**
+         * Records the outcome of the call and frees its place in the bulkhead. Later calls, and calls after
+         * {@link #abandon()}, are ignored.
+         *
+         * @param statusCode HTTP status of the response, or -1 if the call failed without one
+         */
+        public void release(int statusCode) {
+            if (!this.released.compareAndSet(false, true)) {
+                return;
+            }
+            this.guard.breaker.onResult(this.ticket, statusCode < 0 || statusCode >= 500,
+                    nanoClock.getAsLong() - this.startedAt);
+            if (this.guard.bulkhead != null) {
+                this.guard.bulkhead.release();
+            }
+        }
+
+        /**
+         * Frees the call's place without recording an outcome, e.g. when it was cancelled because a hedged copy
+         * answered first. Later calls are ignored.
+         */
+        public void abandon() {
+            if (!this.released.compareAndSet(false, true)) {
+                return;
+            }
+            this.guard.breaker.onAbandoned(this.ticket);
+            if (this.guard.bulkhead != null) {
+                this.guard.bulkhead.release();
+            }
+        }
+    }
+
+    private final class Guard {
+        final CircuitBreaker breaker = new CircuitBreaker(failureRatePercent, slowCallRatePercent, slowCallMillis,
+                windowSize, openMillis, nanoClock);
+        final Semaphore bulkhead = maxConcurrentCalls > 0 ? new Semaphore(maxConcurrentCalls) : null;
+    }
+}
@@ -0,0 +1,338 @@
+package base;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Hedges idempotent reads against slow responses: when a request has not been answered within the
+ * {@link ApiConfig#getHedgePercentile()}th percentile of its endpoint's recent latencies, an identical second
+ * request is sent and whichever answers first is used. The other one is cancelled, so the future a call returns
+ * must abort the request when it is cancelled. Both the delay and the latencies it is derived from are measured
+ * from when a request actually leaves, not from when it started waiting for rate-limit budget or a place in the
+ * {@link InFlightLimiter}, so a queue in front of the endpoint neither triggers hedges nor inflates the delay.
+ * <p>
+ * Hedges are limited by a budget shared by every request, like retries: each request earns
+ * {@link ApiConfig#getHedgeBudgetPercent()} percent of a hedge and each hedge spends a whole one, so hedging adds
+ * at most that share of extra load. No hedge is sent before an endpoint has answered enough requests to estimate
+ * its latency, sooner than {@link ApiConfig#getHedgeMinDelayMillis()}, or once the endpoint's rate-limit budget
+ * is down to its last tenth.
+ */
+public class HedgingPolicy {
+
+    static final int MIN_SAMPLES = 20;
+    private static final int MAX_BUDGET = 10 * 100;
+    private static final int MAX_SAMPLES = 5000;
+    private static final long REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long NOT_SENT = Long.MIN_VALUE;
+
+    private static final Map<List<Object>, HedgingPolicy> SHARED = new ConcurrentHashMap<>();
+
+    private final int percentile;
+    private final int budgetPercent;
+    private final long minDelayNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicLong budget;
+    private final Map<String, Latencies> latencies = new ConcurrentHashMap<>();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private volatile ScheduledExecutorService scheduler;
+
+    public HedgingPolicy(ApiConfig config) {
+        this(config.getHedgePercentile(), config.getHedgeBudgetPercent(), config.getHedgeMinDelayMillis(),
+                System::nanoTime, new AtomicLong(MAX_BUDGET));
+    }
+
+    HedgingPolicy(int percentile, int budgetPercent, long minDelayMillis, LongSupplier nanoClock, AtomicLong budget) {
+        if (percentile <= 0 || percentile >= 100) {
+            throw new IllegalArgumentException("percentile must be between 1 and 99: " + percentile);
+        }
+        this.percentile = percentile;
+        this.budgetPercent = budgetPercent;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+        this.nanoClock = nanoClock;
+        this.budget = budget;
+    }
+
+    /**
+     * Returns the process-wide policy, or null if {@link ApiConfig#getHedgePercentile()} is 0. Sharing it means
+     * every client draws on the same hedge budget.
+     */
+    public static HedgingPolicy shared() {
+        return forConfig(ApiConfig.get());
+    }
+
+    /**
+     * Returns the policy for {@code config}'s hedging settings, or null if they turn hedging off. It is created on
+     * first use and shared by every configuration with the same settings.
+     */
+    public static HedgingPolicy forConfig(ApiConfig config) {
+        if (config.getHedgePercentile() == 0) {
+            return null;
+        }
+        return SHARED.computeIfAbsent(Arrays.asList(config.getHedgePercentile(), config.getHedgeBudgetPercent(),
+                config.getHedgeMinDelayMillis()), key -> new HedgingPolicy(config));
+    }
+
+    /**
+     * Starts {@code call}, and starts it a second time if the first has not completed within the endpoint's hedge
+     * delay of being sent. Only for requests that may safely be sent twice.
+     *
+     * @param endpoint          endpoint path, e.g. "/statuses/show.json"
+     * @param rateLimitGovernor governor of the credentials the request is signed with
+     * @param call              starts one copy of the request and runs the given callback when the copy actually
+     *                          leaves, after any wait for rate-limit budget or a place in the limiter; cancelling
+     *                          its future must abort the request
+     * @return a future completed with the first response, or exceptionally once every copy has failed
+     */
+    public <T> CompletableFuture<T> execute(String endpoint, RateLimitGovernor rateLimitGovernor,
+                                            Function<Runnable, CompletableFuture<T>> call) {
+        earn();
+        Latencies endpointLatencies = this.latencies.computeIfAbsent(endpoint, key -> new Latencies());
+        long delay = endpointLatencies.delayNanos(this.nanoClock.getAsLong());
+        if (delay < 0) {
+            AtomicLong sentAt = new AtomicLong(NOT_SENT);
+            CompletableFuture<T> primary = call.apply(() -> sentAt.set(this.nanoClock.getAsLong()));
+            primary.whenComplete((value, error) -> {
+                if (error == null && sentAt.get() != NOT_SENT) {
+                    endpointLatencies.record(this.nanoClock.getAsLong() - sentAt.get());
+                }
+            });
+            return primary;
+        }
+        Race<T> race = new Race<>(endpoint, rateLimitGovernor, endpointLatencies, call, delay);
+        race.start();
+        return race.result;
+    }
+
+    /**
+     * Hedge delay of {@code endpoint} in nanoseconds, or -1 while it has answered too few requests.
+     */
+    long hedgeDelayNanos(String endpoint) {
+        Latencies endpointLatencies = this.latencies.get(endpoint);
+        return endpointLatencies == null ? -1L : endpointLatencies.delayNanos(this.nanoClock.getAsLong());
+    }
+
+    void recordLatency(String endpoint, long latencyNanos) {
+        this.latencies.computeIfAbsent(endpoint, key -> new Latencies()).record(latencyNanos);
+    }
+
+    /**
+     * Second requests sent so far.
+     */
+    public long getHedges() {
+        return this.hedges.sum();
+    }
+
+    /**
+     * Second requests that answered before the first one.
+     */
+    public long getHedgeWins() {
+        return this.hedgeWins.sum();
+    }
+
+    private boolean mayHedge(String endpoint, RateLimitGovernor rateLimitGovernor) {
+        RateLimitGovernor.Budget rateLimit = rateLimitGovernor.budget(endpoint);
+        if (rateLimit != null && rateLimit.getRemaining() * 10L <= rateLimit.getLimit()) {
+            return false;
+        }
+        long tokens;
+        do {
+            tokens = this.budget.get();
+            if (tokens < 100) {
+                return false;
+            }
+        } while (!this.budget.compareAndSet(tokens, tokens - 100));
+        return true;
+    }
+
+    private void earn() {
+        this.budget.getAndUpdate(tokens -> Math.min(MAX_BUDGET, tokens + this.budgetPercent));
+    }
+
+    private ScheduledExecutorService scheduler() {
+        ScheduledExecutorService executor = this.scheduler;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.scheduler;
+                if (executor == null) {
+                    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "hedging-scheduler");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    this.scheduler = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * A request and, once its hedge delay has passed since it was sent, its hedge.
+     */
+    private final class Race<T> {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        private final String endpoint;
+        private final RateLimitGovernor rateLimitGovernor;
+        private final Latencies latencies;
+        private final Function<Runnable, CompletableFuture<T>> call;
+        private final long delayNanos;
+        private final AtomicInteger outstanding = new AtomicInteger(1);
+        private final AtomicBoolean settled = new AtomicBoolean();
+        private volatile CompletableFuture<T> primary;
+        private volatile long sentAt = NOT_SENT;
+        private volatile ScheduledFuture<?> timer;
+        private volatile CompletableFuture<T> hedge;
+        private volatile Throwable primaryError;
+
+        Race(String endpoint, RateLimitGovernor rateLimitGovernor, Latencies latencies,
+             Function<Runnable, CompletableFuture<T>> call, long delayNanos) {
+            this.endpoint = endpoint;
+            this.rateLimitGovernor = rateLimitGovernor;
+            this.latencies = latencies;
+            this.call = call;
+            this.delayNanos = delayNanos;
+        }
+
+        void start() {
+            CompletableFuture<T> first = this.call.apply(this::sent);
+            this.primary = first;
+            this.result.whenComplete((value, error) -> {
+                if (this.result.isCancelled()) {
+                    cancel(this.primary);
+                    cancel(this.hedge);
+                }
+            });
+            first.whenComplete((value, error) -> settle(first, value, error));
+            if (this.settled.get()) {
+                // a hedge sent before this method returned has already won
+                cancel(first);
+            }
+        }
+
+        /**
+         * Runs when the primary leaves, so the hedge delay counts from then.
+         */
+        private void sent() {
+            this.sentAt = nanoClock.getAsLong();
+            if (!this.result.isDone()) {
+                this.timer = scheduler().schedule(this::hedge, this.delayNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void hedge() {
+            if (this.settled.get() || this.result.isDone() || !mayHedge(this.endpoint, this.rateLimitGovernor)) {
+                return;
+            }
+            this.outstanding.incrementAndGet();
+            hedges.increment();
+            CompletableFuture<T> copy;
+            try {
+                copy = this.call.apply(() -> {
+                });
+            } catch (RuntimeException e) {
+                copy = new CompletableFuture<>();
+                copy.completeExceptionally(e);
+            }
+            this.hedge = copy;
+            CompletableFuture<T> started = copy;
+            copy.whenComplete((value, error) -> settle(started, value, error));
+            if (this.settled.get() || this.result.isDone()) {
+                cancel(copy);
+            }
+        }
+
+        private void settle(CompletableFuture<T> copy, T value, Throwable error) {
+            if (copy == this.primary) {
+                ScheduledFuture<?> pending = this.timer;
+                if (pending != null) {
+                    pending.cancel(false);
+                }
+                // a primary cancelled because the hedge won took at least this long; leaving it out would make
+                // the estimate forget the slow responses it is there to catch
+                long sent = this.sentAt;
+                if (sent != NOT_SENT && (error == null || (copy.isCancelled() && !this.result.isCancelled()))) {
+                    this.latencies.record(nanoClock.getAsLong() - sent);
+                }
+            }
+            if (error == null) {
+                if (this.settled.compareAndSet(false, true)) {
+                    if (copy != this.primary) {
+                        hedgeWins.increment();
+                    }
+                    // the loser is cancelled before the result completes, so nothing is left running once it has
+                    cancel(copy == this.primary ? this.hedge : this.primary);
+                    this.result.complete(value);
+                }
+                return;
+            }
+            if (copy == this.primary) {
+                this.primaryError = error;
+            }
+            if (this.outstanding.decrementAndGet() == 0) {
+                this.result.completeExceptionally(this.primaryError != null ? this.primaryError : error);
+            }
+        }
+
+        private void cancel(CompletableFuture<T> copy) {
+            if (copy != null) {
+                copy.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Recent latencies of one endpoint and the hedge delay derived from them, recomputed at most once a second.
+     */
+    private final class Latencies {
+        private final Recorder recorder = new Recorder(2);
+        private final Histogram recent = new Histogram(2);
+        private Histogram interval;
+        private long refreshedAt = nanoClock.getAsLong() - REFRESH_NANOS;
+        private volatile long delayNanos = -1L;
+
+        void record(long latencyNanos) {
+            this.recorder.recordValue(Math.max(0L, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+        }
+
+        long delayNanos(long now) {
+            if (now - this.refreshedAt >= REFRESH_NANOS) {
+                refresh(now);
+            }
+            return this.delayNanos;
+        }
+
+        private synchronized void refresh(long now) {
+            if (now - this.refreshedAt < REFRESH_NANOS) {
+                return;
+            }
+            this.refreshedAt = now;
+            this.interval = this.recorder.getIntervalHistogram(this.interval);
+            // start over now and then, so the delay follows the endpoint's current latency
+            if (this.recent.getTotalCount() + this.interval.getTotalCount() > MAX_SAMPLES) {
+                this.recent.reset();
+            }
+            this.recent.add(this.interval);
+            if (this.recent.getTotalCount() >= MIN_SAMPLES) {
+                this.delayNanos = Math.max(minDelayNanos,
+                        TimeUnit.MICROSECONDS.toNanos(this.recent.getValueAtPercentile(percentile)));
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package base;
+
+import io.restassured.builder.RequestSpecBuilder;
+import io.restassured.config.HttpClientConfig;
+import io.restassured.config.RestAssuredConfig;
+import io.restassured.filter.FilterContext;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+import io.restassured.specification.RequestSpecification;
+import org.apache.http.Header;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pooled, keep-alive HTTP transport shared by every API client in the JVM.
+ * <p>
+ * REST Assured creates a new HttpClient (and therefore new connections and TLS handshakes) for each request
+ * unless it is told to reuse one. This class owns a single thread-safe client backed by a pooling connection
+ * manager, evicts idle and expired connections in the background and exposes a prebuilt base
+ * {@link RequestSpecification} that clients start every request from.
+ * <p>
+ * Requests ask for gzip or deflate compression, and compressed responses are decoded as their body is read, so
+ * a streamed response is never held in memory whole, compressed or not. This client speaks HTTP/1.1 only;
+ * HTTP/2 is negotiated by the {@link AsyncTransport}.
+ */
+public class HttpTransport {
+
+    private static final Map<List<Object>, HttpTransport> SHARED = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Runnable> LEASE_LISTENER = new ThreadLocal<>();
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final RestAssuredConfig restAssuredConfig;
+    private final RequestSpecification requestSpecification;
+    private final ScheduledExecutorService idleConnectionEvictor;
+    private final Cassette cassette;
+    private final ClientMetrics metrics;
+
+    /**
+     * Creates a transport sized and timed according to {@code config}: pool limits per route and in total,
+     * connect/socket timeouts, and the idle time after which pooled connections are evicted.
+     *
+     * @param config
+     */
+    public HttpTransport(ApiConfig config) {
+        this.metrics = ClientMetrics.forConfig(config);
+        this.connectionManager = new PoolingHttpClientConnectionManager() {
+            @Override
+            public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+                return timedLease(super.requestConnection(route, state));
+            }
+        };
+        this.connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+        this.connectionManager.setMaxTotal(config.getMaxConnectionsTotal());
+        long idleTimeoutMillis = config.getIdleTimeoutMillis();
+
+        // the builder's client asks for and decodes gzip/deflate itself; cookies stay off, as in REST Assured
+        this.httpClient = HttpClientBuilder.create()
+                .setConnectionManager(this.connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(config.getConnectTimeoutMillis())
+                        .setSocketTimeout(config.getSocketTimeoutMillis())
+                        .build())
+                .disableCookieManagement()
+                .build();
+        HttpClient restAssuredClient = new RestAssuredClient(this.httpClient);
+        HttpClientConfig httpClientConfig = HttpClientConfig.httpClientConfig()
+                .httpClientFactory(new HttpClientConfig.HttpClientFactory() {
+                    @Override
+                    public HttpClient createHttpClient() {
+                        return restAssuredClient;
+                    }
+                })
+                .reuseHttpClientInstance();
+        this.restAssuredConfig = RestAssuredConfig.config().httpClient(httpClientConfig);
+        this.cassette = Cassette.forConfig(config);
+        RequestSpecBuilder specBuilder = new RequestSpecBuilder()
+                .setConfig(this.restAssuredConfig)
+                .addFilter(HttpTransport::bufferResponseBody)
+                .addFilter(this.metrics.filter(URI.create(config.getBaseUrl()).getRawPath()));
+        if (this.cassette != null) {
+            specBuilder.addFilter(this.cassette.filter());
+        }
+        this.requestSpecification = specBuilder.build();
+
+        this.idleConnectionEvictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "http-idle-connection-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000L, idleTimeoutMillis / 2);
+        this.idleConnectionEvictor.scheduleWithFixedDelay(() -> {
+            this.connectionManager.closeExpiredConnections();
+            this.connectionManager.closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reports the time spent waiting for a pooled connection to the metrics, then runs the listener registered
+     * with {@link #onNextLease(Runnable)}.
+     */
+    private ConnectionRequest timedLease(ConnectionRequest lease) {
+        return new ConnectionRequest() {
+            @Override
+            public HttpClientConnection get(long timeout, TimeUnit unit)
+                    throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                long start = System.nanoTime();
+                HttpClientConnection connection;
+                try {
+                    connection = lease.get(timeout, unit);
+                } finally {
+                    metrics.recordPoolWait(System.nanoTime() - start);
+                }
+                Runnable listener = LEASE_LISTENER.get();
+                if (listener != null) {
+                    LEASE_LISTENER.remove();
+                    try {
+                        listener.run();
+                    } catch (RuntimeException | Error e) {
+                        connectionManager.releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+                        throw e;
+                    }
+                }
+                return connection;
+            }
+
+            @Override
+            public boolean cancel() {
+                return lease.cancel();
+            }
+        };
+    }
+
+    /**
+     * Has {@code listener} run once the pooled connection of the next request sent on this thread has been
+     * leased, i.e. when that exchange really starts rather than when it started waiting for a connection. If the
+     * listener throws, the connection goes back to the pool and the request fails with the exception instead of
+     * being sent. It runs at most once; null drops a listener that has not run yet.
+     */
+    public static void onNextLease(Runnable listener) {
+        if (listener == null) {
+            LEASE_LISTENER.remove();
+        } else {
+            LEASE_LISTENER.set(listener);
+        }
+    }
+
+    /**
+     * REST Assured only reads the body lazily, and until the entity is consumed the connection stays leased
+     * from the pool. Buffering it here hands the connection back as soon as the response arrives.
+     */
+    private static Response bufferResponseBody(FilterableRequestSpecification requestSpec,
+                                               FilterableResponseSpecification responseSpec, FilterContext ctx) {
+        Response response = ctx.next(requestSpec, responseSpec);
+        response.asByteArray();
+        return response;
+    }
+
+    /**
+     * Returns the process-wide transport, created on first use from {@link ApiConfig#get()}.
+     */
+    public static HttpTransport shared() {
+        return forConfig(ApiConfig.get());
+    }
+
+    /**
+     * Returns the transport for {@code config}, created on first use. Configurations with the same pool sizes,
+     * timeouts, cassette and metrics share one, whatever their credentials.
+     */
+    public static HttpTransport forConfig(ApiConfig config) {
+        return SHARED.computeIfAbsent(Arrays.asList(config.getConnectTimeoutMillis(),
+                config.getSocketTimeoutMillis(), config.getMaxConnectionsPerRoute(), config.getMaxConnectionsTotal(),
+                config.getIdleTimeoutMillis(), config.getCassetteMode(), config.getCassetteFile(),
+                config.getMetricsFile(), URI.create(config.getBaseUrl()).getRawPath()),
+                key -> new HttpTransport(config));
+    }
+
+    /**
+     * The REST Assured configuration that routes requests through the pooled client.
+     */
+    public RestAssuredConfig restAssuredConfig() {
+        return this.restAssuredConfig;
+    }
+
+    /**
+     * Base specification every request should start from. It is never mutated after construction, so it is
+     * safe to share between threads; REST Assured copies it into a fresh specification on each
+     * {@code given(spec)}.
+     */
+    public RequestSpecification requestSpecification() {
+        return this.requestSpecification;
+    }
+
+    /**
+     * The cassette requests are recorded to or replayed from, or null when it is off.
+     */
+    public Cassette cassette() {
+        return this.cassette;
+    }
+
+    /**
+     * Sends a request on the pooled client and returns the response with its body still unread, for callers that
+     * process the body as a stream. Closing the entity content hands the connection back to the pool; aborting
+     * the request discards it.
+     */
+    public HttpResponse execute(HttpUriRequest request) throws IOException {
+        return this.httpClient.execute(request);
+    }
+
+    /**
+     * Buffers a response, body included.
+     */
+    static ApiResponse toApiResponse(HttpResponse response) throws IOException {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (Header header : response.getAllHeaders()) {
+            headers.computeIfAbsent(header.getName(), name -> new ArrayList<>(1)).add(header.getValue());
+        }
+        byte[] body = response.getEntity() == null ? new byte[0] : EntityUtils.toByteArray(response.getEntity());
+        return new ApiResponse(response.getStatusLine().getStatusCode(), response.getStatusLine().toString(),
+                headers, body);
+    }
+
+    /**
+     * Stops the idle connection evictor and closes every pooled connection.
+     */
+    public void shutdown() {
+        this.idleConnectionEvictor.shutdownNow();
+        this.connectionManager.shutdown();
+    }
+
+    /**
+     * REST Assured 4 drives its client through {@code AbstractHttpClient}, whose subclasses are all deprecated, so
+     * this is the one such subclass: it only hands every request to the pooled client built above. Settings REST
+     * Assured puts on it (parameters, interceptors) are not used; the pooled client is configured up front.
+     */
+    @SuppressWarnings("deprecation")
+    private static final class RestAssuredClient extends org.apache.http.impl.client.DefaultHttpClient {
+        private final CloseableHttpClient pooled;
+
+        RestAssuredClient(CloseableHttpClient pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public CloseableHttpResponse execute(HttpHost target, HttpRequest request, HttpContext context)
+                throws IOException {
+            return this.pooled.execute(target, request, context);
+        }
+
+        @Override
+        public CloseableHttpResponse execute(HttpHost target, HttpRequest request) throws IOException {
+            return this.pooled.execute(target, request);
+        }
+
+        @Override
+        public CloseableHttpResponse execute(HttpUriRequest request, HttpContext context) throws IOException {
+            return this.pooled.execute(request, context);
+        }
+
+        @Override
+        public CloseableHttpResponse execute(HttpUriRequest request) throws IOException {
+            return this.pooled.execute(request);
+        }
+    }
+}
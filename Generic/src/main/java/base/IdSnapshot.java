@@ -0,0 +1,294 @@
+package base;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.stream.LongStream;
+
+/**
+ * Immutable set of IDs, e.g. the followers of an account or the retweeters of a tweet at one point in time.
+ * <p>
+ * The IDs are kept in one sorted {@code long[]} without duplicates, so a million of them take 8 MB instead of the
+ * 50 MB or so of a {@code Set<Long>}. Membership is a binary search. {@link #diff}, {@link #union},
+ * {@link #intersect} and {@link #minus} each walk both arrays once, side by side. {@link #writeTo} stores the gaps
+ * between consecutive IDs as variable-length integers, which takes a fraction of the array's size for dense sets.
+ */
+public final class IdSnapshot {
+
+    public static final IdSnapshot EMPTY = new IdSnapshot(new long[0]);
+
+    // "IDS1"
+    private static final int MAGIC = 0x49445331;
+
+    private final long[] ids;
+
+    private IdSnapshot(long[] ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * Collects {@code ids} in any order, duplicates allowed.
+     */
+    public static IdSnapshot of(LongStream ids) {
+        long[] sorted = ids.toArray();
+        Arrays.sort(sorted);
+        return new IdSnapshot(distinct(sorted));
+    }
+
+    public static IdSnapshot of(long... ids) {
+        return of(LongStream.of(ids));
+    }
+
+    private static long[] distinct(long[] sorted) {
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || sorted[i] != sorted[size - 1]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+
+    public int size() {
+        return this.ids.length;
+    }
+
+    public boolean isEmpty() {
+        return this.ids.length == 0;
+    }
+
+    public boolean contains(long id) {
+        return Arrays.binarySearch(this.ids, id) >= 0;
+    }
+
+    /**
+     * The IDs in ascending order.
+     */
+    public LongStream stream() {
+        return Arrays.stream(this.ids);
+    }
+
+    /**
+     * A copy of the IDs in ascending order.
+     */
+    public long[] toArray() {
+        return this.ids.clone();
+    }
+
+    /**
+     * What changed from this snapshot to {@code newer}: the IDs it gained and the ones it lost.
+     */
+    public Diff diff(IdSnapshot newer) {
+        long[] older = this.ids;
+        long[] current = newer.ids;
+        long[] added = new long[current.length];
+        long[] removed = new long[older.length];
+        int addedSize = 0;
+        int removedSize = 0;
+        int i = 0;
+        int j = 0;
+        while (i < older.length && j < current.length) {
+            if (older[i] < current[j]) {
+                removed[removedSize++] = older[i++];
+            } else if (older[i] > current[j]) {
+                added[addedSize++] = current[j++];
+            } else {
+                i++;
+                j++;
+            }
+        }
+        while (i < older.length) {
+            removed[removedSize++] = older[i++];
+        }
+        while (j < current.length) {
+            added[addedSize++] = current[j++];
+        }
+        return new Diff(new IdSnapshot(Arrays.copyOf(added, addedSize)),
+                new IdSnapshot(Arrays.copyOf(removed, removedSize)));
+    }
+
+    /**
+     * IDs in this snapshot, {@code other} or both.
+     */
+    public IdSnapshot union(IdSnapshot other) {
+        long[] a = this.ids;
+        long[] b = other.ids;
+        long[] union = new long[a.length + b.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                union[size++] = a[i++];
+            } else if (a[i] > b[j]) {
+                union[size++] = b[j++];
+            } else {
+                union[size++] = a[i++];
+                j++;
+            }
+        }
+        while (i < a.length) {
+            union[size++] = a[i++];
+        }
+        while (j < b.length) {
+            union[size++] = b[j++];
+        }
+        return new IdSnapshot(size == union.length ? union : Arrays.copyOf(union, size));
+    }
+
+    /**
+     * IDs in both this snapshot and {@code other}.
+     */
+    public IdSnapshot intersect(IdSnapshot other) {
+        long[] a = this.ids;
+        long[] b = other.ids;
+        long[] intersection = new long[Math.min(a.length, b.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                intersection[size++] = a[i++];
+                j++;
+            }
+        }
+        return new IdSnapshot(Arrays.copyOf(intersection, size));
+    }
+
+    /**
+     * IDs in this snapshot but not in {@code other}.
+     */
+    public IdSnapshot minus(IdSnapshot other) {
+        return other.diff(this).getAdded();
+    }
+
+    /**
+     * Writes the snapshot: a magic number, the number of IDs, then each ID as the unsigned gap to the one before it
+     * (the first to 0) in LEB128. The stream is not closed.
+     */
+    public void writeTo(OutputStream output) throws IOException {
+        DataOutputStream out = new DataOutputStream(output);
+        out.writeInt(MAGIC);
+        writeVarLong(out, this.ids.length);
+        long previous = 0;
+        for (long id : this.ids) {
+            writeVarLong(out, id - previous);
+            previous = id;
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a snapshot written by {@link #writeTo}. The stream is not closed.
+     *
+     * @throws IOException if the stream does not hold a snapshot, or ends early
+     */
+    public static IdSnapshot readFrom(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an ID snapshot");
+        }
+        long size = readVarLong(in);
+        if (size < 0 || size > Integer.MAX_VALUE - 8) {
+            throw new IOException("Corrupt ID snapshot: " + size + " IDs");
+        }
+        long[] ids = new long[(int) size];
+        long previous = 0;
+        for (int i = 0; i < ids.length; i++) {
+            long gap = readVarLong(in);
+            if (i > 0 && gap == 0) {
+                throw new IOException("Corrupt ID snapshot: duplicate ID " + previous);
+            }
+            previous += gap;
+            ids[i] = previous;
+        }
+        return new IdSnapshot(ids);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("ID snapshot ends early");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt ID snapshot: variable-length integer too long");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof IdSnapshot && Arrays.equals(this.ids, ((IdSnapshot) o).ids);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(this.ids);
+    }
+
+    @Override
+    public String toString() {
+        if (this.ids.length <= 10) {
+            return "IdSnapshot" + Arrays.toString(this.ids);
+        }
+        return "IdSnapshot[" + this.ids[0] + ", " + this.ids[1] + ", ... " + this.ids[this.ids.length - 1] + "; "
+                + this.ids.length + " IDs]";
+    }
+
+    /**
+     * Difference between two snapshots of the same set.
+     */
+    public static final class Diff {
+
+        private final IdSnapshot added;
+        private final IdSnapshot removed;
+
+        Diff(IdSnapshot added, IdSnapshot removed) {
+            this.added = added;
+            this.removed = removed;
+        }
+
+        /**
+         * IDs only in the newer snapshot, e.g. new followers.
+         */
+        public IdSnapshot getAdded() {
+            return this.added;
+        }
+
+        /**
+         * IDs only in the older snapshot, e.g. lost followers.
+         */
+        public IdSnapshot getRemoved() {
+            return this.removed;
+        }
+
+        public boolean isEmpty() {
+            return this.added.isEmpty() && this.removed.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "Diff{added=" + this.added + ", removed=" + this.removed + "}";
+        }
+    }
+}
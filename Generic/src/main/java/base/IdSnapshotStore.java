@@ -0,0 +1,142 @@
+package base;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Directory of {@link IdSnapshot}s taken over time, e.g. the followers of an account once per run, so each run can
+ * compare what it fetched with what the last one saw.
+ * <p>
+ * Every snapshot is one file named after the series and the time it was taken, e.g.
+ * {@code followers-KhabibArmy.1600000000000.ids}. Files are written to a temporary file first and then moved into
+ * place, so a crash never leaves a truncated snapshot behind.
+ */
+public class IdSnapshotStore {
+
+    private static final Pattern SERIES_NAME = Pattern.compile("[A-Za-z0-9_-]+");
+    private static final String EXTENSION = ".ids";
+
+    private final Path directory;
+
+    public IdSnapshotStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Saves {@code snapshot} as the one taken at {@code takenAtMillis}, replacing any taken at the same time.
+     *
+     * @param series name of the series, made of letters, digits, '_' and '-', e.g. "followers-KhabibArmy"
+     * @return the file written
+     */
+    public Path save(String series, long takenAtMillis, IdSnapshot snapshot) {
+        Path file = this.directory.resolve(checkName(series) + '.' + takenAtMillis + EXTENSION);
+        try {
+            Files.createDirectories(this.directory);
+            Path temporary = Files.createTempFile(this.directory, series + ".snapshot-", ".tmp");
+            try {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporary), 64 * 1024)) {
+                    snapshot.writeTo(out);
+                }
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write ID snapshot " + file, e);
+        }
+        return file;
+    }
+
+    /**
+     * Saves {@code snapshot} as taken now.
+     */
+    public Path save(String series, IdSnapshot snapshot) {
+        return save(series, System.currentTimeMillis(), snapshot);
+    }
+
+    /**
+     * Times the snapshots of {@code series} were taken, oldest first.
+     */
+    public List<Long> times(String series) {
+        Pattern fileName = Pattern.compile(Pattern.quote(checkName(series)) + "\\.(\\d+)" + Pattern.quote(EXTENSION));
+        List<Long> times = new ArrayList<>();
+        if (!Files.isDirectory(this.directory)) {
+            return times;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, series + ".*" + EXTENSION)) {
+            for (Path file : files) {
+                Matcher matcher = fileName.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    times.add(Long.parseLong(matcher.group(1)));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list ID snapshots in " + this.directory, e);
+        }
+        Collections.sort(times);
+        return times;
+    }
+
+    /**
+     * The snapshot of {@code series} taken at {@code takenAtMillis}.
+     *
+     * @throws UncheckedIOException if there is none or it cannot be read
+     */
+    public IdSnapshot load(String series, long takenAtMillis) {
+        Path file = this.directory.resolve(checkName(series) + '.' + takenAtMillis + EXTENSION);
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+            return IdSnapshot.readFrom(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read ID snapshot " + file, e);
+        }
+    }
+
+    /**
+     * The most recent snapshot of {@code series}, or null if none was saved.
+     */
+    public IdSnapshot latest(String series) {
+        List<Long> times = times(series);
+        return times.isEmpty() ? null : load(series, times.get(times.size() - 1));
+    }
+
+    /**
+     * Deletes all but the {@code keep} most recent snapshots of {@code series}.
+     *
+     * @return the number of snapshots deleted
+     */
+    public int prune(String series, int keep) {
+        List<Long> times = times(series);
+        int deleted = 0;
+        for (int i = 0; i < times.size() - Math.max(0, keep); i++) {
+            Path file = this.directory.resolve(series + '.' + times.get(i) + EXTENSION);
+            try {
+                if (Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot delete ID snapshot " + file, e);
+            }
+        }
+        return deleted;
+    }
+
+    private static String checkName(String series) {
+        if (series == null || !SERIES_NAME.matcher(series).matches()) {
+            throw new IllegalArgumentException("Invalid series name: " + series);
+        }
+        return series;
+    }
+}
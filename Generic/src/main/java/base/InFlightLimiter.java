@@ -0,0 +1,96 @@
+package base;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Caps the number of asynchronous operations running at once without blocking the caller.
+ * <p>
+ * Work submitted while every permit is taken is queued and started as soon as a running operation completes,
+ * on the thread that completed it. Queued work whose result has already been completed (e.g. cancelled) is
+ * skipped, and cancelling the result of running work cancels the operation's own future.
+ */
+public class InFlightLimiter {
+
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+    public InFlightLimiter(int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Starts {@code task} now if a permit is free, otherwise once one becomes free.
+     *
+     * @param task starts the operation and returns its future
+     * @return a future completed with the operation's outcome
+     */
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        this.pending.add(() -> {
+            if (result.isDone()) {
+                release();
+                return;
+            }
+            CompletableFuture<T> operation;
+            try {
+                operation = task.get();
+            } catch (Throwable t) {
+                operation = new CompletableFuture<>();
+                operation.completeExceptionally(t);
+            }
+            CompletableFuture<T> started = operation;
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) {
+                    started.cancel(false);
+                }
+            });
+            operation.whenComplete((value, error) -> {
+                release();
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        });
+        drain();
+        return result;
+    }
+
+    public int getMaxInFlight() {
+        return this.maxInFlight;
+    }
+
+    public int getInFlight() {
+        return this.maxInFlight - this.permits.availablePermits();
+    }
+
+    public int getPending() {
+        return this.pending.size();
+    }
+
+    private void release() {
+        this.permits.release();
+        drain();
+    }
+
+    private void drain() {
+        while (!this.pending.isEmpty() && this.permits.tryAcquire()) {
+            Runnable next = this.pending.poll();
+            if (next == null) {
+                this.permits.release();
+            } else {
+                next.run();
+            }
+        }
+    }
+}
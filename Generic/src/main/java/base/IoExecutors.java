@@ -0,0 +1,93 @@
+package base;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for I/O-bound work such as blocking API calls.
+ * <p>
+ * On JVMs with virtual threads (Java 21+) every task gets its own virtual thread, so thousands of calls can wait
+ * on the network at almost no cost. Older JVMs fall back to a large pool of daemon platform threads whose size is
+ * set by the {@code io.poolSize} system property. The project is compiled for Java 8, so virtual threads are
+ * looked up reflectively.
+ */
+public final class IoExecutors {
+
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderFactory = null;
+        Method newThreadPerTaskExecutor = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            builderName = builder.getMethod("name", String.class, long.class);
+            builderFactory = builder.getMethod("factory");
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_FACTORY = builderFactory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+
+    private IoExecutors() {
+    }
+
+    public static boolean virtualThreadsAvailable() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Number of platform threads used when virtual threads are not available.
+     */
+    public static int ioPoolSize() {
+        return Integer.getInteger("io.poolSize", Math.max(64, Runtime.getRuntime().availableProcessors() * 16));
+    }
+
+    /**
+     * Returns a factory for virtual threads, or for daemon platform threads on older JVMs. Threads are named
+     * {@code namePrefix-N}.
+     */
+    public static ThreadFactory threadFactory(String namePrefix) {
+        if (virtualThreadsAvailable()) {
+            try {
+                Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix + "-", 1L);
+                return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not create a virtual thread factory", e);
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Returns an executor that starts a virtual thread per task, or a fixed pool of {@link #ioPoolSize()} daemon
+     * threads on older JVMs.
+     */
+    public static ExecutorService newExecutor(String namePrefix) {
+        if (virtualThreadsAvailable()) {
+            try {
+                return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory(namePrefix));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not create a virtual thread executor", e);
+            }
+        }
+        return Executors.newFixedThreadPool(ioPoolSize(), threadFactory(namePrefix));
+    }
+}
@@ -0,0 +1,73 @@
+package base;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The shared, preconfigured Jackson {@link ObjectMapper} used to bind response bodies to model classes.
+ * <p>
+ * JSON properties are mapped from snake_case ({@code id_str}) to camelCase fields ({@code idStr}), fields are
+ * bound directly so models need no setters, and unknown properties are ignored because the API adds fields
+ * freely. An {@link ObjectReader} is built once per target type and reused.
+ */
+public final class Json {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE)
+            .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+            .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final Map<JavaType, ObjectReader> READERS = new ConcurrentHashMap<>();
+
+    private Json() {
+    }
+
+    /**
+     * The shared mapper. It is thread-safe; do not reconfigure it.
+     */
+    public static ObjectMapper mapper() {
+        return MAPPER;
+    }
+
+    public static <T> T read(byte[] json, Class<T> type) {
+        return read(json, MAPPER.getTypeFactory().constructType(type));
+    }
+
+    public static <T> T read(byte[] json, TypeReference<T> type) {
+        return read(json, MAPPER.getTypeFactory().constructType(type));
+    }
+
+    public static <T> T read(byte[] json, JavaType type) {
+        try {
+            return READERS.computeIfAbsent(type, MAPPER::readerFor).readValue(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not bind JSON to " + type, e);
+        }
+    }
+
+    static ObjectReader reader(Class<?> type) {
+        return READERS.computeIfAbsent(MAPPER.getTypeFactory().constructType(type), MAPPER::readerFor);
+    }
+
+    public static String write(Object value) {
+        try {
+            return MAPPER.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Could not write " + value.getClass().getName() + " as JSON", e);
+        }
+    }
+}
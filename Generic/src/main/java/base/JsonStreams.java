@@ -0,0 +1,127 @@
+package base;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the elements of a JSON array one at a time straight from an {@link InputStream}.
+ * <p>
+ * Only the element being bound is ever in memory: the document is never turned into a String or a tree, so the
+ * garbage per response stays proportional to one element instead of the whole body.
+ */
+public final class JsonStreams {
+
+    private JsonStreams() {
+    }
+
+    /**
+     * Streams the elements of an array bound to {@code type}. The stream must be closed, which closes
+     * {@code input}.
+     *
+     * @param input        JSON document
+     * @param arrayField   top-level field that holds the array (e.g. "statuses"), or null if the document is the
+     *                     array itself
+     * @param type         element model
+     * @param onIncomplete run when the stream is closed before the end of the array, e.g. to abort the request
+     *                     instead of draining the rest of the body; may be null
+     */
+    public static <T> Stream<T> elements(InputStream input, String arrayField, Class<T> type, Runnable onIncomplete) {
+        ElementSpliterator<T> elements;
+        try {
+            JsonParser parser = Json.mapper().getFactory().createParser(input);
+            elements = new ElementSpliterator<>(parser, Json.reader(type), moveToArray(parser, arrayField));
+        } catch (IOException e) {
+            closeQuietly(input);
+            throw new UncheckedIOException("Could not read JSON array", e);
+        }
+        return StreamSupport.stream(elements, false).onClose(() -> {
+            if (!elements.finished && onIncomplete != null) {
+                onIncomplete.run();
+            }
+            elements.close();
+        });
+    }
+
+    public static <T> Stream<T> elements(InputStream input, String arrayField, Class<T> type) {
+        return elements(input, arrayField, type, null);
+    }
+
+    /**
+     * Positions the parser on the array's START_ARRAY token. Returns false if the document has no such array.
+     */
+    private static boolean moveToArray(JsonParser parser, String arrayField) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (arrayField == null) {
+            return token == JsonToken.START_ARRAY;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            return false;
+        }
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            boolean match = arrayField.equals(parser.getCurrentName());
+            token = parser.nextToken();
+            if (match) {
+                return token == JsonToken.START_ARRAY;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    private static void closeQuietly(InputStream input) {
+        try {
+            input.close();
+        } catch (IOException ignored) {
+            // nothing more to release
+        }
+    }
+
+    private static final class ElementSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+        private final JsonParser parser;
+        private final ObjectReader reader;
+        private boolean finished;
+
+        ElementSpliterator(JsonParser parser, ObjectReader reader, boolean hasArray) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.parser = parser;
+            this.reader = reader;
+            this.finished = !hasArray;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (this.finished) {
+                return false;
+            }
+            try {
+                if (this.parser.nextToken() == JsonToken.END_ARRAY) {
+                    this.finished = true;
+                    return false;
+                }
+                T element = this.reader.readValue(this.parser);
+                action.accept(element);
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Malformed JSON array element", e);
+            }
+        }
+
+        void close() {
+            try {
+                this.parser.close();
+            } catch (IOException ignored) {
+                // the underlying stream may already be aborted
+            }
+        }
+    }
+}
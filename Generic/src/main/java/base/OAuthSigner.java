@@ -0,0 +1,236 @@
+package base;
+
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * OAuth 1.0a (HMAC-SHA1) request signer.
+ * <p>
+ * REST Assured's {@code auth().oauth(...)} rebuilds the signing key, the {@link Mac} and the header on every
+ * request. This signer derives the signing key once per credential set, keeps one initialised {@link Mac} per
+ * thread and assembles the signature base string in a single pre-sized buffer. It can be used directly through
+ * {@link #authorizationHeader(String, String, Map)} or added to a request specification as a filter.
+ */
+public class OAuthSigner implements Filter {
+
+    private static final String HMAC_SHA1 = "HmacSHA1";
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final Comparator<String[]> PAIR_ORDER =
+            Comparator.<String[], String>comparing(pair -> pair[0]).thenComparing(pair -> pair[1]);
+    private static final Map<String, OAuthSigner> SIGNERS = new ConcurrentHashMap<>();
+
+    private final String consumerKey;
+    private final String token;
+    private final String encodedConsumerKey;
+    private final String encodedToken;
+    private final SecretKeySpec signingKey;
+    private final ThreadLocal<Mac> mac;
+
+    public OAuthSigner(String consumerKey, String consumerSecret, String token, String tokenSecret) {
+        if (consumerKey == null || consumerSecret == null || token == null || tokenSecret == null) {
+            throw new IllegalArgumentException("OAuth credentials must not be null");
+        }
+        this.consumerKey = consumerKey;
+        this.token = token;
+        this.encodedConsumerKey = percentEncode(consumerKey);
+        this.encodedToken = percentEncode(token);
+        byte[] key = (percentEncode(consumerSecret) + '&' + percentEncode(tokenSecret)).getBytes(StandardCharsets.UTF_8);
+        this.signingKey = new SecretKeySpec(key, HMAC_SHA1);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(HMAC_SHA1);
+                instance.init(this.signingKey);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA1 is not available", e);
+            }
+        });
+    }
+
+    /**
+     * Returns the shared signer for a credential set, creating it on first use.
+     */
+    public static OAuthSigner forCredentials(String consumerKey, String consumerSecret, String token, String tokenSecret) {
+        String cacheKey = consumerKey + '\n' + consumerSecret + '\n' + token + '\n' + tokenSecret;
+        return SIGNERS.computeIfAbsent(cacheKey, k -> new OAuthSigner(consumerKey, consumerSecret, token, tokenSecret));
+    }
+
+    public String getConsumerKey() {
+        return this.consumerKey;
+    }
+
+    public String getToken() {
+        return this.token;
+    }
+
+    /**
+     * Builds the {@code Authorization} header value for a request, using a fresh nonce and the current time.
+     *
+     * @param method HTTP method, e.g. "GET"
+     * @param url    request URL without a query string
+     * @param params query and form parameters; values may be single objects or collections
+     * @return
+     */
+    public String authorizationHeader(String method, String url, Map<String, ?> params) {
+        return authorizationHeader(method, url, params, nonce(), System.currentTimeMillis() / 1000L);
+    }
+
+    public String authorizationHeader(String method, String url, Map<String, ?> params, String nonce, long timestamp) {
+        String signature = sign(method, url, params, nonce, timestamp);
+        StringBuilder header = new StringBuilder(160 + this.encodedConsumerKey.length() + this.encodedToken.length());
+        header.append("OAuth oauth_consumer_key=\"").append(this.encodedConsumerKey)
+                .append("\", oauth_nonce=\"").append(nonce)
+                .append("\", oauth_signature=\"").append(percentEncode(signature))
+                .append("\", oauth_signature_method=\"HMAC-SHA1\", oauth_timestamp=\"").append(timestamp)
+                .append("\", oauth_token=\"").append(this.encodedToken)
+                .append("\", oauth_version=\"1.0\"");
+        return header.toString();
+    }
+
+    /**
+     * Computes the base64 HMAC-SHA1 signature of a request.
+     */
+    public String sign(String method, String url, Map<String, ?> params, String nonce, long timestamp) {
+        List<String[]> pairs = new ArrayList<>(params.size() + 6);
+        for (Map.Entry<String, ?> param : params.entrySet()) {
+            String encodedName = percentEncode(param.getKey());
+            Object value = param.getValue();
+            if (value instanceof Collection) {
+                for (Object item : (Collection<?>) value) {
+                    pairs.add(new String[]{encodedName, percentEncode(String.valueOf(item))});
+                }
+            } else {
+                pairs.add(new String[]{encodedName, percentEncode(value == null ? "" : String.valueOf(value))});
+            }
+        }
+        pairs.add(new String[]{"oauth_consumer_key", this.encodedConsumerKey});
+        pairs.add(new String[]{"oauth_nonce", percentEncode(nonce)});
+        pairs.add(new String[]{"oauth_signature_method", "HMAC-SHA1"});
+        pairs.add(new String[]{"oauth_timestamp", Long.toString(timestamp)});
+        pairs.add(new String[]{"oauth_token", this.encodedToken});
+        pairs.add(new String[]{"oauth_version", "1.0"});
+        pairs.sort(PAIR_ORDER);
+
+        int length = 0;
+        for (String[] pair : pairs) {
+            length += pair[0].length() + pair[1].length() + 2;
+        }
+        StringBuilder parameterString = new StringBuilder(length);
+        for (String[] pair : pairs) {
+            if (parameterString.length() > 0) {
+                parameterString.append('&');
+            }
+            parameterString.append(pair[0]).append('=').append(pair[1]);
+        }
+
+        StringBuilder baseString = new StringBuilder(method.length() + url.length() * 2 + length * 2);
+        baseString.append(method.toUpperCase()).append('&');
+        appendPercentEncoded(baseString, url);
+        baseString.append('&');
+        appendPercentEncoded(baseString, parameterString);
+
+        byte[] digest = this.mac.get().doFinal(baseString.toString().getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(digest);
+    }
+
+    /**
+     * Signs REST Assured requests: every query, form and request parameter is included in the signature and the
+     * resulting {@code Authorization} header is added before the request is sent.
+     */
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        Map<String, Object> params = new HashMap<>();
+        params.putAll(requestSpec.getRequestParams());
+        params.putAll(requestSpec.getQueryParams());
+        params.putAll(requestSpec.getFormParams());
+        requestSpec.removeHeader("Authorization");
+        requestSpec.header("Authorization",
+                authorizationHeader(requestSpec.getMethod(), normalizeUrl(requestSpec.getURI()), params));
+        return ctx.next(requestSpec, responseSpec);
+    }
+
+    /**
+     * Reduces a request URI to the form used in the signature base string: lower-case scheme and host, no
+     * default port and no query string.
+     */
+    public static String normalizeUrl(String uri) {
+        URI parsed = URI.create(uri);
+        String scheme = parsed.getScheme().toLowerCase();
+        int port = parsed.getPort();
+        StringBuilder url = new StringBuilder(uri.length());
+        url.append(scheme).append("://").append(parsed.getHost().toLowerCase());
+        if (port != -1 && !(port == 80 && "http".equals(scheme)) && !(port == 443 && "https".equals(scheme))) {
+            url.append(':').append(port);
+        }
+        url.append(parsed.getRawPath());
+        return url.toString();
+    }
+
+    /**
+     * RFC 3986 percent-encoding as required by OAuth 1.0a. Strings that need no escaping are returned as is.
+     */
+    public static String percentEncode(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (!isUnreserved(value.charAt(i))) {
+                StringBuilder encoded = new StringBuilder(value.length() + 16);
+                appendPercentEncoded(encoded, value);
+                return encoded.toString();
+            }
+        }
+        return value;
+    }
+
+    private static void appendPercentEncoded(StringBuilder target, CharSequence value) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (isUnreserved(c)) {
+                target.append(c);
+            } else if (c < 0x80) {
+                appendEscaped(target, c);
+            } else {
+                int end = i + 1;
+                if (Character.isHighSurrogate(c) && end < length) {
+                    end++;
+                }
+                for (byte b : value.subSequence(i, end).toString().getBytes(StandardCharsets.UTF_8)) {
+                    appendEscaped(target, b & 0xFF);
+                }
+                i = end - 1;
+            }
+        }
+    }
+
+    private static void appendEscaped(StringBuilder target, int b) {
+        target.append('%').append(HEX[b >> 4]).append(HEX[b & 0x0F]);
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    private static String nonce() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return Long.toHexString(random.nextLong() | Long.MIN_VALUE) + Long.toHexString(random.nextLong() | Long.MIN_VALUE);
+    }
+}
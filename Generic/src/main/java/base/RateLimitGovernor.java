@@ -0,0 +1,330 @@
+package base;
+
+import io.restassured.filter.Filter;
+import io.restassured.response.Response;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Client-side rate-limit governor driven by the {@code x-rate-limit-*} response headers.
+ * <p>
+ * Twitter grants each endpoint a budget of requests per fixed window (usually 15 minutes) and reports the limit,
+ * the remaining budget and the window reset time on every response. The governor keeps one token budget per
+ * endpoint, learned from those headers. Requests go out immediately while plenty of budget is left; once it
+ * drops below a tenth of the limit the remaining requests are spread evenly over the rest of the window, and
+ * when only the safety margin is left they wait for the window to reset instead of being rejected with 429.
+ * Endpoints that have not answered yet are not throttled.
+ * <p>
+ * The budgets belong to the credentials a request is signed with, so there is one governor per consumer key and
+ * access token (see {@link #forCredentials(String, String)}) and clients with different tokens do not hold each
+ * other up.
+ */
+public class RateLimitGovernor {
+
+    public static final String LIMIT_HEADER = "x-rate-limit-limit";
+    public static final String REMAINING_HEADER = "x-rate-limit-remaining";
+    public static final String RESET_HEADER = "x-rate-limit-reset";
+
+    static final long DEFAULT_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    private static final int SAFETY_MARGIN = 1;
+
+    private static final Map<String, RateLimitGovernor> GOVERNORS = new ConcurrentHashMap<>();
+    private static volatile ScheduledExecutorService scheduler;
+
+    private final LongSupplier clock;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    public RateLimitGovernor() {
+        this(System::currentTimeMillis);
+    }
+
+    RateLimitGovernor(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the governor of the given credentials, creating it on first use. All clients signing with them share
+     * it because the budgets belong to the credentials, not to a client instance.
+     */
+    public static RateLimitGovernor forCredentials(String consumerKey, String token) {
+        return GOVERNORS.computeIfAbsent(consumerKey + '\n' + token, key -> new RateLimitGovernor());
+    }
+
+    /**
+     * Reserves one request against the endpoint's budget.
+     *
+     * @param endpoint endpoint path, e.g. "/search/tweets.json"
+     * @return how many milliseconds the caller has to wait before sending the request
+     */
+    public long reserve(String endpoint) {
+        Window window = this.windows.get(endpoint);
+        return window == null ? 0L : window.reserve(this.clock.getAsLong());
+    }
+
+    /**
+     * Blocks until a request to the endpoint may be sent.
+     *
+     * @throws IllegalStateException if the thread is interrupted while waiting; the request must not be sent then
+     */
+    public void acquire(String endpoint) {
+        long delay = reserve(endpoint);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for rate-limit budget of " + endpoint, e);
+            }
+        }
+    }
+
+    /**
+     * Starts {@code request} once the endpoint's budget allows it, without blocking the caller. Cancelling the
+     * returned future cancels the request, or keeps it from being started.
+     */
+    public <T> CompletableFuture<T> whenPermitted(String endpoint, Supplier<CompletableFuture<T>> request) {
+        long delay = reserve(endpoint);
+        if (delay <= 0) {
+            return request.get();
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        scheduler().schedule(() -> {
+            if (result.isDone()) {
+                // cancelled while waiting
+                return;
+            }
+            try {
+                CompletableFuture<T> started = request.get();
+                result.whenComplete((value, error) -> {
+                    if (result.isCancelled()) {
+                        started.cancel(false);
+                    }
+                });
+                started.whenComplete((value, error) -> {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(value);
+                    }
+                });
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    /**
+     * Learns the endpoint's budget from a response. Missing or malformed headers are ignored.
+     *
+     * @param endpoint   endpoint path, e.g. "/search/tweets.json"
+     * @param statusCode HTTP status of the response; 429 marks the budget as exhausted
+     * @param limit      value of x-rate-limit-limit
+     * @param remaining  value of x-rate-limit-remaining
+     * @param reset      value of x-rate-limit-reset (epoch seconds)
+     */
+    public void update(String endpoint, int statusCode, String limit, String remaining, String reset) {
+        int parsedLimit = parseInt(limit);
+        int parsedRemaining = statusCode == 429 ? 0 : parseInt(remaining);
+        long parsedReset = parseLong(reset);
+        if (parsedLimit <= 0 || parsedRemaining < 0 || parsedReset <= 0) {
+            return;
+        }
+        this.windows.computeIfAbsent(endpoint, key -> new Window())
+                .update(parsedLimit, parsedRemaining, TimeUnit.SECONDS.toMillis(parsedReset), this.clock.getAsLong());
+    }
+
+    public void update(String endpoint, ApiResponse response) {
+        update(endpoint, response.statusCode(), response.header(LIMIT_HEADER), response.header(REMAINING_HEADER),
+                response.header(RESET_HEADER));
+    }
+
+    /**
+     * Returns the current budget of an endpoint, or null if it has not been learned yet.
+     */
+    public Budget budget(String endpoint) {
+        Window window = this.windows.get(endpoint);
+        return window == null ? null : window.budget(this.clock.getAsLong());
+    }
+
+    /**
+     * Returns the current budget of every endpoint seen so far, sorted by endpoint.
+     */
+    public Map<String, Budget> budgets() {
+        Map<String, Budget> budgets = new TreeMap<>();
+        long now = this.clock.getAsLong();
+        for (Map.Entry<String, Window> window : this.windows.entrySet()) {
+            budgets.put(window.getKey(), window.getValue().budget(now));
+        }
+        return budgets;
+    }
+
+    /**
+     * Returns a REST Assured filter that waits for budget before each request and learns from each response.
+     * The endpoint is the request path with {@code basePath} (e.g. "/1.1") removed.
+     */
+    public Filter filter(String basePath) {
+        return (requestSpec, responseSpec, ctx) -> {
+            String endpoint = endpointOf(requestSpec.getURI(), basePath);
+            acquire(endpoint);
+            Response response = ctx.next(requestSpec, responseSpec);
+            update(endpoint, response.getStatusCode(), response.getHeader(LIMIT_HEADER),
+                    response.getHeader(REMAINING_HEADER), response.getHeader(RESET_HEADER));
+            return response;
+        };
+    }
+
+    static String endpointOf(String uri, String basePath) {
+        String path = URI.create(uri).getRawPath();
+        return basePath != null && !basePath.isEmpty() && path.startsWith(basePath)
+                ? path.substring(basePath.length()) : path;
+    }
+
+    private static ScheduledExecutorService scheduler() {
+        ScheduledExecutorService executor = scheduler;
+        if (executor == null) {
+            synchronized (RateLimitGovernor.class) {
+                executor = scheduler;
+                if (executor == null) {
+                    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "rate-limit-governor");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    scheduler = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return value == null ? -1 : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return value == null ? -1L : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Snapshot of an endpoint's budget.
+     */
+    public static final class Budget {
+        private final int limit;
+        private final int remaining;
+        private final long resetAtMillis;
+
+        Budget(int limit, int remaining, long resetAtMillis) {
+            this.limit = limit;
+            this.remaining = remaining;
+            this.resetAtMillis = resetAtMillis;
+        }
+
+        public int getLimit() {
+            return this.limit;
+        }
+
+        /**
+         * Requests left in the current window, after the ones already reserved by this client.
+         */
+        public int getRemaining() {
+            return this.remaining;
+        }
+
+        public long getResetAtMillis() {
+            return this.resetAtMillis;
+        }
+
+        @Override
+        public String toString() {
+            return this.remaining + "/" + this.limit + " until " + this.resetAtMillis;
+        }
+    }
+
+    /**
+     * Budget of one endpoint in its current fixed window.
+     */
+    private static final class Window {
+        private int limit;
+        private int remaining;
+        private long resetAt;
+        private long windowMillis;
+        private long windowStart;
+        private long nextSlot;
+
+        synchronized void update(int limit, int remaining, long resetAt, long now) {
+            if (resetAt <= this.windowStart + 1000L) {
+                // a late answer from the window that ended where the one reserved ahead starts
+                return;
+            }
+            this.limit = limit;
+            if (resetAt > this.resetAt + 1000L) {
+                // the server has moved on to a new window
+                this.remaining = remaining;
+            } else {
+                this.remaining = Math.min(this.remaining, remaining);
+            }
+            this.resetAt = resetAt;
+            this.windowMillis = Math.max(this.windowMillis, resetAt - now);
+        }
+
+        synchronized long reserve(long now) {
+            if (this.resetAt <= now) {
+                startNextWindow(now);
+            }
+            long sendAt;
+            // once the budget ran out, the next window is reserved ahead and nothing may go out before it starts
+            long earliest = Math.max(now, this.windowStart);
+            int available = this.remaining - SAFETY_MARGIN;
+            if (available <= 0) {
+                sendAt = Math.max(this.resetAt, this.nextSlot);
+                startNextWindow(sendAt);
+            } else if (available > Math.max(1, this.limit / 10)) {
+                sendAt = earliest;
+            } else {
+                sendAt = Math.max(earliest, this.nextSlot);
+                this.nextSlot = sendAt + Math.max(0L, this.resetAt - sendAt) / (available + 1);
+            }
+            this.remaining--;
+            return sendAt - now;
+        }
+
+        synchronized Budget budget(long now) {
+            if (this.resetAt <= now) {
+                return new Budget(this.limit, this.limit, now + windowLength());
+            }
+            if (this.windowStart > now) {
+                return new Budget(this.limit, 0, this.windowStart);
+            }
+            return new Budget(this.limit, Math.max(0, this.remaining), this.resetAt);
+        }
+
+        private void startNextWindow(long start) {
+            this.windowStart = start;
+            this.remaining = this.limit;
+            this.resetAt = start + windowLength();
+            this.nextSlot = start;
+        }
+
+        private long windowLength() {
+            return this.windowMillis > 0 ? this.windowMillis : DEFAULT_WINDOW_MILLIS;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package base;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Merges single-item reads that arrive within a short window into one batch request, e.g. many
+ * /statuses/show.json reads into one /statuses/lookup.json.
+ * <p>
+ * The first key of a batch starts the window. The batch is sent when the window closes, or at once when it
+ * reaches {@code maxBatchSize}. Each caller's future then completes with the value for its key, or with null if
+ * the batch result does not contain the key. A key submitted again while its batch is still open shares the
+ * same future. If the batch request fails, every future in the batch fails with the same error.
+ *
+ * @param <K> key of a single read, e.g. a tweet ID
+ * @param <V> result of a single read
+ */
+public final class RequestCoalescer<K, V> {
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "request-coalescer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Function<List<K>, CompletableFuture<Map<K, V>>> batchCall;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    // guarded by this
+    private Map<K, CompletableFuture<V>> open = new LinkedHashMap<>();
+
+    /**
+     * @param windowNanos  how long the first read of a batch waits for others
+     * @param maxBatchSize most keys a batch request accepts
+     * @param batchCall    sends one batch request and returns the values it found, keyed like the request
+     */
+    public RequestCoalescer(long windowNanos, int maxBatchSize,
+                            Function<List<K>, CompletableFuture<Map<K, V>>> batchCall) {
+        if (windowNanos <= 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("window and batch size must be positive");
+        }
+        this.windowNanos = windowNanos;
+        this.maxBatchSize = maxBatchSize;
+        this.batchCall = batchCall;
+    }
+
+    /**
+     * Adds {@code key} to the open batch.
+     *
+     * @return a future completed with the value read for {@code key}, or null if there is none
+     */
+    public CompletableFuture<V> submit(K key) {
+        this.requests.increment();
+        Map<K, CompletableFuture<V>> full = null;
+        CompletableFuture<V> result;
+        synchronized (this) {
+            result = this.open.get(key);
+            if (result != null) {
+                return result;
+            }
+            result = new CompletableFuture<>();
+            this.open.put(key, result);
+            if (this.open.size() == 1) {
+                Map<K, CompletableFuture<V>> batch = this.open;
+                SCHEDULER.schedule(() -> close(batch), this.windowNanos, TimeUnit.NANOSECONDS);
+            }
+            if (this.open.size() >= this.maxBatchSize) {
+                full = this.open;
+                this.open = new LinkedHashMap<>();
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+        return result;
+    }
+
+    private void close(Map<K, CompletableFuture<V>> batch) {
+        synchronized (this) {
+            if (this.open != batch) {
+                // already sent because it filled up
+                return;
+            }
+            this.open = new LinkedHashMap<>();
+        }
+        send(batch);
+    }
+
+    private void send(Map<K, CompletableFuture<V>> batch) {
+        this.batches.increment();
+        CompletableFuture<Map<K, V>> call;
+        try {
+            call = this.batchCall.apply(new ArrayList<>(batch.keySet()));
+        } catch (RuntimeException e) {
+            call = new CompletableFuture<>();
+            call.completeExceptionally(e);
+        }
+        call.whenComplete((values, error) -> {
+            for (Map.Entry<K, CompletableFuture<V>> read : batch.entrySet()) {
+                if (error != null) {
+                    read.getValue().completeExceptionally(error);
+                } else {
+                    read.getValue().complete(values.get(read.getKey()));
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads submitted, including those that shared a key with one already in the batch.
+     */
+    public long getRequests() {
+        return this.requests.sum();
+    }
+
+    /**
+     * Batch requests sent.
+     */
+    public long getBatches() {
+        return this.batches.sum();
+    }
+}
@@ -0,0 +1,287 @@
+package base;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.filter.OrderedFilter;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Opt-in cache of successful GET responses of read-only endpoints, shared by the blocking and asynchronous
+ * client methods. It is enabled by {@link ApiConfig#getCacheMaxEntries()}, and a client chooses which of its
+ * endpoints may be cached.
+ * <p>
+ * Responses are keyed by the credentials the request is signed with, URL and parameters, since what a read
+ * returns depends on who asks (a protected account, the caller's own lists, whether they liked a tweet). Clients
+ * signing with other credentials never see each other's responses. A cached response is served without a request until
+ * {@link ApiConfig#getCacheTtlMillis()} has passed. A stale response that came with an {@code ETag} or
+ * {@code Last-Modified} header is kept and revalidated with a conditional request. On a 304 it is served again
+ * and its TTL restarts. Other responses are dropped when they go stale. Size-based eviction follows Caffeine's
+ * W-TinyLFU policy, which keeps the frequently read entries over the recently read ones.
+ * <p>
+ * Identical requests that miss while one is already on its way wait for that one instead of sending their own.
+ * A successful POST through the client empties the cache, since a write can change any read.
+ */
+public final class ResponseCache {
+
+    private static final Map<List<Object>, ResponseCache> SHARED = new ConcurrentHashMap<>();
+
+    private final long ttlNanos;
+    private final Ticker ticker;
+    private final Cache<String, Entry> entries;
+    private final Map<String, CompletableFuture<ApiResponse>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final LongAdder revalidated = new LongAdder();
+
+    ResponseCache(int maxEntries, long ttlMillis, Ticker ticker) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.ticker = ticker;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .ticker(ticker)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        return entry.revalidatable() ? Long.MAX_VALUE : ResponseCache.this.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, entry, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Returns the process-wide cache, or null if {@link ApiConfig#getCacheMaxEntries()} is 0.
+     */
+    public static ResponseCache shared() {
+        return forConfig(ApiConfig.get());
+    }
+
+    /**
+     * Returns the cache for {@code config}'s cache settings, or null if they turn it off. It is created on first
+     * use and shared by every configuration with the same settings.
+     */
+    public static ResponseCache forConfig(ApiConfig config) {
+        if (config.getCacheMaxEntries() == 0) {
+            return null;
+        }
+        return SHARED.computeIfAbsent(Arrays.asList(config.getCacheMaxEntries(), config.getCacheTtlMillis()),
+                key -> new ResponseCache(config.getCacheMaxEntries(), config.getCacheTtlMillis(),
+                        Ticker.systemTicker()));
+    }
+
+    /**
+     * Names the credentials requests are signed with, for the {@code credentials} argument of the other methods.
+     */
+    public static String credentials(String consumerKey, String token) {
+        return consumerKey + '\n' + token;
+    }
+
+    /**
+     * Serves a GET from the cache, or sends it with {@code fetch} and caches a 200 response.
+     *
+     * @param credentials see {@link #credentials(String, String)}
+     * @param url         absolute URL without a query string
+     * @param params      request parameters
+     * @param fetch       sends the request with the given extra headers (the conditional ones when revalidating)
+     *                    and returns its response
+     * @return the cached or fetched response
+     */
+    public CompletableFuture<ApiResponse> get(String credentials, String url, Map<String, ?> params,
+                                              Function<Map<String, String>, CompletableFuture<ApiResponse>> fetch) {
+        String key = key(credentials, url, params);
+        Entry cached = this.entries.getIfPresent(key);
+        if (cached != null && this.ticker.read() - cached.storedAt < this.ttlNanos) {
+            this.hits.increment();
+            return CompletableFuture.completedFuture(cached.response);
+        }
+        CompletableFuture<ApiResponse> result = new CompletableFuture<>();
+        CompletableFuture<ApiResponse> pending = this.inFlight.putIfAbsent(key, result);
+        if (pending != null) {
+            this.collapsed.increment();
+            return pending;
+        }
+        this.misses.increment();
+        CompletableFuture<ApiResponse> response;
+        try {
+            response = fetch.apply(cached == null ? Collections.emptyMap() : cached.conditionalHeaders());
+        } catch (RuntimeException e) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(e);
+        }
+        response.whenComplete((fetched, error) -> {
+            this.inFlight.remove(key, result);
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            if (fetched.statusCode() == 304 && cached != null) {
+                this.revalidated.increment();
+                this.entries.put(key, new Entry(cached.response, this.ticker.read()));
+                result.complete(cached.response);
+                return;
+            }
+            if (fetched.statusCode() == 200) {
+                this.entries.put(key, new Entry(fetched, this.ticker.read()));
+            } else {
+                this.entries.invalidate(key);
+            }
+            result.complete(fetched);
+        });
+        return result;
+    }
+
+    /**
+     * Drops every cached response.
+     */
+    public void invalidateAll() {
+        this.entries.invalidateAll();
+    }
+
+    /**
+     * REST Assured filter that serves GETs of {@code cacheableEndpoints} from the cache and empties it after a
+     * successful POST. It runs before the rate-limit governor and the OAuth signer, so a hit costs neither.
+     *
+     * @param credentials        see {@link #credentials(String, String)}; the signer added after this filter must
+     *                           use the same
+     * @param basePath           path of the API base URL (e.g. "/1.1"), stripped from request paths to name
+     *                           endpoints
+     * @param cacheableEndpoints endpoints whose responses may be cached, e.g. "/statuses/show.json"
+     */
+    Filter filter(String credentials, String basePath, Set<String> cacheableEndpoints) {
+        return new OrderedFilter() {
+            @Override
+            public int getOrder() {
+                return HIGHEST_PRECEDENCE;
+            }
+
+            @Override
+            public Response filter(FilterableRequestSpecification requestSpec,
+                                   FilterableResponseSpecification responseSpec, FilterContext ctx) {
+                String method = requestSpec.getMethod();
+                if (!"GET".equalsIgnoreCase(method)) {
+                    Response response = ctx.next(requestSpec, responseSpec);
+                    if (response.getStatusCode() < 400) {
+                        invalidateAll();
+                    }
+                    return response;
+                }
+                String url = requestSpec.getURI();
+                if (!cacheableEndpoints.contains(RateLimitGovernor.endpointOf(url, basePath))) {
+                    return ctx.next(requestSpec, responseSpec);
+                }
+                int query = url.indexOf('?');
+                CompletableFuture<ApiResponse> response = get(credentials, query < 0 ? url : url.substring(0, query),
+                        Cassette.requestParams(requestSpec), conditionalHeaders -> {
+                            requestSpec.headers(conditionalHeaders);
+                            return CompletableFuture.completedFuture(
+                                    ApiResponse.of(ctx.next(requestSpec, responseSpec)));
+                        });
+                try {
+                    return response.join().toRestAssured();
+                } catch (CompletionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+        };
+    }
+
+    public int size() {
+        return (int) this.entries.estimatedSize();
+    }
+
+    /**
+     * Requests served from the cache without contacting the server.
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * Requests sent to the server, revalidations included.
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * Requests that waited for an identical one already on its way instead of being sent.
+     */
+    public long getCollapsed() {
+        return this.collapsed.sum();
+    }
+
+    /**
+     * Stale responses the server confirmed with a 304.
+     */
+    public long getRevalidated() {
+        return this.revalidated.sum();
+    }
+
+    /**
+     * Method-less key: only GETs are cached. The host is part of it, unlike the cassette's, since clients of
+     * different deployments share the cache.
+     */
+    static String key(String credentials, String url, Map<String, ?> params) {
+        return credentials + ' ' + OAuthSigner.normalizeUrl(url) + '?' + AsyncTransport.encode(new TreeMap<>(params));
+    }
+
+    private static final class Entry {
+        final ApiResponse response;
+        final long storedAt;
+
+        Entry(ApiResponse response, long storedAt) {
+            this.response = response;
+            this.storedAt = storedAt;
+        }
+
+        boolean revalidatable() {
+            return this.response.header("ETag") != null || this.response.header("Last-Modified") != null;
+        }
+
+        Map<String, String> conditionalHeaders() {
+            Map<String, String> headers = new HashMap<>();
+            String etag = this.response.header("ETag");
+            if (etag != null) {
+                headers.put("If-None-Match", etag);
+            }
+            String lastModified = this.response.header("Last-Modified");
+            if (lastModified != null) {
+                headers.put("If-Modified-Since", lastModified);
+            }
+            return headers;
+        }
+    }
+}
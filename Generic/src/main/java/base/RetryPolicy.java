@@ -0,0 +1,361 @@
+package base;
+
+import io.restassured.response.Response;
+
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Retries transient failures: 429, 500, 502, 503, 504 and I/O errors such as connection resets and timeouts.
+ * <p>
+ * Only idempotent methods are retried by default, except when the request cannot have reached the server (a
+ * refused connection) or the server says so explicitly (429). Delays grow exponentially from
+ * {@link ApiConfig#getRetryBaseDelayMillis()} with full jitter, and {@code Retry-After} or
+ * {@code x-rate-limit-reset} take precedence when present. A server-requested wait longer than
+ * {@link ApiConfig#getRetryMaxDelayMillis()} is not waited for.
+ * <p>
+ * Retries are also limited by a budget shared by every request: each first attempt earns
+ * {@link ApiConfig#getRetryBudgetPercent()} percent of a retry and each retry spends a whole one, so an outage
+ * causes a bounded amount of extra traffic instead of a retry storm.
+ */
+public class RetryPolicy {
+
+    private static final int MAX_BUDGET = 10 * 100;
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME;
+
+    private static final Map<List<Object>, RetryPolicy> SHARED = new ConcurrentHashMap<>();
+
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final int budgetPercent;
+    private final boolean retryNonIdempotent;
+    private final LongSupplier clock;
+    private final AtomicLong budget;
+    private final AtomicLong attempts = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong giveUps = new AtomicLong();
+    private volatile ScheduledExecutorService scheduler;
+
+    public RetryPolicy(int maxRetries, long baseDelayMillis, long maxDelayMillis, int budgetPercent) {
+        this(maxRetries, baseDelayMillis, maxDelayMillis, budgetPercent, false, System::currentTimeMillis,
+                new AtomicLong(MAX_BUDGET));
+    }
+
+    RetryPolicy(int maxRetries, long baseDelayMillis, long maxDelayMillis, int budgetPercent,
+                boolean retryNonIdempotent, LongSupplier clock, AtomicLong budget) {
+        this.maxRetries = maxRetries;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.budgetPercent = budgetPercent;
+        this.retryNonIdempotent = retryNonIdempotent;
+        this.clock = clock;
+        this.budget = budget;
+    }
+
+    public RetryPolicy(ApiConfig config) {
+        this(config.getMaxRetries(), config.getRetryBaseDelayMillis(), config.getRetryMaxDelayMillis(),
+                config.getRetryBudgetPercent());
+    }
+
+    /**
+     * Returns the process-wide policy, created on first use from {@link ApiConfig#get()}. Sharing it means
+     * every client draws on the same retry budget.
+     */
+    public static RetryPolicy shared() {
+        return forConfig(ApiConfig.get());
+    }
+
+    /**
+     * Returns the policy for {@code config}'s retry settings, created on first use and shared by every
+     * configuration with the same settings.
+     */
+    public static RetryPolicy forConfig(ApiConfig config) {
+        return SHARED.computeIfAbsent(Arrays.asList(config.getMaxRetries(), config.getRetryBaseDelayMillis(),
+                config.getRetryMaxDelayMillis(), config.getRetryBudgetPercent()), key -> new RetryPolicy(config));
+    }
+
+    /**
+     * Returns a policy that also retries non-idempotent requests such as POST. Counters are separate, the retry
+     * budget is the same.
+     */
+    public RetryPolicy retryingNonIdempotent() {
+        return new RetryPolicy(this.maxRetries, this.baseDelayMillis, this.maxDelayMillis, this.budgetPercent,
+                true, this.clock, this.budget);
+    }
+
+    /**
+     * Sends a REST Assured request, retrying it while the failure is transient. {@code call} must build a new
+     * request each time it is invoked.
+     *
+     * @param method HTTP method of the request, used to decide whether it may be repeated
+     * @param call   sends the request
+     * @return the first non-retryable response, or the last response once retries are exhausted
+     */
+    public Response execute(String method, Supplier<Response> call) {
+        earn();
+        for (int retry = 0; ; retry++) {
+            this.attempts.incrementAndGet();
+            long delay;
+            try {
+                Response response = call.get();
+                delay = delayAfter(method, response.getStatusCode(), response.getHeader("Retry-After"),
+                        response.getHeader(RateLimitGovernor.RESET_HEADER), retry);
+                if (delay < 0) {
+                    return response;
+                }
+            } catch (Exception e) {
+                // REST Assured rethrows I/O errors unchecked, hence Exception rather than IOException
+                delay = delayAfter(method, e, retry);
+                if (delay < 0) {
+                    throw e;
+                }
+            }
+            sleep(delay);
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #execute(String, Supplier)}: retries are scheduled instead of slept for.
+     * Cancelling the returned future cancels the attempt in flight and any retry not yet started.
+     */
+    public CompletableFuture<ApiResponse> executeAsync(String method, Supplier<CompletableFuture<ApiResponse>> call) {
+        earn();
+        CompletableFuture<ApiResponse> result = new CompletableFuture<>();
+        attemptAsync(method, call, 0, result);
+        return result;
+    }
+
+    private void attemptAsync(String method, Supplier<CompletableFuture<ApiResponse>> call, int retry,
+                              CompletableFuture<ApiResponse> result) {
+        if (result.isDone()) {
+            // cancelled before this attempt was due
+            return;
+        }
+        this.attempts.incrementAndGet();
+        CompletableFuture<ApiResponse> attempt;
+        try {
+            attempt = call.get();
+        } catch (RuntimeException e) {
+            attempt = new CompletableFuture<>();
+            attempt.completeExceptionally(e);
+        }
+        CompletableFuture<ApiResponse> started = attempt;
+        result.whenComplete((response, error) -> {
+            if (result.isCancelled()) {
+                started.cancel(true);
+            }
+        });
+        attempt.whenComplete((response, error) -> {
+            if (result.isDone()) {
+                // cancelled meanwhile; a retry would only spend budget on an answer nobody waits for
+                return;
+            }
+            long delay = error != null
+                    ? delayAfter(method, error, retry)
+                    : delayAfter(method, response.statusCode(), response.header("Retry-After"),
+                    response.header(RateLimitGovernor.RESET_HEADER), retry);
+            if (delay < 0) {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(response);
+                }
+            } else {
+                scheduler().schedule(() -> attemptAsync(method, call, retry + 1, result), delay,
+                        TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    /**
+     * Returns how long to wait before retrying a response, or -1 if it must not be retried.
+     */
+    long delayAfter(String method, int statusCode, String retryAfter, String rateLimitReset, int retry) {
+        boolean retryable;
+        long requested = -1L;
+        if (statusCode == 429) {
+            retryable = true;
+            requested = serverDelay(retryAfter, rateLimitReset);
+        } else if (statusCode == 500 || statusCode == 502 || statusCode == 503 || statusCode == 504) {
+            retryable = mayRepeat(method);
+            requested = serverDelay(retryAfter, null);
+        } else {
+            return -1L;
+        }
+        return retryable ? claimRetry(retry, requested) : giveUp();
+    }
+
+    /**
+     * Returns how long to wait before retrying after an exception, or -1 if it must not be retried.
+     */
+    long delayAfter(String method, Throwable error, int retry) {
+        IOException cause = ioCause(error);
+        if (cause == null || cause instanceof UnknownHostException || cause instanceof SSLException) {
+            return -1L;
+        }
+        // a refused connection never reached the server, so even a POST can be repeated
+        boolean retryable = cause instanceof ConnectException || mayRepeat(method);
+        return retryable ? claimRetry(retry, -1L) : giveUp();
+    }
+
+    private long claimRetry(int retry, long requestedDelay) {
+        if (retry >= this.maxRetries || requestedDelay > this.maxDelayMillis || !spend()) {
+            return giveUp();
+        }
+        this.retries.incrementAndGet();
+        if (requestedDelay >= 0) {
+            return requestedDelay;
+        }
+        long ceiling = Math.min(this.maxDelayMillis, this.baseDelayMillis << Math.min(retry, 30));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private long giveUp() {
+        this.giveUps.incrementAndGet();
+        return -1L;
+    }
+
+    private void earn() {
+        this.budget.getAndUpdate(tokens -> Math.min(MAX_BUDGET, tokens + this.budgetPercent));
+    }
+
+    private boolean spend() {
+        long tokens;
+        do {
+            tokens = this.budget.get();
+            if (tokens < 100) {
+                return false;
+            }
+        } while (!this.budget.compareAndSet(tokens, tokens - 100));
+        return true;
+    }
+
+    /**
+     * Milliseconds the server asked us to wait, from Retry-After (seconds or an HTTP date) or else from the
+     * rate-limit reset time (epoch seconds); -1 if it did not say.
+     */
+    private long serverDelay(String retryAfter, String rateLimitReset) {
+        long now = this.clock.getAsLong();
+        if (retryAfter != null) {
+            try {
+                return Math.max(0L, TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim())));
+            } catch (NumberFormatException e) {
+                try {
+                    return Math.max(0L, ZonedDateTime.parse(retryAfter.trim(), HTTP_DATE).toInstant().toEpochMilli() - now);
+                } catch (DateTimeParseException ignored) {
+                    // fall through to the rate-limit reset
+                }
+            }
+        }
+        if (rateLimitReset != null) {
+            try {
+                return Math.max(0L, TimeUnit.SECONDS.toMillis(Long.parseLong(rateLimitReset.trim())) - now);
+            } catch (NumberFormatException ignored) {
+                // no usable hint
+            }
+        }
+        return -1L;
+    }
+
+    private boolean mayRepeat(String method) {
+        if (this.retryNonIdempotent) {
+            return true;
+        }
+        switch (method.toUpperCase()) {
+            case "GET":
+            case "HEAD":
+            case "OPTIONS":
+            case "PUT":
+            case "DELETE":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static IOException ioCause(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return (IOException) cause;
+            }
+        }
+        return null;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry", e);
+        }
+    }
+
+    private ScheduledExecutorService scheduler() {
+        ScheduledExecutorService executor = this.scheduler;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.scheduler;
+                if (executor == null) {
+                    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "retry-scheduler");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    this.scheduler = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Requests sent, including retries.
+     */
+    public long getAttempts() {
+        return this.attempts.get();
+    }
+
+    public long getRetries() {
+        return this.retries.get();
+    }
+
+    /**
+     * Transient failures that were returned to the caller because retries, the retry budget or the acceptable
+     * wait ran out, or because the request was not safe to repeat.
+     */
+    public long getGiveUps() {
+        return this.giveUps.get();
+    }
+
+    /**
+     * Retries currently available in the shared budget.
+     */
+    public double getBudget() {
+        return this.budget.get() / 100.0;
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{attempts=" + getAttempts() + ", retries=" + getRetries() + ", giveUps=" + getGiveUps()
+                + ", budget=" + getBudget() + "}";
+    }
+}
@@ -0,0 +1,211 @@
+package base;
+
+import org.junit.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+public class ApiConfigTest {
+
+    private File secretsFile(String content) throws IOException {
+        File file = File.createTempFile("secret", ".properties");
+        file.deleteOnExit();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(content);
+        }
+        return file;
+    }
+
+    /**
+     * This test verifies that environment variables override the file and system properties override both.
+     */
+    @Test
+    public void testPrecedenceIsFileThenEnvironmentThenSystemProperties() throws IOException {
+        File file = secretsFile("apiKey=fileKey\napiSecretKey=fileSecret\naccessToken=fileToken\n"
+                + "accessTokenSecret=fileTokenSecret\nmaxConnectionsPerRoute=5\n");
+        Properties systemProperties = new Properties();
+        systemProperties.setProperty("twitter.secretsFile", file.getPath());
+        systemProperties.setProperty("twitter.apiKey", "propertyKey");
+        Map<String, String> environment = new HashMap<>();
+        environment.put("TWITTER_API_KEY", "environmentKey");
+        environment.put("TWITTER_ACCESS_TOKEN", "environmentToken");
+
+        ApiConfig config = ApiConfig.load(environment, systemProperties);
+
+        Assert.assertEquals("propertyKey", config.getApiKey());
+        Assert.assertEquals("fileSecret", config.getApiSecretKey());
+        Assert.assertEquals("environmentToken", config.getAccessToken());
+        Assert.assertEquals(5, config.getMaxConnectionsPerRoute());
+        Assert.assertEquals(ApiConfig.DEFAULT_BASE_URL, config.getBaseUrl());
+    }
+
+    /**
+     * This test verifies that missing credentials fail fast instead of producing a client with null keys.
+     */
+    @Test
+    public void testMissingCredentialsFailFast() throws IOException {
+        Properties systemProperties = new Properties();
+        systemProperties.setProperty("twitter.secretsFile", secretsFile("apiKey=onlyKey\n").getPath());
+        try {
+            ApiConfig.load(Collections.emptyMap(), systemProperties);
+            Assert.fail("Expected the incomplete configuration to be rejected");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("apiSecretKey is missing"));
+        }
+    }
+
+    /**
+     * This test verifies that pointing at a secrets file that does not exist is reported.
+     */
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testMissingSecretsFileFailsFast() {
+        Properties systemProperties = new Properties();
+        systemProperties.setProperty("twitter.secretsFile", "does/not/exist.properties");
+        ApiConfig.load(Collections.emptyMap(), systemProperties);
+    }
+
+    /**
+     * This test verifies that a different base URL can be derived without reloading anything.
+     */
+    @Test
+    public void testWithBaseUrl() throws IOException {
+        Properties systemProperties = new Properties();
+        systemProperties.setProperty("twitter.secretsFile", secretsFile(
+                "apiKey=a\napiSecretKey=b\naccessToken=c\naccessTokenSecret=d\n").getPath());
+        ApiConfig config = ApiConfig.load(Collections.emptyMap(), systemProperties);
+        ApiConfig local = config.withBaseUrl("http://localhost:8080/1.1");
+        Assert.assertEquals("http://localhost:8080/1.1", local.getBaseUrl());
+        Assert.assertEquals(config.getApiKey(), local.getApiKey());
+    }
+
+    /**
+     * This test verifies that a cassette mode needs a cassette file and that unknown modes are rejected.
+     */
+    @Test
+    public void testCassetteSettings() throws IOException {
+        Properties systemProperties = new Properties();
+        systemProperties.setProperty("twitter.secretsFile", secretsFile(
+                "apiKey=a\napiSecretKey=b\naccessToken=c\naccessTokenSecret=d\n").getPath());
+        Assert.assertEquals(Cassette.Mode.OFF, ApiConfig.load(Collections.emptyMap(), systemProperties)
+                .getCassetteMode());
+        systemProperties.setProperty("twitter.cassetteMode", "Replay");
+        try {
+            ApiConfig.load(Collections.emptyMap(), systemProperties);
+            Assert.fail("Expected replay without a cassette file to be rejected");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("cassetteFile is required"));
+        }
+        systemProperties.setProperty("twitter.cassetteFile", "target/suite.cassette");
+        Assert.assertEquals(Cassette.Mode.REPLAY, ApiConfig.load(Collections.emptyMap(), systemProperties)
+                .getCassetteMode());
+        systemProperties.setProperty("twitter.cassetteMode", "rewind");
+        try {
+            ApiConfig.load(Collections.emptyMap(), systemProperties);
+            Assert.fail("Expected an unknown cassette mode to be rejected");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("cassetteMode must be off, record or replay"));
+        }
+    }
+
+    /**
+     * This test verifies that the response cache is off unless given a size, and that its settings are validated.
+     */
+    @Test
+    public void testCacheSettings() throws IOException {
+        Properties systemProperties = new Properties();
+        systemProperties.setProperty("twitter.secretsFile", secretsFile(
+                "apiKey=a\napiSecretKey=b\naccessToken=c\naccessTokenSecret=d\ncacheMaxEntries=500\n").getPath());
+        ApiConfig config = ApiConfig.load(Collections.singletonMap("TWITTER_CACHE_TTL_MILLIS", "5000"),
+                systemProperties);
+        Assert.assertEquals(500, config.getCacheMaxEntries());
+        Assert.assertEquals(5000, config.getCacheTtlMillis());
+        // three days, more than fits in an int
+        Assert.assertEquals(259_200_000_000L, ApiConfig.load(Collections.singletonMap("TWITTER_CACHE_TTL_MILLIS",
+                "259200000000"), systemProperties).getCacheTtlMillis());
+        systemProperties.setProperty("twitter.cacheMaxEntries", "-1");
+        try {
+            ApiConfig.load(Collections.emptyMap(), systemProperties);
+            Assert.fail("Expected a negative cache size to be rejected");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("cacheMaxEntries must not be negative"));
+        }
+        systemProperties.setProperty("twitter.cacheMaxEntries", "0");
+        Assert.assertEquals(0, ApiConfig.load(Collections.emptyMap(), systemProperties).getCacheMaxEntries());
+    }
+
+    /**
+     * This test verifies that circuit breakers are on and bulkheads off by default, and that their settings are
+     * validated.
+     */
+    @Test
+    public void testCircuitBreakerAndBulkheadSettings() throws IOException {
+        Properties systemProperties = new Properties();
+        systemProperties.setProperty("twitter.secretsFile", secretsFile(
+                "apiKey=a\napiSecretKey=b\naccessToken=c\naccessTokenSecret=d\n").getPath());
+        ApiConfig defaults = ApiConfig.load(Collections.emptyMap(), systemProperties);
+        Assert.assertEquals(50, defaults.getCircuitFailureRatePercent());
+        Assert.assertEquals(0, defaults.getBulkheadMaxConcurrentCalls());
+
+        ApiConfig config = ApiConfig.load(Collections.singletonMap("TWITTER_BULKHEAD_MAX_CONCURRENT_CALLS", "8"),
+                systemProperties);
+        Assert.assertEquals(8, config.getBulkheadMaxConcurrentCalls());
+        systemProperties.setProperty("twitter.circuitSlowCallRatePercent", "101");
+        try {
+            ApiConfig.load(Collections.emptyMap(), systemProperties);
+            Assert.fail("Expected a rate above 100 percent to be rejected");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("must be between 0 and 100"));
+        }
+    }
+
+    /**
+     * This test verifies that hedging is off unless given a percentile, and that its settings are validated.
+     */
+    @Test
+    public void testHedgingSettings() throws IOException {
+        Properties systemProperties = new Properties();
+        systemProperties.setProperty("twitter.secretsFile", secretsFile(
+                "apiKey=a\napiSecretKey=b\naccessToken=c\naccessTokenSecret=d\nhedgePercentile=95\n").getPath());
+        ApiConfig config = ApiConfig.load(Collections.singletonMap("TWITTER_HEDGE_BUDGET_PERCENT", "2"),
+                systemProperties);
+        Assert.assertEquals(95, config.getHedgePercentile());
+        Assert.assertEquals(2, config.getHedgeBudgetPercent());
+        Assert.assertEquals(50, config.getHedgeMinDelayMillis());
+        systemProperties.setProperty("twitter.hedgePercentile", "100");
+        try {
+            ApiConfig.load(Collections.emptyMap(), systemProperties);
+            Assert.fail("Expected a hedge percentile of 100 to be rejected");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("hedgePercentile must be between 0 and 99"));
+        }
+        systemProperties.setProperty("twitter.hedgePercentile", "0");
+        Assert.assertEquals(0, ApiConfig.load(Collections.emptyMap(), systemProperties).getHedgePercentile());
+    }
+
+    /**
+     * This test verifies that a configuration's components are shared with configurations that have the same
+     * settings for them, and not with one whose settings differ.
+     */
+    @Test
+    public void testComponentsAreSharedOnlyBetweenEqualSettings() throws IOException {
+        Properties systemProperties = new Properties();
+        systemProperties.setProperty("twitter.secretsFile", secretsFile(
+                "apiKey=a\napiSecretKey=b\naccessToken=c\naccessTokenSecret=d\ncacheMaxEntries=10\n").getPath());
+        ApiConfig config = ApiConfig.load(Collections.emptyMap(), systemProperties);
+        ApiConfig local = config.withBaseUrl("http://localhost:8080/1.1");
+        Assert.assertSame(RetryPolicy.forConfig(config), RetryPolicy.forConfig(local));
+        Assert.assertSame(ResponseCache.forConfig(config), ResponseCache.forConfig(local));
+
+        ApiConfig other = ApiConfig.load(Collections.singletonMap("TWITTER_MAX_RETRIES", "1"), systemProperties);
+        Assert.assertNotSame(RetryPolicy.forConfig(config), RetryPolicy.forConfig(other));
+        Assert.assertSame(ResponseCache.forConfig(config), ResponseCache.forConfig(other));
+        systemProperties.setProperty("twitter.cacheMaxEntries", "0");
+        Assert.assertNull(ResponseCache.forConfig(ApiConfig.load(Collections.emptyMap(), systemProperties)));
+    }
+}
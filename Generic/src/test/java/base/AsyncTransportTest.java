@@ -0,0 +1,59 @@
+package base;
+
+import org.junit.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class AsyncTransportTest {
+
+    private static final String BODY = "{\"statuses\":[{\"id_str\":\"1307711467387596801\",\"text\":\"Hey\"}]}";
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] body, boolean zlibWrapped) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, !zlibWrapped);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater)) {
+            out.write(body);
+        } finally {
+            deflater.end();
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * This test verifies that gzip bodies and both zlib-wrapped and raw deflate bodies are decoded, and that
+     * several encodings are undone in reverse order.
+     */
+    @Test
+    public void testCompressedBodiesAreDecoded() throws IOException {
+        byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+        Assert.assertArrayEquals(body, AsyncTransport.decode(gzip(body), "gzip"));
+        Assert.assertArrayEquals(body, AsyncTransport.decode(gzip(body), "X-GZIP"));
+        Assert.assertArrayEquals(body, AsyncTransport.decode(deflate(body, true), "deflate"));
+        Assert.assertArrayEquals(body, AsyncTransport.decode(deflate(body, false), "deflate"));
+        Assert.assertArrayEquals(body, AsyncTransport.decode(gzip(deflate(body, true)), "deflate, gzip"));
+        Assert.assertArrayEquals(body, AsyncTransport.decode(body, "identity"));
+    }
+
+    /**
+     * This test verifies that an encoding the transport did not ask for is reported instead of being passed on
+     * as if it were plain text.
+     */
+    @Test(expectedExceptions = IOException.class)
+    public void testUnknownEncodingIsRejected() throws IOException {
+        AsyncTransport.decode(BODY.getBytes(StandardCharsets.UTF_8), "br");
+    }
+}
@@ -0,0 +1,107 @@
+package base;
+
+import org.junit.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CassetteTest {
+
+    private static final String URL = "https://api.twitter.com/1.1/statuses/update.json";
+
+    private static ApiResponse response(int status, String body) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", Collections.singletonList("application/json;charset=utf-8"));
+        headers.put("Set-Cookie", Collections.singletonList("guest_id=v1%3A1"));
+        return new ApiResponse(status, "HTTP/1.1 " + status + " X", headers, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, Object> params(String... namesAndValues) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            params.put(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return params;
+    }
+
+    /**
+     * This test verifies that repeated requests replay their recorded responses in order, the last one being
+     * repeated once they run out, and that parameter order and host do not matter.
+     */
+    @Test
+    public void testRepeatedRequestsReplayInOrder() throws IOException {
+        Path file = Files.createTempFile("cassette", ".bin");
+        try (Cassette recording = new Cassette(file, Cassette.Mode.RECORD)) {
+            Map<String, Object> params = params("status", "Hello", "trim_user", "true");
+            recording.record("POST", URL, params, null, response(200, "{\"id\":1}"));
+            recording.record("POST", URL, params, null, response(403, "{\"errors\":[{\"code\":187}]}"));
+            recording.record("GET", "https://api.twitter.com/1.1/statuses/show.json", params("id", "1"), null,
+                    response(200, "{\"id\":1}"));
+            Assert.assertEquals(3, recording.size());
+        }
+        Cassette replay = new Cassette(file, Cassette.Mode.REPLAY);
+        Assert.assertEquals(3, replay.size());
+        Map<String, Object> reordered = params("trim_user", "true", "status", "Hello");
+        String standIn = "http://127.0.0.1:8089/1.1/statuses/update.json";
+        ApiResponse first = replay.replay("POST", standIn, reordered);
+        Assert.assertEquals(200, first.statusCode());
+        Assert.assertEquals("{\"id\":1}", first.asString());
+        Assert.assertEquals("HTTP/1.1 200 X", first.statusLine());
+        Assert.assertEquals(403, replay.replay("POST", URL, reordered).statusCode());
+        Assert.assertEquals(403, replay.replay("POST", URL, reordered).statusCode());
+        Assert.assertEquals(200, replay.replay("GET", "https://api.twitter.com/1.1/statuses/show.json",
+                params("id", "1")).statusCode());
+    }
+
+    /**
+     * This test verifies that session cookies are not recorded while the other headers are, and that a request
+     * that was never recorded fails.
+     */
+    @Test
+    public void testHeadersAndMisses() throws IOException {
+        Path file = Files.createTempFile("cassette", ".bin");
+        try (Cassette recording = new Cassette(file, Cassette.Mode.RECORD)) {
+            recording.record("GET", URL, params("ids", "1"), "OAuth oauth_consumer_key=\"k\", oauth_nonce=\"n1\", "
+                    + "oauth_signature=\"s%3D\", oauth_timestamp=\"1600000000\"", response(200, "[]"));
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        String content = new String(bytes, StandardCharsets.ISO_8859_1);
+        Assert.assertFalse(content.contains("1600000000"));
+        Assert.assertFalse(content.contains("n1"));
+        Assert.assertTrue(content.contains("oauth_consumer_key=\"k\""));
+
+        Cassette replay = new Cassette(file, Cassette.Mode.REPLAY);
+        ApiResponse response = replay.replay("GET", URL, params("ids", "1"));
+        Assert.assertNull(response.header("Set-Cookie"));
+        Assert.assertEquals("application/json;charset=utf-8", response.header("content-type"));
+        try {
+            replay.replay("GET", URL, params("ids", "2"));
+            Assert.fail("An unrecorded request must not be answered");
+        } catch (IllegalStateException expected) {
+            Assert.assertTrue(expected.getMessage().contains("GET /1.1/statuses/update.json?ids=2"));
+        }
+    }
+
+    /**
+     * This test verifies that an unfinished recording is rejected for replay instead of being misread.
+     */
+    @Test
+    public void testUnclosedRecordingIsRejected() throws IOException {
+        Path file = Files.createTempFile("cassette", ".bin");
+        Files.write(file, Arrays.copyOf(new byte[]{0x54, 0x57, 0x43, 0x41, 0, 0, 0, 1}, 40));
+        try {
+            new Cassette(file, Cassette.Mode.REPLAY);
+            Assert.fail("An unfinished cassette must be rejected");
+        } catch (IOException expected) {
+            Assert.assertTrue(expected.getMessage().contains("not closed"));
+        }
+    }
+}
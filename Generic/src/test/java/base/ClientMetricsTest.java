@@ -0,0 +1,86 @@
+package base;
+
+import org.junit.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class ClientMetricsTest {
+
+    /**
+     * This test verifies that latencies, status codes, bytes, failures and retries are kept per endpoint and that
+     * the percentiles come from the recorded distribution.
+     */
+    @Test
+    public void testSnapshotPerEndpoint() {
+        ClientMetrics metrics = new ClientMetrics();
+        for (int i = 1; i <= 1000; i++) {
+            metrics.recordExchange("/statuses/show.json", i == 1000 ? 404 : 200, TimeUnit.MILLISECONDS.toNanos(i),
+                    0, 100);
+        }
+        metrics.recordExchange("/statuses/update.json", 200, TimeUnit.MILLISECONDS.toNanos(5), 40, 2000);
+        metrics.recordFailure("/statuses/update.json", TimeUnit.SECONDS.toNanos(10), 40);
+        metrics.recordRetry("/statuses/update.json");
+
+        ClientMetrics.Snapshot snapshot = metrics.snapshot();
+        ClientMetrics.EndpointSnapshot show = snapshot.getEndpoint("/statuses/show.json");
+        Assert.assertEquals(1000, show.getLatency().getCount());
+        Assert.assertEquals(500, show.getLatency().getValueAtQuantile(0.5) / 1000);
+        Assert.assertEquals(990, show.getLatency().getValueAtQuantile(0.99) / 1000);
+        Assert.assertEquals(Long.valueOf(999), show.getStatusCounts().get(200));
+        Assert.assertEquals(Long.valueOf(1), show.getStatusCounts().get(404));
+        Assert.assertEquals(100_000, show.getBytesIn());
+
+        ClientMetrics.EndpointSnapshot update = snapshot.getEndpoint("/statuses/update.json");
+        Assert.assertEquals(2, update.getLatency().getCount());
+        Assert.assertEquals(1, update.getFailures());
+        Assert.assertEquals(1, update.getRetries());
+        Assert.assertEquals(80, update.getBytesOut());
+        Assert.assertNull(snapshot.getEndpoint("/favorites/list.json"));
+    }
+
+    /**
+     * This test verifies that a blocking request flagged as a retry on its thread is counted once, and that the
+     * flag does not leak to the next request.
+     */
+    @Test
+    public void testRetryFlagIsConsumedOnce() {
+        ClientMetrics metrics = new ClientMetrics();
+        metrics.retryingOnThisThread();
+        metrics.recordExchange("/search/tweets.json", 200, 1000, 0, 10);
+        metrics.recordExchange("/search/tweets.json", 200, 1000, 0, 10);
+        Assert.assertEquals(1, metrics.snapshot().getEndpoint("/search/tweets.json").getRetries());
+    }
+
+    /**
+     * This test verifies that snapshots accumulate rather than reset, and that both export formats carry the
+     * recorded values.
+     */
+    @Test
+    public void testExports() {
+        ClientMetrics metrics = new ClientMetrics();
+        metrics.recordExchange("/users/search.json", 200, TimeUnit.MILLISECONDS.toNanos(2), 0, 512);
+        metrics.snapshot();
+        metrics.recordExchange("/users/search.json", 403, TimeUnit.MILLISECONDS.toNanos(4), 0, 64);
+        metrics.recordPoolWait(TimeUnit.MICROSECONDS.toNanos(50));
+
+        String prometheus = metrics.toPrometheus();
+        Assert.assertTrue(prometheus.contains("# TYPE twitter_client_request_duration_seconds summary"));
+        Assert.assertTrue(prometheus.contains(
+                "twitter_client_request_duration_seconds_count{endpoint=\"/users/search.json\"} 2"));
+        Assert.assertTrue(prometheus.contains(
+                "twitter_client_responses_total{endpoint=\"/users/search.json\",status=\"403\"} 1"));
+        Assert.assertTrue(prometheus.contains(
+                "twitter_client_received_bytes_total{endpoint=\"/users/search.json\"} 576"));
+        Assert.assertTrue(prometheus.contains("twitter_client_pool_wait_seconds_count 1"));
+
+        Map<String, Object> json = Json.read(metrics.toJson().getBytes(), new com.fasterxml.jackson.core.type
+                .TypeReference<Map<String, Object>>() {
+        });
+        Map<?, ?> endpoint = (Map<?, ?>) ((Map<?, ?>) json.get("endpoints")).get("/users/search.json");
+        Assert.assertEquals(2, ((Map<?, ?>) endpoint.get("latencyMicros")).get("count"));
+        Assert.assertEquals(1, ((Map<?, ?>) endpoint.get("statusCounts")).get("200"));
+        Assert.assertEquals(1, ((Map<?, ?>) json.get("poolWaitMicros")).get("count"));
+    }
+}
@@ -0,0 +1,98 @@
+package base;
+
+import org.junit.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongFunction;
+import java.util.stream.LongStream;
+
+public class CursoredIdIteratorTest {
+
+    private static ApiResponse page(int status, String body) {
+        return new ApiResponse(status, "HTTP/1.1 " + status, Collections.emptyMap(),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * This test verifies that the iterator follows next_cursor across pages and stops at cursor 0.
+     */
+    @Test
+    public void testFollowsCursorsUntilTheLastPage() {
+        List<Long> requestedCursors = new ArrayList<>();
+        LongFunction<CompletableFuture<ApiResponse>> fetcher = cursor -> {
+            requestedCursors.add(cursor);
+            if (cursor == -1L) {
+                return CompletableFuture.completedFuture(page(200,
+                        "{\"ids\":[1,2,3],\"next_cursor\":42,\"next_cursor_str\":\"42\",\"previous_cursor\":0}"));
+            }
+            return CompletableFuture.completedFuture(page(200,
+                    "{\"previous_cursor\":-42,\"ids\":[9223372036854775807,5],\"next_cursor\":0}"));
+        };
+
+        long[] ids = CursoredIdIterator.stream(fetcher).toArray();
+
+        Assert.assertArrayEquals(new long[]{1, 2, 3, Long.MAX_VALUE, 5}, ids);
+        Assert.assertEquals(2, requestedCursors.size());
+        Assert.assertEquals(Long.valueOf(42L), requestedCursors.get(1));
+    }
+
+    /**
+     * This test verifies that the next page is requested before the current one has been consumed.
+     */
+    @Test
+    public void testPrefetchesTheNextPage() {
+        List<Long> requestedCursors = new ArrayList<>();
+        CursoredIdIterator iterator = new CursoredIdIterator(cursor -> {
+            requestedCursors.add(cursor);
+            return CompletableFuture.completedFuture(page(200, cursor == -1L
+                    ? "{\"ids\":[1,2],\"next_cursor\":7}" : "{\"ids\":[3],\"next_cursor\":0}"));
+        });
+        Assert.assertEquals(1L, iterator.nextLong());
+        Assert.assertEquals(2, requestedCursors.size());
+    }
+
+    /**
+     * This test verifies that closing a stream that was not consumed to the end cancels the request for the page
+     * being prefetched.
+     */
+    @Test
+    public void testClosingTheStreamCancelsThePrefetch() {
+        List<CompletableFuture<ApiResponse>> requests = new ArrayList<>();
+        LongFunction<CompletableFuture<ApiResponse>> fetcher = cursor -> {
+            CompletableFuture<ApiResponse> request = cursor == -1L
+                    ? CompletableFuture.completedFuture(page(200, "{\"ids\":[1,2],\"next_cursor\":7}"))
+                    : new CompletableFuture<>();
+            requests.add(request);
+            return request;
+        };
+        try (LongStream ids = CursoredIdIterator.stream(fetcher)) {
+            Assert.assertEquals(1L, ids.findFirst().getAsLong());
+        }
+        Assert.assertEquals(2, requests.size());
+        Assert.assertTrue(requests.get(1).isCancelled());
+    }
+
+    /**
+     * This test verifies that empty pages are skipped and that an error page surfaces as an ApiException.
+     */
+    @Test
+    public void testEmptyPagesAndErrors() {
+        CursoredIdIterator empty = new CursoredIdIterator(cursor -> CompletableFuture.completedFuture(
+                page(200, cursor == -1L ? "{\"ids\":[],\"next_cursor\":3}" : "{\"ids\":[],\"next_cursor\":0}")));
+        Assert.assertFalse(empty.hasNext());
+
+        CursoredIdIterator failing = new CursoredIdIterator(cursor -> CompletableFuture.completedFuture(
+                page(429, "{\"errors\":[{\"code\":88,\"message\":\"Rate limit exceeded\"}]}")));
+        try {
+            failing.hasNext();
+            Assert.fail("Expected an ApiException");
+        } catch (ApiException e) {
+            Assert.assertEquals(429, e.getStatusCode());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package base;
+
+import org.junit.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class EndpointIsolationTest {
+
+    private static final String SEARCH = "/search/tweets.json";
+    private static final String SHOW = "/statuses/show.json";
+
+    /**
+     * This test verifies that an endpoint's breaker opens once half of its last calls failed, that only that
+     * endpoint is rejected, and that after the open period a few successful probes close it again.
+     */
+    @Test
+    public void testBreakerOpensOnFailuresAndClosesAfterProbes() {
+        AtomicLong now = new AtomicLong();
+        EndpointIsolation isolation = new EndpointIsolation(50, 0, 1000, 10, 5000, 0, now::get);
+        for (int i = 0; i < 10; i++) {
+            isolation.acquire(SEARCH).release(i % 2 == 0 ? 503 : 200);
+        }
+        Assert.assertEquals(CircuitBreaker.State.OPEN, isolation.states().get(SEARCH));
+        assertRejected(isolation, SEARCH, CallRejectedException.Reason.CIRCUIT_OPEN);
+        isolation.acquire(SHOW).release(200);
+        Assert.assertEquals(1, isolation.getRejectedByCircuit());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, isolation.states().get(SEARCH));
+        EndpointIsolation.Permit[] probes = new EndpointIsolation.Permit[CircuitBreaker.HALF_OPEN_CALLS];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = isolation.acquire(SEARCH);
+        }
+        assertRejected(isolation, SEARCH, CallRejectedException.Reason.CIRCUIT_OPEN);
+        for (EndpointIsolation.Permit probe : probes) {
+            probe.release(200);
+        }
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, isolation.states().get(SEARCH));
+        isolation.acquire(SEARCH).release(200);
+    }
+
+    /**
+     * This test verifies that slow calls open the breaker, that a call admitted before a state change does not
+     * count after it, and that a failed probe opens the breaker again.
+     */
+    @Test
+    public void testSlowCallsOpenTheBreakerAndFailedProbeReopensIt() {
+        AtomicLong now = new AtomicLong();
+        EndpointIsolation isolation = new EndpointIsolation(0, 80, 1000, 5, 5000, 0, now::get);
+        EndpointIsolation.Permit straggler = isolation.acquire(SEARCH);
+        for (int i = 0; i < 5; i++) {
+            EndpointIsolation.Permit permit = isolation.acquire(SEARCH);
+            now.addAndGet(TimeUnit.SECONDS.toNanos(i == 0 ? 0 : 2));
+            permit.release(i == 0 ? -1 : 200);
+        }
+        // four slow calls out of five; the failure does not count with a failure rate of 0
+        Assert.assertEquals(CircuitBreaker.State.OPEN, isolation.states().get(SEARCH));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        EndpointIsolation.Permit[] probes = new EndpointIsolation.Permit[CircuitBreaker.HALF_OPEN_CALLS];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = isolation.acquire(SEARCH);
+        }
+        straggler.release(200);
+        for (int i = 0; i < probes.length - 1; i++) {
+            probes[i].release(200);
+        }
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, isolation.states().get(SEARCH));
+        probes[probes.length - 1].release(504);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, isolation.states().get(SEARCH));
+        assertRejected(isolation, SEARCH, CallRejectedException.Reason.CIRCUIT_OPEN);
+    }
+
+    /**
+     * This test verifies that the bulkhead rejects calls beyond its limit per endpoint and frees a place when a
+     * call is released.
+     */
+    @Test
+    public void testBulkheadLimitsConcurrentCallsPerEndpoint() {
+        EndpointIsolation isolation = new EndpointIsolation(50, 80, 1000, 10, 5000, 2, () -> 0L);
+        EndpointIsolation.Permit first = isolation.acquire(SEARCH);
+        isolation.acquire(SEARCH);
+        assertRejected(isolation, SEARCH, CallRejectedException.Reason.BULKHEAD_FULL);
+        isolation.acquire(SHOW).release(200);
+
+        first.release(200);
+        first.release(200);
+        isolation.acquire(SEARCH);
+        assertRejected(isolation, SEARCH, CallRejectedException.Reason.BULKHEAD_FULL);
+        Assert.assertEquals(2, isolation.getRejectedByBulkhead());
+        Assert.assertEquals(0, isolation.getRejectedByCircuit());
+    }
+
+    /**
+     * This test verifies that calls queued in the in-flight limiter behind a slow call to another endpoint are
+     * admitted and timed only once they start, so the wait neither fills their bulkhead nor counts as slow calls.
+     */
+    @Test
+    public void testQueuedCallsAreAdmittedWhenTheyStart() {
+        AtomicLong now = new AtomicLong();
+        EndpointIsolation isolation = new EndpointIsolation(50, 50, 1000, 3, 5000, 1, now::get);
+        InFlightLimiter limiter = new InFlightLimiter(1);
+        CompletableFuture<ApiResponse> slowSearch = new CompletableFuture<>();
+        limiter.submit(() -> isolation.execute(SEARCH, () -> slowSearch));
+        List<CompletableFuture<ApiResponse>> shows = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            shows.add(limiter.submit(() -> isolation.execute(SHOW,
+                    () -> CompletableFuture.completedFuture(new ApiResponse(200, "HTTP/1.1 200 OK",
+                            Collections.emptyMap(), new byte[0])))));
+        }
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        slowSearch.complete(new ApiResponse(200, "HTTP/1.1 200 OK", Collections.emptyMap(), new byte[0]));
+
+        for (CompletableFuture<ApiResponse> show : shows) {
+            Assert.assertEquals(200, show.join().statusCode());
+        }
+        Assert.assertEquals(0, isolation.getRejectedByBulkhead());
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, isolation.states().get(SHOW));
+    }
+
+    private static void assertRejected(EndpointIsolation isolation, String endpoint,
+                                       CallRejectedException.Reason reason) {
+        try {
+            isolation.acquire(endpoint);
+            Assert.fail("Expected the call to " + endpoint + " to be rejected");
+        } catch (CallRejectedException e) {
+            Assert.assertEquals(reason, e.getReason());
+            Assert.assertEquals(endpoint, e.getEndpoint());
+        }
+    }
+}
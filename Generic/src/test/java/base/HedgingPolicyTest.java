@@ -0,0 +1,160 @@
+package base;
+
+import org.junit.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+public class HedgingPolicyTest {
+
+    private static final String SHOW = "/statuses/show.json";
+    private static final String BANNER = "/users/profile_banner.json";
+
+    /**
+     * This test verifies that an endpoint is not hedged before it has answered enough requests, and that the hedge
+     * delay is then the configured percentile of its latencies, but never below the minimum delay.
+     */
+    @Test
+    public void testDelayIsPercentileOfRecentLatencies() {
+        AtomicLong now = new AtomicLong();
+        HedgingPolicy policy = new HedgingPolicy(95, 5, 10, now::get, new AtomicLong(1000));
+        for (int i = 1; i < HedgingPolicy.MIN_SAMPLES; i++) {
+            policy.recordLatency(SHOW, TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        Assert.assertEquals(-1L, policy.hedgeDelayNanos(SHOW));
+
+        for (int i = HedgingPolicy.MIN_SAMPLES; i <= 100; i++) {
+            policy.recordLatency(SHOW, TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        long delayMillis = TimeUnit.NANOSECONDS.toMillis(policy.hedgeDelayNanos(SHOW));
+        Assert.assertTrue("delay " + delayMillis, delayMillis >= 94 && delayMillis <= 96);
+
+        for (int i = 0; i < 100; i++) {
+            policy.recordLatency(BANNER, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(10), policy.hedgeDelayNanos(BANNER));
+    }
+
+    /**
+     * This test verifies that a request still pending after the hedge delay is sent again, that the first answer
+     * wins and the slower copy is cancelled, and that no hedge is sent once the budget is spent.
+     */
+    @Test
+    public void testSlowRequestIsHedgedWithinBudget() throws Exception {
+        RateLimitGovernor governor = new RateLimitGovernor();
+        HedgingPolicy policy = new HedgingPolicy(95, 0, 20, System::nanoTime, new AtomicLong(100));
+        warmUp(policy, SHOW);
+        List<CompletableFuture<String>> copies = new CopyOnWriteArrayList<>();
+        Function<Runnable, CompletableFuture<String>> call = sent -> {
+            sent.run();
+            CompletableFuture<String> copy = new CompletableFuture<>();
+            copies.add(copy);
+            if (copies.size() == 2) {
+                copy.complete("hedge");
+            }
+            return copy;
+        };
+
+        Assert.assertEquals("hedge", policy.execute(SHOW, governor, call).get(5, TimeUnit.SECONDS));
+        Assert.assertTrue(copies.get(0).isCancelled());
+        Assert.assertEquals(1, policy.getHedges());
+        Assert.assertEquals(1, policy.getHedgeWins());
+
+        copies.clear();
+        CompletableFuture<String> result = policy.execute(SHOW, governor, call);
+        Thread.sleep(200);
+        Assert.assertEquals(1, copies.size());
+        copies.get(0).complete("primary");
+        Assert.assertEquals("primary", result.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, policy.getHedges());
+    }
+
+    /**
+     * This test verifies that a failed copy does not fail the request while the other one may still answer, and
+     * that nothing is hedged once the endpoint's rate-limit budget is down to its last tenth.
+     */
+    @Test
+    public void testFailedCopyWaitsForTheOtherAndLowRateLimitIsNotHedged() throws Exception {
+        RateLimitGovernor governor = new RateLimitGovernor();
+        HedgingPolicy policy = new HedgingPolicy(95, 100, 20, System::nanoTime, new AtomicLong(1000));
+        warmUp(policy, SHOW);
+        List<CompletableFuture<String>> copies = new CopyOnWriteArrayList<>();
+        Function<Runnable, CompletableFuture<String>> call = sent -> {
+            sent.run();
+            CompletableFuture<String> copy = new CompletableFuture<>();
+            copies.add(copy);
+            return copy;
+        };
+
+        CompletableFuture<String> result = policy.execute(SHOW, governor, call);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (copies.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(2, copies.size());
+        copies.get(0).completeExceptionally(new IllegalStateException("reset"));
+        Assert.assertFalse(result.isDone());
+        copies.get(1).complete("hedge");
+        Assert.assertEquals("hedge", result.get(5, TimeUnit.SECONDS));
+
+        governor.update(SHOW, 200, "100", "10", String.valueOf(System.currentTimeMillis() / 1000 + 900));
+        copies.clear();
+        result = policy.execute(SHOW, governor, call);
+        Thread.sleep(200);
+        Assert.assertEquals(1, copies.size());
+        copies.get(0).complete("primary");
+        Assert.assertEquals("primary", result.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * This test verifies that the hedge delay counts from when a request is sent, so a request held in a queue for
+     * longer than the delay is not hedged for it, and that latencies are measured from then too.
+     */
+    @Test
+    public void testDelayCountsFromWhenTheRequestIsSent() throws Exception {
+        RateLimitGovernor governor = new RateLimitGovernor();
+        HedgingPolicy policy = new HedgingPolicy(95, 100, 100, System::nanoTime, new AtomicLong(1000));
+        warmUp(policy, SHOW);
+        List<Runnable> queued = new CopyOnWriteArrayList<>();
+        List<CompletableFuture<String>> copies = new CopyOnWriteArrayList<>();
+        Function<Runnable, CompletableFuture<String>> call = sent -> {
+            queued.add(sent);
+            CompletableFuture<String> copy = new CompletableFuture<>();
+            copies.add(copy);
+            return copy;
+        };
+
+        CompletableFuture<String> result = policy.execute(SHOW, governor, call);
+        Thread.sleep(300);
+        Assert.assertEquals(1, copies.size());
+        queued.get(0).run();
+        copies.get(0).complete("primary");
+        Assert.assertEquals("primary", result.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, policy.getHedges());
+
+        AtomicLong now = new AtomicLong();
+        HedgingPolicy queuedPolicy = new HedgingPolicy(95, 100, 10, now::get, new AtomicLong(1000));
+        for (int i = 0; i < HedgingPolicy.MIN_SAMPLES; i++) {
+            queuedPolicy.execute(BANNER, governor, sent -> {
+                now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+                sent.run();
+                now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+                return CompletableFuture.completedFuture("banner");
+            }).join();
+        }
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(10), queuedPolicy.hedgeDelayNanos(BANNER));
+    }
+
+    private static void warmUp(HedgingPolicy policy, String endpoint) {
+        for (int i = 0; i < HedgingPolicy.MIN_SAMPLES; i++) {
+            policy.recordLatency(endpoint, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package base;
+
+import org.junit.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+public class IdSnapshotTest {
+
+    /**
+     * This test verifies that a snapshot sorts and de-duplicates its IDs, and that diff, union, intersect and minus
+     * agree with their set definitions.
+     */
+    @Test
+    public void testSetOperations() {
+        IdSnapshot older = IdSnapshot.of(5, 1, 3, 3, 9);
+        IdSnapshot newer = IdSnapshot.of(3, 4, 9, 12);
+        Assert.assertArrayEquals(new long[]{1, 3, 5, 9}, older.toArray());
+        Assert.assertTrue(older.contains(9));
+        Assert.assertFalse(older.contains(4));
+
+        IdSnapshot.Diff diff = older.diff(newer);
+        Assert.assertEquals(IdSnapshot.of(4, 12), diff.getAdded());
+        Assert.assertEquals(IdSnapshot.of(1, 5), diff.getRemoved());
+        Assert.assertTrue(newer.diff(newer).isEmpty());
+        Assert.assertEquals(IdSnapshot.of(1, 3, 4, 5, 9, 12), older.union(newer));
+        Assert.assertEquals(IdSnapshot.of(3, 9), older.intersect(newer));
+        Assert.assertEquals(IdSnapshot.of(1, 5), older.minus(newer));
+        Assert.assertEquals(IdSnapshot.EMPTY, older.intersect(IdSnapshot.EMPTY));
+    }
+
+    /**
+     * This test verifies that a large snapshot survives a round trip through its binary format, which is much
+     * smaller than 8 bytes per ID, and that a truncated file is rejected.
+     */
+    @Test
+    public void testBinaryFormatRoundTrip() throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        IdSnapshot snapshot = IdSnapshot.of(random.longs(1_000_000, 1L, 2_000_000_000L));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        snapshot.writeTo(bytes);
+        Assert.assertTrue(bytes.size() < snapshot.size() * 3);
+        Assert.assertEquals(snapshot, IdSnapshot.readFrom(new ByteArrayInputStream(bytes.toByteArray())));
+
+        ByteArrayOutputStream extremes = new ByteArrayOutputStream();
+        IdSnapshot.of(Long.MIN_VALUE, -1, 0, Long.MAX_VALUE).writeTo(extremes);
+        Assert.assertEquals(IdSnapshot.of(Long.MIN_VALUE, -1, 0, Long.MAX_VALUE),
+                IdSnapshot.readFrom(new ByteArrayInputStream(extremes.toByteArray())));
+
+        byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() / 2);
+        try {
+            IdSnapshot.readFrom(new ByteArrayInputStream(truncated));
+            Assert.fail("Expected a truncated snapshot to be rejected");
+        } catch (EOFException expected) {
+            // the snapshot ends early
+        }
+    }
+
+    /**
+     * This test verifies that the store keeps snapshots per series in time order, returns the latest one and prunes
+     * the old ones.
+     */
+    @Test
+    public void testStoreKeepsSnapshotsInTimeOrder() throws IOException {
+        Path directory = Files.createTempDirectory("id-snapshots");
+        IdSnapshotStore store = new IdSnapshotStore(directory);
+        Assert.assertNull(store.latest("followers-a"));
+        store.save("followers-a", 2000, IdSnapshot.of(1, 2, 3));
+        store.save("followers-a", 1000, IdSnapshot.of(1, 2));
+        store.save("followers-a", 3000, IdSnapshot.of(2, 3, 4));
+        store.save("followers-ab", 4000, IdSnapshot.of(7));
+
+        Assert.assertEquals(Arrays.asList(1000L, 2000L, 3000L), store.times("followers-a"));
+        Assert.assertEquals(IdSnapshot.of(2, 3, 4), store.latest("followers-a"));
+        Assert.assertEquals(IdSnapshot.of(1, 2), store.load("followers-a", 1000));
+        Assert.assertEquals(2, store.prune("followers-a", 1));
+        Assert.assertEquals(Arrays.asList(3000L), store.times("followers-a"));
+        Assert.assertEquals(IdSnapshot.of(7), store.latest("followers-ab"));
+    }
+}
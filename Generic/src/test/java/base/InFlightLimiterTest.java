@@ -0,0 +1,72 @@
+package base;
+
+import org.junit.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class InFlightLimiterTest {
+
+    /**
+     * This test verifies that no more than the configured number of operations run at once and that queued
+     * operations start as running ones complete.
+     */
+    @Test
+    public void testQueuedWorkStartsWhenPermitsAreReleased() {
+        InFlightLimiter limiter = new InFlightLimiter(2);
+        List<CompletableFuture<Integer>> operations = new ArrayList<>();
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            CompletableFuture<Integer> operation = new CompletableFuture<>();
+            operations.add(operation);
+            results.add(limiter.submit(() -> operation));
+        }
+        Assert.assertEquals(2, limiter.getInFlight());
+        Assert.assertEquals(3, limiter.getPending());
+
+        for (int i = 0; i < 5; i++) {
+            operations.get(i).complete(i);
+            Assert.assertTrue(limiter.getInFlight() <= 2);
+        }
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(Integer.valueOf(i), results.get(i).join());
+        }
+        Assert.assertEquals(0, limiter.getInFlight());
+        Assert.assertEquals(0, limiter.getPending());
+    }
+
+    /**
+     * This test verifies that a task that throws releases its permit and fails its own future only.
+     */
+    @Test
+    public void testFailingTaskReleasesPermit() {
+        InFlightLimiter limiter = new InFlightLimiter(1);
+        CompletableFuture<Object> failed = limiter.submit(() -> {
+            throw new IllegalStateException("boom");
+        });
+        Assert.assertTrue(failed.isCompletedExceptionally());
+        Assert.assertEquals("ok", limiter.submit(() -> CompletableFuture.completedFuture("ok")).join());
+        Assert.assertEquals(0, limiter.getInFlight());
+    }
+
+    /**
+     * This test verifies that queued work is skipped when its result was cancelled before it started.
+     */
+    @Test
+    public void testCancelledQueuedWorkIsSkipped() {
+        InFlightLimiter limiter = new InFlightLimiter(1);
+        CompletableFuture<String> running = new CompletableFuture<>();
+        limiter.submit(() -> running);
+        boolean[] started = new boolean[1];
+        CompletableFuture<String> queued = limiter.submit(() -> {
+            started[0] = true;
+            return CompletableFuture.completedFuture("late");
+        });
+        queued.cancel(false);
+        running.complete("done");
+        Assert.assertFalse(started[0]);
+        Assert.assertEquals(0, limiter.getInFlight());
+    }
+}
@@ -0,0 +1,74 @@
+package base;
+
+import org.junit.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class JsonStreamsTest {
+
+    static class Item {
+        private long id;
+        private String text;
+    }
+
+    private static InputStream json(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * This test verifies that the elements of a top-level array are bound in order.
+     */
+    @Test
+    public void testTopLevelArray() {
+        try (Stream<Item> items = JsonStreams.elements(json("[{\"id\":1,\"text\":\"a\"},{\"id\":2,\"text\":\"b\"}]"),
+                null, Item.class)) {
+            List<String> texts = items.map(item -> item.id + item.text).collect(Collectors.toList());
+            Assert.assertEquals(2, texts.size());
+            Assert.assertEquals("1a", texts.get(0));
+            Assert.assertEquals("2b", texts.get(1));
+        }
+    }
+
+    /**
+     * This test verifies that the array is found behind other fields, nested objects included, as in a search
+     * response.
+     */
+    @Test
+    public void testArrayField() {
+        String body = "{\"search_metadata\":{\"count\":2,\"nested\":[1,2]},\"statuses\":[{\"id\":7},{\"id\":8}],"
+                + "\"after\":true}";
+        try (Stream<Item> items = JsonStreams.elements(json(body), "statuses", Item.class)) {
+            Assert.assertEquals(15L, items.mapToLong(item -> item.id).sum());
+        }
+        try (Stream<Item> items = JsonStreams.elements(json(body), "missing", Item.class)) {
+            Assert.assertEquals(0L, items.count());
+        }
+    }
+
+    /**
+     * This test verifies that closing the stream before the end of the array runs the incomplete callback, and
+     * that reading it to the end does not.
+     */
+    @Test
+    public void testEarlyCloseIsReported() {
+        String body = "[{\"id\":1},{\"id\":2},{\"id\":3}]";
+        AtomicBoolean aborted = new AtomicBoolean();
+        try (Stream<Item> items = JsonStreams.elements(json(body), null, Item.class, () -> aborted.set(true))) {
+            Assert.assertEquals(1L, items.findFirst().get().id);
+        }
+        Assert.assertTrue(aborted.get());
+
+        aborted.set(false);
+        try (Stream<Item> items = JsonStreams.elements(json(body), null, Item.class, () -> aborted.set(true))) {
+            Assert.assertEquals(3L, items.count());
+        }
+        Assert.assertFalse(aborted.get());
+    }
+}
@@ -0,0 +1,63 @@
+package base;
+
+import org.junit.Assert;
+import org.testng.annotations.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class OAuthSignerTest {
+
+    private final OAuthSigner signer = new OAuthSigner("xvz1evFS4wEEPTGEFPHBog",
+            "kAcSOqF21Fu85e7zjz7ZN2U4ZRhfV3WpwPAoE3Z7kBw",
+            "370773112-GmHxMAgYyLbNEtIKZeRNFsMKPR9EyMZeS9weJAEb",
+            "LswwdoUaIvS8ltyTt5jkRh4J50vUPVVHtR2YPi5kE");
+
+    /**
+     * This test verifies the signature against the worked example in Twitter's "Creating a signature" guide.
+     */
+    @Test
+    public void testSignatureMatchesTwitterReferenceExample() {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("status", "Hello Ladies + Gentlemen, a signed OAuth request!");
+        params.put("include_entities", true);
+        String signature = this.signer.sign("POST", "https://api.twitter.com/1.1/statuses/update.json", params,
+                "kYjzVBB8Y0ZFabxSWbWovY3uYSQ2pTgmZeNu2VS4cg", 1318622958L);
+        Assert.assertEquals("hCtSmYh+iHYCEqBWrE7C7hYmtUk=", signature);
+    }
+
+    /**
+     * This test verifies that the cached Mac gives the same result when reused on the same thread.
+     */
+    @Test
+    public void testSignatureIsStableAcrossCalls() {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("q", "coronavirus");
+        String first = this.signer.sign("GET", "https://api.twitter.com/1.1/search/tweets.json", params, "abc", 1L);
+        String second = this.signer.sign("GET", "https://api.twitter.com/1.1/search/tweets.json", params, "abc", 1L);
+        Assert.assertEquals(first, second);
+    }
+
+    /**
+     * This test verifies that the URL used in the base string drops the query string and default port.
+     */
+    @Test
+    public void testNormalizeUrl() {
+        Assert.assertEquals("https://api.twitter.com/1.1/statuses/show.json",
+                OAuthSigner.normalizeUrl("HTTPS://API.Twitter.com:443/1.1/statuses/show.json?id=1"));
+        Assert.assertEquals("http://localhost:8080/1.1/statuses/show.json",
+                OAuthSigner.normalizeUrl("http://localhost:8080/1.1/statuses/show.json"));
+    }
+
+    /**
+     * This test verifies RFC 3986 percent-encoding, including multi-byte characters.
+     */
+    @Test
+    public void testPercentEncode() {
+        Assert.assertEquals("Ladies%20%2B%20Gentlemen", OAuthSigner.percentEncode("Ladies + Gentlemen"));
+        Assert.assertEquals("An%20encoded%20string%21", OAuthSigner.percentEncode("An encoded string!"));
+        Assert.assertEquals("Dogs%2C%20Cats%20%26%20Mice", OAuthSigner.percentEncode("Dogs, Cats & Mice"));
+        Assert.assertEquals("%E2%98%83", OAuthSigner.percentEncode("☃"));
+        Assert.assertEquals("-._~", OAuthSigner.percentEncode("-._~"));
+    }
+}
@@ -0,0 +1,152 @@
+package base;
+
+import org.junit.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RateLimitGovernorTest {
+
+    private static final String SEARCH = "/search/tweets.json";
+
+    /**
+     * This test verifies that an endpoint that has never answered is not throttled and has no known budget.
+     */
+    @Test
+    public void testUnknownEndpointIsNotThrottled() {
+        RateLimitGovernor governor = new RateLimitGovernor(() -> 0L);
+        Assert.assertEquals(0L, governor.reserve(SEARCH));
+        Assert.assertNull(governor.budget(SEARCH));
+    }
+
+    /**
+     * This test verifies that the budget is learned from the x-rate-limit headers and that requests go out
+     * immediately while plenty of budget is left.
+     */
+    @Test
+    public void testBudgetIsLearnedFromHeaders() {
+        AtomicLong now = new AtomicLong(1_000_000L);
+        RateLimitGovernor governor = new RateLimitGovernor(now::get);
+        governor.update(SEARCH, 200, "180", "179", "1900");
+
+        RateLimitGovernor.Budget budget = governor.budget(SEARCH);
+        Assert.assertEquals(180, budget.getLimit());
+        Assert.assertEquals(179, budget.getRemaining());
+        Assert.assertEquals(1_900_000L, budget.getResetAtMillis());
+
+        Assert.assertEquals(0L, governor.reserve(SEARCH));
+        Assert.assertEquals(178, governor.budget(SEARCH).getRemaining());
+    }
+
+    /**
+     * This test verifies that the last tenth of the budget is spread over the rest of the window and that the
+     * safety margin is kept until the window resets.
+     */
+    @Test
+    public void testLowBudgetIsPacedAndExhaustedBudgetWaitsForReset() {
+        AtomicLong now = new AtomicLong(0L);
+        RateLimitGovernor governor = new RateLimitGovernor(now::get);
+        governor.update(SEARCH, 200, "100", "4", "900");
+
+        // three requests may be sent before the margin is reached, one every quarter of the window
+        Assert.assertEquals(0L, governor.reserve(SEARCH));
+        Assert.assertEquals(225_000L, governor.reserve(SEARCH));
+        Assert.assertEquals(450_000L, governor.reserve(SEARCH));
+        Assert.assertEquals(900_000L, governor.reserve(SEARCH));
+    }
+
+    /**
+     * This test verifies that once the budget is exhausted every further request waits for the reset, not only the
+     * first one, and that the budget of the window reserved ahead is not reported as available before it starts.
+     */
+    @Test
+    public void testEveryRequestAfterExhaustionWaitsForReset() {
+        AtomicLong now = new AtomicLong(0L);
+        RateLimitGovernor governor = new RateLimitGovernor(now::get);
+        governor.update(SEARCH, 200, "15", "1", "600");
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(600_000L, governor.reserve(SEARCH));
+        }
+        Assert.assertEquals(0, governor.budget(SEARCH).getRemaining());
+
+        // a late response from the window that is ending does not undo the reservations
+        governor.update(SEARCH, 200, "15", "0", "600");
+        Assert.assertEquals(600_000L, governor.reserve(SEARCH));
+
+        now.set(600_000L);
+        Assert.assertEquals(0L, governor.reserve(SEARCH));
+        Assert.assertEquals(8, governor.budget(SEARCH).getRemaining());
+    }
+
+    /**
+     * This test verifies that budgets are kept per credentials, so exhausting one token does not hold up another.
+     */
+    @Test
+    public void testBudgetsArePerCredentials() {
+        RateLimitGovernor first = RateLimitGovernor.forCredentials("consumer", "first-token");
+        RateLimitGovernor second = RateLimitGovernor.forCredentials("consumer", "second-token");
+        Assert.assertSame(first, RateLimitGovernor.forCredentials("consumer", "first-token"));
+        Assert.assertNotSame(first, second);
+
+        first.update(SEARCH, 429, "180", "0", String.valueOf(System.currentTimeMillis() / 1000 + 900));
+        Assert.assertTrue(first.reserve(SEARCH) > 0);
+        Assert.assertEquals(0L, second.reserve(SEARCH));
+    }
+
+    /**
+     * This test verifies that a thread interrupted while waiting for budget does not go on to send its request,
+     * and keeps its interrupt status.
+     */
+    @Test
+    public void testInterruptedWaitDoesNotLetTheRequestThrough() {
+        RateLimitGovernor governor = new RateLimitGovernor();
+        governor.update(SEARCH, 429, "180", "0", String.valueOf(System.currentTimeMillis() / 1000 + 900));
+        Thread.currentThread().interrupt();
+        try {
+            governor.acquire(SEARCH);
+            Assert.fail("Expected the interrupted wait to fail");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getCause() instanceof InterruptedException);
+        } finally {
+            Assert.assertTrue(Thread.interrupted());
+        }
+    }
+
+    /**
+     * This test verifies that a 429 response exhausts the budget even if the remaining header says otherwise.
+     */
+    @Test
+    public void testTooManyRequestsExhaustsBudget() {
+        AtomicLong now = new AtomicLong(0L);
+        RateLimitGovernor governor = new RateLimitGovernor(now::get);
+        governor.update(SEARCH, 429, "180", "12", "60");
+        Assert.assertEquals(60_000L, governor.reserve(SEARCH));
+    }
+
+    /**
+     * This test verifies that a response reporting a later window replaces the local budget, and that the
+     * budget refills once the reset time has passed.
+     */
+    @Test
+    public void testNewWindowRefillsBudget() {
+        AtomicLong now = new AtomicLong(0L);
+        RateLimitGovernor governor = new RateLimitGovernor(now::get);
+        governor.update(SEARCH, 200, "180", "1", "60");
+        governor.update(SEARCH, 200, "180", "170", "960");
+        Assert.assertEquals(170, governor.budget(SEARCH).getRemaining());
+
+        now.set(961_000L);
+        Assert.assertEquals(180, governor.budget(SEARCH).getRemaining());
+        Assert.assertEquals(0L, governor.reserve(SEARCH));
+    }
+
+    /**
+     * This test verifies that the endpoint key is the request path relative to the API version prefix.
+     */
+    @Test
+    public void testEndpointIsRelativeToBasePath() {
+        Assert.assertEquals(SEARCH, RateLimitGovernor.endpointOf("https://api.twitter.com/1.1/search/tweets.json?q=a",
+                "/1.1"));
+        Assert.assertEquals(SEARCH, RateLimitGovernor.endpointOf("http://127.0.0.1:8080/search/tweets.json", ""));
+    }
+}
@@ -0,0 +1,97 @@
+package base;
+
+import org.junit.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+public class RequestCoalescerTest {
+
+    /**
+     * This test verifies that reads submitted within the window go out as one batch, that a repeated key shares
+     * its future, and that keys missing from the batch result complete with null.
+     */
+    @Test
+    public void testReadsWithinTheWindowAreBatched() {
+        List<List<Long>> batches = new CopyOnWriteArrayList<>();
+        RequestCoalescer<Long, String> coalescer = new RequestCoalescer<>(TimeUnit.MILLISECONDS.toNanos(50), 100,
+                ids -> {
+                    batches.add(ids);
+                    Map<Long, String> values = new HashMap<>();
+                    for (Long id : ids) {
+                        if (id != 3L) {
+                            values.put(id, "tweet " + id);
+                        }
+                    }
+                    return CompletableFuture.completedFuture(values);
+                });
+        CompletableFuture<String> first = coalescer.submit(1L);
+        CompletableFuture<String> second = coalescer.submit(2L);
+        CompletableFuture<String> again = coalescer.submit(1L);
+        CompletableFuture<String> missing = coalescer.submit(3L);
+
+        Assert.assertEquals("tweet 1", first.join());
+        Assert.assertEquals("tweet 2", second.join());
+        Assert.assertSame(first, again);
+        Assert.assertNull(missing.join());
+        Assert.assertEquals(Collections.singletonList(Arrays.asList(1L, 2L, 3L)), batches);
+        Assert.assertEquals(4, coalescer.getRequests());
+        Assert.assertEquals(1, coalescer.getBatches());
+    }
+
+    /**
+     * This test verifies that a batch is sent as soon as it is full, without waiting for the window, and that the
+     * next key starts a new batch.
+     */
+    @Test
+    public void testFullBatchesAreSentAtOnce() {
+        List<List<Long>> batches = new CopyOnWriteArrayList<>();
+        RequestCoalescer<Long, Long> coalescer = new RequestCoalescer<>(TimeUnit.HOURS.toNanos(1), 3, ids -> {
+            batches.add(ids);
+            Map<Long, Long> values = new HashMap<>();
+            for (Long id : ids) {
+                values.put(id, id * 10);
+            }
+            return CompletableFuture.completedFuture(values);
+        });
+        List<CompletableFuture<Long>> reads = new ArrayList<>();
+        for (long id = 1; id <= 4; id++) {
+            reads.add(coalescer.submit(id));
+        }
+        Assert.assertEquals(Long.valueOf(30), reads.get(2).join());
+        Assert.assertFalse(reads.get(3).isDone());
+        Assert.assertEquals(Collections.singletonList(Arrays.asList(1L, 2L, 3L)), batches);
+    }
+
+    /**
+     * This test verifies that a failed batch request fails every read in the batch.
+     */
+    @Test
+    public void testFailedBatchFailsEveryRead() {
+        RequestCoalescer<Long, String> coalescer = new RequestCoalescer<>(TimeUnit.MILLISECONDS.toNanos(10), 100,
+                ids -> {
+                    CompletableFuture<Map<Long, String>> failed = new CompletableFuture<>();
+                    failed.completeExceptionally(new IllegalStateException("connection reset"));
+                    return failed;
+                });
+        CompletableFuture<String> first = coalescer.submit(1L);
+        CompletableFuture<String> second = coalescer.submit(2L);
+        for (CompletableFuture<String> read : Arrays.asList(first, second)) {
+            try {
+                read.join();
+                Assert.fail("Expected the read to fail with its batch");
+            } catch (CompletionException e) {
+                Assert.assertEquals("connection reset", e.getCause().getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package base;
+
+import org.junit.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ResponseCacheTest {
+
+    private static final String URL = "https://api.twitter.com/1.1/statuses/show.json";
+    private static final String CREDENTIALS = ResponseCache.credentials("consumer", "token");
+    private static final Map<String, Object> PARAMS = Collections.singletonMap("id", 1307711467387596801L);
+
+    private final AtomicLong now = new AtomicLong();
+
+    private static ApiResponse response(int status, String body, String etag) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", Collections.singletonList("application/json;charset=utf-8"));
+        if (etag != null) {
+            headers.put("ETag", Collections.singletonList(etag));
+        }
+        return new ApiResponse(status, "HTTP/1.1 " + status + " X", headers, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void advance(long millis) {
+        this.now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * This test verifies that a 200 response is served from the cache until its TTL runs out, while error
+     * responses are not cached at all.
+     */
+    @Test
+    public void testFreshResponsesAreServedUntilTheyExpire() {
+        ResponseCache cache = new ResponseCache(100, 1000, this.now::get);
+        List<Map<String, String>> requests = new ArrayList<>();
+        cache.get(CREDENTIALS, URL, PARAMS, headers -> {
+            requests.add(headers);
+            return CompletableFuture.completedFuture(response(200, "{\"text\":\"first\"}", null));
+        }).join();
+        advance(999);
+        Assert.assertEquals("{\"text\":\"first\"}", cache.get(CREDENTIALS, URL, PARAMS, headers -> {
+            throw new AssertionError("A fresh response must not be fetched again");
+        }).join().asString());
+        advance(1);
+        Assert.assertEquals("{\"text\":\"second\"}", cache.get(CREDENTIALS, URL, PARAMS, headers -> {
+            requests.add(headers);
+            return CompletableFuture.completedFuture(response(200, "{\"text\":\"second\"}", null));
+        }).join().asString());
+        Assert.assertEquals(Collections.emptyMap(), requests.get(1));
+
+        String other = "https://api.twitter.com/1.1/account/verify_credentials.json";
+        for (int i = 0; i < 2; i++) {
+            cache.get(CREDENTIALS, other, Collections.emptyMap(),
+                    headers -> CompletableFuture.completedFuture(response(429, "{}", null))).join();
+        }
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(4, cache.getMisses());
+    }
+
+    /**
+     * This test verifies that identical requests made while one is on its way wait for it rather than being sent,
+     * and that they all see its failure if it fails.
+     */
+    @Test
+    public void testIdenticalRequestsInFlightAreCollapsed() {
+        ResponseCache cache = new ResponseCache(100, 1000, this.now::get);
+        CompletableFuture<ApiResponse> network = new CompletableFuture<>();
+        CompletableFuture<ApiResponse> first = cache.get(CREDENTIALS, URL, PARAMS, headers -> network);
+        CompletableFuture<ApiResponse> second = cache.get(CREDENTIALS, URL, PARAMS, headers -> {
+            throw new AssertionError("An identical request is already in flight");
+        });
+        Assert.assertFalse(second.isDone());
+        network.complete(response(200, "{}", null));
+        Assert.assertSame(first.join(), second.join());
+        Assert.assertEquals(1, cache.getCollapsed());
+
+        advance(1000);
+        CompletableFuture<ApiResponse> failing = new CompletableFuture<>();
+        CompletableFuture<ApiResponse> third = cache.get(CREDENTIALS, URL, PARAMS, headers -> failing);
+        CompletableFuture<ApiResponse> fourth = cache.get(CREDENTIALS, URL, PARAMS, headers -> failing);
+        failing.completeExceptionally(new IllegalStateException("connection reset"));
+        Assert.assertTrue(third.isCompletedExceptionally());
+        Assert.assertTrue(fourth.isCompletedExceptionally());
+    }
+
+    /**
+     * This test verifies that a stale response with an ETag is revalidated with If-None-Match, served again on a
+     * 304, and replaced when the server sends a new version.
+     */
+    @Test
+    public void testStaleResponsesWithAnETagAreRevalidated() {
+        ResponseCache cache = new ResponseCache(100, 1000, this.now::get);
+        List<Map<String, String>> requests = new ArrayList<>();
+        cache.get(CREDENTIALS, URL, PARAMS,
+                headers -> CompletableFuture.completedFuture(response(200, "{\"v\":1}", "\"v1\""))).join();
+        advance(5000);
+        ApiResponse revalidated = cache.get(CREDENTIALS, URL, PARAMS, headers -> {
+            requests.add(headers);
+            return CompletableFuture.completedFuture(response(304, "", null));
+        }).join();
+        Assert.assertEquals("{\"v\":1}", revalidated.asString());
+        Assert.assertEquals("\"v1\"", requests.get(0).get("If-None-Match"));
+        Assert.assertEquals(1, cache.getRevalidated());
+
+        advance(999);
+        Assert.assertSame(revalidated, cache.get(CREDENTIALS, URL, PARAMS, headers -> {
+            throw new AssertionError("A revalidated response is fresh again");
+        }).join());
+        advance(1);
+        cache.get(CREDENTIALS, URL, PARAMS,
+                headers -> CompletableFuture.completedFuture(response(200, "{\"v\":2}", "\"v2\""))).join();
+        cache.invalidateAll();
+        Assert.assertEquals("{\"v\":3}", cache.get(CREDENTIALS, URL, PARAMS, headers -> {
+            Assert.assertEquals(Collections.emptyMap(), headers);
+            return CompletableFuture.completedFuture(response(200, "{\"v\":3}", null));
+        }).join().asString());
+    }
+
+    /**
+     * This test verifies that a response cached for one user's credentials is not served to another user, whose
+     * request is sent and cached on its own.
+     */
+    @Test
+    public void testResponsesAreNotSharedBetweenCredentials() {
+        ResponseCache cache = new ResponseCache(100, 1000, this.now::get);
+        String other = ResponseCache.credentials("consumer", "other-token");
+        String verify = "https://api.twitter.com/1.1/account/verify_credentials.json";
+        cache.get(CREDENTIALS, verify, Collections.emptyMap(),
+                headers -> CompletableFuture.completedFuture(response(200, "{\"screen_name\":\"first\"}", null)))
+                .join();
+        Assert.assertEquals("{\"screen_name\":\"second\"}", cache.get(other, verify, Collections.emptyMap(),
+                headers -> CompletableFuture.completedFuture(response(200, "{\"screen_name\":\"second\"}", null)))
+                .join().asString());
+        Assert.assertEquals("{\"screen_name\":\"first\"}", cache.get(CREDENTIALS, verify, Collections.emptyMap(),
+                headers -> {
+                    throw new AssertionError("The first user's response must still be cached");
+                }).join().asString());
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+    }
+}
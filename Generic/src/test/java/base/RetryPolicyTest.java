@@ -0,0 +1,132 @@
+package base;
+
+import org.junit.Assert;
+import org.testng.annotations.Test;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RetryPolicyTest {
+
+    private static ApiResponse response(int status) {
+        return new ApiResponse(status, "HTTP/1.1 " + status, Collections.emptyMap(),
+                "{}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static RetryPolicy policy(int maxRetries) {
+        return new RetryPolicy(maxRetries, 1, 50, 10, false, () -> 1_000_000L, new AtomicLong(1000));
+    }
+
+    /**
+     * This test verifies that an idempotent request is retried on 503 until it succeeds, and that the attempts
+     * are counted.
+     */
+    @Test
+    public void testServerErrorIsRetriedForGet() {
+        RetryPolicy policy = policy(3);
+        AtomicInteger calls = new AtomicInteger();
+        ApiResponse result = policy.executeAsync("GET", () -> CompletableFuture.completedFuture(
+                response(calls.incrementAndGet() < 3 ? 503 : 200))).join();
+        Assert.assertEquals(200, result.statusCode());
+        Assert.assertEquals(3, policy.getAttempts());
+        Assert.assertEquals(2, policy.getRetries());
+        Assert.assertEquals(0, policy.getGiveUps());
+    }
+
+    /**
+     * This test verifies that a POST is not repeated after a 503 by default, but is with the non-idempotent
+     * variant.
+     */
+    @Test
+    public void testPostIsOnlyRetriedWhenAllowed() {
+        RetryPolicy policy = policy(3);
+        AtomicInteger calls = new AtomicInteger();
+        Assert.assertEquals(503, policy.executeAsync("POST",
+                () -> CompletableFuture.completedFuture(response(calls.incrementAndGet() < 2 ? 503 : 200))).join()
+                .statusCode());
+        Assert.assertEquals(1, calls.get());
+        Assert.assertEquals(1, policy.getGiveUps());
+
+        calls.set(0);
+        Assert.assertEquals(200, policy.retryingNonIdempotent().executeAsync("POST",
+                () -> CompletableFuture.completedFuture(response(calls.incrementAndGet() < 2 ? 503 : 200))).join()
+                .statusCode());
+        Assert.assertEquals(2, calls.get());
+    }
+
+    /**
+     * This test verifies which I/O errors are retried: a refused connection for any method, a timeout only for
+     * idempotent ones.
+     */
+    @Test
+    public void testIoErrorsAreRetriedWhenSafe() {
+        RetryPolicy policy = policy(3);
+        Assert.assertTrue(policy.delayAfter("POST", new ConnectException("refused"), 0) >= 0);
+        Assert.assertTrue(policy.delayAfter("GET", new CompletionException(new SocketTimeoutException()), 0) >= 0);
+        Assert.assertEquals(-1L, policy.delayAfter("POST", new SocketTimeoutException(), 0));
+        Assert.assertEquals(-1L, policy.delayAfter("GET", new IllegalArgumentException(), 0));
+    }
+
+    /**
+     * This test verifies that Retry-After and the rate-limit reset time decide the delay, and that a wait beyond
+     * the maximum delay is not taken.
+     */
+    @Test
+    public void testServerRequestedDelayIsHonoured() {
+        RetryPolicy policy = policy(3);
+        Assert.assertEquals(0L, policy.delayAfter("POST", 429, "0", null, 0));
+        Assert.assertEquals(0L, policy.delayAfter("GET", 429, null, "1000", 0));
+        Assert.assertEquals(-1L, policy.delayAfter("GET", 429, "60", null, 0));
+        Assert.assertEquals(-1L, policy.delayAfter("GET", 404, null, null, 0));
+    }
+
+    /**
+     * This test verifies that retries stop once the shared retry budget is spent, and that the failure is
+     * returned to the caller.
+     */
+    @Test
+    public void testRetryBudgetLimitsRetries() {
+        RetryPolicy policy = new RetryPolicy(5, 1, 50, 0, false, () -> 0L, new AtomicLong(200));
+        AtomicInteger calls = new AtomicInteger();
+        ApiResponse result = policy.executeAsync("GET", () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(response(500));
+        }).join();
+        Assert.assertEquals(500, result.statusCode());
+        Assert.assertEquals(3, calls.get());
+        Assert.assertEquals(1, policy.getGiveUps());
+        Assert.assertEquals(0.0, policy.getBudget(), 0.0);
+    }
+
+    /**
+     * This test verifies that cancelling a request cancels its attempt in flight, and that a retry scheduled before
+     * the cancellation is not sent and spends no budget.
+     */
+    @Test
+    public void testCancelledRequestIsNotRetried() throws InterruptedException {
+        RetryPolicy policy = new RetryPolicy(3, 100, 2000, 0, false, () -> 0L, new AtomicLong(1000));
+        CompletableFuture<ApiResponse> pending = new CompletableFuture<>();
+        CompletableFuture<ApiResponse> result = policy.executeAsync("GET", () -> pending);
+        result.cancel(false);
+        Assert.assertTrue(pending.isCancelled());
+        Assert.assertEquals(1, policy.getAttempts());
+
+        AtomicInteger calls = new AtomicInteger();
+        result = policy.executeAsync("GET", () -> {
+            calls.incrementAndGet();
+            // retried after the second the server asks for
+            return CompletableFuture.completedFuture(new ApiResponse(503, "HTTP/1.1 503",
+                    Collections.singletonMap("Retry-After", Collections.singletonList("1")), new byte[0]));
+        });
+        result.cancel(false);
+        Thread.sleep(1300);
+        Assert.assertEquals(1, calls.get());
+        Assert.assertEquals(1, policy.getRetries());
+    }
+}
@@ -0,0 +1,240 @@
+package tweeter;
+
+import base.ApiResponse;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Creates or deletes large numbers of tweets, e.g. to seed test data, with a fixed number of requests in flight.
+ * <p>
+ * The source stream is read only as fast as requests complete. While {@code maxInFlight} requests are
+ * outstanding, the calling thread waits, so a lazily generated source of any size is never held in memory. The
+ * requests go through the client's asynchronous methods, so they are paced by its rate-limit governor and sent
+ * on its pooled connections. Results are not kept either: the {@link Summary} counts them and groups failures
+ * by reason. Created tweet IDs can be handed to a callback as they arrive.
+ */
+public class BulkTweetWriter {
+
+    private static final int DUPLICATE_STATUS = 187;
+    private static final int NO_STATUS_FOUND = 144;
+    private static final int MAX_FAILURE_REASONS = 100;
+    private static final String OTHER_REASONS = "(other reasons)";
+
+    private final TweetAPIClient client;
+    private final int maxInFlight;
+
+    public BulkTweetWriter(TweetAPIClient client, int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        this.client = client;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Posts every status of {@code statuses}. Statuses Twitter rejects as duplicates are counted apart from
+     * other failures.
+     *
+     * @param statuses   texts to post; the stream is consumed and closed
+     * @param createdIDs receives the ID of each created tweet, on the thread that completed its request
+     * @return what happened to the statuses
+     */
+    public Summary createTweets(Stream<String> statuses, LongConsumer createdIDs) {
+        try (Stream<String> source = statuses) {
+            Iterator<String> iterator = source.iterator();
+            return write(iterator::hasNext, () -> this.client.createTweetAsync(iterator.next()), DUPLICATE_STATUS,
+                    createdIDs);
+        }
+    }
+
+    public Summary createTweets(Stream<String> statuses) {
+        return createTweets(statuses, id -> {
+        });
+    }
+
+    /**
+     * Deletes every tweet of {@code tweetIDs}. Tweets that no longer exist are counted as duplicates, since
+     * deleting them again is what a re-run of a clean-up job does.
+     *
+     * @param tweetIDs IDs of tweets of the authenticated user; the stream is consumed and closed
+     * @return what happened to the tweets
+     */
+    public Summary deleteTweets(LongStream tweetIDs) {
+        try (LongStream source = tweetIDs) {
+            PrimitiveIterator.OfLong iterator = source.iterator();
+            return write(iterator::hasNext, () -> this.client.deleteTweetAsync(iterator.nextLong()), NO_STATUS_FOUND,
+                    null);
+        }
+    }
+
+    private Summary write(BooleanSupplier hasNext, Supplier<CompletableFuture<ApiResponse>> next, int duplicateCode,
+                          LongConsumer createdIDs) {
+        Semaphore slots = new Semaphore(this.maxInFlight);
+        Tally tally = new Tally();
+        long start = System.nanoTime();
+        boolean interrupted = false;
+        while (hasNext.getAsBoolean()) {
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                interrupted = true;
+                break;
+            }
+            tally.submitted.increment();
+            CompletableFuture<ApiResponse> request;
+            try {
+                request = next.get();
+            } catch (RuntimeException e) {
+                request = new CompletableFuture<>();
+                request.completeExceptionally(e);
+            }
+            request.whenComplete((response, error) -> {
+                try {
+                    tally.record(response, error, duplicateCode, createdIDs);
+                } finally {
+                    slots.release();
+                }
+            });
+        }
+        // wait for the requests still in flight
+        slots.acquireUninterruptibly(this.maxInFlight);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return tally.summary(System.nanoTime() - start, !interrupted);
+    }
+
+    private static final class Tally {
+        final LongAdder submitted = new LongAdder();
+        final LongAdder succeeded = new LongAdder();
+        final LongAdder duplicates = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final Map<String, LongAdder> failureReasons = new ConcurrentHashMap<>();
+
+        void record(ApiResponse response, Throwable error, int duplicateCode, LongConsumer createdIDs) {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                fail(cause.getClass().getSimpleName() + ": " + cause.getMessage());
+                return;
+            }
+            Result<Tweet> result = Result.of(response, Tweet.class);
+            if (result.isSuccess()) {
+                this.succeeded.increment();
+                if (createdIDs != null) {
+                    createdIDs.accept(result.get().getId());
+                }
+            } else if (result.getError() != null && result.getError().getCode() == duplicateCode) {
+                this.duplicates.increment();
+            } else {
+                fail(result.getError() == null ? response.statusLine()
+                        : response.statusCode() + " (" + result.getError().getCode() + ") "
+                        + result.getError().getMessage());
+            }
+        }
+
+        private void fail(String reason) {
+            this.failed.increment();
+            // a bounded number of distinct reasons, in case messages carry per-request details
+            String key = this.failureReasons.size() < MAX_FAILURE_REASONS || this.failureReasons.containsKey(reason)
+                    ? reason : OTHER_REASONS;
+            this.failureReasons.computeIfAbsent(key, k -> new LongAdder()).increment();
+        }
+
+        Summary summary(long elapsedNanos, boolean complete) {
+            Map<String, Long> reasons = this.failureReasons.entrySet().stream()
+                    .sorted(Comparator.comparing((Map.Entry<String, LongAdder> reason) -> reason.getValue().sum())
+                            .reversed())
+                    .collect(Collectors.toMap(Map.Entry::getKey, reason -> reason.getValue().sum(),
+                            (a, b) -> a, LinkedHashMap::new));
+            return new Summary(this.submitted.sum(), this.succeeded.sum(), this.duplicates.sum(), this.failed.sum(),
+                    reasons, elapsedNanos, complete);
+        }
+    }
+
+    /**
+     * Outcome of a bulk write.
+     */
+    public static final class Summary {
+
+        private final long submitted;
+        private final long succeeded;
+        private final long duplicates;
+        private final long failed;
+        private final Map<String, Long> failureReasons;
+        private final long elapsedNanos;
+        private final boolean complete;
+
+        Summary(long submitted, long succeeded, long duplicates, long failed, Map<String, Long> failureReasons,
+                long elapsedNanos, boolean complete) {
+            this.submitted = submitted;
+            this.succeeded = succeeded;
+            this.duplicates = duplicates;
+            this.failed = failed;
+            this.failureReasons = Collections.unmodifiableMap(failureReasons);
+            this.elapsedNanos = elapsedNanos;
+            this.complete = complete;
+        }
+
+        public long getSubmitted() {
+            return this.submitted;
+        }
+
+        public long getSucceeded() {
+            return this.succeeded;
+        }
+
+        /**
+         * Duplicate statuses when creating, tweets already gone when deleting.
+         */
+        public long getDuplicates() {
+            return this.duplicates;
+        }
+
+        public long getFailed() {
+            return this.failed;
+        }
+
+        /**
+         * Number of failures per reason, e.g. "403 (185) User is over daily status update limit.", most frequent
+         * first.
+         */
+        public Map<String, Long> getFailureReasons() {
+            return this.failureReasons;
+        }
+
+        public long getElapsedMillis() {
+            return this.elapsedNanos / 1_000_000;
+        }
+
+        /**
+         * False if the calling thread was interrupted before the whole source was submitted.
+         */
+        public boolean isComplete() {
+            return this.complete;
+        }
+
+        @Override
+        public String toString() {
+            return "Summary{submitted=" + this.submitted + ", succeeded=" + this.succeeded + ", duplicates="
+                    + this.duplicates + ", failed=" + this.failed + ", failureReasons=" + this.failureReasons
+                    + ", elapsedMillis=" + getElapsedMillis() + (this.complete ? "" : ", interrupted") + "}";
+        }
+    }
+}
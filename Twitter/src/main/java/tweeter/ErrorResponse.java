@@ -0,0 +1,51 @@
+package tweeter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The body of a failed request. Most endpoints answer {"errors":[{"code":187,"message":"..."}]}, a few (e.g.
+ * saved searches) answer {"error":"..."}.
+ */
+public class ErrorResponse {
+
+    private List<Error> errors;
+    private String error;
+
+    public List<Error> getErrors() {
+        return this.errors == null ? Collections.emptyList() : this.errors;
+    }
+
+    /**
+     * The first error code, or 0 if the body carried none.
+     */
+    public int getCode() {
+        return getErrors().isEmpty() ? 0 : this.errors.get(0).getCode();
+    }
+
+    /**
+     * The first error message, whichever of the two shapes the body has.
+     */
+    public String getMessage() {
+        return getErrors().isEmpty() ? this.error : this.errors.get(0).getMessage();
+    }
+
+    @Override
+    public String toString() {
+        return "ErrorResponse{code=" + getCode() + ", message=" + getMessage() + "}";
+    }
+
+    public static class Error {
+
+        private int code;
+        private String message;
+
+        public int getCode() {
+            return this.code;
+        }
+
+        public String getMessage() {
+            return this.message;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package tweeter;
+
+/**
+ * One page of a cursored ID collection, e.g. /followers/ids.json. A next cursor of 0 means there are no more
+ * pages.
+ */
+public class IdsPage {
+
+    private long[] ids;
+    private long nextCursor;
+    private long previousCursor;
+
+    public long[] getIds() {
+        return this.ids == null ? new long[0] : this.ids;
+    }
+
+    public long getNextCursor() {
+        return this.nextCursor;
+    }
+
+    public long getPreviousCursor() {
+        return this.previousCursor;
+    }
+
+    public boolean hasNext() {
+        return this.nextCursor != 0;
+    }
+
+    @Override
+    public String toString() {
+        return "IdsPage{ids=" + getIds().length + ", nextCursor=" + this.nextCursor + "}";
+    }
+}
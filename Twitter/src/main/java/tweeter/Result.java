@@ -0,0 +1,110 @@
+package tweeter;
+
+import base.ApiException;
+import base.ApiResponse;
+import base.Json;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import io.restassured.response.Response;
+import io.restassured.response.ValidatableResponse;
+
+import java.io.UncheckedIOException;
+import java.util.Collections;
+
+/**
+ * A response bound to a model class. The body is parsed exactly once, when the result is created: into
+ * {@code T} for a 2xx response and into an {@link ErrorResponse} otherwise, so every later field access is a plain
+ * getter.
+ *
+ * @param <T> model of a successful response, e.g. {@link Tweet}
+ */
+public class Result<T> {
+
+    private final int statusCode;
+    private final String statusLine;
+    private final T value;
+    private final ErrorResponse error;
+    private final ApiResponse response;
+
+    private Result(ApiResponse response, JavaType type) {
+        this.statusCode = response.statusCode();
+        this.statusLine = response.statusLine();
+        this.response = response;
+        if (isSuccess()) {
+            this.value = Json.read(response.asByteArray(), type);
+            this.error = null;
+        } else {
+            this.value = null;
+            this.error = readError(response.asByteArray());
+        }
+    }
+
+    public static <T> Result<T> of(ApiResponse response, Class<T> type) {
+        return new Result<>(response, Json.mapper().getTypeFactory().constructType(type));
+    }
+
+    public static <T> Result<T> of(ApiResponse response, TypeReference<T> type) {
+        return new Result<>(response, Json.mapper().getTypeFactory().constructType(type));
+    }
+
+    public static <T> Result<T> of(ValidatableResponse response, Class<T> type) {
+        return of(toApiResponse(response), type);
+    }
+
+    public static <T> Result<T> of(ValidatableResponse response, TypeReference<T> type) {
+        return of(toApiResponse(response), type);
+    }
+
+    private static ApiResponse toApiResponse(ValidatableResponse validatableResponse) {
+        Response response = validatableResponse.extract().response();
+        return new ApiResponse(response.getStatusCode(), response.getStatusLine(),
+                Collections.emptyMap(), response.asByteArray());
+    }
+
+    private static ErrorResponse readError(byte[] body) {
+        try {
+            return body.length == 0 ? null : Json.read(body, ErrorResponse.class);
+        } catch (UncheckedIOException e) {
+            // not every error is JSON, e.g. the HTML page of an unknown endpoint
+            return null;
+        }
+    }
+
+    public int getStatusCode() {
+        return this.statusCode;
+    }
+
+    public String getStatusLine() {
+        return this.statusLine;
+    }
+
+    public boolean isSuccess() {
+        return this.statusCode >= 200 && this.statusCode < 300;
+    }
+
+    /**
+     * The bound body of a successful response.
+     *
+     * @throws ApiException if the request failed
+     */
+    public T get() {
+        if (!isSuccess()) {
+            throw new ApiException("Request failed" + (this.error == null ? "" : ": " + this.error.getMessage()),
+                    this.response);
+        }
+        return this.value;
+    }
+
+    /**
+     * The bound body of a failed response, or null if the request succeeded or the body was not JSON.
+     */
+    public ErrorResponse getError() {
+        return this.error;
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess() ? "Result{" + this.statusLine + ", " + this.value + "}"
+                : "Result{" + this.statusLine + ", " + this.error + "}";
+    }
+}
@@ -0,0 +1,38 @@
+package tweeter;
+
+/**
+ * A saved search of the authenticating user.
+ */
+public class SavedSearch {
+
+    private long id;
+    private String idStr;
+    private String name;
+    private String query;
+    private String createdAt;
+
+    public long getId() {
+        return this.id;
+    }
+
+    public String getIdStr() {
+        return this.idStr;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public String getQuery() {
+        return this.query;
+    }
+
+    public String getCreatedAt() {
+        return this.createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "SavedSearch{idStr=" + this.idStr + ", query=" + this.query + "}";
+    }
+}
@@ -0,0 +1,35 @@
+package tweeter;
+
+/**
+ * The timelines of the authenticating user that can be paged with {@code since_id} and {@code max_id}.
+ */
+public enum Timeline {
+
+    /**
+     * Tweets of the user, see {@link TweetAPIClient#getUserTimeTweet()}.
+     */
+    USER(200),
+
+    /**
+     * Tweets mentioning the user, see {@link TweetAPIClient#getMentionsTimeline()}.
+     */
+    MENTIONS(200),
+
+    /**
+     * Tweets of the user that others retweeted, see {@link TweetAPIClient#getReTweetsOfMe()}.
+     */
+    RETWEETS_OF_ME(100);
+
+    private final int maxCount;
+
+    Timeline(int maxCount) {
+        this.maxCount = maxCount;
+    }
+
+    /**
+     * Most tweets one page request may ask for.
+     */
+    public int getMaxCount() {
+        return this.maxCount;
+    }
+}
@@ -0,0 +1,260 @@
+package tweeter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Consumer;
+
+/**
+ * Keeps local copies of the user's timelines up to date without downloading a tweet twice.
+ * <p>
+ * For every timeline it remembers the newest and the oldest tweet ID seen so far. {@link #syncNewer} asks only for
+ * tweets above the newest one ({@code since_id}) and pages down with {@code max_id} until the gap is closed, so a
+ * poll after a burst of activity misses nothing even if the burst is larger than a page. {@link #backfill} pages
+ * below the oldest one, a few pages per call, until the API has no older tweets to give.
+ * <p>
+ * The watermarks are saved to a small properties file after every step, and loaded again by the next instance, so
+ * a restarted job continues where the last one stopped. The newest watermark only moves once a gap is closed: a
+ * sync that fails half way delivers some tweets again next time, but never skips any.
+ */
+public class TimelineSync {
+
+    private final TweetAPIClient client;
+    private final Path checkpointFile;
+    private final int pageSize;
+    private final Map<Timeline, Checkpoint> checkpoints = new EnumMap<>(Timeline.class);
+
+    /**
+     * @param checkpointFile where the watermarks are kept; it is read now if it exists and created on first save
+     * @param pageSize       tweets requested per page; capped at each timeline's {@link Timeline#getMaxCount()}
+     */
+    public TimelineSync(TweetAPIClient client, Path checkpointFile, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+        }
+        this.client = client;
+        this.checkpointFile = checkpointFile;
+        this.pageSize = pageSize;
+        load();
+    }
+
+    /**
+     * Syncs with the largest pages each timeline allows, which takes the fewest requests.
+     */
+    public TimelineSync(TweetAPIClient client, Path checkpointFile) {
+        this(client, checkpointFile, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Fetches the tweets posted to {@code timeline} since the last sync. The first sync of a timeline only fetches
+     * its newest page; {@link #backfill} reaches further back.
+     *
+     * @param tweets receives every new tweet, newest first within each page
+     * @return the number of tweets delivered
+     * @throws base.ApiException if a page request fails; the checkpoint keeps its old value
+     */
+    public synchronized int syncNewer(Timeline timeline, Consumer<Tweet> tweets) {
+        Checkpoint checkpoint = this.checkpoints.get(timeline);
+        if (checkpoint == null) {
+            List<Tweet> page = page(timeline, null, null);
+            if (page.isEmpty()) {
+                return 0;
+            }
+            page.forEach(tweets);
+            save(timeline, new Checkpoint(newest(page), oldest(page), false));
+            return page.size();
+        }
+        int delivered = 0;
+        long newest = checkpoint.newestId;
+        Long maxId = null;
+        while (true) {
+            List<Tweet> page = page(timeline, checkpoint.newestId, maxId);
+            if (page.isEmpty()) {
+                break;
+            }
+            page.forEach(tweets);
+            delivered += page.size();
+            newest = Math.max(newest, newest(page));
+            maxId = oldest(page) - 1;
+        }
+        if (newest != checkpoint.newestId) {
+            save(timeline, new Checkpoint(newest, checkpoint.oldestId, checkpoint.backfilled));
+        }
+        return delivered;
+    }
+
+    /**
+     * Fetches up to {@code maxPages} pages of tweets older than any seen so far, saving the checkpoint after each.
+     * A timeline that was never synced gets its newest page first.
+     *
+     * @param tweets receives every older tweet, newest first
+     * @return the number of tweets delivered; 0 once the timeline is {@link Checkpoint#isBackfilled() backfilled}
+     * @throws base.ApiException if a page request fails; the pages before it stay checkpointed
+     */
+    public synchronized int backfill(Timeline timeline, int maxPages, Consumer<Tweet> tweets) {
+        int delivered = 0;
+        if (!this.checkpoints.containsKey(timeline)) {
+            delivered += syncNewer(timeline, tweets);
+            if (!this.checkpoints.containsKey(timeline)) {
+                // nothing posted yet
+                return delivered;
+            }
+        }
+        for (int pages = 0; pages < maxPages; pages++) {
+            Checkpoint checkpoint = this.checkpoints.get(timeline);
+            if (checkpoint.backfilled) {
+                break;
+            }
+            List<Tweet> page = page(timeline, null, checkpoint.oldestId - 1);
+            if (page.isEmpty()) {
+                save(timeline, new Checkpoint(checkpoint.newestId, checkpoint.oldestId, true));
+                break;
+            }
+            page.forEach(tweets);
+            delivered += page.size();
+            save(timeline, new Checkpoint(checkpoint.newestId, oldest(page), false));
+        }
+        return delivered;
+    }
+
+    /**
+     * The watermarks of {@code timeline}, or null if it was never synced.
+     */
+    public synchronized Checkpoint checkpoint(Timeline timeline) {
+        return this.checkpoints.get(timeline);
+    }
+
+    /**
+     * Forgets the watermarks of {@code timeline}, so the next sync starts over from its newest page.
+     */
+    public synchronized void reset(Timeline timeline) {
+        if (this.checkpoints.remove(timeline) != null) {
+            store();
+        }
+    }
+
+    private List<Tweet> page(Timeline timeline, Long sinceId, Long maxId) {
+        return this.client.getTimelinePageResult(timeline, Math.min(this.pageSize, timeline.getMaxCount()), sinceId,
+                maxId).get();
+    }
+
+    private static long newest(List<Tweet> page) {
+        return page.stream().mapToLong(Tweet::getId).max().getAsLong();
+    }
+
+    private static long oldest(List<Tweet> page) {
+        return page.stream().mapToLong(Tweet::getId).min().getAsLong();
+    }
+
+    private void save(Timeline timeline, Checkpoint checkpoint) {
+        this.checkpoints.put(timeline, checkpoint);
+        store();
+    }
+
+    private void load() {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(this.checkpointFile)) {
+            properties.load(in);
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read checkpoints from " + this.checkpointFile, e);
+        }
+        for (Timeline timeline : Timeline.values()) {
+            String prefix = key(timeline);
+            String newest = properties.getProperty(prefix + ".newestId");
+            String oldest = properties.getProperty(prefix + ".oldestId");
+            if (newest != null && oldest != null) {
+                this.checkpoints.put(timeline, new Checkpoint(Long.parseLong(newest.trim()),
+                        Long.parseLong(oldest.trim()),
+                        Boolean.parseBoolean(properties.getProperty(prefix + ".backfilled", "false").trim())));
+            }
+        }
+    }
+
+    /**
+     * Writes every checkpoint to a temporary file and moves it over the old one, so a crash mid-write cannot leave
+     * a truncated file behind.
+     */
+    private void store() {
+        Properties properties = new Properties();
+        for (Map.Entry<Timeline, Checkpoint> entry : this.checkpoints.entrySet()) {
+            String prefix = key(entry.getKey());
+            properties.setProperty(prefix + ".newestId", Long.toString(entry.getValue().newestId));
+            properties.setProperty(prefix + ".oldestId", Long.toString(entry.getValue().oldestId));
+            properties.setProperty(prefix + ".backfilled", Boolean.toString(entry.getValue().backfilled));
+        }
+        Path file = this.checkpointFile.toAbsolutePath();
+        try {
+            Files.createDirectories(file.getParent());
+            Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(temporary)) {
+                    properties.store(out, "Timeline sync checkpoints");
+                }
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write checkpoints to " + this.checkpointFile, e);
+        }
+    }
+
+    private static String key(Timeline timeline) {
+        return timeline.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * How far a timeline has been synced.
+     */
+    public static final class Checkpoint {
+
+        private final long newestId;
+        private final long oldestId;
+        private final boolean backfilled;
+
+        Checkpoint(long newestId, long oldestId, boolean backfilled) {
+            this.newestId = newestId;
+            this.oldestId = oldestId;
+            this.backfilled = backfilled;
+        }
+
+        /**
+         * ID of the newest tweet synced; the next sync asks for tweets above it.
+         */
+        public long getNewestId() {
+            return this.newestId;
+        }
+
+        /**
+         * ID of the oldest tweet synced; the next backfill asks for tweets below it.
+         */
+        public long getOldestId() {
+            return this.oldestId;
+        }
+
+        /**
+         * True once the API returned no tweets older than {@link #getOldestId()}.
+         */
+        public boolean isBackfilled() {
+            return this.backfilled;
+        }
+
+        @Override
+        public String toString() {
+            return "Checkpoint{newestId=" + this.newestId + ", oldestId=" + this.oldestId
+                    + (this.backfilled ? ", backfilled" : "") + "}";
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package tweeter;
+
+/**
+ * A tweet as returned by the statuses, favorites and search endpoints.
+ */
+public class Tweet {
+
+    private long id;
+    private String idStr;
+    private String text;
+    private String createdAt;
+    private String lang;
+    private String inReplyToStatusIdStr;
+    private String inReplyToScreenName;
+    private int retweetCount;
+    private int favoriteCount;
+    private boolean favorited;
+    private boolean retweeted;
+    private User user;
+
+    public long getId() {
+        return this.id;
+    }
+
+    public String getIdStr() {
+        return this.idStr;
+    }
+
+    public String getText() {
+        return this.text;
+    }
+
+    public String getCreatedAt() {
+        return this.createdAt;
+    }
+
+    public String getLang() {
+        return this.lang;
+    }
+
+    public String getInReplyToStatusIdStr() {
+        return this.inReplyToStatusIdStr;
+    }
+
+    public String getInReplyToScreenName() {
+        return this.inReplyToScreenName;
+    }
+
+    public int getRetweetCount() {
+        return this.retweetCount;
+    }
+
+    public int getFavoriteCount() {
+        return this.favoriteCount;
+    }
+
+    public boolean isFavorited() {
+        return this.favorited;
+    }
+
+    public boolean isRetweeted() {
+        return this.retweeted;
+    }
+
+    public User getUser() {
+        return this.user;
+    }
+
+    @Override
+    public String toString() {
+        return "Tweet{idStr=" + this.idStr + ", text=" + this.text + "}";
+    }
+}
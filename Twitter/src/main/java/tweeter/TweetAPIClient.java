@@ -1,13 +1,47 @@
 package tweeter;
 
+import base.ApiConfig;
+import base.ApiException;
+import base.ApiResponse;
 import base.CommonAPI;
+import base.CursoredIdIterator;
+import base.IdSnapshot;
+import base.InFlightLimiter;
+import base.Json;
+import base.OAuthSigner;
+import base.RequestCoalescer;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import io.restassured.response.ValidatableResponse;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
 import static io.restassured.RestAssured.given;
 
 public class TweetAPIClient extends CommonAPI {
 
-    private String invalidApiKey = "tDmeHGfs2gitCmDDPzbnxvy0y";
+    private final String invalidApiKey = "tDmeHGfs2gitCmDDPzbnxvy0y";
+    private final OAuthSigner invalidApiKeySigner =
+            OAuthSigner.forCredentials(this.invalidApiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret);
+    private final OAuthSigner invalidTokenSecretSigner =
+            OAuthSigner.forCredentials(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret + "1234");
 
     private final String CREATE_TWEET_ENDPOINT = "/statuses/update.json";
     private final String CREATE_FAVORITES_ENDPOINT = "/favorites/create.json";
@@ -29,6 +63,37 @@ public class TweetAPIClient extends CommonAPI {
     private final String GET_ACCOUNT_VERIFY_CREDENTIALS_ENDPOINT = "/account/verify_credentials.json";
     private final String GET_USERS_PROFILE_BANNER_ENDPOINT = "/users/profile_banner.json";
 
+    private static final int LOOKUP_BATCH_SIZE = 100;
+    public static final int DEFAULT_LOOKUP_CONCURRENCY = 4;
+    private static final TypeReference<List<Tweet>> TWEET_LIST = new TypeReference<List<Tweet>>() {
+    };
+    private static final TypeReference<List<User>> USER_LIST = new TypeReference<List<User>>() {
+    };
+    private static final byte[] NO_STATUS_FOUND =
+            "{\"errors\":[{\"code\":144,\"message\":\"No status found with that ID.\"}]}"
+                    .getBytes(StandardCharsets.UTF_8);
+
+    private final RequestCoalescer<Long, ApiResponse> tweetReads;
+
+    public TweetAPIClient() {
+        this(ApiConfig.get());
+    }
+
+    /**
+     * Creates a client for another deployment of the API, e.g. a local stand-in: {@code config.withBaseUrl(...)}.
+     */
+    public TweetAPIClient(ApiConfig config) {
+        super(config);
+        // reads that rarely change, and then mostly through this user's own writes; timelines and searches do not
+        cacheable(this.READ_TWEET_ENDPOINT, this.GET_USERS_PROFILE_BANNER_ENDPOINT,
+                this.GET_ACCOUNT_VERIFY_CREDENTIALS_ENDPOINT, this.GET_LISTS_LIST_ENDPOINT);
+        // reads whose slowest responses callers wait on; tweet searches are left out for their small rate limit
+        hedged(this.READ_TWEET_ENDPOINT, this.GET_USERS_PROFILE_BANNER_ENDPOINT, this.GET_USER_SEARCH_ENDPOINT);
+        this.tweetReads = config.getBatchWindowMillis() == 0 ? null
+                : new RequestCoalescer<>(TimeUnit.MILLISECONDS.toNanos(config.getBatchWindowMillis()),
+                LOOKUP_BATCH_SIZE, this::lookupBatch);
+    }
+
 
     /**
      * This method allows user to create a new tweet.
@@ -37,9 +102,9 @@ public class TweetAPIClient extends CommonAPI {
      * @return
      */
     public ValidatableResponse createTweet(String tweet) {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
+        return send("POST", () -> given(this.requestSpecification)
                 .param("status", tweet)
-                .when().post(this.baseUrl + this.CREATE_TWEET_ENDPOINT)
+                .when().post(this.baseUrl + this.CREATE_TWEET_ENDPOINT))
                 .then();
     }
 
@@ -50,9 +115,9 @@ public class TweetAPIClient extends CommonAPI {
      * @return
      */
     public ValidatableResponse createTweetWithAnInvalidAPIKey(String tweet) {
-        return given().auth().oauth(this.invalidApiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
+        return send("POST", () -> given(this.transport.requestSpecification()).filter(this.invalidApiKeySigner)
                 .param("status", tweet)
-                .when().post(this.baseUrl + this.CREATE_TWEET_ENDPOINT)
+                .when().post(this.baseUrl + this.CREATE_TWEET_ENDPOINT))
                 .then();
     }
 
@@ -63,22 +128,27 @@ public class TweetAPIClient extends CommonAPI {
      * @return
      */
     public ValidatableResponse createTweetWithWrongEndpoint(String tweet) {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
+        return send("POST", () -> given(this.requestSpecification)
                 .param("status", tweet)
-                .when().post(this.baseUrl + this.CREATE_TWEET_ENDPOINT + "8923")
+                .when().post(this.baseUrl + this.CREATE_TWEET_ENDPOINT + "8923"))
                 .then();
     }
 
     /**
-     * This method allows user to read a single tweet at a time.
+     * This method allows user to read a single tweet at a time. With {@link ApiConfig#getBatchWindowMillis()} set,
+     * reads made at about the same time are sent together as one /statuses/lookup.json request; with
+     * {@link ApiConfig#getHedgePercentile()} set, a slow read is hedged.
      *
      * @param tweetID
      * @return
      */
     public ValidatableResponse getUserTweet(Long tweetID) {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
+        if (this.tweetReads != null || this.hedgingPolicy != null) {
+            return await(getUserTweetAsync(tweetID));
+        }
+        return send("GET", () -> given(this.requestSpecification)
                 .param("id", tweetID)
-                .when().get(this.baseUrl + this.READ_TWEET_ENDPOINT)
+                .when().get(this.baseUrl + this.READ_TWEET_ENDPOINT))
                 .then();
     }
 
@@ -90,9 +160,9 @@ public class TweetAPIClient extends CommonAPI {
      * @return
      */
     public ValidatableResponse getMultipleTweets(Long tweetID1, Long tweetID2) {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
+        return send("GET", () -> given(this.requestSpecification)
                 .param("id", tweetID1 + ", " + tweetID2)
-                .when().get(this.baseUrl + this.READ_MULTIPLE_TWEETS_ENDPOINT)
+                .when().get(this.baseUrl + this.READ_MULTIPLE_TWEETS_ENDPOINT))
                 .then();
     }
 
@@ -104,53 +174,109 @@ public class TweetAPIClient extends CommonAPI {
      * @return
      */
     public ValidatableResponse getMultipleTweetsWithWrongEndpoint(Long tweetID1, Long tweetID2) {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
+        return send("GET", () -> given(this.requestSpecification)
                 .param("id", tweetID1 + ", " + tweetID2)
-                .when().get(this.baseUrl + this.READ_MULTIPLE_TWEETS_ENDPOINT + "1234")
+                .when().get(this.baseUrl + this.READ_MULTIPLE_TWEETS_ENDPOINT + "1234"))
                 .then();
     }
 
+    /**
+     * This method reads any number of tweets with as few requests as possible. The IDs are de-duplicated and
+     * split into chunks of up to 100 (the most /statuses/lookup.json accepts), at most
+     * {@code maxConcurrentRequests} chunks are in flight at once, and the results are merged into one map.
+     * Tweets that do not exist or are not visible to the user are simply absent from the map.
+     *
+     * @param tweetIDs
+     * @param maxConcurrentRequests
+     * @return a future of the tweets keyed by ID, failed with an {@link ApiException} if any chunk fails
+     */
+    public CompletableFuture<Map<Long, Tweet>> lookupTweetsAsync(Collection<Long> tweetIDs, int maxConcurrentRequests) {
+        List<List<Long>> chunks = partition(new LinkedHashSet<>(tweetIDs), LOOKUP_BATCH_SIZE);
+        InFlightLimiter limiter = new InFlightLimiter(maxConcurrentRequests);
+        Map<Long, Tweet> tweets = new ConcurrentHashMap<>();
+        CompletableFuture<?>[] requests = new CompletableFuture<?>[chunks.size()];
+        for (int i = 0; i < chunks.size(); i++) {
+            String ids = joinIds(chunks.get(i));
+            requests[i] = limiter.submit(() -> getAsync(this.READ_MULTIPLE_TWEETS_ENDPOINT,
+                    Collections.singletonMap("id", ids)))
+                    .thenAccept(response -> {
+                        if (response.statusCode() != 200) {
+                            throw new ApiException("Tweet lookup failed", response);
+                        }
+                        for (Tweet tweet : response.as(TWEET_LIST)) {
+                            tweets.put(tweet.getId(), tweet);
+                        }
+                    });
+        }
+        return CompletableFuture.allOf(requests).thenApply(done -> tweets);
+    }
+
+    /**
+     * Blocking variant of {@link #lookupTweetsAsync(Collection, int)}.
+     *
+     * @param tweetIDs
+     * @param maxConcurrentRequests
+     * @return the tweets keyed by ID
+     */
+    public Map<Long, Tweet> lookupTweets(Collection<Long> tweetIDs, int maxConcurrentRequests) {
+        return lookupTweetsAsync(tweetIDs, maxConcurrentRequests).join();
+    }
+
+    /**
+     * {@link #lookupTweets(Collection, int)} with up to {@value #DEFAULT_LOOKUP_CONCURRENCY} concurrent requests.
+     *
+     * @param tweetIDs
+     * @return the tweets keyed by ID
+     */
+    public Map<Long, Tweet> lookupTweets(Collection<Long> tweetIDs) {
+        return lookupTweets(tweetIDs, DEFAULT_LOOKUP_CONCURRENCY);
+    }
+
     // Read Twitter pst and verify with it_str
     //Read Twitter post
     public ValidatableResponse getUserTweetUsing_Id_str(String tweetID) {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
+        return send("GET", () -> given(this.requestSpecification)
                 .param("id", tweetID)
-                .when().get(this.baseUrl + this.READ_TWEET_ENDPOINT)
+                .when().get(this.baseUrl + this.READ_TWEET_ENDPOINT))
                 .then();
     }
 
     public ValidatableResponse getUserFavoriteTweetUsingUserId(String userID) {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
+        return send("GET", () -> given(this.requestSpecification)
                 .param("user_id", userID)
-                .when().get(this.baseUrl + this.GET_FAVORITES_LIST_ENDPOINT)
+                .when().get(this.baseUrl + this.GET_FAVORITES_LIST_ENDPOINT))
                 .then();
     }
 
     // GET ALL Tweet Information
     public ValidatableResponse getUserTimeTweet() {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
-                .when().get(this.baseUrl + this.GET_USER_TWEET_ENDPOINT)
+        return send("GET", () -> given(this.requestSpecification)
+                .when().get(this.baseUrl + this.GET_USER_TWEET_ENDPOINT))
                 .then();
     }
 
     // Delete a tweet from users twitter
     public ValidatableResponse deleteTweet(Long tweetId) {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
+        return send("POST", () -> given(this.requestSpecification)
                 .queryParam("id", tweetId)
-                .when().post(this.baseUrl + this.DELETE_TWEET_ENDPOINT)
+                .when().post(this.baseUrl + this.DELETE_TWEET_ENDPOINT))
                 .then();
     }
 
     /**
-     * This method searches users on Twitter.
+     * This method searches users on Twitter. With {@link ApiConfig#getHedgePercentile()} set, a slow search is
+     * hedged.
      *
      * @param search
      * @return
      */
     public ValidatableResponse searchUsers(String search) {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
+        if (this.hedgingPolicy != null) {
+            return await(searchUsersAsync(search));
+        }
+        return send("GET", () -> given(this.requestSpecification)
                 .param("q", search)
-                .when().get(this.baseUrl + this.GET_USER_SEARCH_ENDPOINT)
+                .when().get(this.baseUrl + this.GET_USER_SEARCH_ENDPOINT))
                 .then();
     }
 
@@ -161,9 +287,9 @@ public class TweetAPIClient extends CommonAPI {
      * @return
      */
     public ValidatableResponse searchUsersUsingInvalidParameter(String search) {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
+        return send("GET", () -> given(this.requestSpecification)
                 .param("id", search)
-                .when().get(this.baseUrl + this.GET_USER_SEARCH_ENDPOINT)
+                .when().get(this.baseUrl + this.GET_USER_SEARCH_ENDPOINT))
                 .then();
     }
 
@@ -174,9 +300,9 @@ public class TweetAPIClient extends CommonAPI {
      * @return
      */
     public ValidatableResponse searchUsersUsingInvalidEndpoint(String search) {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret + "1234")
+        return send("GET", () -> given(this.transport.requestSpecification()).filter(this.invalidTokenSecretSigner)
                 .param("q", search)
-                .when().get(this.baseUrl + this.GET_USER_SEARCH_ENDPOINT)
+                .when().get(this.baseUrl + this.GET_USER_SEARCH_ENDPOINT))
                 .then();
     }
 
@@ -187,9 +313,9 @@ public class TweetAPIClient extends CommonAPI {
      * @return
      */
     public ValidatableResponse searchTweets(String search) {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
+        return send("GET", () -> given(this.requestSpecification)
                 .param("q", search)
-                .when().get(this.baseUrl + this.GET_STANDARD_SEARCH_ENDPOINT)
+                .when().get(this.baseUrl + this.GET_STANDARD_SEARCH_ENDPOINT))
                 .then();
     }
 
@@ -200,9 +326,9 @@ public class TweetAPIClient extends CommonAPI {
      * @return
      */
     public ValidatableResponse searchTweetsWithoutAuthentication(String search) {
-        return given().auth().none()
+        return send("GET", () -> given(this.transport.requestSpecification())
                 .param("q", search)
-                .when().get(this.baseUrl + this.GET_STANDARD_SEARCH_ENDPOINT)
+                .when().get(this.baseUrl + this.GET_STANDARD_SEARCH_ENDPOINT))
                 .then();
     }
 
@@ -213,16 +339,46 @@ public class TweetAPIClient extends CommonAPI {
      * @return
      */
     public ValidatableResponse getReTweetersID(Long id) {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
+        return send("GET", () -> given(this.requestSpecification)
                 .param("id", id)
-                .when().get(this.baseUrl + this.GET_STATUSES_RETWEETERS_ENDPOINT)
+                .when().get(this.baseUrl + this.GET_STATUSES_RETWEETERS_ENDPOINT))
                 .then();
     }
 
+    /**
+     * This method streams the IDs of every user who re-tweeted a particular tweet, following the cursor lazily.
+     * Close the stream when done with it, so a page still being prefetched is cancelled.
+     *
+     * @param id
+     * @return
+     */
+    public LongStream streamReTweetersIDs(Long id) {
+        return CursoredIdIterator.stream(cursor -> {
+            Map<String, Object> params = new LinkedHashMap<>();
+            params.put("id", id);
+            params.put("count", 100);
+            params.put("cursor", cursor);
+            return getAsync(this.GET_STATUSES_RETWEETERS_ENDPOINT, params);
+        });
+    }
+
+    /**
+     * This method collects the IDs of every user who re-tweeted a particular tweet into a compact snapshot, to be
+     * compared with an earlier one.
+     *
+     * @param id
+     * @return
+     */
+    public IdSnapshot reTweetersSnapshot(Long id) {
+        try (LongStream ids = streamReTweetersIDs(id)) {
+            return IdSnapshot.of(ids);
+        }
+    }
+
     public ValidatableResponse createFavorites(Long tweetID) {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
+        return send("POST", () -> given(this.requestSpecification)
                 .param("id", tweetID)
-                .when().post(this.baseUrl + this.CREATE_FAVORITES_ENDPOINT)
+                .when().post(this.baseUrl + this.CREATE_FAVORITES_ENDPOINT))
                 .then();
     }
 
@@ -233,9 +389,9 @@ public class TweetAPIClient extends CommonAPI {
      * @return
      */
     public ValidatableResponse deleteFavorite(Long tweetId) {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
+        return send("POST", () -> given(this.requestSpecification)
                 .queryParam("id", tweetId)
-                .when().post(this.baseUrl + this.DELETE_FAVORITE_ENDPOINT)
+                .when().post(this.baseUrl + this.DELETE_FAVORITE_ENDPOINT))
                 .then();
     }
 
@@ -247,12 +403,43 @@ public class TweetAPIClient extends CommonAPI {
      * @return
      */
     public ValidatableResponse getFollowersIDsUsingScreenNameParameter(String userID) {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
+        return send("GET", () -> given(this.requestSpecification)
                 .param("screen_name", userID)
-                .when().get(this.baseUrl + this.GET_FOLLOWERS_ENDPOINT)
+                .when().get(this.baseUrl + this.GET_FOLLOWERS_ENDPOINT))
                 .then();
     }
 
+    /**
+     * This method streams the IDs of every user following the specified user. Pages of up to 5000 IDs are
+     * fetched lazily as the stream is consumed, following "next_cursor" and prefetching the next page. Close the
+     * stream when done with it, so a page still being prefetched is cancelled.
+     *
+     * @param screenName
+     * @return
+     */
+    public LongStream streamFollowersIDs(String screenName) {
+        return CursoredIdIterator.stream(cursor -> {
+            Map<String, Object> params = new LinkedHashMap<>();
+            params.put("screen_name", screenName);
+            params.put("count", 5000);
+            params.put("cursor", cursor);
+            return getAsync(this.GET_FOLLOWERS_ENDPOINT, params);
+        });
+    }
+
+    /**
+     * This method collects the IDs of every user following the specified user into a compact snapshot, to be
+     * compared with an earlier one, e.g. {@code store.latest(series).diff(followersSnapshot(screenName))}.
+     *
+     * @param screenName
+     * @return
+     */
+    public IdSnapshot followersSnapshot(String screenName) {
+        try (LongStream ids = streamFollowersIDs(screenName)) {
+            return IdSnapshot.of(ids);
+        }
+    }
+
     /**
      * This method returns a cursored collection of user IDs for every user following the specified user
      * using "id" parameter.
@@ -261,9 +448,9 @@ public class TweetAPIClient extends CommonAPI {
      * @return
      */
     public ValidatableResponse getFollowersIDsUsingInvalidParameter(String userID) {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
+        return send("GET", () -> given(this.requestSpecification)
                 .param("id", userID)
-                .when().get(this.baseUrl + this.GET_FOLLOWERS_ENDPOINT)
+                .when().get(this.baseUrl + this.GET_FOLLOWERS_ENDPOINT))
                 .then();
     }
 
@@ -275,9 +462,9 @@ public class TweetAPIClient extends CommonAPI {
      * @return
      */
     public ValidatableResponse getFollowersIDsUsingInvalidEndpoint(String userID) {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
+        return send("GET", () -> given(this.requestSpecification)
                 .param("screen_name", userID)
-                .when().get(this.baseUrl + this.GET_FOLLOWERS_ENDPOINT + "1234")
+                .when().get(this.baseUrl + this.GET_FOLLOWERS_ENDPOINT + "1234"))
                 .then();
     }
 
@@ -288,8 +475,8 @@ public class TweetAPIClient extends CommonAPI {
      * @return
      */
     public ValidatableResponse getReTweetsOfMe() {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
-                .when().get(this.baseUrl + this.GET_RETWEETS_OF_ME_ENDPOINT)
+        return send("GET", () -> given(this.requestSpecification)
+                .when().get(this.baseUrl + this.GET_RETWEETS_OF_ME_ENDPOINT))
                 .then();
     }
 
@@ -300,8 +487,8 @@ public class TweetAPIClient extends CommonAPI {
      * @return
      */
     public ValidatableResponse getReTweetsOfMeWithoutAuthentication() {
-        return given().auth().none()
-                .when().get(this.baseUrl + this.GET_RETWEETS_OF_ME_ENDPOINT)
+        return send("GET", () -> given(this.transport.requestSpecification())
+                .when().get(this.baseUrl + this.GET_RETWEETS_OF_ME_ENDPOINT))
                 .then();
     }
 
@@ -312,8 +499,8 @@ public class TweetAPIClient extends CommonAPI {
      * @return
      */
     public ValidatableResponse getMentionsTimeline() {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
-                .when().get(this.baseUrl + this.GET_MENTIONS_TIMELINE_ENDPOINT)
+        return send("GET", () -> given(this.requestSpecification)
+                .when().get(this.baseUrl + this.GET_MENTIONS_TIMELINE_ENDPOINT))
                 .then();
     }
 
@@ -323,8 +510,8 @@ public class TweetAPIClient extends CommonAPI {
      * @return
      */
     public ValidatableResponse getMyAListOfMyList() {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
-                .when().get(this.baseUrl + this.GET_LISTS_LIST_ENDPOINT)
+        return send("GET", () -> given(this.requestSpecification)
+                .when().get(this.baseUrl + this.GET_LISTS_LIST_ENDPOINT))
                 .then();
     }
 
@@ -336,20 +523,24 @@ public class TweetAPIClient extends CommonAPI {
      * @return
      */
     public ValidatableResponse verifyAccountCredentials() {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
-                .when().get(this.baseUrl + this.GET_ACCOUNT_VERIFY_CREDENTIALS_ENDPOINT)
+        return send("GET", () -> given(this.requestSpecification)
+                .when().get(this.baseUrl + this.GET_ACCOUNT_VERIFY_CREDENTIALS_ENDPOINT))
                 .then();
     }
 
     /**
-     * This method returns a map of the available size variations of the specified user's profile banner.
+     * This method returns a map of the available size variations of the specified user's profile banner. With
+     * {@link ApiConfig#getHedgePercentile()} set, a slow request is hedged.
      * @param userScreenName
      * @return
      */
     public ValidatableResponse getUsersProfileBanner(String userScreenName) {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
+        if (this.hedgingPolicy != null) {
+            return await(getUsersProfileBannerAsync(userScreenName));
+        }
+        return send("GET", () -> given(this.requestSpecification)
                 .param("screen_name", userScreenName)
-                .when().get(this.baseUrl + this.GET_USERS_PROFILE_BANNER_ENDPOINT)
+                .when().get(this.baseUrl + this.GET_USERS_PROFILE_BANNER_ENDPOINT))
                 .then();
     }
 
@@ -359,10 +550,492 @@ public class TweetAPIClient extends CommonAPI {
      * @return
      */
     public ValidatableResponse createSavedSearches(String search) {
-        return given().auth().oauth(this.apiKey, this.apiSecretKey, this.accessToken, this.accessTokenSecret)
+        return send("POST", () -> given(this.requestSpecification)
                 .param("query", search)
-                .when().post(this.baseUrl + this.CREATE_SAVED_SEARCHES_ENDPOINT)
+                .when().post(this.baseUrl + this.CREATE_SAVED_SEARCHES_ENDPOINT))
                 .then();
     }
 
+    /*
+     * Asynchronous variants. They return immediately and complete on the shared non-blocking transport, which
+     * caps how many requests are on the wire at once (ApiConfig#getMaxInFlightRequests).
+     */
+
+    /**
+     * Non-blocking variant of {@link #createTweet(String)}.
+     *
+     * @param tweet
+     * @return
+     */
+    public CompletableFuture<ApiResponse> createTweetAsync(String tweet) {
+        return postAsync(this.CREATE_TWEET_ENDPOINT, Collections.singletonMap("status", tweet));
+    }
+
+    /**
+     * Non-blocking variant of {@link #getUserTweet(Long)}.
+     *
+     * @param tweetID
+     * @return
+     */
+    public CompletableFuture<ApiResponse> getUserTweetAsync(Long tweetID) {
+        if (this.tweetReads != null) {
+            return this.tweetReads.submit(tweetID);
+        }
+        return getAsync(this.READ_TWEET_ENDPOINT, Collections.singletonMap("id", tweetID));
+    }
+
+    /**
+     * Non-blocking variant of {@link #getMultipleTweets(Long, Long)}.
+     *
+     * @param tweetID1
+     * @param tweetID2
+     * @return
+     */
+    public CompletableFuture<ApiResponse> getMultipleTweetsAsync(Long tweetID1, Long tweetID2) {
+        return getAsync(this.READ_MULTIPLE_TWEETS_ENDPOINT, Collections.singletonMap("id", tweetID1 + ", " + tweetID2));
+    }
+
+    /**
+     * Non-blocking variant of {@link #getUserFavoriteTweetUsingUserId(String)}.
+     *
+     * @param userID
+     * @return
+     */
+    public CompletableFuture<ApiResponse> getUserFavoriteTweetUsingUserIdAsync(String userID) {
+        return getAsync(this.GET_FAVORITES_LIST_ENDPOINT, Collections.singletonMap("user_id", userID));
+    }
+
+    /**
+     * Non-blocking variant of {@link #getUserTimeTweet()}.
+     *
+     * @return
+     */
+    public CompletableFuture<ApiResponse> getUserTimeTweetAsync() {
+        return getAsync(this.GET_USER_TWEET_ENDPOINT, Collections.emptyMap());
+    }
+
+    /**
+     * Non-blocking variant of {@link #deleteTweet(Long)}.
+     *
+     * @param tweetId
+     * @return
+     */
+    public CompletableFuture<ApiResponse> deleteTweetAsync(Long tweetId) {
+        return postAsync(this.DELETE_TWEET_ENDPOINT, Collections.singletonMap("id", tweetId));
+    }
+
+    /**
+     * Non-blocking variant of {@link #searchUsers(String)}.
+     *
+     * @param search
+     * @return
+     */
+    public CompletableFuture<ApiResponse> searchUsersAsync(String search) {
+        return getAsync(this.GET_USER_SEARCH_ENDPOINT, Collections.singletonMap("q", search));
+    }
+
+    /**
+     * Non-blocking variant of {@link #searchTweets(String)}.
+     *
+     * @param search
+     * @return
+     */
+    public CompletableFuture<ApiResponse> searchTweetsAsync(String search) {
+        return getAsync(this.GET_STANDARD_SEARCH_ENDPOINT, Collections.singletonMap("q", search));
+    }
+
+    /**
+     * Non-blocking variant of {@link #getReTweetersID(Long)}.
+     *
+     * @param id
+     * @return
+     */
+    public CompletableFuture<ApiResponse> getReTweetersIDAsync(Long id) {
+        return getAsync(this.GET_STATUSES_RETWEETERS_ENDPOINT, Collections.singletonMap("id", id));
+    }
+
+    /**
+     * Non-blocking variant of {@link #createFavorites(Long)}.
+     *
+     * @param tweetID
+     * @return
+     */
+    public CompletableFuture<ApiResponse> createFavoritesAsync(Long tweetID) {
+        return postAsync(this.CREATE_FAVORITES_ENDPOINT, Collections.singletonMap("id", tweetID));
+    }
+
+    /**
+     * Non-blocking variant of {@link #deleteFavorite(Long)}.
+     *
+     * @param tweetId
+     * @return
+     */
+    public CompletableFuture<ApiResponse> deleteFavoriteAsync(Long tweetId) {
+        return postAsync(this.DELETE_FAVORITE_ENDPOINT, Collections.singletonMap("id", tweetId));
+    }
+
+    /**
+     * Non-blocking variant of {@link #getFollowersIDsUsingScreenNameParameter(String)}.
+     *
+     * @param userID
+     * @return
+     */
+    public CompletableFuture<ApiResponse> getFollowersIDsUsingScreenNameParameterAsync(String userID) {
+        return getAsync(this.GET_FOLLOWERS_ENDPOINT, Collections.singletonMap("screen_name", userID));
+    }
+
+    /**
+     * Non-blocking variant of {@link #getReTweetsOfMe()}.
+     *
+     * @return
+     */
+    public CompletableFuture<ApiResponse> getReTweetsOfMeAsync() {
+        return getAsync(this.GET_RETWEETS_OF_ME_ENDPOINT, Collections.emptyMap());
+    }
+
+    /**
+     * Non-blocking variant of {@link #getMentionsTimeline()}.
+     *
+     * @return
+     */
+    public CompletableFuture<ApiResponse> getMentionsTimelineAsync() {
+        return getAsync(this.GET_MENTIONS_TIMELINE_ENDPOINT, Collections.emptyMap());
+    }
+
+    /**
+     * Non-blocking variant of {@link #getMyAListOfMyList()}.
+     *
+     * @return
+     */
+    public CompletableFuture<ApiResponse> getMyAListOfMyListAsync() {
+        return getAsync(this.GET_LISTS_LIST_ENDPOINT, Collections.emptyMap());
+    }
+
+    /**
+     * Non-blocking variant of {@link #verifyAccountCredentials()}.
+     *
+     * @return
+     */
+    public CompletableFuture<ApiResponse> verifyAccountCredentialsAsync() {
+        return getAsync(this.GET_ACCOUNT_VERIFY_CREDENTIALS_ENDPOINT, Collections.emptyMap());
+    }
+
+    /**
+     * Non-blocking variant of {@link #getUsersProfileBanner(String)}.
+     *
+     * @param userScreenName
+     * @return
+     */
+    public CompletableFuture<ApiResponse> getUsersProfileBannerAsync(String userScreenName) {
+        return getAsync(this.GET_USERS_PROFILE_BANNER_ENDPOINT, Collections.singletonMap("screen_name", userScreenName));
+    }
+
+    /**
+     * Non-blocking variant of {@link #createSavedSearches(String)}.
+     *
+     * @param search
+     * @return
+     */
+    public CompletableFuture<ApiResponse> createSavedSearchesAsync(String search) {
+        return postAsync(this.CREATE_SAVED_SEARCHES_ENDPOINT, Collections.singletonMap("query", search));
+    }
+
+    /*
+     * Streaming variants. Tweets are bound one at a time as the body is read off the connection, so a large page
+     * is never held in memory as a whole. Close the returned stream, e.g. with try-with-resources.
+     */
+
+    /**
+     * Streaming variant of {@link #getUserTimeTweet()}.
+     *
+     * @param count number of tweets to request, at most 200
+     * @return
+     */
+    public Stream<Tweet> streamUserTimeTweet(int count) {
+        return streamGet(this.GET_USER_TWEET_ENDPOINT, Collections.singletonMap("count", count), null, Tweet.class);
+    }
+
+    /**
+     * Streaming variant of {@link #getMentionsTimeline()}.
+     *
+     * @param count number of tweets to request, at most 200
+     * @return
+     */
+    public Stream<Tweet> streamMentionsTimeline(int count) {
+        return streamGet(this.GET_MENTIONS_TIMELINE_ENDPOINT, Collections.singletonMap("count", count), null,
+                Tweet.class);
+    }
+
+    /**
+     * Streaming variant of {@link #getReTweetsOfMe()}.
+     *
+     * @param count number of tweets to request, at most 100
+     * @return
+     */
+    public Stream<Tweet> streamReTweetsOfMe(int count) {
+        return streamGet(this.GET_RETWEETS_OF_ME_ENDPOINT, Collections.singletonMap("count", count), null,
+                Tweet.class);
+    }
+
+    /**
+     * Streaming variant of {@link #searchTweets(String)}. Only the "statuses" array of the body is read.
+     *
+     * @param search
+     * @param count  number of tweets to request, at most 100
+     * @return
+     */
+    public Stream<Tweet> streamSearchTweets(String search, int count) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("q", search);
+        params.put("count", count);
+        return streamGet(this.GET_STANDARD_SEARCH_ENDPOINT, params, "statuses", Tweet.class);
+    }
+
+    /*
+     * Typed variants. The response is bound once to a model class, so reading a field is a plain getter instead of
+     * a JSON path evaluated over the body on every call.
+     */
+
+    /**
+     * Typed variant of {@link #createTweet(String)}.
+     *
+     * @param tweet
+     * @return
+     */
+    public Result<Tweet> createTweetResult(String tweet) {
+        return Result.of(createTweet(tweet), Tweet.class);
+    }
+
+    /**
+     * Typed variant of {@link #getUserTweet(Long)}.
+     *
+     * @param tweetID
+     * @return
+     */
+    public Result<Tweet> getUserTweetResult(Long tweetID) {
+        return Result.of(getUserTweet(tweetID), Tweet.class);
+    }
+
+    /**
+     * Typed variant of {@link #getMultipleTweets(Long, Long)}.
+     *
+     * @param tweetID1
+     * @param tweetID2
+     * @return
+     */
+    public Result<List<Tweet>> getMultipleTweetsResult(Long tweetID1, Long tweetID2) {
+        return Result.of(getMultipleTweets(tweetID1, tweetID2), TWEET_LIST);
+    }
+
+    /**
+     * Typed variant of {@link #getUserTimeTweet()}.
+     *
+     * @return
+     */
+    public Result<List<Tweet>> getUserTimeTweetResult() {
+        return Result.of(getUserTimeTweet(), TWEET_LIST);
+    }
+
+    /**
+     * Typed variant of {@link #getMentionsTimeline()}.
+     *
+     * @return
+     */
+    public Result<List<Tweet>> getMentionsTimelineResult() {
+        return Result.of(getMentionsTimeline(), TWEET_LIST);
+    }
+
+    /**
+     * One page of {@code timeline}, newest first.
+     *
+     * @param timeline
+     * @param count    number of tweets to request, at most {@link Timeline#getMaxCount()}
+     * @param sinceId  only tweets newer than this ID, or null
+     * @param maxId    only tweets with this ID or older, or null
+     * @return
+     */
+    public Result<List<Tweet>> getTimelinePageResult(Timeline timeline, int count, Long sinceId, Long maxId) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("count", count);
+        if (sinceId != null) {
+            params.put("since_id", sinceId);
+        }
+        if (maxId != null) {
+            params.put("max_id", maxId);
+        }
+        return Result.of(send("GET", () -> given(this.requestSpecification)
+                .queryParams(params)
+                .when().get(this.baseUrl + timelineEndpoint(timeline)))
+                .then(), TWEET_LIST);
+    }
+
+    private String timelineEndpoint(Timeline timeline) {
+        switch (timeline) {
+            case USER:
+                return this.GET_USER_TWEET_ENDPOINT;
+            case MENTIONS:
+                return this.GET_MENTIONS_TIMELINE_ENDPOINT;
+            case RETWEETS_OF_ME:
+                return this.GET_RETWEETS_OF_ME_ENDPOINT;
+            default:
+                throw new IllegalArgumentException("Unknown timeline: " + timeline);
+        }
+    }
+
+    /**
+     * Typed variant of {@link #deleteTweet(Long)}.
+     *
+     * @param tweetId
+     * @return
+     */
+    public Result<Tweet> deleteTweetResult(Long tweetId) {
+        return Result.of(deleteTweet(tweetId), Tweet.class);
+    }
+
+    /**
+     * Typed variant of {@link #createFavorites(Long)}.
+     *
+     * @param tweetID
+     * @return
+     */
+    public Result<Tweet> createFavoritesResult(Long tweetID) {
+        return Result.of(createFavorites(tweetID), Tweet.class);
+    }
+
+    /**
+     * Typed variant of {@link #deleteFavorite(Long)}.
+     *
+     * @param tweetId
+     * @return
+     */
+    public Result<Tweet> deleteFavoriteResult(Long tweetId) {
+        return Result.of(deleteFavorite(tweetId), Tweet.class);
+    }
+
+    /**
+     * Typed variant of {@link #searchUsers(String)}.
+     *
+     * @param search
+     * @return
+     */
+    public Result<List<User>> searchUsersResult(String search) {
+        return Result.of(searchUsers(search), USER_LIST);
+    }
+
+    /**
+     * Typed variant of {@link #verifyAccountCredentials()}.
+     *
+     * @return
+     */
+    public Result<User> verifyAccountCredentialsResult() {
+        return Result.of(verifyAccountCredentials(), User.class);
+    }
+
+    /**
+     * Typed variant of {@link #getFollowersIDsUsingScreenNameParameter(String)}.
+     *
+     * @param userID
+     * @return
+     */
+    public Result<IdsPage> getFollowersIDsResult(String userID) {
+        return Result.of(getFollowersIDsUsingScreenNameParameter(userID), IdsPage.class);
+    }
+
+    /**
+     * Typed variant of {@link #getReTweetersID(Long)}.
+     *
+     * @param id
+     * @return
+     */
+    public Result<IdsPage> getReTweetersIDResult(Long id) {
+        return Result.of(getReTweetersID(id), IdsPage.class);
+    }
+
+    /**
+     * Typed variant of {@link #createSavedSearches(String)}.
+     *
+     * @param search
+     * @return
+     */
+    public Result<SavedSearch> createSavedSearchesResult(String search) {
+        return Result.of(createSavedSearches(search), SavedSearch.class);
+    }
+
+    /**
+     * Waits for a request the blocking method sent asynchronously, rethrowing its failure unwrapped.
+     */
+    private static ValidatableResponse await(CompletableFuture<ApiResponse> response) {
+        try {
+            return response.join().toRestAssured().then();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    private static <T> List<List<T>> partition(Collection<T> items, int size) {
+        List<List<T>> chunks = new ArrayList<>((items.size() + size - 1) / size);
+        List<T> chunk = new ArrayList<>(size);
+        for (T item : items) {
+            if (item == null) {
+                continue;
+            }
+            chunk.add(item);
+            if (chunk.size() == size) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(size);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * Reads a batch of single-tweet reads with one /statuses/lookup.json request and answers each as
+     * /statuses/show.json would: the tweet with a 200, or Twitter's "No status found" error with a 404 (lookup
+     * leaves out tweets that do not exist or are not visible). If the lookup itself fails, e.g. with a 429, every
+     * read gets its response.
+     */
+    private CompletableFuture<Map<Long, ApiResponse>> lookupBatch(List<Long> tweetIDs) {
+        return getAsync(this.READ_MULTIPLE_TWEETS_ENDPOINT, Collections.singletonMap("id", joinIds(tweetIDs)))
+                .thenApply(response -> {
+                    Map<Long, ApiResponse> reads = new HashMap<>();
+                    if (response.statusCode() != 200) {
+                        for (Long id : tweetIDs) {
+                            reads.put(id, response);
+                        }
+                        return reads;
+                    }
+                    Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                    headers.putAll(response.headers());
+                    headers.remove("Content-Length");
+                    try {
+                        for (JsonNode tweet : Json.mapper().readTree(response.asByteArray())) {
+                            reads.put(tweet.get("id").asLong(), new ApiResponse(200, response.statusLine(), headers,
+                                    Json.mapper().writeValueAsBytes(tweet)));
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    String protocol = response.statusLine().split(" ", 2)[0];
+                    for (Long id : tweetIDs) {
+                        reads.computeIfAbsent(id, missing -> new ApiResponse(404, protocol + " 404 Not Found",
+                                headers, NO_STATUS_FOUND));
+                    }
+                    return reads;
+                });
+    }
+
+    private static String joinIds(List<Long> ids) {
+        StringBuilder joined = new StringBuilder(ids.size() * 20);
+        for (Long id : ids) {
+            if (joined.length() > 0) {
+                joined.append(',');
+            }
+            joined.append(id);
+        }
+        return joined.toString();
+    }
+
 }
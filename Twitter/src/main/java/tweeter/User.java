@@ -0,0 +1,68 @@
+package tweeter;
+
+/**
+ * A user as returned by the users and account endpoints, and embedded in every tweet.
+ */
+public class User {
+
+    private long id;
+    private String idStr;
+    private String name;
+    private String screenName;
+    private String location;
+    private String description;
+    private int followersCount;
+    private int friendsCount;
+    private int statusesCount;
+    private boolean verified;
+    private String createdAt;
+
+    public long getId() {
+        return this.id;
+    }
+
+    public String getIdStr() {
+        return this.idStr;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public String getScreenName() {
+        return this.screenName;
+    }
+
+    public String getLocation() {
+        return this.location;
+    }
+
+    public String getDescription() {
+        return this.description;
+    }
+
+    public int getFollowersCount() {
+        return this.followersCount;
+    }
+
+    public int getFriendsCount() {
+        return this.friendsCount;
+    }
+
+    public int getStatusesCount() {
+        return this.statusesCount;
+    }
+
+    public boolean isVerified() {
+        return this.verified;
+    }
+
+    public String getCreatedAt() {
+        return this.createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "User{screenName=" + this.screenName + ", name=" + this.name + "}";
+    }
+}
@@ -0,0 +1,72 @@
+package tweeter;
+
+import org.junit.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+public class BulkTweetWriterTest {
+
+    private TweetAPIClient tweetAPIClient;
+
+    /**
+     * Always runs against the stand-in, even without {@code -Dtwitter.standIn=true}: these tests write in bulk
+     * and count on the stand-in's replies, so they must never touch the real account.
+     */
+    @BeforeClass
+    public void setUpClient() {
+        this.tweetAPIClient = new TweetAPIClient(TwitterStandIn.shared().clientConfig());
+    }
+
+    /**
+     * This test verifies that a bulk write creates every new status, counts a repeated one as a duplicate, and
+     * deletes the created tweets again, counting a tweet that is already gone as a duplicate.
+     */
+    @Test
+    public void testBulkCreateAndDelete() {
+        String run = UUID.randomUUID().toString();
+        Stream<String> statuses = Stream.concat(
+                IntStream.range(0, 40).mapToObj(i -> "Bulk writer " + run + " #" + i),
+                Stream.of("Bulk writer " + run + " #0"));
+        ConcurrentLinkedQueue<Long> created = new ConcurrentLinkedQueue<>();
+        BulkTweetWriter writer = new BulkTweetWriter(this.tweetAPIClient, 4);
+
+        BulkTweetWriter.Summary creates = writer.createTweets(statuses, created::add);
+        Assert.assertEquals(41, creates.getSubmitted());
+        Assert.assertEquals(40, creates.getSucceeded());
+        Assert.assertEquals(1, creates.getDuplicates());
+        Assert.assertEquals(0, creates.getFailed());
+        Assert.assertEquals(40, created.size());
+
+        BulkTweetWriter.Summary deletes = writer.deleteTweets(LongStream.concat(
+                created.stream().mapToLong(Long::longValue), LongStream.of(created.peek())));
+        Assert.assertEquals(40, deletes.getSucceeded());
+        Assert.assertEquals(1, deletes.getDuplicates());
+        Assert.assertTrue(deletes.isComplete());
+    }
+
+    /**
+     * This test verifies that failures are counted by reason.
+     */
+    @Test
+    public void testFailuresAreGroupedByReason() {
+        StringBuilder tooLong = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            tooLong.append('x');
+        }
+        String run = UUID.randomUUID().toString();
+        BulkTweetWriter.Summary summary = new BulkTweetWriter(this.tweetAPIClient, 2).createTweets(
+                IntStream.range(0, 3).mapToObj(i -> tooLong + run + i));
+        Assert.assertEquals(3, summary.getFailed());
+        Map<String, Long> reasons = summary.getFailureReasons();
+        Assert.assertEquals(1, reasons.size());
+        Assert.assertEquals(Long.valueOf(3), reasons.values().iterator().next());
+        Assert.assertTrue(reasons.keySet().iterator().next().startsWith("403 (186)"));
+    }
+}
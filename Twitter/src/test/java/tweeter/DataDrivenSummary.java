@@ -0,0 +1,104 @@
+package tweeter;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.testng.ITestContext;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates the cases of data-driven tests into one summary per test method, printed when the test finishes:
+ * how many cases passed, failed and were skipped, the case duration percentiles, and the failures grouped by
+ * message. Per-case results are folded in as they arrive, so the summary stays small however large the corpus.
+ * <p>
+ * Register it on a test class with {@code @Listeners(DataDrivenSummary.class)}.
+ */
+public class DataDrivenSummary implements ITestListener {
+
+    private static final int MAX_FAILURE_REASONS = 20;
+    private static final String OTHER_REASONS = "(other reasons)";
+
+    private final Map<String, MethodSummary> methods = new ConcurrentSkipListMap<>();
+
+    @Override
+    public void onTestSuccess(ITestResult result) {
+        record(result, null);
+    }
+
+    @Override
+    public void onTestFailure(ITestResult result) {
+        Throwable error = result.getThrowable();
+        String reason = error == null ? "failed" : error.getClass().getSimpleName() + ": " + error.getMessage();
+        // one line per reason in the report
+        reason = reason.replaceAll("\\s+", " ").trim();
+        record(result, reason.length() <= 200 ? reason : reason.substring(0, 200) + "...");
+    }
+
+    @Override
+    public void onTestSkipped(ITestResult result) {
+        if (result.getMethod().isDataDriven()) {
+            summary(result).skipped.increment();
+        }
+    }
+
+    @Override
+    public void onTestFailedButWithinSuccessPercentage(ITestResult result) {
+        onTestFailure(result);
+    }
+
+    @Override
+    public void onFinish(ITestContext context) {
+        if (this.methods.isEmpty()) {
+            return;
+        }
+        StringBuilder report = new StringBuilder("Data-driven summary (" + context.getName() + ")\n");
+        report.append(String.format("%-28s %7s %7s %7s %8s %8s %8s%n", "test", "cases", "failed", "skipped",
+                "p50 ms", "p99 ms", "max ms"));
+        for (Map.Entry<String, MethodSummary> method : this.methods.entrySet()) {
+            MethodSummary summary = method.getValue();
+            Histogram durations = summary.durations.copy();
+            report.append(String.format("%-28s %7d %7d %7d %8d %8d %8d%n", method.getKey(),
+                    durations.getTotalCount() + summary.skipped.sum(), summary.failed.sum(), summary.skipped.sum(),
+                    durations.getValueAtPercentile(50), durations.getValueAtPercentile(99),
+                    durations.getMaxValue()));
+            summary.failureReasons.entrySet().stream()
+                    .sorted(Comparator.comparing((Map.Entry<String, LongAdder> reason) -> reason.getValue().sum())
+                            .reversed())
+                    .forEach(reason -> report.append(String.format("    %6d x %s%n", reason.getValue().sum(),
+                            reason.getKey())));
+        }
+        System.out.print(report);
+    }
+
+    private void record(ITestResult result, String failureReason) {
+        if (!result.getMethod().isDataDriven()) {
+            return;
+        }
+        MethodSummary summary = summary(result);
+        summary.durations.recordValue(Math.max(0L, result.getEndMillis() - result.getStartMillis()));
+        if (failureReason != null) {
+            summary.failed.increment();
+            // a bounded number of distinct reasons, in case messages carry per-case details
+            String key = summary.failureReasons.size() < MAX_FAILURE_REASONS
+                    || summary.failureReasons.containsKey(failureReason) ? failureReason : OTHER_REASONS;
+            summary.failureReasons.computeIfAbsent(key, k -> new LongAdder()).increment();
+        }
+    }
+
+    private MethodSummary summary(ITestResult result) {
+        return this.methods.computeIfAbsent(result.getMethod().getMethodName(), name -> new MethodSummary());
+    }
+
+    private static final class MethodSummary {
+        final Histogram durations = new ConcurrentHistogram(3);
+        final LongAdder failed = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+        final Map<String, LongAdder> failureReasons = new ConcurrentHashMap<>();
+    }
+}
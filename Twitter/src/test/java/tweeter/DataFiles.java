@@ -0,0 +1,150 @@
+package tweeter;
+
+import base.Json;
+import com.fasterxml.jackson.databind.MappingIterator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily read test cases for TestNG {@code @DataProvider}s, one {@code Object[]} per case.
+ * <p>
+ * A data file is read as the iterator is advanced, so a corpus of any size is never parsed up front. Files are
+ * looked up on the test classpath under {@code data/}; {@code -Dtwitter.data.<file name>=<path>} points a provider
+ * at a larger corpus elsewhere, e.g. {@code -Dtwitter.data.tweet-reads.csv=/data/ids.csv}.
+ */
+final class DataFiles {
+
+    private DataFiles() {
+    }
+
+    /**
+     * Reads a CSV file with a header line. Each case is the row's fields as strings; fields may be quoted, with
+     * {@code ""} for a quote inside. Blank lines and lines starting with '#' are skipped.
+     */
+    static Iterator<Object[]> csv(String name) {
+        BufferedReader reader = open(name);
+        return new Iterator<Object[]>() {
+            private boolean headerSkipped;
+            private Object[] next;
+
+            @Override
+            public boolean hasNext() {
+                if (this.next != null) {
+                    return true;
+                }
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.trim().isEmpty() || line.startsWith("#")) {
+                            continue;
+                        }
+                        if (!this.headerSkipped) {
+                            this.headerSkipped = true;
+                            continue;
+                        }
+                        this.next = parseCsvLine(line);
+                        return true;
+                    }
+                    reader.close();
+                    return false;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot read " + name, e);
+                }
+            }
+
+            @Override
+            public Object[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Object[] row = this.next;
+                this.next = null;
+                return row;
+            }
+        };
+    }
+
+    /**
+     * Reads a JSON Lines file. Each case is one line bound to {@code type}.
+     */
+    static <T> Iterator<Object[]> jsonl(String name, Class<T> type) {
+        MappingIterator<T> values;
+        try {
+            values = Json.mapper().readerFor(type).readValues(open(name));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + name, e);
+        }
+        return new Iterator<Object[]>() {
+            @Override
+            public boolean hasNext() {
+                if (values.hasNext()) {
+                    return true;
+                }
+                try {
+                    values.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot read " + name, e);
+                }
+                return false;
+            }
+
+            @Override
+            public Object[] next() {
+                return new Object[]{values.next()};
+            }
+        };
+    }
+
+    private static BufferedReader open(String name) {
+        String override = System.getProperty("twitter.data." + name);
+        try {
+            InputStream in = override != null ? Files.newInputStream(Paths.get(override))
+                    : DataFiles.class.getClassLoader().getResourceAsStream("data/" + name);
+            if (in == null) {
+                throw new IllegalArgumentException("No test data file data/" + name);
+            }
+            return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open " + (override != null ? override : name), e);
+        }
+    }
+
+    private static Object[] parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray();
+    }
+}
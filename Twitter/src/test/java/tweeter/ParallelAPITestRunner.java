@@ -0,0 +1,29 @@
+package tweeter;
+
+import base.IoExecutors;
+import org.testng.TestNG;
+
+import java.util.Collections;
+
+/**
+ * Runs a TestNG suite with {@link VirtualThreadExecutorFactory}, so parallel tests execute on virtual threads
+ * where available. Surefire cannot plug in a custom executor factory, hence this entry point:
+ * <pre>
+ * mvn -pl Twitter test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=tweeter.ParallelAPITestRunner
+ * </pre>
+ * An optional argument names the suite file (default {@code src/test/APITestRunnerParallel.xml}).
+ */
+public class ParallelAPITestRunner {
+
+    public static void main(String[] args) {
+        String suite = args.length > 0 ? args[0] : "src/test/APITestRunnerParallel.xml";
+        System.out.println("Running " + suite + " on "
+                + (IoExecutors.virtualThreadsAvailable() ? "virtual threads" : "platform threads"));
+        TestNG testNG = new TestNG();
+        testNG.setTestSuites(Collections.singletonList(suite));
+        testNG.setOutputDirectory("target/test-output");
+        testNG.setExecutorFactory(new VirtualThreadExecutorFactory());
+        testNG.run();
+        System.exit(testNG.getStatus());
+    }
+}
@@ -0,0 +1,73 @@
+package tweeter;
+
+import base.ApiException;
+import base.ApiResponse;
+import org.junit.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+public class ResultTest {
+
+    private static ApiResponse response(int status, String body) {
+        return new ApiResponse(status, "HTTP/1.1 " + status, Collections.emptyMap(),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * This test verifies that a tweet body is bound to the model, snake_case fields included, and that unknown
+     * fields are ignored.
+     */
+    @Test
+    public void testTweetIsBound() {
+        Result<Tweet> result = Result.of(response(200, "{\"id\":1307910904118480897,\"id_str\":\"1307910904118480897\","
+                + "\"text\":\"hello\",\"in_reply_to_status_id_str\":\"1307030903722586113\",\"truncated\":false,"
+                + "\"user\":{\"id_str\":\"42\",\"name\":\"Shakir\",\"screen_name\":\"shakir\"}}"), Tweet.class);
+        Tweet tweet = result.get();
+        Assert.assertEquals(1307910904118480897L, tweet.getId());
+        Assert.assertEquals("hello", tweet.getText());
+        Assert.assertEquals("1307030903722586113", tweet.getInReplyToStatusIdStr());
+        Assert.assertEquals("Shakir", tweet.getUser().getName());
+        Assert.assertNull(result.getError());
+    }
+
+    /**
+     * This test verifies that both error shapes of the API expose their message.
+     */
+    @Test
+    public void testErrorShapesAreBound() {
+        Result<Tweet> duplicate = Result.of(response(403,
+                "{\"errors\":[{\"code\":187,\"message\":\"Status is a duplicate.\"}]}"), Tweet.class);
+        Assert.assertFalse(duplicate.isSuccess());
+        Assert.assertEquals(187, duplicate.getError().getCode());
+        Assert.assertEquals("Status is a duplicate.", duplicate.getError().getMessage());
+
+        Result<SavedSearch> savedSearch = Result.of(response(403,
+                "{\"error\":\"There was an error creating your search.\"}"), SavedSearch.class);
+        Assert.assertEquals("There was an error creating your search.", savedSearch.getError().getMessage());
+
+        Result<Tweet> html = Result.of(response(404, "<html>Not found</html>"), Tweet.class);
+        Assert.assertNull(html.getError());
+    }
+
+    /**
+     * This test verifies that reading the value of a failed result throws instead of returning null.
+     */
+    @Test(expectedExceptions = ApiException.class)
+    public void testGetOnFailureThrows() {
+        Result.of(response(401, "{\"errors\":[{\"code\":32,\"message\":\"Could not authenticate you.\"}]}"),
+                User.class).get();
+    }
+
+    /**
+     * This test verifies that a cursored ID page is bound.
+     */
+    @Test
+    public void testIdsPageIsBound() {
+        IdsPage page = Result.of(response(200, "{\"ids\":[3,2,1],\"next_cursor\":0,\"previous_cursor\":0}"),
+                IdsPage.class).get();
+        Assert.assertArrayEquals(new long[]{3, 2, 1}, page.getIds());
+        Assert.assertFalse(page.hasNext());
+    }
+}
@@ -0,0 +1,321 @@
+package tweeter;
+
+import base.IoExecutors;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Minimal HTTP/1.1 server behind {@link TwitterStandIn}.
+ * <p>
+ * The JDK's built-in server picks the reason phrase of every status line itself, while the tests assert on
+ * Twitter's exact status lines (e.g. "HTTP/1.1 401 Authorization Required"), so this one writes them verbatim.
+ * It supports keep-alive, Content-Length and chunked request bodies, which is all the clients send. Like
+ * Twitter, it gzips larger responses when the request accepts gzip, so the clients' decoding is exercised too.
+ */
+final class StandInHttpServer implements Closeable {
+
+    private static final int MIN_COMPRESSED_SIZE = 1024;
+
+    interface Handler {
+        Response handle(Request request);
+    }
+
+    static final class Request {
+        final String method;
+        final String path;
+        final String host;
+        final Map<String, String> headers;
+        final Map<String, String> params;
+
+        Request(String method, String path, String host, Map<String, String> headers, Map<String, String> params) {
+            this.method = method;
+            this.path = path;
+            this.host = host;
+            this.headers = headers;
+            this.params = params;
+        }
+
+        String header(String name) {
+            return this.headers.get(name);
+        }
+
+        String param(String name) {
+            return this.params.get(name);
+        }
+    }
+
+    static final class Response {
+        final int status;
+        final String reason;
+        final Map<String, String> headers = new LinkedHashMap<>();
+        final byte[] body;
+
+        Response(int status, String reason, String contentType, byte[] body) {
+            this.status = status;
+            this.reason = reason;
+            this.body = body;
+            this.headers.put("Content-Type", contentType);
+        }
+
+        Response header(String name, String value) {
+            this.headers.put(name, value);
+            return this;
+        }
+    }
+
+    private static final int MAX_HEADER_BYTES = 64 * 1024;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final Handler handler;
+    private final Thread acceptor;
+
+    StandInHttpServer(int port, Handler handler) throws IOException {
+        this.handler = handler;
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.setReuseAddress(true);
+        this.serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        // one thread per keep-alive connection, so a fixed pool would cap the number of clients
+        this.connections = IoExecutors.virtualThreadsAvailable() ? IoExecutors.newExecutor("stand-in-connection")
+                : Executors.newCachedThreadPool(IoExecutors.threadFactory("stand-in-connection"));
+        this.acceptor = new Thread(this::acceptLoop, "stand-in-acceptor");
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+    }
+
+    int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.serverSocket.close();
+        this.connections.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!this.serverSocket.isClosed()) {
+            try {
+                Socket socket = this.serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                this.connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!this.serverSocket.isClosed()) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket connection = socket;
+             InputStream input = new BufferedInputStream(connection.getInputStream());
+             OutputStream output = new BufferedOutputStream(connection.getOutputStream(), 16 * 1024)) {
+            boolean keepAlive = true;
+            while (keepAlive) {
+                String requestLine = readLine(input);
+                if (requestLine == null) {
+                    return;
+                }
+                if (requestLine.isEmpty()) {
+                    continue;
+                }
+                String[] parts = requestLine.split(" ");
+                Map<String, String> headers = readHeaders(input);
+                byte[] body = readBody(input, headers);
+                keepAlive = !"close".equalsIgnoreCase(headers.get("Connection"))
+                        && !(parts.length > 2 && "HTTP/1.0".equals(parts[2]));
+
+                Response response;
+                if (parts.length < 3) {
+                    response = new Response(400, "Bad Request", "text/plain", new byte[0]);
+                    keepAlive = false;
+                } else {
+                    response = dispatch(parts[0], parts[1], headers, body);
+                }
+                write(output, response, keepAlive, acceptsGzip(headers.get("Accept-Encoding")));
+            }
+        } catch (SocketException ignored) {
+            // the client went away
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private Response dispatch(String method, String target, Map<String, String> headers, byte[] body) {
+        int query = target.indexOf('?');
+        String path = query < 0 ? target : target.substring(0, query);
+        Map<String, String> params = new LinkedHashMap<>();
+        if (query >= 0) {
+            parseForm(target.substring(query + 1), params);
+        }
+        String contentType = headers.get("Content-Type");
+        if (body.length > 0 && contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+            parseForm(new String(body, StandardCharsets.UTF_8), params);
+        }
+        try {
+            return this.handler.handle(new Request(method.toUpperCase(), path, headers.get("Host"),
+                    Collections.unmodifiableMap(headers), params));
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return new Response(500, "Internal Server Error", "text/plain",
+                    String.valueOf(e).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")
+                    && !(parts.length > 1 && parts[1].replace(" ", "").matches("q=0(\\.0*)?"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void write(OutputStream output, Response response, boolean keepAlive, boolean gzip)
+            throws IOException {
+        byte[] body = response.body;
+        StringBuilder head = new StringBuilder(256);
+        head.append("HTTP/1.1 ").append(response.status).append(' ').append(response.reason).append("\r\n");
+        for (Map.Entry<String, String> header : response.headers.entrySet()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        if (gzip && body.length >= MIN_COMPRESSED_SIZE) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(body);
+            }
+            body = compressed.toByteArray();
+            head.append("Content-Encoding: gzip\r\n");
+            head.append("Vary: Accept-Encoding\r\n");
+        }
+        head.append("Content-Length: ").append(body.length).append("\r\n");
+        if (!keepAlive) {
+            head.append("Connection: close\r\n");
+        }
+        head.append("\r\n");
+        output.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+        output.write(body);
+        output.flush();
+    }
+
+    private static Map<String, String> readHeaders(InputStream input) throws IOException {
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        int total = 0;
+        String line;
+        while ((line = readLine(input)) != null && !line.isEmpty()) {
+            total += line.length();
+            if (total > MAX_HEADER_BYTES) {
+                throw new IOException("Request headers too large");
+            }
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+            }
+        }
+        return headers;
+    }
+
+    private static byte[] readBody(InputStream input, Map<String, String> headers) throws IOException {
+        if ("chunked".equalsIgnoreCase(headers.get("Transfer-Encoding"))) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            while (true) {
+                String sizeLine = readLine(input);
+                if (sizeLine == null) {
+                    throw new IOException("Truncated chunked body");
+                }
+                int semicolon = sizeLine.indexOf(';');
+                int size = Integer.parseInt((semicolon < 0 ? sizeLine : sizeLine.substring(0, semicolon)).trim(), 16);
+                if (size == 0) {
+                    readHeaders(input);
+                    return body.toByteArray();
+                }
+                body.write(readFully(input, size));
+                readLine(input);
+            }
+        }
+        String contentLength = headers.get("Content-Length");
+        return contentLength == null ? new byte[0] : readFully(input, Integer.parseInt(contentLength.trim()));
+    }
+
+    private static byte[] readFully(InputStream input, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = input.read(bytes, read, length - read);
+            if (n < 0) {
+                throw new IOException("Truncated request body");
+            }
+            read += n;
+        }
+        return bytes;
+    }
+
+    /**
+     * Reads a CRLF (or LF) terminated line as ISO-8859-1, or returns null at the end of the stream.
+     */
+    private static String readLine(InputStream input) throws IOException {
+        StringBuilder line = new StringBuilder(128);
+        int b;
+        while ((b = input.read()) != -1) {
+            if (b == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+            if (line.length() > MAX_HEADER_BYTES) {
+                throw new IOException("Request line too long");
+            }
+            line.append((char) b);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    private static void parseForm(String form, Map<String, String> params) {
+        for (String pair : form.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            String name = decode(equals < 0 ? pair : pair.substring(0, equals));
+            String value = equals < 0 ? "" : decode(pair.substring(equals + 1));
+            params.putIfAbsent(name, value);
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
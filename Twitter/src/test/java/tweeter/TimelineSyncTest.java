@@ -0,0 +1,97 @@
+package tweeter;
+
+import org.junit.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+public class TimelineSyncTest {
+
+    private TweetAPIClient tweetAPIClient;
+
+    /**
+     * Always runs against the stand-in, even without {@code -Dtwitter.standIn=true}: these tests post tweets and
+     * count on the stand-in's freshly seeded timeline, so they must never touch the real account.
+     */
+    @BeforeClass
+    public void setUpClient() {
+        this.tweetAPIClient = new TweetAPIClient(TwitterStandIn.shared().clientConfig());
+    }
+
+    private List<Long> tweet(int count) {
+        String run = UUID.randomUUID().toString();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(this.tweetAPIClient.createTweetResult("Timeline sync " + run + " #" + i).get().getId());
+        }
+        return ids;
+    }
+
+    /**
+     * This test verifies that a sync fetches every tweet posted since the previous one, paging through a gap larger
+     * than a page, that no tweet is delivered twice, and that a new instance resumes from the saved checkpoint.
+     */
+    @Test
+    public void testSyncFetchesOnlyNewTweetsAndResumesFromCheckpoint() throws IOException {
+        Path checkpoints = Files.createTempDirectory("timeline-sync").resolve("checkpoints.properties");
+        TimelineSync sync = new TimelineSync(this.tweetAPIClient, checkpoints, 2);
+        List<Long> posted = tweet(1);
+        Set<Long> seen = new HashSet<>();
+        sync.syncNewer(Timeline.USER, tweet -> Assert.assertTrue(seen.add(tweet.getId())));
+        Assert.assertTrue(seen.contains(posted.get(0)));
+        Assert.assertNotNull(sync.checkpoint(Timeline.USER));
+
+        posted = tweet(5);
+        List<Long> delivered = new ArrayList<>();
+        sync.syncNewer(Timeline.USER, tweet -> {
+            Assert.assertTrue(seen.add(tweet.getId()));
+            delivered.add(tweet.getId());
+        });
+        Assert.assertTrue(delivered.containsAll(posted));
+        Assert.assertEquals(Math.max(posted.get(4), delivered.get(0)), sync.checkpoint(Timeline.USER).getNewestId());
+
+        TimelineSync resumed = new TimelineSync(this.tweetAPIClient, checkpoints, 2);
+        Assert.assertEquals(sync.checkpoint(Timeline.USER).getNewestId(),
+                resumed.checkpoint(Timeline.USER).getNewestId());
+        posted = tweet(1);
+        resumed.syncNewer(Timeline.USER, tweet -> Assert.assertTrue(seen.add(tweet.getId())));
+        Assert.assertTrue(seen.contains(posted.get(0)));
+    }
+
+    /**
+     * This test verifies that a backfill pages below the oldest tweet synced, a bounded number of pages per call,
+     * until the timeline is exhausted.
+     */
+    @Test
+    public void testBackfillPagesOlderTweetsUntilExhausted() throws IOException {
+        Path checkpoints = Files.createTempDirectory("timeline-sync").resolve("checkpoints.properties");
+        TimelineSync sync = new TimelineSync(this.tweetAPIClient, checkpoints, 2);
+        tweet(5);
+        List<Long> delivered = new ArrayList<>();
+        Assert.assertEquals(4, sync.backfill(Timeline.USER, 1, tweet -> delivered.add(tweet.getId())));
+        long oldest = sync.checkpoint(Timeline.USER).getOldestId();
+        Assert.assertEquals(delivered.get(3).longValue(), oldest);
+        Assert.assertFalse(sync.checkpoint(Timeline.USER).isBackfilled());
+
+        // the rest of the seeded history in full pages
+        TimelineSync resumed = new TimelineSync(this.tweetAPIClient, checkpoints);
+        while (!resumed.checkpoint(Timeline.USER).isBackfilled()) {
+            resumed.backfill(Timeline.USER, 10, tweet -> {
+                Assert.assertTrue(tweet.getId() < resumed.checkpoint(Timeline.USER).getOldestId());
+                delivered.add(tweet.getId());
+            });
+        }
+        Assert.assertTrue(delivered.get(delivered.size() - 1) < oldest);
+        Assert.assertEquals(delivered.size(), new HashSet<>(delivered).size());
+        Assert.assertEquals(0, resumed.backfill(Timeline.USER, 10, tweet -> Assert.fail("Already backfilled")));
+        Assert.assertTrue(new TimelineSync(this.tweetAPIClient, checkpoints).checkpoint(Timeline.USER).isBackfilled());
+    }
+}
@@ -0,0 +1,92 @@
+package tweeter;
+
+import io.restassured.response.ValidatableResponse;
+import org.junit.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Data-driven variants of {@link TweetAPIClientTest}: each test runs once per case of a data file under
+ * {@code src/test/resources/data}. Cases are read lazily and run concurrently on TestNG's data provider threads
+ * ({@code data-provider-thread-count} in the suite file, 10 by default). {@link DataDrivenSummary} prints the
+ * outcome of every test at the end.
+ */
+@Listeners(DataDrivenSummary.class)
+public class TweetAPIClientDataDrivenTest {
+
+    private TweetAPIClient tweetAPIClient;
+
+    @BeforeClass
+    public void setUpTweetAPI() {
+        this.tweetAPIClient = TwitterStandIn.client();
+    }
+
+    @DataProvider(name = "tweetReads", parallel = true)
+    public Iterator<Object[]> tweetReads() {
+        return DataFiles.csv("tweet-reads.csv");
+    }
+
+    @DataProvider(name = "tweetSearches", parallel = true)
+    public Iterator<Object[]> tweetSearches() {
+        return DataFiles.jsonl("tweet-searches.jsonl", SearchCase.class);
+    }
+
+    @DataProvider(name = "profileBanners", parallel = true)
+    public Iterator<Object[]> profileBanners() {
+        return DataFiles.csv("profile-banners.csv");
+    }
+
+    /**
+     * This test verifies that reading a tweet by ID answers with the expected status, and that a tweet that is
+     * found carries the ID it was asked for.
+     */
+    @Test(dataProvider = "tweetReads")
+    public void testReadTweet(String tweetID, String expectedStatus) {
+        Result<Tweet> result = this.tweetAPIClient.getUserTweetResult(Long.valueOf(tweetID));
+        Assert.assertEquals(Integer.parseInt(expectedStatus), result.getStatusCode());
+        if (result.isSuccess()) {
+            Assert.assertEquals(tweetID, result.get().getIdStr());
+        }
+    }
+
+    /**
+     * This test verifies that a tweet search answers with the expected status, and with a list of statuses when
+     * it succeeds.
+     */
+    @Test(dataProvider = "tweetSearches")
+    public void testSearchTweets(SearchCase search) {
+        ValidatableResponse response = this.tweetAPIClient.searchTweets(search.query);
+        response.statusCode(search.expectedStatus);
+        if (search.expectedStatus == 200) {
+            List<Object> statuses = response.extract().body().path("statuses");
+            Assert.assertNotNull(statuses);
+        }
+    }
+
+    /**
+     * This test verifies that asking for a user's profile banner answers with the expected status.
+     */
+    @Test(dataProvider = "profileBanners")
+    public void testGetUsersProfileBanner(String screenName, String expectedStatus) {
+        ValidatableResponse response = this.tweetAPIClient.getUsersProfileBanner(screenName);
+        Assert.assertEquals(Integer.parseInt(expectedStatus), response.extract().statusCode());
+    }
+
+    /**
+     * One line of tweet-searches.jsonl.
+     */
+    public static class SearchCase {
+        public String query;
+        public int expectedStatus;
+
+        @Override
+        public String toString() {
+            return "\"" + this.query + "\" -> " + this.expectedStatus;
+        }
+    }
+}
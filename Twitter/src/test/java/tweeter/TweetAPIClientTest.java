@@ -1,20 +1,44 @@
 package tweeter;
 
 
+import base.IdSnapshot;
 import io.restassured.response.ValidatableResponse;
 import org.junit.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 public class TweetAPIClientTest {
 
+    private static final Pattern STATUS_LINE = Pattern.compile("HTTP/\\d(?:\\.\\d)? (\\d{3})(?: (.+))?");
+
     private TweetAPIClient tweetAPIClient;
 
+    /**
+     * Checks a status line whatever the HTTP version: HTTP/2 responses have no reason phrase, so only one that
+     * is present has to match.
+     */
+    private static void assertStatusLine(int expectedCode, String expectedReason, String actualStatusLine) {
+        Matcher statusLine = STATUS_LINE.matcher(actualStatusLine);
+        Assert.assertTrue("Not a status line: " + actualStatusLine, statusLine.matches());
+        Assert.assertEquals(expectedCode, Integer.parseInt(statusLine.group(1)));
+        if (statusLine.group(2) != null) {
+            Assert.assertEquals(expectedReason, statusLine.group(2));
+        }
+    }
+
     @BeforeClass
     public void setUpTweetAPI() {
-        this.tweetAPIClient = new TweetAPIClient();
+        // -Dtwitter.standIn=true (mvn test -Pstand-in) runs the suite offline against TwitterStandIn
+        this.tweetAPIClient = TwitterStandIn.client();
     }
 
     /**
@@ -58,18 +82,16 @@ public class TweetAPIClientTest {
     public void testUserCanNotTweetTheSameTweetTwiceInARow() {
         // 1. user send a tweet
         String tweet = "My horse, is a shackled old man";
-        ValidatableResponse response = this.tweetAPIClient.createTweet(tweet);
-        response.statusCode(200);
-        System.out.println(response.extract().body().asString());
-        String actualTweet = response.extract().body().path("text");
+        Result<Tweet> result = this.tweetAPIClient.createTweetResult(tweet);
+        Assert.assertEquals(200, result.getStatusCode());
+        String actualTweet = result.get().getText();
         Assert.assertEquals(tweet, actualTweet);
         // User send the same tweet again
-        response = this.tweetAPIClient.createTweet(tweet);
+        result = this.tweetAPIClient.createTweetResult(tweet);
         // Verify that the tweet was unsuccessful
-        response.statusCode(403);
-        //System.out.println(response.extract().body().asString());
+        Assert.assertEquals(403, result.getStatusCode());
         String expectedMessage = "Status is a duplicate.";
-        String actualMessage = response.extract().body().path("errors[0].message");
+        String actualMessage = result.getError().getMessage();
         Assert.assertEquals(actualMessage, expectedMessage);
         Assert.assertNotSame("200", 403);
     }
@@ -135,6 +157,20 @@ public class TweetAPIClientTest {
         Assert.assertEquals(200, actualCode);
     }
 
+    /**
+     * This test verifies that a batch lookup de-duplicates the IDs and returns the existing tweets keyed by ID.
+     */
+    @Test
+    public void testLookupTweetsInBatches() {
+        List<Long> tweetIDs = Arrays.asList(1308946974146736128l, 1308929223537692675l, 1308946974146736128l,
+                1906141569196539911l);
+        Map<Long, Tweet> tweets = this.tweetAPIClient.lookupTweets(tweetIDs);
+        Assert.assertEquals(2, tweets.size());
+        Assert.assertEquals("1308946974146736128", tweets.get(1308946974146736128l).getIdStr());
+        Assert.assertFalse(tweets.containsKey(1906141569196539911l));
+        Assert.assertEquals(tweets.keySet(), this.tweetAPIClient.lookupTweets(tweetIDs, 1).keySet());
+    }
+
     /**
      * This test verifies that multiple tweets can be read at the same time due to wrong endpoint.
      */
@@ -213,7 +249,7 @@ public class TweetAPIClientTest {
         String search = "Sheikh Ahmed Deedat";
         ValidatableResponse response = this.tweetAPIClient.searchUsersUsingInvalidEndpoint(search);
         String actualCode = response.extract().statusLine();
-        Assert.assertEquals("HTTP/1.1 401 Authorization Required", actualCode);
+        assertStatusLine(401, "Authorization Required", actualCode);
     }
 
     /**
@@ -227,6 +263,16 @@ public class TweetAPIClientTest {
         Assert.assertEquals(200, actualCode);
     }
 
+    /**
+     * This test verifies that search results can be streamed one tweet at a time.
+     */
+    @Test
+    public void testStreamSearchTweets() {
+        try (Stream<Tweet> tweets = this.tweetAPIClient.streamSearchTweets("coronavirus", 100)) {
+            Assert.assertTrue(tweets.allMatch(tweet -> tweet.getIdStr() != null && tweet.getText() != null));
+        }
+    }
+
     /**
      * This test verifies that user cannot successfully search on Twitter without authentication.
      */
@@ -235,7 +281,7 @@ public class TweetAPIClientTest {
         String search = "coronavirus";
         ValidatableResponse response = this.tweetAPIClient.searchTweetsWithoutAuthentication(search);
         String actualCode = response.extract().statusLine();
-        Assert.assertEquals("HTTP/1.1 400 Bad Request", actualCode);
+        assertStatusLine(400, "Bad Request", actualCode);
     }
 
     /**
@@ -273,7 +319,7 @@ public class TweetAPIClientTest {
     /**
      * This test verifies that the user can favorite a tweet.
      */
-    @Test(priority = 1)
+    @Test
     public void testUserCanFavoriteATweet() {
         String expectedTweet = "Since becoming your representative in Congress, I have fought, introduced, and pushed for policies that will benefi… https://t.co/Nyc8bEUfO3";
         ValidatableResponse response = this.tweetAPIClient.createFavorites(1275199873525129216l);
@@ -284,9 +330,10 @@ public class TweetAPIClientTest {
     }
 
     /**
-     * This test verifies that the user can delete favorite a tweet.
+     * This test verifies that the user can delete favorite a tweet. It un-favorites the tweet favorited by
+     * testUserCanFavoriteATweet, so it always runs after it, also when the suite runs in parallel.
      */
-    @Test(priority = 2)
+    @Test(dependsOnMethods = "testUserCanFavoriteATweet", alwaysRun = true)
     public void testDeleteFavorite() {
         String expectedTweet = "Since becoming your representative in Congress, I have fought, introduced, and pushed for policies that will benefi… https://t.co/Nyc8bEUfO3";
         ValidatableResponse response = this.tweetAPIClient.deleteFavorite(1275199873525129216l);
@@ -327,6 +374,29 @@ public class TweetAPIClientTest {
         Assert.assertEquals(200, actualStatusCode);
     }
 
+    /**
+     * This test verifies that the follower IDs of a user can be streamed across cursored pages.
+     */
+    @Test
+    public void testStreamFollowersIDs() {
+        try (LongStream followers = this.tweetAPIClient.streamFollowersIDs("boonaamohammed")) {
+            Assert.assertTrue(followers.limit(10000).toArray().length > 0);
+        }
+    }
+
+    /**
+     * This test verifies that a followers snapshot holds every streamed follower ID once, and that comparing it with
+     * itself shows no change.
+     */
+    @Test
+    public void testFollowersSnapshot() {
+        IdSnapshot snapshot = this.tweetAPIClient.followersSnapshot("boonaamohammed");
+        try (LongStream followers = this.tweetAPIClient.streamFollowersIDs("boonaamohammed")) {
+            Assert.assertEquals(followers.distinct().count(), snapshot.size());
+        }
+        Assert.assertTrue(snapshot.diff(this.tweetAPIClient.followersSnapshot("boonaamohammed")).isEmpty());
+    }
+
     /**
      * This test verifies that we can get a list of followers of a particular user using "id" parameter.
      */
@@ -377,7 +447,7 @@ public class TweetAPIClientTest {
     public void testGetMentionsTimeline() {
         ValidatableResponse response = this.tweetAPIClient.getMentionsTimeline();
         String actualStatusCode = response.extract().statusLine();
-        Assert.assertEquals("HTTP/1.1 200 OK", actualStatusCode);
+        assertStatusLine(200, "OK", actualStatusCode);
     }
 
     /**
@@ -388,7 +458,7 @@ public class TweetAPIClientTest {
     public void testGetMyAListOfMyList() {
         ValidatableResponse response = this.tweetAPIClient.getMyAListOfMyList();
         String actualStatusCode = response.extract().statusLine();
-        Assert.assertEquals("HTTP/1.1 200 OK", actualStatusCode);
+        assertStatusLine(200, "OK", actualStatusCode);
     }
 
     /**
@@ -413,7 +483,7 @@ public class TweetAPIClientTest {
     public void testGetUsersProfileBanner() {
         ValidatableResponse response = this.tweetAPIClient.getUsersProfileBanner("KhabibArmy");
         String actualStatusCode = response.extract().statusLine();
-        Assert.assertEquals("HTTP/1.1 200 OK", actualStatusCode);
+        assertStatusLine(200, "OK", actualStatusCode);
     }
 
     /**
@@ -436,18 +506,16 @@ public class TweetAPIClientTest {
     public void testUserCanNotSaveSameSearchTwice() {
         // User send a search
         String search = "Canada"+ UUID.randomUUID().toString();
-        ValidatableResponse response = this.tweetAPIClient.createSavedSearches(search);
-        response.statusCode(200);
-        System.out.println(response.extract().body().asString());
-        String actualSearch = response.extract().body().path("name");
+        Result<SavedSearch> result = this.tweetAPIClient.createSavedSearchesResult(search);
+        Assert.assertEquals(200, result.getStatusCode());
+        String actualSearch = result.get().getName();
         Assert.assertEquals(search, actualSearch);
         // User send the same search again
-        response = this.tweetAPIClient.createSavedSearches(search);
+        result = this.tweetAPIClient.createSavedSearchesResult(search);
         // Verify that the search was unsuccessful
-        response.statusCode(403);
-        //System.out.println(response.extract().body().asString());
+        Assert.assertEquals(403, result.getStatusCode());
         String expectedMessage = "There was an error creating your search.";
-        String actualMessage = response.extract().body().path("error");
+        String actualMessage = result.getError().getMessage();
         Assert.assertEquals(actualMessage, expectedMessage);
         Assert.assertNotSame("200", 403);
     }
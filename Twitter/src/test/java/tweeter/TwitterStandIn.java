@@ -0,0 +1,776 @@
+package tweeter;
+
+import base.ApiConfig;
+import base.Json;
+import base.OAuthSigner;
+import com.fasterxml.jackson.databind.JsonNode;
+import tweeter.StandInHttpServer.Request;
+import tweeter.StandInHttpServer.Response;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongUnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for the Twitter API v1.1 endpoints that {@link TweetAPIClient} calls, so the suite can run
+ * offline in seconds instead of against api.twitter.com.
+ * <p>
+ * Requests must be signed with the configured credentials (OAuth signatures are verified); a missing
+ * Authorization header answers 400 and a bad one 401, as Twitter does. State is kept in memory and seeded from
+ * {@code stand-in-fixtures.json}: the tweets, users and favorites the tests refer to, plus a generated corpus for
+ * timelines and search. Behaviour is stateful where the tests depend on it: duplicate statuses and favorites are
+ * rejected with 403, deletes and un-favorites take effect, saved searches are unique, and ID collections are
+ * cursored. Every response carries x-rate-limit-* headers.
+ * <p>
+ * Enable it for the test suite with {@code mvn test -Pstand-in} (system property {@code twitter.standIn=true}),
+ * or run {@link #main(String[])} to serve it on a fixed port.
+ */
+public class TwitterStandIn implements Closeable {
+
+    public static final String ENABLED_PROPERTY = "twitter.standIn";
+
+    private static final String API_PREFIX = "/1.1";
+    private static final String JSON = "application/json;charset=utf-8";
+    private static final long TWITTER_EPOCH = 1288834974657L;
+    private static final DateTimeFormatter CREATED_AT =
+            DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss Z yyyy", Locale.ENGLISH).withZone(ZoneOffset.UTC);
+    private static final Pattern DESTROY_SAVED_SEARCH = Pattern.compile("/saved_searches/destroy/(\\d+)\\.json");
+    private static final int MAX_TWEET_LENGTH = 280;
+    private static final int MAX_SAVED_SEARCHES = 25;
+    private static final int MAX_USER_SEARCH_QUERY_LENGTH = 500;
+    private static final long RATE_LIMIT_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    private static TwitterStandIn shared;
+
+    private final ApiConfig clientConfig;
+    private final OAuthSigner signer;
+    private final StandInHttpServer server;
+    private final int rateLimit;
+    private final Map<String, Route> routes = new HashMap<>();
+    private final Map<String, RateWindow> rateWindows = new ConcurrentHashMap<>();
+
+    private final Map<String, StoredUser> usersByScreenName = new HashMap<>();
+    private final Map<Long, StoredUser> usersById = new HashMap<>();
+    private final StoredUser self;
+    private final NavigableMap<Long, StoredTweet> tweets = new ConcurrentSkipListMap<>(Comparator.reverseOrder());
+    private final Map<String, Long> ownTweetTexts = new ConcurrentHashMap<>();
+    private final Map<Long, Map<String, Object>> savedSearches = new ConcurrentSkipListMap<>();
+    private final Map<String, Long> savedSearchQueries = new ConcurrentHashMap<>();
+    private final List<Map<String, Object>> lists = new ArrayList<>();
+    private final AtomicLong lastId = new AtomicLong();
+
+    /**
+     * Starts a stand-in that accepts requests signed with {@code credentials}.
+     *
+     * @param credentials configuration whose credentials clients will sign with
+     * @param port        port to listen on, or 0 for any free port
+     * @param rateLimit   requests per endpoint per 15 minute window before 429 is returned
+     */
+    public TwitterStandIn(ApiConfig credentials, int port, int rateLimit) throws IOException {
+        this.signer = new OAuthSigner(credentials.getApiKey(), credentials.getApiSecretKey(),
+                credentials.getAccessToken(), credentials.getAccessTokenSecret());
+        this.rateLimit = rateLimit;
+        JsonNode fixtures = loadFixtures();
+        for (JsonNode user : fixtures.get("users")) {
+            StoredUser stored = new StoredUser(user);
+            this.usersByScreenName.put(stored.screenName.toLowerCase(), stored);
+            this.usersById.put(stored.id, stored);
+        }
+        this.self = user(fixtures.get("authenticatedUser").asText());
+        seedTweets(fixtures);
+        for (JsonNode list : fixtures.get("lists")) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("id", list.get("id").asLong());
+            json.put("id_str", list.get("id").asText());
+            json.put("name", list.get("name").asText());
+            json.put("slug", list.get("slug").asText());
+            json.put("member_count", list.get("member_count").asInt());
+            json.put("mode", "public");
+            json.put("user", this.self.json());
+            this.lists.add(json);
+        }
+        registerRoutes();
+        this.server = new StandInHttpServer(port, this::handle);
+        this.clientConfig = credentials.withBaseUrl("http://127.0.0.1:" + this.server.getPort() + API_PREFIX);
+    }
+
+    /**
+     * Whether the test suite should run against the stand-in ({@code -Dtwitter.standIn=true}).
+     */
+    public static boolean enabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    /**
+     * Returns the stand-in shared by every test in the JVM, starting it on first use with the credentials of
+     * {@link ApiConfig#get()}. Port and rate limit can be set with {@code twitter.standIn.port} and
+     * {@code twitter.standIn.rateLimit}.
+     */
+    public static synchronized TwitterStandIn shared() {
+        if (shared == null) {
+            try {
+                shared = new TwitterStandIn(ApiConfig.get(), Integer.getInteger(ENABLED_PROPERTY + ".port", 0),
+                        Integer.getInteger(ENABLED_PROPERTY + ".rateLimit", 100_000));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not start the Twitter stand-in", e);
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Returns a client for the stand-in when it is {@link #enabled()}, and for the real API otherwise.
+     */
+    public static TweetAPIClient client() {
+        return enabled() ? new TweetAPIClient(shared().clientConfig()) : new TweetAPIClient();
+    }
+
+    /**
+     * Client configuration pointing at this stand-in.
+     */
+    public ApiConfig clientConfig() {
+        return this.clientConfig;
+    }
+
+    public String baseUrl() {
+        return this.clientConfig.getBaseUrl();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.server.close();
+    }
+
+    /**
+     * Serves the stand-in until the process is stopped. The optional argument is the port (default 8089).
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8089;
+        TwitterStandIn standIn = new TwitterStandIn(ApiConfig.get(), port,
+                Integer.getInteger(ENABLED_PROPERTY + ".rateLimit", 100_000));
+        System.out.println("Twitter stand-in listening on " + standIn.baseUrl());
+        Thread.currentThread().join();
+    }
+
+    private static JsonNode loadFixtures() throws IOException {
+        try (InputStream input = TwitterStandIn.class.getResourceAsStream("/stand-in-fixtures.json")) {
+            if (input == null) {
+                throw new IOException("stand-in-fixtures.json is not on the classpath");
+            }
+            return Json.mapper().readTree(input);
+        }
+    }
+
+    private void seedTweets(JsonNode fixtures) {
+        for (JsonNode tweet : fixtures.get("tweets")) {
+            JsonNode replyTo = tweet.get("in_reply_to_status_id");
+            StoredTweet stored = new StoredTweet(tweet.get("id").asLong(), user(tweet.get("user").asText()),
+                    tweet.get("text").asText(), replyTo == null ? null : replyTo.asLong(),
+                    tweet.path("retweet_count").asInt(0));
+            stored.favorited = tweet.path("favorited").asBoolean(false);
+            store(stored);
+        }
+        List<StoredUser> others = new ArrayList<>(this.usersById.values());
+        others.remove(this.self);
+        others.sort(Comparator.comparingLong(user -> user.id));
+        JsonNode topics = fixtures.get("generatedTopics");
+        int count = fixtures.get("generatedTweets").asInt();
+        long id = 1200000000000000000L;
+        for (int i = 0; i < count; i++) {
+            id += 4_194_304_000L + i;
+            String topic = topics.get(i % topics.size()).asText();
+            StoredTweet stored;
+            if (i % 5 == 4) {
+                stored = new StoredTweet(id, others.get(i % others.size()), "@" + this.self.screenName
+                        + " what do you think about " + topic + "? #" + i, null, 0);
+            } else {
+                stored = new StoredTweet(id, this.self, "Note " + i + " on " + topic + " from the test lab", null,
+                        i % 9);
+            }
+            store(stored);
+        }
+        this.lastId.set(this.tweets.firstKey());
+    }
+
+    private void store(StoredTweet tweet) {
+        this.tweets.put(tweet.id, tweet);
+        if (tweet.user == this.self) {
+            this.ownTweetTexts.put(tweet.text, tweet.id);
+        }
+    }
+
+    private StoredUser user(String screenName) {
+        return screenName == null ? null : this.usersByScreenName.get(screenName.toLowerCase());
+    }
+
+    /*
+     * Routing, authentication and rate limiting
+     */
+
+    private interface Route {
+        Response handle(Request request);
+    }
+
+    private void registerRoutes() {
+        this.routes.put("POST /statuses/update.json", this::updateStatus);
+        this.routes.put("GET /statuses/show.json", this::showStatus);
+        this.routes.put("GET /statuses/lookup.json", this::lookupStatuses);
+        this.routes.put("POST /statuses/destroy.json", this::destroyStatus);
+        this.routes.put("GET /statuses/user_timeline.json", request -> timeline(request, this.self));
+        this.routes.put("GET /statuses/mentions_timeline.json", this::mentionsTimeline);
+        this.routes.put("GET /statuses/retweets_of_me.json", this::retweetsOfMe);
+        this.routes.put("GET /statuses/retweeters/ids.json", this::retweetersIds);
+        this.routes.put("GET /search/tweets.json", this::searchTweets);
+        this.routes.put("GET /users/search.json", this::searchUsers);
+        this.routes.put("GET /users/profile_banner.json", this::profileBanner);
+        this.routes.put("GET /favorites/list.json", this::favoritesList);
+        this.routes.put("POST /favorites/create.json", this::createFavorite);
+        this.routes.put("POST /favorites/destroy.json", this::destroyFavorite);
+        this.routes.put("GET /followers/ids.json", this::followersIds);
+        this.routes.put("GET /lists/list.json", request -> json(200, this.lists));
+        this.routes.put("GET /account/verify_credentials.json", request -> json(200, this.self.json()));
+        this.routes.put("POST /saved_searches/create.json", this::createSavedSearch);
+        this.routes.put("POST /saved_searches/destroy/:id.json", this::destroySavedSearch);
+    }
+
+    private Response handle(Request request) {
+        if (!request.path.startsWith(API_PREFIX + "/")) {
+            return error(404, 34, "Sorry, that page does not exist.");
+        }
+        String endpoint = request.path.substring(API_PREFIX.length());
+        String routeKey = DESTROY_SAVED_SEARCH.matcher(endpoint).matches()
+                ? "/saved_searches/destroy/:id.json" : endpoint;
+        Route route = this.routes.get(request.method + " " + routeKey);
+        if (route == null) {
+            // Twitter answers unknown paths under /followers/ with 401 rather than 404
+            return endpoint.startsWith("/followers/") && !this.routes.containsKey("GET " + endpoint)
+                    ? error(401, 32, "Could not authenticate you.")
+                    : error(404, 34, "Sorry, that page does not exist.");
+        }
+        String authorization = request.header("Authorization");
+        if (authorization == null || !authorization.startsWith("OAuth ")) {
+            return error(400, 215, "Bad Authentication data.");
+        }
+        if (!isValidSignature(request, authorization)) {
+            return error(401, 32, "Could not authenticate you.");
+        }
+        RateWindow window = this.rateWindows.computeIfAbsent(routeKey, key -> new RateWindow());
+        int remaining = window.take(this.rateLimit);
+        Response response = remaining < 0 ? error(429, 88, "Rate limit exceeded") : route.handle(request);
+        return response.header("x-rate-limit-limit", Integer.toString(this.rateLimit))
+                .header("x-rate-limit-remaining", Integer.toString(Math.max(0, remaining)))
+                .header("x-rate-limit-reset", Long.toString(TimeUnit.MILLISECONDS.toSeconds(window.resetAt)));
+    }
+
+    private boolean isValidSignature(Request request, String authorization) {
+        Map<String, String> oauth = new HashMap<>();
+        for (String part : authorization.substring("OAuth ".length()).split(",")) {
+            int equals = part.indexOf('=');
+            if (equals > 0) {
+                oauth.put(part.substring(0, equals).trim(), percentDecode(part.substring(equals + 1).trim()
+                        .replace("\"", "")));
+            }
+        }
+        String signature = oauth.get("oauth_signature");
+        String nonce = oauth.get("oauth_nonce");
+        String timestamp = oauth.get("oauth_timestamp");
+        if (signature == null || nonce == null || timestamp == null
+                || !this.signer.getConsumerKey().equals(oauth.get("oauth_consumer_key"))
+                || !this.signer.getToken().equals(oauth.get("oauth_token"))) {
+            return false;
+        }
+        try {
+            String url = OAuthSigner.normalizeUrl("http://" + request.host + request.path);
+            return signature.equals(this.signer.sign(request.method, url, request.params, nonce,
+                    Long.parseLong(timestamp)));
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static final class RateWindow {
+        private long resetAt;
+        private int used;
+
+        /**
+         * Counts one request and returns the remaining budget, or -1 if the limit was already reached.
+         */
+        synchronized int take(int limit) {
+            long now = System.currentTimeMillis();
+            if (now >= this.resetAt) {
+                this.resetAt = now + RATE_LIMIT_WINDOW_MILLIS;
+                this.used = 0;
+            }
+            if (this.used >= limit) {
+                return -1;
+            }
+            this.used++;
+            return limit - this.used;
+        }
+    }
+
+    /*
+     * Endpoints
+     */
+
+    private Response updateStatus(Request request) {
+        String status = request.param("status");
+        if (status == null || status.isEmpty()) {
+            return error(400, 170, "Missing required parameter: status.");
+        }
+        if (status.codePointCount(0, status.length()) > MAX_TWEET_LENGTH) {
+            return error(403, 186, "Tweet needs to be a bit shorter.");
+        }
+        long id = nextId();
+        Long replyTo = longParam(request, "in_reply_to_status_id");
+        if (this.ownTweetTexts.putIfAbsent(status, id) != null) {
+            return error(403, 187, "Status is a duplicate.");
+        }
+        StoredTweet tweet = new StoredTweet(id, this.self, status, replyTo, 0);
+        this.tweets.put(id, tweet);
+        return json(200, tweet.json());
+    }
+
+    private Response showStatus(Request request) {
+        StoredTweet tweet = tweet(request, "id");
+        return tweet == null ? noStatus() : json(200, tweet.json());
+    }
+
+    private Response lookupStatuses(Request request) {
+        String ids = request.param("id");
+        if (ids == null) {
+            return error(400, 44, "id parameter is missing.");
+        }
+        List<Map<String, Object>> found = new ArrayList<>();
+        for (String id : ids.split(",")) {
+            try {
+                StoredTweet tweet = this.tweets.get(Long.parseLong(id.trim()));
+                if (tweet != null) {
+                    found.add(tweet.json());
+                }
+            } catch (NumberFormatException ignored) {
+                // Twitter skips malformed IDs
+            }
+        }
+        return json(200, found);
+    }
+
+    private Response destroyStatus(Request request) {
+        StoredTweet tweet = tweet(request, "id");
+        if (tweet == null) {
+            return noStatus();
+        }
+        if (tweet.user != this.self) {
+            return error(403, 183, "You may not delete another user's status.");
+        }
+        this.tweets.remove(tweet.id);
+        this.ownTweetTexts.remove(tweet.text, tweet.id);
+        return json(200, tweet.json());
+    }
+
+    private Response timeline(Request request, StoredUser author) {
+        return json(200, page(request, 20, 200, tweet -> tweet.user == author));
+    }
+
+    private Response mentionsTimeline(Request request) {
+        String mention = "@" + this.self.screenName.toLowerCase();
+        return json(200, page(request, 20, 200,
+                tweet -> tweet.user != this.self && tweet.text.toLowerCase().contains(mention)));
+    }
+
+    private Response retweetsOfMe(Request request) {
+        return json(200, page(request, 20, 100, tweet -> tweet.user == this.self && tweet.retweetCount > 0));
+    }
+
+    private Response searchTweets(Request request) {
+        String query = request.param("q");
+        if (query == null || query.trim().isEmpty()) {
+            return error(400, 25, "Query parameters are missing.");
+        }
+        String needle = query.trim().toLowerCase();
+        List<Map<String, Object>> statuses = page(request, 15, 100, tweet -> tweet.text.toLowerCase().contains(needle));
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("completed_in", 0.001);
+        metadata.put("max_id", statuses.isEmpty() ? 0L : statuses.get(0).get("id"));
+        metadata.put("query", query);
+        metadata.put("count", statuses.size());
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("statuses", statuses);
+        body.put("search_metadata", metadata);
+        return json(200, body);
+    }
+
+    private Response retweetersIds(Request request) {
+        StoredTweet tweet = tweet(request, "id");
+        if (tweet == null) {
+            return noStatus();
+        }
+        long base = 100_000_000L + tweet.id % 1_000_000L;
+        return json(200, idsPage(request, tweet.retweetCount, 100, 100, index -> base + index * 7919L));
+    }
+
+    private Response followersIds(Request request) {
+        StoredUser user = requestedUser(request);
+        if (user == null) {
+            return error(404, 50, "User not found.");
+        }
+        long base = 200_000_000L + user.id % 1_000_000L;
+        return json(200, idsPage(request, user.followersCount, 5000, 5000, index -> base + index * 104729L));
+    }
+
+    private Response searchUsers(Request request) {
+        String query = request.param("q");
+        if (query == null || query.trim().isEmpty()) {
+            return error(400, 25, "Query parameters are missing.");
+        }
+        if (query.length() > MAX_USER_SEARCH_QUERY_LENGTH) {
+            return error(400, 44, "q parameter is invalid.");
+        }
+        String needle = query.trim().toLowerCase();
+        List<Map<String, Object>> users = new ArrayList<>();
+        for (StoredUser user : this.usersById.values()) {
+            if (user.name.toLowerCase().contains(needle) || user.screenName.toLowerCase().contains(needle)) {
+                users.add(user.json());
+            }
+        }
+        return json(200, users);
+    }
+
+    private Response profileBanner(Request request) {
+        StoredUser user = requestedUser(request);
+        if (user == null) {
+            return error(404, 50, "User not found.");
+        }
+        if (!user.banner) {
+            return error(404, 34, "Sorry, that page does not exist.");
+        }
+        Map<String, Object> sizes = new LinkedHashMap<>();
+        int[][] dimensions = {{626, 313}, {1252, 626}, {520, 260}, {1040, 520}, {320, 160}, {640, 320},
+                {300, 100}, {600, 200}, {1500, 500}};
+        String[] names = {"ipad", "ipad_retina", "web", "web_retina", "mobile", "mobile_retina", "300x100",
+                "600x200", "1500x500"};
+        for (int i = 0; i < names.length; i++) {
+            Map<String, Object> size = new LinkedHashMap<>();
+            size.put("h", dimensions[i][1]);
+            size.put("w", dimensions[i][0]);
+            size.put("url", "https://pbs.twimg.com/profile_banners/" + user.id + "/1600000000/" + names[i]);
+            sizes.put(names[i], size);
+        }
+        return json(200, Collections.singletonMap("sizes", sizes));
+    }
+
+    private Response favoritesList(Request request) {
+        return json(200, page(request, 20, 200, tweet -> tweet.favorited));
+    }
+
+    private Response createFavorite(Request request) {
+        StoredTweet tweet = tweet(request, "id");
+        if (tweet == null) {
+            return noStatus();
+        }
+        synchronized (tweet) {
+            if (tweet.favorited) {
+                return error(403, 139, "You have already favorited this status.");
+            }
+            tweet.favorited = true;
+        }
+        return json(200, tweet.json());
+    }
+
+    private Response destroyFavorite(Request request) {
+        StoredTweet tweet = tweet(request, "id");
+        if (tweet == null) {
+            return noStatus();
+        }
+        synchronized (tweet) {
+            if (!tweet.favorited) {
+                return noStatus();
+            }
+            tweet.favorited = false;
+        }
+        return json(200, tweet.json());
+    }
+
+    private Response createSavedSearch(Request request) {
+        String query = request.param("query");
+        if (query == null || query.isEmpty()) {
+            return error(400, 170, "Missing required parameter: query.");
+        }
+        synchronized (this.savedSearches) {
+            if (this.savedSearchQueries.containsKey(query) || this.savedSearches.size() >= MAX_SAVED_SEARCHES) {
+                return json(403, Collections.singletonMap("error", "There was an error creating your search."));
+            }
+            long id = nextId();
+            Map<String, Object> savedSearch = new LinkedHashMap<>();
+            savedSearch.put("created_at", createdAt(id));
+            savedSearch.put("id", id);
+            savedSearch.put("id_str", Long.toString(id));
+            savedSearch.put("name", query);
+            savedSearch.put("position", null);
+            savedSearch.put("query", query);
+            this.savedSearches.put(id, savedSearch);
+            this.savedSearchQueries.put(query, id);
+            return json(200, savedSearch);
+        }
+    }
+
+    private Response destroySavedSearch(Request request) {
+        Matcher matcher = DESTROY_SAVED_SEARCH.matcher(request.path.substring(API_PREFIX.length()));
+        matcher.matches();
+        synchronized (this.savedSearches) {
+            Map<String, Object> savedSearch = this.savedSearches.remove(Long.parseLong(matcher.group(1)));
+            if (savedSearch == null) {
+                return error(404, 34, "Sorry, that page does not exist.");
+            }
+            this.savedSearchQueries.remove(savedSearch.get("query"));
+            return json(200, savedSearch);
+        }
+    }
+
+    /*
+     * Helpers
+     */
+
+    /**
+     * Newest-first page of the tweets matching {@code filter}, honouring count, since_id and max_id.
+     */
+    private List<Map<String, Object>> page(Request request, int defaultCount, int maxCount,
+                                           java.util.function.Predicate<StoredTweet> filter) {
+        int count = Math.max(1, Math.min(maxCount, intParam(request, "count", defaultCount)));
+        Long sinceId = longParam(request, "since_id");
+        Long maxId = longParam(request, "max_id");
+        NavigableMap<Long, StoredTweet> range = this.tweets;
+        if (maxId != null) {
+            range = range.tailMap(maxId, true);
+        }
+        if (sinceId != null) {
+            range = range.headMap(sinceId, false);
+        }
+        List<Map<String, Object>> page = new ArrayList<>(count);
+        for (StoredTweet tweet : range.values()) {
+            if (filter.test(tweet)) {
+                page.add(tweet.json());
+                if (page.size() == count) {
+                    break;
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * One page of a cursored ID collection. Cursors are offset + 1 going forward and -(offset + 1) going back.
+     */
+    private static Map<String, Object> idsPage(Request request, int total, int defaultCount, int maxCount,
+                                               LongUnaryOperator idAt) {
+        int count = Math.max(1, Math.min(maxCount, intParam(request, "count", defaultCount)));
+        Long cursor = longParam(request, "cursor");
+        long offset = cursor == null || cursor == -1L ? 0L : Math.abs(cursor) - 1;
+        offset = Math.max(0L, Math.min(offset, total));
+        long end = Math.min(total, offset + count);
+        long[] ids = new long[(int) (end - offset)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = idAt.applyAsLong(offset + i);
+        }
+        long next = end < total ? end + 1 : 0L;
+        long previous = offset == 0 ? 0L : -(Math.max(0L, offset - count) + 1);
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("ids", ids);
+        page.put("next_cursor", next);
+        page.put("next_cursor_str", Long.toString(next));
+        page.put("previous_cursor", previous);
+        page.put("previous_cursor_str", Long.toString(previous));
+        page.put("total_count", null);
+        return page;
+    }
+
+    private StoredTweet tweet(Request request, String param) {
+        Long id = longParam(request, param);
+        return id == null ? null : this.tweets.get(id);
+    }
+
+    /**
+     * The user named by screen_name, user_id or id, or the authenticated user if none is given.
+     */
+    private StoredUser requestedUser(Request request) {
+        String screenName = request.param("screen_name");
+        if (screenName != null) {
+            return user(screenName);
+        }
+        String id = request.param("user_id") != null ? request.param("user_id") : request.param("id");
+        if (id == null) {
+            return this.self;
+        }
+        try {
+            return this.usersById.get(Long.parseLong(id));
+        } catch (NumberFormatException e) {
+            return user(id);
+        }
+    }
+
+    private long nextId() {
+        long now = ((System.currentTimeMillis() - TWITTER_EPOCH) << 22);
+        return this.lastId.updateAndGet(last -> Math.max(last + 1, now));
+    }
+
+    private static String createdAt(long id) {
+        return CREATED_AT.format(Instant.ofEpochMilli((id >> 22) + TWITTER_EPOCH));
+    }
+
+    private static int intParam(Request request, String name, int defaultValue) {
+        Long value = longParam(request, name);
+        return value == null ? defaultValue : (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+    }
+
+    private static Long longParam(Request request, String name) {
+        String value = request.param(name);
+        try {
+            return value == null ? null : Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String percentDecode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Response noStatus() {
+        return error(404, 144, "No status found with that ID.");
+    }
+
+    private static Response error(int status, int code, String message) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("code", code);
+        error.put("message", message);
+        return json(status, Collections.singletonMap("errors", Collections.singletonList(error)));
+    }
+
+    private static Response json(int status, Object body) {
+        return new Response(status, reason(status), JSON, Json.write(body).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reason phrases as Twitter's front end sends them.
+     */
+    private static String reason(int status) {
+        switch (status) {
+            case 200:
+                return "OK";
+            case 400:
+                return "Bad Request";
+            case 401:
+                return "Authorization Required";
+            case 403:
+                return "Forbidden";
+            case 404:
+                return "Not Found";
+            case 429:
+                return "Too Many Requests";
+            default:
+                return "Internal Server Error";
+        }
+    }
+
+    private static final class StoredUser {
+        final long id;
+        final String screenName;
+        final String name;
+        final String location;
+        final String description;
+        final int followersCount;
+        final int friendsCount;
+        final boolean banner;
+
+        StoredUser(JsonNode user) {
+            this.id = user.get("id").asLong();
+            this.screenName = user.get("screen_name").asText();
+            this.name = user.get("name").asText();
+            this.location = user.path("location").asText("");
+            this.description = user.path("description").asText("");
+            this.followersCount = user.path("followers_count").asInt(0);
+            this.friendsCount = user.path("friends_count").asInt(0);
+            this.banner = user.path("banner").asBoolean(false);
+        }
+
+        Map<String, Object> json() {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("id", this.id);
+            json.put("id_str", Long.toString(this.id));
+            json.put("name", this.name);
+            json.put("screen_name", this.screenName);
+            json.put("location", this.location);
+            json.put("description", this.description);
+            json.put("followers_count", this.followersCount);
+            json.put("friends_count", this.friendsCount);
+            json.put("verified", false);
+            json.put("created_at", "Mon Aug 24 17:34:02 +0000 2020");
+            return json;
+        }
+    }
+
+    private final class StoredTweet {
+        final long id;
+        final StoredUser user;
+        final String text;
+        final Long inReplyToStatusId;
+        final int retweetCount;
+        volatile boolean favorited;
+
+        StoredTweet(long id, StoredUser user, String text, Long inReplyToStatusId, int retweetCount) {
+            this.id = id;
+            this.user = user;
+            this.text = text;
+            this.inReplyToStatusId = inReplyToStatusId;
+            this.retweetCount = retweetCount;
+        }
+
+        Map<String, Object> json() {
+            StoredTweet repliedTo = this.inReplyToStatusId == null ? null : tweets.get(this.inReplyToStatusId);
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("created_at", createdAt(this.id));
+            json.put("id", this.id);
+            json.put("id_str", Long.toString(this.id));
+            json.put("text", this.text);
+            json.put("truncated", false);
+            json.put("in_reply_to_status_id", this.inReplyToStatusId);
+            json.put("in_reply_to_status_id_str", this.inReplyToStatusId == null ? null
+                    : Long.toString(this.inReplyToStatusId));
+            json.put("in_reply_to_screen_name", repliedTo == null ? null : repliedTo.user.screenName);
+            json.put("user", this.user.json());
+            json.put("retweet_count", this.retweetCount);
+            json.put("favorite_count", this.favorited ? 1 : 0);
+            json.put("favorited", this.favorited);
+            json.put("retweeted", false);
+            json.put("lang", "en");
+            return json;
+        }
+    }
+}
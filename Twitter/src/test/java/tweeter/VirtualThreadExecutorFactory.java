@@ -0,0 +1,53 @@
+package tweeter;
+
+import base.IoExecutors;
+import org.testng.IDynamicGraph;
+import org.testng.ISuite;
+import org.testng.ITestNGMethod;
+import org.testng.internal.thread.graph.GraphThreadPoolExecutor;
+import org.testng.thread.IExecutorFactory;
+import org.testng.thread.ITestNGThreadPoolExecutor;
+import org.testng.thread.IThreadWorkerFactory;
+
+import java.util.Comparator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TestNG executor factory that runs parallel tests on virtual threads when the JVM has them, and on daemon
+ * platform threads otherwise. TestNG still decides how many run at once from the suite's {@code thread-count};
+ * only the kind of thread changes, so a large count costs next to nothing on Java 21+.
+ */
+public class VirtualThreadExecutorFactory implements IExecutorFactory {
+
+    @Override
+    public ITestNGThreadPoolExecutor newSuiteExecutor(String name, IDynamicGraph<ISuite> graph,
+                                                      IThreadWorkerFactory<ISuite> factory, int corePoolSize,
+                                                      int maximumPoolSize, long keepAliveTime, TimeUnit unit,
+                                                      BlockingQueue<Runnable> workQueue,
+                                                      Comparator<ISuite> comparator) {
+        return newExecutor(name, graph, factory, corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue,
+                comparator);
+    }
+
+    @Override
+    public ITestNGThreadPoolExecutor newTestMethodExecutor(String name, IDynamicGraph<ITestNGMethod> graph,
+                                                           IThreadWorkerFactory<ITestNGMethod> factory,
+                                                           int corePoolSize, int maximumPoolSize, long keepAliveTime,
+                                                           TimeUnit unit, BlockingQueue<Runnable> workQueue,
+                                                           Comparator<ITestNGMethod> comparator) {
+        return newExecutor(name, graph, factory, corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue,
+                comparator);
+    }
+
+    private static <T> ITestNGThreadPoolExecutor newExecutor(String name, IDynamicGraph<T> graph,
+                                                             IThreadWorkerFactory<T> factory, int corePoolSize,
+                                                             int maximumPoolSize, long keepAliveTime, TimeUnit unit,
+                                                             BlockingQueue<Runnable> workQueue,
+                                                             Comparator<T> comparator) {
+        GraphThreadPoolExecutor<T> executor = new GraphThreadPoolExecutor<>(name, graph, factory, corePoolSize,
+                maximumPoolSize, keepAliveTime, unit, workQueue, comparator);
+        executor.setThreadFactory(IoExecutors.threadFactory("testng-" + name));
+        return executor;
+    }
+}